@@ -0,0 +1,136 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PrimitiveGeometryBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database;
+
+import com.sun.electric.database.geometry.EGraphics;
+import com.sun.electric.database.geometry.ERectangle;
+import com.sun.electric.database.geometry.Poly;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.hierarchy.View;
+import com.sun.electric.database.id.PrimitiveNodeId;
+import com.sun.electric.technology.AbstractShapeBuilder;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.PrimitivePort;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the primitive geometry of cells.
+ * Computes the primitive bounds, and generates the shapes of all primitive nodes and arcs,
+ * of the layout cells of placementTests, directly and from the shapes cached in CellBackup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveGeometryBenchmark extends AbstractJunitBaseClass {
+
+    /**
+     * Shape builder which only counts the points of the shapes.
+     */
+    private static class CountingShapeBuilder extends AbstractShapeBuilder {
+        private int numPoints;
+
+        @Override
+        protected void addPoly(int numPoints, Poly.Type style, Layer layer, EGraphics graphicsOverride, PrimitivePort pp) {
+            this.numPoints += numPoints;
+        }
+
+        @Override
+        protected void addBox(Layer layer) {
+            numPoints += 4;
+        }
+    }
+
+    private List<CellBackup> cellBackups;
+
+    @Setup
+    public void setUp() throws Exception {
+        initElectric();
+        Library lib = loadLibrary("placementTests");
+        cellBackups = new ArrayList<CellBackup>();
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            if (cell.getView() == View.LAYOUT) {
+                cellBackups.add(cell.backup());
+            }
+        }
+    }
+
+    @Benchmark
+    public long computePrimitiveBounds() {
+        long sum = 0;
+        for (CellBackup cellBackup : cellBackups) {
+            ERectangle bounds = cellBackup.computePrimitiveBounds();
+            if (bounds != null) {
+                sum += bounds.getGridWidth() + bounds.getGridHeight();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int genShape() {
+        CountingShapeBuilder b = new CountingShapeBuilder();
+        for (CellBackup cellBackup : cellBackups) {
+            b.setup(cellBackup, null, false, true, false, null);
+            for (ImmutableNodeInst n : cellBackup.cellRevision.nodes) {
+                if (n.protoId instanceof PrimitiveNodeId) {
+                    PrimitiveNode pn = cellBackup.techPool.getPrimitiveNode((PrimitiveNodeId) n.protoId);
+                    pn.genShape(b, n);
+                }
+            }
+            for (ImmutableArcInst a : cellBackup.cellRevision.arcs) {
+                b.genShapeOfArc(a);
+            }
+        }
+        return b.numPoints;
+    }
+
+    @Benchmark
+    public int genCachedShapes() {
+        CountingShapeBuilder b = new CountingShapeBuilder();
+        for (CellBackup cellBackup : cellBackups) {
+            cellBackup.getPrimitiveShapes().genShapes(b);
+        }
+        return b.numPoints;
+    }
+}
@@ -0,0 +1,118 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PolyMergeBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.util.math.FixpTransform;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the polygon union.
+ * The flattened geometry of PlacementTest4 is merged with PolyMerge or PolyScanlineMerge,
+ * and the merged polygons of every layer are extracted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolyMergeBenchmark extends AbstractJunitBaseClass {
+
+    /** simple name of the merge class */
+    @Param({"PolyMerge", "PolyScanlineMerge"})
+    public String merge;
+
+    private List<Poly> polys;
+
+    @Setup
+    public void setUp() throws Exception {
+        initElectric();
+        polys = new ArrayList<Poly>();
+        gatherPolys(loadCell("placementTests", "PlacementTest4"), new FixpTransform(), polys);
+    }
+
+    @Benchmark
+    public int union() {
+        PolyMerge m = merge.equals("PolyScanlineMerge") ? new PolyScanlineMerge() : new PolyMerge();
+        for (Poly poly : polys) {
+            m.addPolygon(poly.getLayer(), poly);
+        }
+        int numPoints = 0;
+        for (Layer layer : m.getKeySet()) {
+            for (PolyBase poly : m.getMergedPoints(layer, true)) {
+                numPoints += poly.getPoints().length;
+            }
+        }
+        return numPoints;
+    }
+
+    private static void gatherPolys(Cell cell, FixpTransform trans, List<Poly> polys) {
+        Technology tech = cell.getTechnology();
+        for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext();) {
+            NodeInst ni = it.next();
+            if (ni.isCellInstance()) {
+                gatherPolys((Cell) ni.getProto(), ni.transformOut(trans), polys);
+                continue;
+            }
+            FixpTransform nodeTrans = ni.rotateOut(trans);
+            for (Poly poly : tech.getShapeOfNode(ni)) {
+                if (poly.getLayer() == null) {
+                    continue;
+                }
+                poly.transform(nodeTrans);
+                polys.add(poly);
+            }
+        }
+        for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext();) {
+            ArcInst ai = it.next();
+            for (Poly poly : tech.getShapeOfArc(ai)) {
+                if (poly.getLayer() == null) {
+                    continue;
+                }
+                poly.transform(trans);
+                polys.add(poly);
+            }
+        }
+    }
+}
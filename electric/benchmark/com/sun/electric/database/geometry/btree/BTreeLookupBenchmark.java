@@ -0,0 +1,88 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BTreeLookupBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import com.sun.electric.database.geometry.btree.unboxed.Pair;
+import com.sun.electric.database.geometry.btree.unboxed.UnboxedInt;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of BTree lookups in memory.
+ * See BTreeBenchmark for a comparison of the page storages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BTreeLookupBenchmark {
+
+    /** number of entries in the tree */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private BTree<Integer,Integer,Pair<Integer,Integer>> btree;
+    private int[] keys;
+
+    @Setup
+    public void setUp() {
+        btree = new BTree<Integer,Integer,Pair<Integer,Integer>>(new MemoryPageStorage(4096 * 4),
+                                                                UnboxedInt.instance, UnboxedInt.instance, null);
+        for (int i = 0; i < size; i++)
+            btree.insert(i, i*3);
+        Random rand = new Random(0x1234);
+        keys = new int[1000];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = rand.nextInt(size);
+    }
+
+    @Benchmark
+    public long getValFromKey() {
+        long sum = 0;
+        for (int key : keys)
+            sum += btree.getValFromKey(key).intValue();
+        return sum;
+    }
+
+    @Benchmark
+    public long getValFromKeyFloor() {
+        long sum = 0;
+        for (int key : keys)
+            sum += btree.getValFromKeyFloor(key).intValue();
+        return sum;
+    }
+}
@@ -0,0 +1,92 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: NetlistBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.network;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of netlist construction.
+ * Builds fresh netlists of the layout and the schematic cells of placementTests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetlistBenchmark extends AbstractJunitBaseClass {
+
+    private List<Cell> layoutCells;
+    private List<Cell> schematicCells;
+
+    @Setup
+    public void setUp() throws Exception {
+        initElectric();
+        Library lib = loadLibrary("placementTests");
+        layoutCells = new ArrayList<Cell>();
+        schematicCells = new ArrayList<Cell>();
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            if (cell.isSchematic()) {
+                schematicCells.add(cell);
+            } else if (!cell.isIcon()) {
+                layoutCells.add(cell);
+            }
+        }
+    }
+
+    @Benchmark
+    public int layoutNetlists() {
+        return buildNetlists(layoutCells);
+    }
+
+    @Benchmark
+    public int schematicNetlists() {
+        return buildNetlists(schematicCells);
+    }
+
+    private static int buildNetlists(List<Cell> cells) {
+        int numNetworks = 0;
+        for (Cell cell : cells) {
+            numNetworks += NetCell.newInst(cell).getNetlist(Netlist.ShortResistors.NO).getNumNetworks();
+        }
+        return numNetworks;
+    }
+}
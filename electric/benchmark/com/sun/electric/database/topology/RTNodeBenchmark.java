@@ -0,0 +1,133 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RTNodeBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.topology;
+
+import com.sun.electric.util.math.AbstractFixpRectangle;
+import com.sun.electric.util.math.FixpRectangle;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the R-Tree.
+ * Builds trees of random boxes with linkGeom and with bulkLoad,
+ * and searches them with random areas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RTNodeBenchmark {
+
+    static class Box implements RTBounds {
+        private final FixpRectangle bounds;
+
+        private Box(long minX, long minY, long maxX, long maxY) {
+            bounds = FixpRectangle.fromFixpDiagonal(minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public AbstractFixpRectangle getBounds() {
+            return bounds;
+        }
+    }
+
+    /** number of boxes in the tree */
+    @Param({"10000", "100000"})
+    public int size;
+
+    private List<Box> boxes;
+    private FixpRectangle[] areas;
+    private RTNode<Box> packed;
+    private RTNode<Box> linked;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(12345);
+        boxes = new ArrayList<Box>();
+        for (int i = 0; i < size; i++) {
+            long x = random.nextInt(1000000);
+            long y = random.nextInt(1000000);
+            boxes.add(new Box(x, y, x + random.nextInt(5000), y + random.nextInt(5000)));
+        }
+        areas = new FixpRectangle[1000];
+        for (int i = 0; i < areas.length; i++) {
+            long x = random.nextInt(1000000);
+            long y = random.nextInt(1000000);
+            areas[i] = FixpRectangle.fromFixpDiagonal(x, y, x + random.nextInt(20000), y + random.nextInt(20000));
+        }
+        packed = RTNode.bulkLoad(boxes);
+        linked = linkGeom();
+    }
+
+    @Benchmark
+    public RTNode<Box> linkGeom() {
+        RTNode<Box> root = RTNode.makeTopLevel();
+        for (Box box : boxes) {
+            root = RTNode.linkGeom(null, root, box);
+        }
+        return root;
+    }
+
+    @Benchmark
+    public RTNode<Box> bulkLoad() {
+        return RTNode.bulkLoad(boxes);
+    }
+
+    @Benchmark
+    public int searchPacked() {
+        return search(packed);
+    }
+
+    @Benchmark
+    public int searchLinked() {
+        return search(linked);
+    }
+
+    private int search(RTNode<Box> root) {
+        int found = 0;
+        for (FixpRectangle area : areas) {
+            for (Iterator<Box> it = new RTNode.Search<Box>(area, root, true); it.hasNext();) {
+                it.next();
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,409 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PlaceAndRouteBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.geometry.EPoint;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.network.Netlist;
+import com.sun.electric.database.network.Network;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.topology.PortInst;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.technology.technologies.Generic;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.input.Input;
+import com.sun.electric.tool.placement.Placement;
+import com.sun.electric.tool.placement.PlacementAdapter;
+import com.sun.electric.tool.placement.PlacementFrame;
+import com.sun.electric.tool.routing.RoutingFrame;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.util.TextUtils;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headless benchmark of the placement and routing algorithms.
+ * Every algorithm of PlacementAdapter.getPlacementAlgorithms() and RoutingFrame.getRoutingAlgorithms()
+ * is run on every design, each run on a freshly read copy of the design, and the results are written to JSON.
+ * <P>
+ * Usage: PlaceAndRouteBenchmark [-threads N] [-time SECONDS] [-placers NAMES] [-routers NAMES] [-o FILE] DESIGN...
+ * <UL>
+ * <LI>-threads and -time set the "threads" and "runtime" parameters of the algorithms that have them.
+ * Algorithms without a "runtime" parameter run to completion, which the "budgeted" field of the result tells.
+ * <LI>-placers and -routers take comma-separated algorithm names, or "none".
+ * The default is all algorithms.
+ * <LI>A design is a Bookshelf aux file, a DEF file or a JELIB library, optionally followed by "@" and the cell name.
+ * Without a cell name, the largest cell that is not instantiated elsewhere is used.
+ * Without designs, PlacementTest4 of the regression library is used.
+ * </UL>
+ * Each run reports the wall time, the CPU time of the whole process (so it includes the garbage collector),
+ * the sum of the peak usages of the heap memory pools, and the half-perimeter wire length of the cell.
+ * Routing runs also report the number of routed segments and the length of the arcs which were created.
+ */
+public class PlaceAndRouteBenchmark extends AbstractJunitBaseClass {
+
+    private static final String DEFAULT_DESIGN = "/com/sun/electric/tool/util/test/testData/placementTests.jelib@PlacementTest4";
+
+    private int numThreads = 4;
+    private int timeBudget = 60;
+    private List<PlacementFrame> placers = new ArrayList<PlacementFrame>();
+    private List<RoutingFrame> routers = new ArrayList<RoutingFrame>();
+    private List<String> designs = new ArrayList<String>();
+    private File outputFile = new File("placeAndRoute.json");
+    private List<String> results = new ArrayList<String>();
+
+    public static void main(String[] args) throws Exception {
+        PlaceAndRouteBenchmark benchmark = new PlaceAndRouteBenchmark();
+        if (!benchmark.parseArguments(args)) {
+            System.out.println("Usage: PlaceAndRouteBenchmark [-threads N] [-time SECONDS] [-placers NAMES] [-routers NAMES] [-o FILE] DESIGN...");
+            System.exit(1);
+        }
+        benchmark.initElectric();
+        EDatabase.serverDatabase().lowLevelBeginChanging(null);
+        benchmark.run();
+        System.exit(0);
+    }
+
+    private boolean parseArguments(String[] args) {
+        String placerNames = null, routerNames = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("-")) {
+                if (i + 1 >= args.length) return false;
+                String value = args[++i];
+                if (arg.equals("-threads")) numThreads = TextUtils.atoi(value); else
+                if (arg.equals("-time")) timeBudget = TextUtils.atoi(value); else
+                if (arg.equals("-placers")) placerNames = value; else
+                if (arg.equals("-routers")) routerNames = value; else
+                if (arg.equals("-o")) outputFile = new File(value); else
+                    return false;
+            } else if (arg.length() > 0) {
+                designs.add(arg);
+            }
+        }
+        if (designs.isEmpty()) designs.add(DEFAULT_DESIGN);
+        for (PlacementFrame pla : PlacementAdapter.getPlacementAlgorithms()) {
+            if (isSelected(pla.getAlgorithmName(), placerNames)) placers.add(pla);
+        }
+        for (RoutingFrame router : RoutingFrame.getRoutingAlgorithms()) {
+            if (isSelected(router.getAlgorithmName(), routerNames)) routers.add(router);
+        }
+        return true;
+    }
+
+    private static boolean isSelected(String algorithmName, String names) {
+        if (names == null) return true;
+        for (String name : names.split(",")) {
+            if (name.trim().equalsIgnoreCase(algorithmName)) return true;
+        }
+        return false;
+    }
+
+    private void run() throws IOException {
+        for (String design : designs) {
+            for (PlacementFrame pla : placers) {
+                runPlacement(design, pla);
+            }
+            for (RoutingFrame router : routers) {
+                runRouting(design, router);
+            }
+        }
+        System.out.println("Wrote " + results.size() + " results to " + outputFile);
+    }
+
+    private void runPlacement(String design, PlacementFrame pla) throws IOException {
+        Cell cell = loadDesign(design);
+        if (cell == null) return;
+        EditingPreferences ep = new EditingPreferences(true, cell.getTechPool());
+        Placement.PlacementPreferences prefs = new Placement.PlacementPreferences(true);
+        prefs.placementAlgorithm = pla.getAlgorithmName();
+        boolean budgeted = false;
+        for (PlacementFrame.PlacementParameter par : pla.getParameters()) {
+            if (par.getType() != PlacementFrame.PlacementParameter.TYPEINTEGER) continue;
+            if (par.getParameterName().equals("threads")) {
+                prefs.setParameter(par, Integer.valueOf(numThreads));
+            } else if (par.getParameterName().equals("runtime")) {
+                prefs.setParameter(par, Integer.valueOf(timeBudget));
+                budgeted = true;
+            }
+        }
+
+        Measurement m = new Measurement();
+        Cell placed = null;
+        String error = null;
+        try {
+            placed = Placement.placeCellNoJob(cell, ep, pla, prefs, true, null);
+            if (placed == null) error = "placement failed";
+        } catch (Throwable e) {
+            error = String.valueOf(e);
+            e.printStackTrace();
+        }
+        m.stop();
+
+        StringBuilder sb = startResult(design, cell, "placement", pla.getAlgorithmName(), budgeted, m);
+        if (placed != null) sb.append(", \"hpwl\": ").append(halfPerimeterWireLength(placed));
+        finishResult(sb, error);
+        cell.getLibrary().kill("delete");
+    }
+
+    private void runRouting(String design, RoutingFrame router) throws IOException {
+        Cell cell = loadDesign(design);
+        if (cell == null) return;
+        EditingPreferences ep = new EditingPreferences(true, cell.getTechPool());
+        RoutingFrame.RoutingPrefs prefs = new RoutingFrame.RoutingPrefs(true);
+        boolean budgeted = false;
+        for (RoutingFrame.RoutingParameter par : router.getParameters()) {
+            if (par.getType() != RoutingFrame.RoutingParameter.TYPEINTEGER) continue;
+            if (par.getParameterName().equals("threads")) {
+                prefs = prefs.withParameter(par, Integer.valueOf(numThreads));
+            } else if (par.getParameterName().equals("runtime")) {
+                prefs = prefs.withParameter(par, Integer.valueOf(timeBudget));
+                budgeted = true;
+            }
+        }
+        int numSegments = 0;
+        for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext();) {
+            if (it.next().getProto() == Generic.tech().unrouted_arc) numSegments++;
+        }
+        double wireLength = routedWireLength(cell);
+        double hpwl = halfPerimeterWireLength(cell);
+
+        Measurement m = new Measurement();
+        int numRouted = 0;
+        String error = null;
+        try {
+            numRouted = router.doRouting(cell, ep, prefs);
+        } catch (Throwable e) {
+            error = String.valueOf(e);
+            e.printStackTrace();
+        }
+        m.stop();
+
+        StringBuilder sb = startResult(design, cell, "routing", router.getAlgorithmName(), budgeted, m);
+        sb.append(", \"hpwl\": ").append(hpwl);
+        sb.append(", \"segments\": ").append(numSegments);
+        sb.append(", \"routedSegments\": ").append(numRouted);
+        sb.append(", \"routedWireLength\": ").append(routedWireLength(cell) - wireLength);
+        finishResult(sb, error);
+        cell.getLibrary().kill("delete");
+    }
+
+    /**
+     * Method to read a fresh copy of a design.
+     * @param design the file name of the design, optionally followed by "@" and the cell name.
+     * @return the cell to place and route, or null if it can't be read.
+     */
+    private Cell loadDesign(String design) {
+        String fileName = design, cellName = null;
+        int atPos = design.lastIndexOf('@');
+        if (atPos > 0) {
+            fileName = design.substring(0, atPos);
+            cellName = design.substring(atPos + 1);
+        }
+        EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+        Library lib = null;
+        try {
+            if (fileName.endsWith(".jelib")) {
+                LoadLibraryType type = new File(fileName).exists() ? LoadLibraryType.fileSystem : LoadLibraryType.resource;
+                lib = loadLibrary(TextUtils.getFileNameWithoutExtension(fileName), fileName, type);
+            } else {
+                FileType type = fileName.endsWith(".def") ? FileType.DEF : FileType.BOOKSHELF;
+                URL url = TextUtils.makeURLToFile(fileName);
+                lib = Input.importLibrary(ep, Input.getInputPreferences(type, true), url, type, null,
+                    Technology.getMocmosTechnology(), new HashMap<Library, Cell>(), null, false, null);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (lib == null) {
+            System.out.println("Can't read design " + fileName);
+            return null;
+        }
+
+        Cell best = null;
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            Cell cell = it.next();
+            if (cellName != null) {
+                if (cell.getName().equals(cellName) && !cell.isIcon() && !cell.isSchematic()) best = cell;
+            } else if (!cell.getUsagesOf().hasNext()) {
+                if (best == null || cell.getNumNodes() > best.getNumNodes()) best = cell;
+            }
+        }
+        if (best == null) {
+            System.out.println("Can't find the cell to place and route in " + design);
+            lib.kill("delete");
+        }
+        return best;
+    }
+
+    /**
+     * Method to compute the half-perimeter wire length of a cell, from the bounding boxes of the ports on each network.
+     * Ports of pins which are not exported are wiring, and are not counted.
+     * @param cell the cell.
+     * @return the sum of half-perimeters of all networks.
+     */
+    private static double halfPerimeterWireLength(Cell cell) {
+        Netlist netlist = cell.getNetlist();
+        Map<Network, Rectangle2D> boxes = new HashMap<Network, Rectangle2D>();
+        for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext();) {
+            NodeInst ni = it.next();
+            if (!ni.isCellInstance() && ni.getFunction().isPin() && !ni.hasExports()) continue;
+            for (Iterator<PortInst> pIt = ni.getPortInsts(); pIt.hasNext();) {
+                PortInst pi = pIt.next();
+                Network net = netlist.getNetwork(pi);
+                if (net == null) continue;
+                EPoint center = pi.getCenter();
+                Rectangle2D box = boxes.get(net);
+                if (box == null) {
+                    boxes.put(net, new Rectangle2D.Double(center.getX(), center.getY(), 0, 0));
+                } else {
+                    box.add(center);
+                }
+            }
+        }
+        double hpwl = 0;
+        for (Rectangle2D box : boxes.values()) {
+            hpwl += box.getWidth() + box.getHeight();
+        }
+        return hpwl;
+    }
+
+    /**
+     * Method to compute the length of all arcs of a cell which are not unrouted.
+     * @param cell the cell.
+     * @return the length of the real wires in the cell.
+     */
+    private static double routedWireLength(Cell cell) {
+        double length = 0;
+        for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext();) {
+            ArcInst ai = it.next();
+            if (ai.getProto() != Generic.tech().unrouted_arc) length += ai.getLambdaLength();
+        }
+        return length;
+    }
+
+    private StringBuilder startResult(String design, Cell cell, String kind, String algorithm, boolean budgeted, Measurement m) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"design\": ").append(quote(design));
+        sb.append(", \"cell\": ").append(quote(cell.noLibDescribe()));
+        sb.append(", \"kind\": ").append(quote(kind));
+        sb.append(", \"algorithm\": ").append(quote(algorithm));
+        sb.append(", \"threads\": ").append(numThreads);
+        sb.append(", \"timeBudget\": ").append(timeBudget);
+        sb.append(", \"budgeted\": ").append(budgeted);
+        sb.append(", \"wallMillis\": ").append(m.wallMillis);
+        sb.append(", \"cpuMillis\": ").append(m.cpuMillis);
+        sb.append(", \"peakHeapBytes\": ").append(m.peakHeapBytes);
+        return sb;
+    }
+
+    /**
+     * Method to add a result and to rewrite the JSON file, so that the results so far survive a crash.
+     */
+    private void finishResult(StringBuilder sb, String error) throws IOException {
+        if (error != null) sb.append(", \"error\": ").append(quote(error));
+        sb.append("}");
+        results.add(sb.toString());
+        System.out.println(sb);
+
+        PrintWriter out = new PrintWriter(new FileWriter(outputFile));
+        try {
+            out.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                out.print("  " + results.get(i));
+                out.println(i < results.size() - 1 ? "," : "");
+            }
+            out.println("]");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c); else
+            if (c < ' ') sb.append(String.format("\\u%04x", Integer.valueOf(c))); else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Class to measure the resources used by one run.
+     * The constructor collects garbage and resets the peak usage of the heap memory pools.
+     */
+    private static class Measurement {
+        private final long startWall, startCpu;
+        private long wallMillis, cpuMillis, peakHeapBytes;
+
+        private Measurement() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+            }
+            startCpu = processCpuTime();
+            startWall = System.nanoTime();
+        }
+
+        private void stop() {
+            wallMillis = (System.nanoTime() - startWall) / 1000000;
+            long cpu = processCpuTime();
+            cpuMillis = cpu < 0 ? -1 : (cpu - startCpu) / 1000000;
+            peakHeapBytes = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) peakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        /**
+         * Method to return the CPU time of all threads of this process.
+         * The algorithms start their own threads, so the CPU time of the calling thread is not enough.
+         * @return the CPU time in nanoseconds, or -1 if the JVM does not report it.
+         */
+        private static long processCpuTime() {
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            if (os instanceof com.sun.management.OperatingSystemMXBean)
+                return ((com.sun.management.OperatingSystemMXBean)os).getProcessCpuTime();
+            return -1;
+        }
+    }
+}
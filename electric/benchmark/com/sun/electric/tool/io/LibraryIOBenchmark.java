@@ -0,0 +1,124 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: LibraryIOBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.LibId;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.io.input.Input;
+import com.sun.electric.tool.io.input.JELIB2;
+import com.sun.electric.tool.io.input.JelibParser;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.util.TextUtils;
+
+import java.io.File;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of library input and output.
+ * Parses and instantiates placementTests.jelib, and writes and reads PlacementTest4 as GDS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryIOBenchmark extends AbstractJunitBaseClass {
+
+    private static final String JELIB_RESOURCE = "/com/sun/electric/tool/util/test/testData/placementTests.jelib";
+
+    private URL jelibURL;
+    private LibId libId;
+    private Cell cell;
+    private File gdsFile;
+    private URL gdsURL;
+
+    @Setup
+    public void setUp() throws Exception {
+        initElectric();
+        jelibURL = LibraryIOBenchmark.class.getResource(JELIB_RESOURCE);
+        libId = EDatabase.serverDatabase().getIdManager().newLibId("placementTestsBenchmark");
+        cell = loadCell("placementTests", "PlacementTest4");
+        gdsFile = File.createTempFile("PlacementTest4", ".gds");
+        gdsURL = TextUtils.makeURLToFile(gdsFile.getPath());
+        writeGDS();
+    }
+
+    @TearDown
+    public void tearDown() {
+        gdsFile.delete();
+    }
+
+    @Benchmark
+    public JelibParser parseJELIB() throws Exception {
+        return JelibParser.parse(libId, jelibURL, FileType.JELIB, false, false, ErrorLogger.newInstance("benchmark"));
+    }
+
+    @Benchmark
+    public JelibParser parseJELIBParallel() throws Exception {
+        return JelibParser.parse(libId, jelibURL, FileType.JELIB, false, true, ErrorLogger.newInstance("benchmark"));
+    }
+
+    @Benchmark
+    public JELIB2 instantiateJELIB() throws Exception {
+        JelibParser parser = JelibParser.parse(libId, jelibURL, FileType.JELIB, false, false, ErrorLogger.newInstance("benchmark"));
+        JELIB2 jelib2 = new JELIB2(libId, parser);
+        jelib2.instantiate(EDatabase.serverDatabase().getTechPool(), true);
+        return jelib2;
+    }
+
+    @Benchmark
+    public long writeGDS() {
+        new com.sun.electric.tool.io.output.GDS.GDSPreferences(true, cell).doOutput(cell, VarContext.globalContext, gdsFile.getPath());
+        return gdsFile.length();
+    }
+
+    @Benchmark
+    public int readGDS() {
+        EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+        Library lib = Input.importLibrary(ep, new com.sun.electric.tool.io.input.GDS.GDSPreferences(true), gdsURL, FileType.GDS, null,
+            Technology.getMocmosTechnology(), new HashMap<Library, Cell>(), null, false, null);
+        int numCells = lib.getNumCells();
+        lib.kill("delete");
+        return numCells;
+    }
+}
@@ -0,0 +1,141 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PixelDrawingBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.user.redisplay;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.user.GraphicsPreferences;
+import com.sun.electric.tool.user.ui.LayerVisibility;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the pixel display algorithm.
+ * The same 64 by 64 array of small cells is rendered from a two-level hierarchy
+ * of expanded instances and from one flat cell. Only the cached cells of the
+ * hierarchy are rendered in parallel, so the flat cell shows the time of the
+ * window itself, which is always drawn in one thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PixelDrawingBenchmark extends AbstractJunitBaseClass {
+
+    private static final Dimension SIZE = new Dimension(1024, 768);
+    private static final int ARRAY = 8;
+    private static final double PITCH = 40;
+
+    /** "hierarchical" or "flat" */
+    @Param({"hierarchical", "flat"})
+    public String layout;
+
+    /** the rendering threads (1 for this thread only, 0 for all threads of the Job pool) */
+    @Param({"1", "0"})
+    public int numThreads;
+
+    private Cell cell;
+    private GraphicsPreferences gp;
+    private LayerVisibility lv;
+    private double scale;
+    private Point2D offset;
+
+    @Setup
+    public void setUp() throws Exception {
+        initElectric();
+        EDatabase.serverDatabase().lowLevelBeginChanging(null);
+        EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+        Technology tech = Technology.findTechnology("mocmos");
+        Library lib = Library.newInst("pixelDrawingBenchmark", null);
+
+        Cell leaf = Cell.makeInstance(ep, lib, "leaf{lay}");
+        fillLeaf(tech, ep, 0, 0, leaf);
+        if (layout.equals("flat")) {
+            cell = Cell.makeInstance(ep, lib, "flat{lay}");
+            double step = PITCH * ARRAY;
+            for (int i = 0; i < ARRAY * ARRAY; i++) {
+                for (int j = 0; j < ARRAY * ARRAY; j++) {
+                    double x = (i / ARRAY) * step + (i % ARRAY) * PITCH;
+                    double y = (j / ARRAY) * step + (j % ARRAY) * PITCH;
+                    fillLeaf(tech, ep, x, y, cell);
+                }
+            }
+        } else {
+            Cell row = Cell.makeInstance(ep, lib, "array{lay}");
+            placeArray(leaf, ep, PITCH, row);
+            cell = Cell.makeInstance(ep, lib, "top{lay}");
+            placeArray(row, ep, PITCH * ARRAY, cell);
+        }
+
+        gp = new GraphicsPreferences(true);
+        lv = new LayerVisibility(true);
+        Rectangle2D bounds = cell.getBounds();
+        scale = Math.min(SIZE.width / bounds.getWidth(), SIZE.height / bounds.getHeight()) * 0.9;
+        offset = new Point2D.Double(bounds.getCenterX(), bounds.getCenterY());
+    }
+
+    @Benchmark
+    public int render() {
+        PixelDrawing offscreen = new PixelDrawing(SIZE);
+        offscreen.renderImage(scale, offset, cell, gp, lv, numThreads);
+        return offscreen.getOpaqueData()[SIZE.width * (SIZE.height / 2) + SIZE.width / 2];
+    }
+
+    private static void fillLeaf(Technology tech, EditingPreferences ep, double x, double y, Cell cell) {
+        LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Node"), ep, x, y, 20, 20, 0, cell);
+        LayoutLib.newNodeInst(tech.findNodeProto("Polysilicon-1-Node"), ep, x + 5, y, 4, 30, 0, cell);
+        LayoutLib.newNodeInst(tech.findNodeProto("Metal-2-Node"), ep, x, y + 5, 30, 4, 0, cell);
+        LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Metal-2-Con"), ep, x, y, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+    }
+
+    private static void placeArray(Cell subCell, EditingPreferences ep, double pitch, Cell cell) {
+        for (int i = 0; i < ARRAY; i++) {
+            for (int j = 0; j < ARRAY; j++) {
+                NodeInst ni = LayoutLib.newNodeInst(subCell, ep, i * pitch, j * pitch, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+                ni.setExpanded(true);
+            }
+        }
+    }
+}
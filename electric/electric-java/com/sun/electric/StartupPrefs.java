@@ -116,6 +116,20 @@ public class StartupPrefs {
 	public static boolean isSnapshotLogging() { return getUserBoolean(SnapshotLoggingKey, SnapshotLoggingDef); }
 
 
+	/** Preferences key to tell whether the server sends compact snapshots to its clients. */
+    public static final String CompactSnapshotTransportKey = "CompactSnapshotTransport";
+	/** Default whether the server sends compact snapshots to its clients. */
+    public static final boolean CompactSnapshotTransportDef = false;
+	/**
+	 * Method to tell whether the server sends compact snapshots to its clients.
+	 * Compact snapshots are compressed, and consecutive intermediate snapshots
+	 * of a Job are sent as one.
+	 * The default is "false".
+	 * @return true if the server sends compact snapshots to its clients.
+	 */
+	public static boolean isCompactSnapshotTransport() { return getUserBoolean(CompactSnapshotTransportKey, CompactSnapshotTransportDef); }
+
+
 	/** Preferences key to tell whether to scale the screen. */
     public static final String ScreenScalingKey = "ScreenScaling";
 	/** Default whether to scale the screen. */
@@ -35,12 +35,14 @@ import com.sun.electric.technology.AbstractShapeBuilder;
 import com.sun.electric.technology.ArcProto;
 import com.sun.electric.technology.BoundsBuilder;
 import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.PrimitiveShapes;
 import com.sun.electric.technology.TechPool;
 import com.sun.electric.technology.Technology;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.util.collections.ImmutableArrayList;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.BitSet;
 import java.util.Iterator;
 
@@ -82,6 +84,10 @@ public class CellBackup {
      * Bounds of primitive arcs in this Cell.
      */
     private ERectangle primitiveBounds;
+    /**
+     * Shapes of primitive nodes and arcs in this Cell.
+     */
+    private volatile SoftReference<PrimitiveShapes> primitiveShapesRef = new SoftReference<PrimitiveShapes>(null);
 
     /**
      * Creates a new instance of CellBackup
@@ -269,6 +275,20 @@ public class CellBackup {
         return this.primitiveBounds = computePrimitiveBounds();
     }
 
+    /**
+     * Returns shapes of primitive nodes and arcs in this Cell grouped by Layer.
+     * The shapes are kept while memory permits, so tools which examine the same CellBackup share them.
+     * @return shapes of primitive nodes and arcs.
+     */
+    public PrimitiveShapes getPrimitiveShapes() {
+        PrimitiveShapes primitiveShapes = primitiveShapesRef.get();
+        if (primitiveShapes == null) {
+            primitiveShapes = new PrimitiveShapes(this);
+            primitiveShapesRef = new SoftReference<PrimitiveShapes>(primitiveShapes);
+        }
+        return primitiveShapes;
+    }
+
     public ERectangle computePrimitiveBounds() {
         ERectangle primitiveArcBounds = computePrimitiveBoundsOfArcs();
         long gridMinX = Long.MAX_VALUE, gridMinY = Long.MAX_VALUE, gridMaxX = Long.MIN_VALUE, gridMaxY = Long.MIN_VALUE;
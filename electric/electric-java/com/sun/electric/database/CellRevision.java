@@ -755,7 +755,7 @@ public abstract class CellRevision {
      *
      * @param writer where to write.
      */
-    void write(IdWriter writer) throws IOException {
+    public void write(IdWriter writer) throws IOException {
         d.write(writer);
         writer.writeInt(nodes.size());
         for (ImmutableNodeInst n : nodes) {
@@ -776,7 +776,7 @@ public abstract class CellRevision {
      *
      * @param reader where to read.
      */
-    static CellRevision read(IdReader reader) throws IOException {
+    public static CellRevision read(IdReader reader) throws IOException {
         ImmutableCell d = ImmutableCell.read(reader);
         CellRevision revision = CellRevision.newInst(d.withoutVariables());
 
@@ -103,7 +103,7 @@ public class LibraryBackup {
      * Writes this LibraryBackup to IdWriter.
      * @param writer where to write.
      */
-    void write(IdWriter writer) throws IOException {
+    public void write(IdWriter writer) throws IOException {
         d.write(writer);
         writer.writeBoolean(modified);
         writer.writeInt(referencedLibs.length);
@@ -116,7 +116,7 @@ public class LibraryBackup {
      * Reads LibraryBackup from SnapshotReader.
      * @param reader where to read.
      */
-    static LibraryBackup read(IdReader reader) throws IOException {
+    public static LibraryBackup read(IdReader reader) throws IOException {
         ImmutableLibrary d = ImmutableLibrary.read(reader);
         boolean modified = reader.readBoolean();
         int refsLength = reader.readInt();
@@ -45,7 +45,8 @@ public abstract class GeometryHandler implements LayoutMerger {
     public enum GHMode // GH GeometryHandler mode
     {
 	    ALGO_MERGE,   // using merge structure
-	    ALGO_SWEEP; // using sweep structure
+	    ALGO_SWEEP, // using sweep structure
+	    ALGO_SCANLINE; // using merge structure with Manhattan scanline regions
     }
     public static final ShapeSort shapeSort = new ShapeSort();
     public static final AreaSort areaSort = new AreaSort();
@@ -59,6 +60,8 @@ public abstract class GeometryHandler implements LayoutMerger {
         {
             case ALGO_MERGE:
                 return new PolyMerge();
+            case ALGO_SCANLINE:
+                return new PolyScanlineMerge();
             case ALGO_SWEEP:
                 if (initialSize > 0)
                     return new PolySweepMerge(initialSize);
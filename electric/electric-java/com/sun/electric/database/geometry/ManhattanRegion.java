@@ -0,0 +1,631 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ManhattanRegion.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.util.math.FixpCoord;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Class to hold a region of the plane that is bounded by horizontal and vertical edges.
+ * Coordinates are fixed-point longs.
+ * The region is a sequence of horizontal bands sorted by Y.
+ * Each band covers the Y range [lo,hi) and holds sorted, disjoint X intervals.
+ * Touching intervals and touching bands with the same intervals are combined,
+ * so every region has a single representation.
+ * <P>
+ * Regions are immutable.
+ * Boolean operations sweep the bands of both operands in one pass.
+ */
+class ManhattanRegion implements Serializable
+{
+	static final int UNION = 0;
+	static final int INTERSECTION = 1;
+	static final int DIFFERENCE = 2;
+
+	static final ManhattanRegion EMPTY = new ManhattanRegion(new long[0], new long[0], new int[1], new long[0]);
+
+	/** the low Y of each band */							private final long[] bandLo;
+	/** the high Y of each band */							private final long[] bandHi;
+	/** index in "xs" of the first interval of each band */	private final int[] bandStart;
+	/** X intervals of all bands as (lo,hi) pairs */		private final long[] xs;
+
+	private ManhattanRegion(long[] bandLo, long[] bandHi, int[] bandStart, long[] xs)
+	{
+		this.bandLo = bandLo;
+		this.bandHi = bandHi;
+		this.bandStart = bandStart;
+		this.xs = xs;
+	}
+
+	/**
+	 * Method to build a region that is the union of rectangles.
+	 * @param rects the rectangles as (minX, minY, maxX, maxY) quadruples.
+	 * Rectangles without area are ignored.
+	 * @param numRects the number of rectangles in the array.
+	 * @return the union of the rectangles.
+	 */
+	static ManhattanRegion fromRectangles(long[] rects, int numRects)
+	{
+		int[] order = new int[numRects];
+		long[] ys = new long[numRects*2];
+		int n = 0;
+		for(int i=0; i<numRects; i++)
+		{
+			if (rects[i*4] >= rects[i*4+2] || rects[i*4+1] >= rects[i*4+3]) continue;
+			order[n] = i;
+			ys[n*2] = rects[i*4+1];
+			ys[n*2+1] = rects[i*4+3];
+			n++;
+		}
+		if (n == 0) return EMPTY;
+		sortByKey(order, n, rects, 1);
+		Arrays.sort(ys, 0, n*2);
+		int numYs = unique(ys, n*2);
+
+		// sweep upward, keeping the active rectangles sorted by low X
+		long[] active = new long[8];
+		int numActive = 0;
+		long[] merged = new long[8];
+		Builder builder = new Builder();
+		int next = 0;
+		for(int k=0; k<numYs-1; k++)
+		{
+			long y = ys[k];
+
+			// drop rectangles that ended
+			int kept = 0;
+			for(int a=0; a<numActive; a++)
+			{
+				if (active[a*3+2] <= y) continue;
+				active[kept*3] = active[a*3];
+				active[kept*3+1] = active[a*3+1];
+				active[kept*3+2] = active[a*3+2];
+				kept++;
+			}
+			numActive = kept;
+
+			// add rectangles that start here
+			for( ; next < n && rects[order[next]*4+1] == y; next++)
+			{
+				int r = order[next]*4;
+				if ((numActive+1)*3 > active.length) active = Arrays.copyOf(active, active.length*2);
+				int pos = numActive;
+				while (pos > 0 && active[(pos-1)*3] > rects[r]) pos--;
+				System.arraycopy(active, pos*3, active, pos*3+3, (numActive-pos)*3);
+				active[pos*3] = rects[r];
+				active[pos*3+1] = rects[r+2];
+				active[pos*3+2] = rects[r+3];
+				numActive++;
+			}
+
+			// merge the active X intervals
+			if (merged.length < numActive*2) merged = new long[numActive*2];
+			int numMerged = 0;
+			for(int a=0; a<numActive; a++)
+			{
+				long lo = active[a*3], hi = active[a*3+1];
+				if (numMerged > 0 && lo <= merged[numMerged-1])
+				{
+					if (hi > merged[numMerged-1]) merged[numMerged-1] = hi;
+					continue;
+				}
+				merged[numMerged++] = lo;
+				merged[numMerged++] = hi;
+			}
+			builder.addBand(y, ys[k+1], merged, 0, numMerged);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Method to build a region from a polygon with only horizontal and vertical edges.
+	 * The points follow the PolyBase convention: a point equal to the first point of a loop closes it,
+	 * and a loop that is not closed explicitly is closed implicitly.
+	 * Loops are combined with the nonzero winding rule, like java.awt.geom.Area does.
+	 * @param px the X coordinates of the points.
+	 * @param py the Y coordinates of the points.
+	 * @param numPoints the number of points.
+	 * @return the region inside of the polygon, or null if the polygon has an edge that is not horizontal or vertical.
+	 */
+	static ManhattanRegion fromPolygon(long[] px, long[] py, int numPoints)
+	{
+		// gather the vertical edges as (x, minY, maxY, direction)
+		long[] edges = new long[numPoints*4];
+		int numEdges = 0;
+		int loopStart = 0;
+		for(int i=0; i<numPoints; i++)
+		{
+			boolean closes = i > loopStart && px[i] == px[loopStart] && py[i] == py[loopStart];
+			int j = (i+1 < numPoints && !closes) ? i+1 : loopStart;
+			if (closes)
+			{
+				loopStart = i+1;
+				continue;
+			}
+			if (j == loopStart) loopStart = i+1;
+			if (px[i] != px[j] && py[i] != py[j]) return null;
+			if (py[i] == py[j]) continue;
+			edges[numEdges*4] = px[i];
+			edges[numEdges*4+1] = Math.min(py[i], py[j]);
+			edges[numEdges*4+2] = Math.max(py[i], py[j]);
+			edges[numEdges*4+3] = py[j] > py[i] ? 1 : -1;
+			numEdges++;
+		}
+		if (numEdges == 0) return EMPTY;
+		long[] ys = new long[numEdges*2];
+		for(int e=0; e<numEdges; e++)
+		{
+			ys[e*2] = edges[e*4+1];
+			ys[e*2+1] = edges[e*4+2];
+		}
+		Arrays.sort(ys);
+		int numYs = unique(ys, ys.length);
+
+		int[] crossing = new int[numEdges];
+		long[] intervals = new long[numEdges];
+		Builder builder = new Builder();
+		for(int k=0; k<numYs-1; k++)
+		{
+			long y = ys[k];
+			int numCrossing = 0;
+			for(int e=0; e<numEdges; e++)
+				if (edges[e*4+1] <= y && edges[e*4+2] > y) crossing[numCrossing++] = e;
+			sortByKey(crossing, numCrossing, edges, 0);
+			int winding = 0, numIntervals = 0;
+			for(int c=0; c<numCrossing; )
+			{
+				long x = edges[crossing[c]*4];
+				int oldWinding = winding;
+				for( ; c < numCrossing && edges[crossing[c]*4] == x; c++) winding += (int)edges[crossing[c]*4+3];
+				if (oldWinding == 0 && winding != 0) intervals[numIntervals++] = x; else
+					if (oldWinding != 0 && winding == 0) intervals[numIntervals++] = x;
+			}
+			builder.addBand(y, ys[k+1], intervals, 0, numIntervals);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Method to combine two regions.
+	 * @param a the first region.
+	 * @param b the second region.
+	 * @param op UNION, INTERSECTION or DIFFERENCE (a minus b).
+	 * @return the combined region.
+	 */
+	static ManhattanRegion combine(ManhattanRegion a, ManhattanRegion b, int op)
+	{
+		if (b.isEmpty()) return op == INTERSECTION ? EMPTY : a;
+		if (a.isEmpty()) return op == UNION ? b : EMPTY;
+		Builder builder = new Builder();
+		long[] out = new long[16];
+		int ia = 0, ib = 0;
+		long y = Math.min(a.bandLo[0], b.bandLo[0]);
+		for(;;)
+		{
+			while (ia < a.bandLo.length && a.bandHi[ia] <= y) ia++;
+			while (ib < b.bandLo.length && b.bandHi[ib] <= y) ib++;
+			boolean moreA = ia < a.bandLo.length, moreB = ib < b.bandLo.length;
+			if (!moreA && !moreB) break;
+			boolean inA = moreA && a.bandLo[ia] <= y;
+			boolean inB = moreB && b.bandLo[ib] <= y;
+			long next = Long.MAX_VALUE;
+			if (moreA) next = Math.min(next, inA ? a.bandHi[ia] : a.bandLo[ia]);
+			if (moreB) next = Math.min(next, inB ? b.bandHi[ib] : b.bandLo[ib]);
+			if (inA || inB)
+			{
+				int aFrom = inA ? a.bandStart[ia] : 0, aTo = inA ? a.bandStart[ia+1] : 0;
+				int bFrom = inB ? b.bandStart[ib] : 0, bTo = inB ? b.bandStart[ib+1] : 0;
+				if (out.length < (aTo-aFrom) + (bTo-bFrom)) out = new long[((aTo-aFrom) + (bTo-bFrom))*2];
+				int numOut = combineIntervals(a.xs, aFrom, aTo, b.xs, bFrom, bTo, op, out);
+				builder.addBand(y, next, out, 0, numOut);
+			}
+			y = next;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Method to combine two sorted lists of disjoint intervals.
+	 * @return the number of values placed in "out".
+	 */
+	private static int combineIntervals(long[] ax, int aFrom, int aTo, long[] bx, int bFrom, int bTo, int op, long[] out)
+	{
+		int i = aFrom, j = bFrom, numOut = 0;
+		boolean inA = false, inB = false, inOut = false;
+		long outStart = 0;
+		while (i < aTo || j < bTo)
+		{
+			long xa = i < aTo ? ax[i] : Long.MAX_VALUE;
+			long xb = j < bTo ? bx[j] : Long.MAX_VALUE;
+			long x = Math.min(xa, xb);
+			if (xa == x) { inA = !inA;   i++; }
+			if (xb == x) { inB = !inB;   j++; }
+			boolean now;
+			switch (op)
+			{
+				case UNION:        now = inA || inB;   break;
+				case INTERSECTION: now = inA && inB;   break;
+				default:           now = inA && !inB;  break;
+			}
+			if (now == inOut) continue;
+			inOut = now;
+			if (now) outStart = x; else
+			{
+				if (x <= outStart) continue;
+				if (numOut > 0 && out[numOut-1] == outStart) out[numOut-1] = x; else
+				{
+					out[numOut++] = outStart;
+					out[numOut++] = x;
+				}
+			}
+		}
+		return numOut;
+	}
+
+	/**
+	 * Method to tell whether this region is empty.
+	 * @return true if this region has no area.
+	 */
+	boolean isEmpty() { return bandLo.length == 0; }
+
+	/**
+	 * Method to return the number of bands in this region.
+	 * @return the number of bands in this region.
+	 */
+	int getNumBands() { return bandLo.length; }
+
+	/**
+	 * Method to return the area of this region.
+	 * @return the area of this region in square lambda units.
+	 */
+	double getArea()
+	{
+		double total = 0;
+		for(int b=0; b<bandLo.length; b++)
+		{
+			long width = 0;
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2) width += xs[k+1] - xs[k];
+			total += FixpCoord.fixpToLambda(bandHi[b] - bandLo[b]) * FixpCoord.fixpToLambda(width);
+		}
+		return total;
+	}
+
+	/**
+	 * Method to return the area of this region with its holes filled.
+	 * This is the area enclosed by the outer boundaries, as PolyMerge measures it.
+	 * A hole is a part of the outside of the region that does not reach the bounding box.
+	 * @return the area inside of the outer boundaries in square lambda units.
+	 */
+	double getFilledArea()
+	{
+		int numBands = bandLo.length;
+		if (numBands == 0) return 0;
+		long minX = Long.MAX_VALUE, maxX = Long.MIN_VALUE;
+		for(int b=0; b<numBands; b++)
+		{
+			minX = Math.min(minX, xs[bandStart[b]]);
+			maxX = Math.max(maxX, xs[bandStart[b+1]-1]);
+		}
+
+		// gaps of each band: the spaces between its intervals and the sides of the bounding box
+		long[] gaps = new long[xs.length + numBands*2];
+		int[] gapStart = new int[numBands+1];
+		int numGaps = 0;
+		for(int b=0; b<numBands; b++)
+		{
+			gapStart[b] = numGaps;
+			long x = minX;
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2)
+			{
+				if (xs[k] > x) { gaps[numGaps*2] = x;   gaps[numGaps*2+1] = xs[k];   numGaps++; }
+				x = xs[k+1];
+			}
+			if (maxX > x) { gaps[numGaps*2] = x;   gaps[numGaps*2+1] = maxX;   numGaps++; }
+		}
+		gapStart[numBands] = numGaps;
+
+		// gaps that touch the bounding box are outside
+		int[] parent = new int[numGaps];
+		boolean[] outside = new boolean[numGaps];
+		for(int b=0; b<numBands; b++)
+		{
+			boolean open = b == 0 || b == numBands-1 || bandHi[b-1] != bandLo[b] || bandHi[b] != bandLo[b+1];
+			for(int g=gapStart[b]; g<gapStart[b+1]; g++)
+			{
+				parent[g] = g;
+				outside[g] = open || gaps[g*2] == minX || gaps[g*2+1] == maxX;
+			}
+		}
+
+		// gaps of touching bands that overlap are connected
+		for(int b=0; b+1<numBands; b++)
+		{
+			if (bandHi[b] != bandLo[b+1]) continue;
+			int g = gapStart[b], h = gapStart[b+1];
+			while (g < gapStart[b+1] && h < gapStart[b+2])
+			{
+				if (gaps[g*2] < gaps[h*2+1] && gaps[h*2] < gaps[g*2+1])
+				{
+					int rg = findRoot(parent, g), rh = findRoot(parent, h);
+					if (rg != rh)
+					{
+						parent[rg] = rh;
+						outside[rh] |= outside[rg];
+					}
+				}
+				if (gaps[g*2+1] < gaps[h*2+1]) g++; else h++;
+			}
+		}
+
+		double total = getArea();
+		for(int b=0; b<numBands; b++)
+		{
+			for(int g=gapStart[b]; g<gapStart[b+1]; g++)
+			{
+				if (outside[findRoot(parent, g)]) continue;
+				total += FixpCoord.fixpToLambda(bandHi[b] - bandLo[b]) * FixpCoord.fixpToLambda(gaps[g*2+1] - gaps[g*2]);
+			}
+		}
+		return total;
+	}
+
+	private static int findRoot(int[] parent, int g)
+	{
+		while (parent[g] != g)
+		{
+			parent[g] = parent[parent[g]];
+			g = parent[g];
+		}
+		return g;
+	}
+
+	/**
+	 * Method to return the rectangles of this region, one per interval of each band.
+	 * @return the rectangles as (minX, minY, maxX, maxY) quadruples.
+	 */
+	long[] getRectangles()
+	{
+		long[] rects = new long[xs.length*2];
+		int n = 0;
+		for(int b=0; b<bandLo.length; b++)
+		{
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2)
+			{
+				rects[n++] = xs[k];
+				rects[n++] = bandLo[b];
+				rects[n++] = xs[k+1];
+				rects[n++] = bandHi[b];
+			}
+		}
+		return rects;
+	}
+
+	/**
+	 * Method to find the first band that ends above a Y coordinate.
+	 */
+	private int firstBandAbove(long y)
+	{
+		int lo = 0, hi = bandLo.length;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (bandHi[mid] <= y) lo = mid + 1; else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Method to tell whether a rectangle with area is completely inside of this region.
+	 */
+	boolean containsRect(long minX, long minY, long maxX, long maxY)
+	{
+		long y = minY;
+		for(int b = firstBandAbove(minY); b < bandLo.length && y < maxY; b++)
+		{
+			if (bandLo[b] > y) return false;
+			boolean covered = false;
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2)
+			{
+				if (xs[k] > minX) break;
+				if (xs[k+1] >= maxX) { covered = true;   break; }
+			}
+			if (!covered) return false;
+			y = bandHi[b];
+		}
+		return y >= maxY;
+	}
+
+	/**
+	 * Method to tell whether the interior of a rectangle overlaps the interior of this region.
+	 */
+	boolean intersectsRect(long minX, long minY, long maxX, long maxY)
+	{
+		for(int b = firstBandAbove(minY); b < bandLo.length && bandLo[b] < maxY; b++)
+		{
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2)
+			{
+				if (xs[k] >= maxX) break;
+				if (xs[k+1] > minX) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method to tell whether a point is inside of this region or on its boundary.
+	 */
+	boolean containsPoint(long x, long y)
+	{
+		for(int b = firstBandAbove(y-1); b < bandLo.length && bandLo[b] <= y; b++)
+		{
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2)
+			{
+				if (xs[k] > x) break;
+				if (xs[k+1] >= x) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method to return the area of the part of this region inside of a rectangle.
+	 * @return the area in square lambda units.
+	 */
+	double getAreaInside(long minX, long minY, long maxX, long maxY)
+	{
+		double total = 0;
+		for(int b = firstBandAbove(minY); b < bandLo.length && bandLo[b] < maxY; b++)
+		{
+			long width = 0;
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2)
+			{
+				if (xs[k] >= maxX) break;
+				long lo = Math.max(xs[k], minX), hi = Math.min(xs[k+1], maxX);
+				if (hi > lo) width += hi - lo;
+			}
+			long height = Math.min(bandHi[b], maxY) - Math.max(bandLo[b], minY);
+			total += FixpCoord.fixpToLambda(height) * FixpCoord.fixpToLambda(width);
+		}
+		return total;
+	}
+
+	/**
+	 * Method to convert this region to a java.awt.geom.Area.
+	 * @param window if not null, only the bands and intervals that touch this rectangle
+	 * (minX, minY, maxX, maxY) are converted.
+	 * This is enough for operations whose result is limited to the window.
+	 * @return the Area.
+	 */
+	Area toArea(long[] window)
+	{
+		Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+		int first = window == null ? 0 : firstBandAbove(window[1]-1);
+		for(int b=first; b<bandLo.length; b++)
+		{
+			if (window != null && bandLo[b] > window[3]) break;
+			double lY = FixpCoord.fixpToLambda(bandLo[b]), hY = FixpCoord.fixpToLambda(bandHi[b]);
+			for(int k=bandStart[b]; k<bandStart[b+1]; k += 2)
+			{
+				if (window != null && (xs[k+1] < window[0] || xs[k] > window[2])) continue;
+				double lX = FixpCoord.fixpToLambda(xs[k]), hX = FixpCoord.fixpToLambda(xs[k+1]);
+				path.moveTo(lX, lY);
+				path.lineTo(hX, lY);
+				path.lineTo(hX, hY);
+				path.lineTo(lX, hY);
+				path.closePath();
+			}
+		}
+		return new Area(path);
+	}
+
+	/**
+	 * Method to remove duplicates from the start of a sorted array.
+	 * @return the number of distinct values.
+	 */
+	private static int unique(long[] values, int n)
+	{
+		int numUnique = 0;
+		for(int i=0; i<n; i++)
+			if (numUnique == 0 || values[numUnique-1] != values[i]) values[numUnique++] = values[i];
+		return numUnique;
+	}
+
+	/**
+	 * Method to sort indices of quadruples by one of their values.
+	 * @param order the indices to sort.
+	 * @param n the number of indices.
+	 * @param quads the quadruples.
+	 * @param field the field (0-3) of the quadruple to sort by.
+	 */
+	private static void sortByKey(int[] order, int n, long[] quads, int field)
+	{
+		if (n < 2) return;
+		int[] temp = new int[n];
+		for(int width=1; width<n; width *= 2)
+		{
+			for(int lo=0; lo<n; lo += width*2)
+			{
+				int mid = Math.min(lo+width, n), hi = Math.min(lo+width*2, n);
+				int i = lo, j = mid, k = lo;
+				while (i < mid && j < hi)
+					temp[k++] = quads[order[j]*4+field] < quads[order[i]*4+field] ? order[j++] : order[i++];
+				while (i < mid) temp[k++] = order[i++];
+				while (j < hi) temp[k++] = order[j++];
+			}
+			System.arraycopy(temp, 0, order, 0, n);
+		}
+	}
+
+	/**
+	 * Class to accumulate bands from bottom to top.
+	 * A band that touches the previous one and has the same intervals extends it.
+	 */
+	private static class Builder
+	{
+		private long[] lo = new long[16];
+		private long[] hi = new long[16];
+		private int[] start = new int[17];
+		private long[] xs = new long[32];
+		private int numBands;
+
+		private void addBand(long y1, long y2, long[] x, int from, int to)
+		{
+			int n = to - from;
+			if (n == 0 || y1 >= y2) return;
+			if (numBands > 0 && hi[numBands-1] == y1 && start[numBands] - start[numBands-1] == n)
+			{
+				int prev = start[numBands-1];
+				boolean same = true;
+				for(int k=0; k<n && same; k++) same = xs[prev+k] == x[from+k];
+				if (same)
+				{
+					hi[numBands-1] = y2;
+					return;
+				}
+			}
+			if (numBands == lo.length)
+			{
+				lo = Arrays.copyOf(lo, numBands*2);
+				hi = Arrays.copyOf(hi, numBands*2);
+				start = Arrays.copyOf(start, numBands*2+1);
+			}
+			int s = start[numBands];
+			if (s + n > xs.length) xs = Arrays.copyOf(xs, Math.max(xs.length*2, s+n));
+			System.arraycopy(x, from, xs, s, n);
+			lo[numBands] = y1;
+			hi[numBands] = y2;
+			start[numBands+1] = s + n;
+			numBands++;
+		}
+
+		private ManhattanRegion build()
+		{
+			if (numBands == 0) return EMPTY;
+			return new ManhattanRegion(Arrays.copyOf(lo, numBands), Arrays.copyOf(hi, numBands),
+				Arrays.copyOf(start, numBands+1), Arrays.copyOf(xs, start[numBands]));
+		}
+	}
+}
@@ -159,7 +159,7 @@ public class PolyMerge extends GeometryHandler implements Serializable
 	{
 		for(Layer subLayer : other.layers.keySet())
 		{
-			Area subArea = (Area)other.layers.get(subLayer);
+			Area subArea = other.getMergedArea(subLayer);
 
 			Area area = (Area)layers.get(subLayer);
 			if (area == null)
@@ -303,7 +303,7 @@ public class PolyMerge extends GeometryHandler implements Serializable
 			Area area = (Area)layers.get(subLayer);
 			if (area == null) continue;
 
-			Area subArea = (Area)other.layers.get(subLayer);
+			Area subArea = other.getMergedArea(subLayer);
 			area.subtract(subArea);
 		}
 	}
@@ -514,7 +514,7 @@ public class PolyMerge extends GeometryHandler implements Serializable
 		return getAreaOfArea(area);
 	}
 
-	private double getAreaOfArea(Area area)
+	static double getAreaOfArea(Area area)
 	{
 		List<PolyBase> pointList = PolyBase.getPointsInArea(area, null, true, true);
 		double totalArea = 0;
@@ -0,0 +1,588 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PolyScanlineMerge.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.technology.Layer;
+import com.sun.electric.util.math.DBMath;
+import com.sun.electric.util.math.FixpCoord;
+import com.sun.electric.util.math.FixpRectangle;
+import com.sun.electric.util.math.FixpTransform;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class to merge Manhattan geometry with an integer scanline algorithm.
+ * It behaves like PolyMerge, but each layer is kept as a ManhattanRegion in fixed-point coordinates
+ * instead of a java.awt.geom.Area.
+ * Added rectangles are buffered and merged in one sweep, so adding N rectangles costs O(N log N)
+ * instead of the repeated Area additions that PolyMerge does.
+ * <P>
+ * A layer that receives a polygon with an edge that is not horizontal or vertical
+ * (or Manhattan geometry through a non-Manhattan transformation) is converted to an Area,
+ * and from then on all operations on that layer are done by PolyMerge.
+ * Results are therefore the same as PolyMerge on any geometry.
+ */
+public class PolyScanlineMerge extends PolyMerge
+{
+	/** the number of buffered rectangles that forces a merge */	private static final int MAXPENDING = 4096;
+
+	/**
+	 * Method to create a new "merge" object.
+	 */
+	public PolyScanlineMerge()
+	{
+	}
+
+	/**
+	 * Class to hold the geometry of one layer while it is Manhattan.
+	 */
+	private static class ScanlineLayer implements Serializable
+	{
+		private ManhattanRegion region = ManhattanRegion.EMPTY;
+		private long[] pending = new long[64];
+		private int numPending;
+		private transient Area area;
+
+		private ScanlineLayer() {}
+
+		private ScanlineLayer(ManhattanRegion region) { this.region = region; }
+
+		private ManhattanRegion getRegion()
+		{
+			if (numPending > 0)
+			{
+				region = ManhattanRegion.combine(region, ManhattanRegion.fromRectangles(pending, numPending), ManhattanRegion.UNION);
+				numPending = 0;
+				if (pending.length > 1024) pending = new long[64];
+			}
+			return region;
+		}
+
+		private void addRectangle(long minX, long minY, long maxX, long maxY)
+		{
+			if (minX >= maxX || minY >= maxY) return;
+			if (numPending*4 == pending.length) pending = Arrays.copyOf(pending, pending.length*2);
+			pending[numPending*4] = minX;
+			pending[numPending*4+1] = minY;
+			pending[numPending*4+2] = maxX;
+			pending[numPending*4+3] = maxY;
+			numPending++;
+			area = null;
+			if (numPending >= MAXPENDING) getRegion();
+		}
+
+		private void combine(ManhattanRegion other, int op)
+		{
+			region = ManhattanRegion.combine(getRegion(), other, op);
+			area = null;
+		}
+
+		private Area getArea()
+		{
+			if (area == null) area = getRegion().toArea(null);
+			return area;
+		}
+	}
+
+	/**
+	 * Method to return the Manhattan geometry on a layer.
+	 * @return the layer geometry, or null if the layer is empty or has been converted to an Area.
+	 */
+	private ScanlineLayer getScanline(Object layer)
+	{
+		Object value = layers.get(layer);
+		if (value instanceof ScanlineLayer) return (ScanlineLayer)value;
+		return null;
+	}
+
+	/**
+	 * Method to return the Manhattan geometry on a layer, creating it if the layer is empty.
+	 * @return the layer geometry, or null if the layer has been converted to an Area.
+	 */
+	private ScanlineLayer makeScanline(Layer layer)
+	{
+		Object value = layers.get(layer);
+		if (value == null)
+		{
+			ScanlineLayer sl = new ScanlineLayer();
+			layers.put(layer, sl);
+			return sl;
+		}
+		if (value instanceof ScanlineLayer) return (ScanlineLayer)value;
+		return null;
+	}
+
+	/**
+	 * Method to convert a layer to an Area so that PolyMerge can operate on it.
+	 */
+	private void convertToArea(Object layer)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl != null) layers.put((Layer)layer, sl.getRegion().toArea(null));
+	}
+
+	/**
+	 * Method to convert a polygon to a region.
+	 * @return the region, or null if the polygon is not Manhattan.
+	 */
+	private static ManhattanRegion toRegion(PolyBase poly)
+	{
+		PolyBase.Point[] points = poly.getPoints();
+		long[] px = new long[points.length];
+		long[] py = new long[points.length];
+		for(int i=0; i<points.length; i++)
+		{
+			px[i] = points[i].getFixpX();
+			py[i] = points[i].getFixpY();
+		}
+		return ManhattanRegion.fromPolygon(px, py, points.length);
+	}
+
+	/**
+	 * Method to return a rectangle as fixed-point (minX, minY, maxX, maxY).
+	 */
+	private static long[] toFixp(Rectangle2D rect)
+	{
+		return new long[] {FixpCoord.lambdaToFixp(rect.getMinX()), FixpCoord.lambdaToFixp(rect.getMinY()),
+			FixpCoord.lambdaToFixp(rect.getMaxX()), FixpCoord.lambdaToFixp(rect.getMaxY())};
+	}
+
+	/**
+	 * Method to return the fixed-point bounds of a shape, enlarged to cover rounding.
+	 */
+	private static long[] toWindow(Rectangle2D rect)
+	{
+		long[] window = toFixp(rect);
+		window[0]--;   window[1]--;
+		window[2]++;   window[3]++;
+		return window;
+	}
+
+	/**
+	 * Method to tell whether a transformation keeps edges horizontal and vertical and does not scale.
+	 */
+	private static boolean isManhattan(AffineTransform trans)
+	{
+		return (trans.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_QUADRANT_ROTATION | AffineTransform.TYPE_FLIP)) == 0;
+	}
+
+	/**
+	 * Method to determine whether a rectangle is in a layer.
+	 * Like PolyMerge, it accepts rectangles that stick out by a negligible area.
+	 */
+	private static boolean containsRect(ManhattanRegion region, long minX, long minY, long maxX, long maxY)
+	{
+		if (minX >= maxX || minY >= maxY) return true;
+		if (region.containsRect(minX, minY, maxX, maxY)) return true;
+		double remainingArea = FixpCoord.fixpToLambda(maxX - minX) * FixpCoord.fixpToLambda(maxY - minY) -
+			region.getAreaInside(minX, minY, maxX, maxY);
+		return DBMath.areEquals(remainingArea, 0);
+	}
+
+	/**
+	 * Method to add a Rectangle to the merged collection.
+	 * @param layer the layer that this Poly sits on.
+	 * @param rect the Rectangle to merge.
+	 */
+	public void addRectangle(Layer layer, Rectangle2D rect)
+	{
+		ScanlineLayer sl = makeScanline(layer);
+		if (sl == null) { super.addRectangle(layer, rect);   return; }
+		long[] box = toFixp(rect);
+		sl.addRectangle(box[0], box[1], box[2], box[3]);
+	}
+
+	/**
+	 * Method to add a PolyBase to the merged collection.
+	 * @param layer the layer that this Poly sits on.
+	 * @param poly the PolyBase to merge.
+	 */
+	public void addPolygon(Layer layer, PolyBase poly)
+	{
+		ScanlineLayer sl = makeScanline(layer);
+		if (sl != null)
+		{
+			PolyBase.Point[] points = poly.getPoints();
+			if (points.length == 4 && poly.getBox() != null)
+			{
+				FixpRectangle box = poly.getBox();
+				sl.addRectangle(box.getFixpMinX(), box.getFixpMinY(), box.getFixpMaxX(), box.getFixpMaxY());
+				return;
+			}
+			ManhattanRegion region = toRegion(poly);
+			if (region != null)
+			{
+				sl.combine(region, ManhattanRegion.UNION);
+				return;
+			}
+			convertToArea(layer);
+		}
+		super.addPolygon(layer, poly);
+	}
+
+	/**
+	 * Method to subtract a PolyBase from the merged collection.
+	 * @param layer the layer that this PolyBase sits on.
+	 * @param poly the PolyBase to merge.
+	 */
+	public void subtract(Object layer, Object poly)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl != null)
+		{
+			ManhattanRegion region = toRegion((PolyBase)poly);
+			if (region != null)
+			{
+				sl.combine(region, ManhattanRegion.DIFFERENCE);
+				return;
+			}
+			convertToArea(layer);
+		}
+		super.subtract(layer, poly);
+	}
+
+	/**
+	 * Method to add another Merge to this one.
+	 * @param other the other Merge to add in.
+	 * @param trans a transformation on the other Merge.
+	 */
+	public void addMerge(PolyMerge other, FixpTransform trans)
+	{
+		boolean manhattan = isManhattan(trans);
+		for(Layer subLayer : other.layers.keySet())
+		{
+			ScanlineLayer otherSl = other instanceof PolyScanlineMerge ? ((PolyScanlineMerge)other).getScanline(subLayer) : null;
+			ScanlineLayer sl = otherSl != null && manhattan ? makeScanline(subLayer) : null;
+			if (sl == null)
+			{
+				convertToArea(subLayer);
+				Area area = (Area)layers.get(subLayer);
+				if (area == null)
+				{
+					area = new Area();
+					layers.put(subLayer, area);
+				}
+				area.add(other.getMergedArea(subLayer).createTransformedArea(trans));
+				continue;
+			}
+			if (trans.isIdentity())
+			{
+				sl.combine(otherSl.getRegion(), ManhattanRegion.UNION);
+				continue;
+			}
+			long[] rects = otherSl.getRegion().getRectangles();
+			FixpRectangle rect = FixpRectangle.fromFixpDiagonal(0, 0, 0, 0);
+			for(int i=0; i<rects.length; i += 4)
+			{
+				trans.transform(FixpRectangle.fromFixpDiagonal(rects[i], rects[i+1], rects[i+2], rects[i+3]), rect);
+				sl.addRectangle(rect.getFixpMinX(), rect.getFixpMinY(), rect.getFixpMaxX(), rect.getFixpMaxY());
+			}
+		}
+	}
+
+	/**
+	 * Method to add one Layer to another in this merge.
+	 * @param fromLayer the other Layer to add in.
+	 * @param toLayer the destination layer that will contain the union of itself and "fromLayer".
+	 */
+	public void addLayer(Layer fromLayer, Layer toLayer)
+	{
+		ScanlineLayer from = getScanline(fromLayer);
+		if (from != null)
+		{
+			ScanlineLayer to = makeScanline(toLayer);
+			if (to != null)
+			{
+				to.combine(from.getRegion(), ManhattanRegion.UNION);
+				return;
+			}
+		}
+		convertToArea(fromLayer);
+		convertToArea(toLayer);
+		super.addLayer(fromLayer, toLayer);
+	}
+
+	/**
+	 * Method to determine whether a polygon intersects a layer in the merge.
+	 * @param layer the layer to test.
+	 * @param poly the polygon to examine.
+	 * @return true if any part of the polygon exists in that layer.
+	 */
+	public boolean intersects(Layer layer, PolyBase poly)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.intersects(layer, poly);
+		FixpRectangle box = poly.getBox();
+		if (box != null)
+		{
+			if (box.getFixpMinX() >= box.getFixpMaxX() || box.getFixpMinY() >= box.getFixpMaxY()) return false;
+			return sl.getRegion().intersectsRect(box.getFixpMinX(), box.getFixpMinY(), box.getFixpMaxX(), box.getFixpMaxY());
+		}
+		ManhattanRegion region = toRegion(poly);
+		if (region != null)
+			return !ManhattanRegion.combine(region, sl.getRegion(), ManhattanRegion.INTERSECTION).isEmpty();
+		Area intersectArea = new Area(poly);
+		intersectArea.intersect(sl.getRegion().toArea(toWindow(poly.getBounds2D())));
+		return !intersectArea.isEmpty();
+	}
+
+	/**
+	 * Method to combine two layers of this merge into a third.
+	 * @return false if either layer is not Manhattan, so PolyMerge must do the operation.
+	 */
+	private boolean combineLayers(Layer sourceA, Layer sourceB, Layer dest, int op)
+	{
+		Object valueA = layers.get(sourceA), valueB = layers.get(sourceB);
+		if (valueA == null || valueB == null)
+		{
+			layers.remove(dest);
+			return true;
+		}
+		if (!(valueA instanceof ScanlineLayer) || !(valueB instanceof ScanlineLayer)) return false;
+		ManhattanRegion result = ManhattanRegion.combine(((ScanlineLayer)valueA).getRegion(), ((ScanlineLayer)valueB).getRegion(), op);
+		if (result.isEmpty()) layers.remove(dest); else
+			layers.put(dest, new ScanlineLayer(result));
+		return true;
+	}
+
+	/**
+	 * Method to add two layers in this merge and produce a third.
+	 * @param sourceA the first Layer to intersect.
+	 * @param sourceB the second Layer to intersect.
+	 * @param dest the destination layer to place the union of the first two.
+	 * If there is no intersection, all geometry on this layer is cleared.
+	 */
+	public void unionLayers(Layer sourceA, Layer sourceB, Layer dest)
+	{
+		if (combineLayers(sourceA, sourceB, dest, ManhattanRegion.UNION)) return;
+		convertToArea(sourceA);
+		convertToArea(sourceB);
+		super.unionLayers(sourceA, sourceB, dest);
+	}
+
+	/**
+	 * Method to intersect two layers in this merge and produce a third.
+	 * @param sourceA the first Layer to intersect.
+	 * @param sourceB the second Layer to intersect.
+	 * @param dest the destination layer to place the intersection of the first two.
+	 * If there is no intersection, all geometry on this layer is cleared.
+	 */
+	public void intersectLayers(Layer sourceA, Layer sourceB, Layer dest)
+	{
+		if (combineLayers(sourceA, sourceB, dest, ManhattanRegion.INTERSECTION)) return;
+		convertToArea(sourceA);
+		convertToArea(sourceB);
+		super.intersectLayers(sourceA, sourceB, dest);
+	}
+
+	/**
+	 * Method to subtract one layer from another and produce a third.
+	 * @param sourceA the first Layer.
+	 * @param sourceB the second Layer, which gets subtracted from the first.
+	 * @param dest the destination layer to place the sourceA - sourceB.
+	 * If there is nothing left, all geometry on the layer is cleared.
+	 */
+	public void subtractLayers(Layer sourceA, Layer sourceB, Layer dest)
+	{
+		if (combineLayers(sourceA, sourceB, dest, ManhattanRegion.DIFFERENCE)) return;
+		convertToArea(sourceA);
+		convertToArea(sourceB);
+		super.subtractLayers(sourceA, sourceB, dest);
+	}
+
+	/**
+	 * Method to subtract another Merge to this one.
+	 * @param other the other Merge to subtract.
+	 */
+	public void subtractMerge(PolyMerge other)
+	{
+		for(Layer subLayer : other.layers.keySet())
+		{
+			Object value = layers.get(subLayer);
+			if (value == null) continue;
+			ScanlineLayer otherSl = other instanceof PolyScanlineMerge ? ((PolyScanlineMerge)other).getScanline(subLayer) : null;
+			if (value instanceof ScanlineLayer && otherSl != null)
+			{
+				((ScanlineLayer)value).combine(otherSl.getRegion(), ManhattanRegion.DIFFERENCE);
+				continue;
+			}
+			convertToArea(subLayer);
+			((Area)layers.get(subLayer)).subtract(other.getMergedArea(subLayer));
+		}
+	}
+
+	/**
+	 * Method to inset one layer by a given amount and create a second layer.
+	 * The inset is done by PolyMerge, so both layers become Areas.
+	 * @param source the Layer to inset.
+	 * @param dest the destination layer to place the inset geometry.
+	 * @param amount the distance to inset the layer.
+	 */
+	public void insetLayer(Layer source, Layer dest, double amount)
+	{
+		convertToArea(source);
+		super.insetLayer(source, dest, amount);
+	}
+
+	/**
+	 * Method to tell whether there is any valid geometry on a given layer of this merge.
+	 * @param layer the layer to test.
+	 * @return true if there is no valid geometry on the given layer in this merge.
+	 */
+	public boolean isEmpty(Layer layer)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.isEmpty(layer);
+		return sl.getRegion().isEmpty();
+	}
+
+	/**
+	 * Method to determine whether a rectangle exists in the merge.
+	 * @param layer the layer being tested.
+	 * @param rect the rectangle being tested.
+	 * @return true if all of the rectangle is inside of the merge on the given layer.
+	 */
+	public boolean contains(Layer layer, Rectangle2D rect)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.contains(layer, rect);
+		long[] box = toFixp(rect);
+		return containsRect(sl.getRegion(), box[0], box[1], box[2], box[3]);
+	}
+
+	/**
+	 * Method to determine whether a polygon exists in the merge.
+	 * @param layer the layer being tested.
+	 * @param poly the polygon being tested.
+	 * @return true if all of the polygon is inside of the merge on the given layer.
+	 */
+	public boolean contains(Layer layer, PolyBase poly)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.contains(layer, poly);
+		ManhattanRegion layerRegion = sl.getRegion();
+		FixpRectangle bounds = poly.getBounds2D();
+		if (poly.getPoints().length == 4 && poly.getBox() != null)
+			return containsRect(layerRegion, bounds.getFixpMinX(), bounds.getFixpMinY(), bounds.getFixpMaxX(), bounds.getFixpMaxY());
+		if (bounds.getFixpMinX() < bounds.getFixpMaxX() && bounds.getFixpMinY() < bounds.getFixpMaxY() &&
+			layerRegion.containsRect(bounds.getFixpMinX(), bounds.getFixpMinY(), bounds.getFixpMaxX(), bounds.getFixpMaxY())) return true;
+
+		ManhattanRegion region = toRegion(poly);
+		if (region != null)
+		{
+			double remainingArea = ManhattanRegion.combine(region, layerRegion, ManhattanRegion.DIFFERENCE).getArea();
+			return DBMath.areEquals(remainingArea, 0);
+		}
+
+		// non-Manhattan polygon: compare with the part of the layer near it
+		Area polyArea = new Area(poly);
+		polyArea.subtract(layerRegion.toArea(toWindow(bounds)));
+		if (polyArea.isEmpty()) return true;
+		return DBMath.areEquals(getAreaOfArea(polyArea), 0);
+	}
+
+	public Area exclusive(Layer layer, Area poly)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.exclusive(layer, poly);
+		poly.subtract(sl.getRegion().toArea(toWindow(poly.getBounds2D())));
+		return poly;
+	}
+
+	public Area inclusive(Layer layer, Area poly)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.inclusive(layer, poly);
+		poly.intersect(sl.getRegion().toArea(toWindow(poly.getBounds2D())));
+		return poly;
+	}
+
+	/**
+	 * Method to return the area on a given layer.
+	 * As in PolyMerge, this is the area inside of the outer boundaries, so holes in the geometry are counted.
+	 * @param layer the layer to query.
+	 * @return the area of geometry on the given layer.
+	 */
+	public double getAreaOfLayer(Layer layer)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.getAreaOfLayer(layer);
+		return sl.getRegion().getFilledArea();
+	}
+
+	/**
+	 * Method to determine whether a point exists in the merge.
+	 * Points within the database precision of the boundary are inside, as in PolyMerge.
+	 * @param layer the layer being tested.
+	 * @param pt the point being tested.
+	 * @return true if the point is inside of the merge on the given layer.
+	 */
+	public boolean contains(Layer layer, Point2D pt)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.contains(layer, pt);
+		long x = FixpCoord.lambdaToFixp(pt.getX()), y = FixpCoord.lambdaToFixp(pt.getY());
+		if (sl.getRegion().containsPoint(x, y)) return true;
+		long epsilon = FixpCoord.lambdaToFixp(DBMath.getEpsilon());
+		return sl.getRegion().intersectsRect(x - epsilon, y - epsilon, x + epsilon, y + epsilon);
+	}
+
+	/**
+	 * Method to return the basic Area on a given Layer in this Merge.
+	 * For a Manhattan layer, the Area is a copy, so changes to it must be stored with setMergedArea.
+	 * @param layer the layer in question.
+	 * @return the list of Polys that describes this Merge.
+	 */
+	public Area getMergedArea(Layer layer)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.getMergedArea(layer);
+		return (Area)sl.getArea().clone();
+	}
+
+	/**
+	 * Method to return list of Polys on a given Layer in this Merge.
+	 * @param layer the layer in question.
+	 * @param simple
+	 * @return the list of Polys that describes this Merge.
+	 */
+	public List<PolyBase> getMergedPoints(Layer layer, boolean simple)
+	{
+		ScanlineLayer sl = getScanline(layer);
+		if (sl == null) return super.getMergedPoints(layer, simple);
+		return PolyBase.getPointsInArea(sl.getArea(), layer, simple, true);
+	}
+
+	public Collection<PolyBase.PolyBaseTree> getTreeObjects(Object key)
+	{
+		ScanlineLayer sl = getScanline(key);
+		if (sl == null) return super.getTreeObjects(key);
+		return PolyBase.getPolyTrees(sl.getArea(), (Layer)key);
+	}
+}
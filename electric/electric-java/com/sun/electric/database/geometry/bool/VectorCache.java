@@ -33,14 +33,12 @@ import com.sun.electric.database.geometry.EGraphics;
 import com.sun.electric.database.geometry.ERectangle;
 import com.sun.electric.database.geometry.Poly;
 import com.sun.electric.database.id.CellId;
-import com.sun.electric.database.id.PrimitiveNodeId;
 import com.sun.electric.database.id.PrimitivePortId;
 import com.sun.electric.database.id.TechId;
 import com.sun.electric.database.variable.TextDescriptor;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.AbstractShapeBuilder;
 import com.sun.electric.technology.Layer;
-import com.sun.electric.technology.PrimitiveNode;
 import com.sun.electric.technology.PrimitivePort;
 import com.sun.electric.technology.TechPool;
 import com.sun.electric.technology.Technology;
@@ -67,16 +65,12 @@ import java.util.TreeSet;
 public class VectorCache {
 
     private static boolean DEBUG = false;
-    private static final boolean USE_ELECTRICAL = false;
-    private static final boolean WIPE_PINS = true;
     private Set<Layer> layers = new TreeSet<Layer>();
     private Set<Layer> badLayers = new HashSet<Layer>();
     private final Snapshot snapshot;
     private final TechPool techPool;
     private HashMap<CellId, MyVectorCell> cells = new HashMap<CellId, MyVectorCell>();
     private final PrimitivePortId busPinPortId;
-    private final PrimitiveNodeId cellCenterId;
-    private final PrimitiveNodeId essentialBoundsId;
     /** local shape builder */
     private final ShapeBuilder shapeBuilder = new ShapeBuilder();
     /** List of VectorManhattanBuilders */
@@ -127,32 +121,22 @@ public class VectorCache {
             for (VectorManhattanBuilder b : boxBuilders.values()) {
                 b.clear();
             }
-            // draw all arcs
-            shapeBuilder.setup(cellBackup, Orientation.IDENT, USE_ELECTRICAL, WIPE_PINS, false, null);
+            // draw all primitive nodes and arcs, with the shapes cached in the CellBackup
             shapeBuilder.polyLayer = null;
             for (Layer layer : tech.getLayersSortedByRule(Layer.LayerSortingType.ByHeight)) {
                 if (layer.getFunction() == Layer.Function.POLY1) {
                     shapeBuilder.polyLayer = layer;
                 }
             }
-            for (ImmutableArcInst a : cellBackup.cellRevision.arcs) {
-                shapeBuilder.genShapeOfArc(a);
-            }
+            cellBackup.getPrimitiveShapes().genShapes(shapeBuilder);
 
-            // draw all primitive nodes
+            // gather all subcells
             for (ImmutableNodeInst n : cellBackup.cellRevision.nodes) {
                 if (n.protoId instanceof CellId) {
                     if (!n.orient.isManhattan()) {
                         throw new IllegalArgumentException();
                     }
                     subCells.add(n);
-                } else {
-                    boolean hideOnLowLevel = n.is(ImmutableNodeInst.VIS_INSIDE) || n.protoId == cellCenterId
-                            || n.protoId == essentialBoundsId;
-                    if (!hideOnLowLevel) {
-                        PrimitiveNode pn = techPool.getPrimitiveNode((PrimitiveNodeId) n.protoId);
-                        pn.genShape(shapeBuilder, n);
-                    }
                 }
             }
 
@@ -190,8 +174,6 @@ public class VectorCache {
         this.snapshot = snapshot;
         techPool = snapshot.getTechPool();
         busPinPortId = techPool.getSchematics().busPinNode.getPort(0).getId();
-        cellCenterId = techPool.getGeneric().cellCenterNode.getId();
-        essentialBoundsId = techPool.getGeneric().essentialBoundsNode.getId();
     }
 
     public void scanLayers(CellId topCellId) {
@@ -363,16 +345,16 @@ public class VectorCache {
 
         private Layer polyLayer;
 
-        @Override
-        public void pushPoly(Poly.Type style, Layer layer, EGraphics graphicsOverride, PrimitivePort pp) {
+        private Layer mapLayer(Layer layer) {
             if (layer.getFunction() == Layer.Function.GATE && polyLayer != null) {
                 layer = polyLayer;
             }
-            super.pushPoly(style, layer, null, null);
+            return layer;
         }
 
         @Override
         public void addPoly(int numPoints, Poly.Type style, Layer layer, EGraphics graphicsOverride, PrimitivePort pp) {
+            layer = mapLayer(layer);
             if (numPoints == 2) {
                 return;
             }
@@ -384,11 +366,12 @@ public class VectorCache {
 
         @Override
         public void addTextPoly(int numPoints, Poly.Type style, Layer layer, PrimitivePort pp, String message, TextDescriptor descriptor) {
-            badLayer(layer);
+            badLayer(mapLayer(layer));
         }
 
         @Override
         public void addBox(Layer layer) {
+            layer = mapLayer(layer);
             // convert coordinates
             int lX = (int) (coords[0] >> FixpCoord.FRACTION_BITS);
             int lY = (int) (coords[1] >> FixpCoord.FRACTION_BITS);
@@ -55,7 +55,9 @@ import com.sun.electric.database.geometry.btree.CachingPageStorage.CachedPage;
  *  All operations are done in a <i>single pass</i> down the BTree from
  *  the root to the leaves; this brings two benefits: the data structure
  *  can be made concurrent with very little lock contention and it can
- *  support copy-on-write shadow versions.<p>
+ *  support copy-on-write shadow versions.  Data which is already sorted,
+ *  such as a simulation waveform, should be loaded with append(), which
+ *  fills the leaves left to right and never searches the tree.<p>
  *  
  *  You must distinguish between insert() and replace() ahead of time;
  *  you can't call insert() on a key that is already in the tree or
@@ -161,6 +163,17 @@ public class BTree
     private       int    size = 0;
     private final byte[] monbuf;  // scratch buffer
 
+    // the right edge of the tree for append(), bottom-up from the rightmost leaf;
+    // spineLevels==0 means it must be re-read from the tree
+    private       int      spineLevels = 0;
+    private       int[]    spinePages = new int[8];
+    private       int[]    spineCounts = new int[8];        // number of values below each node
+    private       byte[][] spineSummaries = new byte[8][];  // summary of the values below each node
+
+    // the interior buckets whose counts an INSERT has incremented on its way down, by depth
+    private       int[]    pathPages = new int[8];
+    private       int[]    pathSlots = new int[8];
+
     /**
      *  Create a BTree.
      *  @param ps the PageStorage to hold the underlying bytes
@@ -189,6 +202,8 @@ public class BTree
         leafNodeCursor.initBuf(ps.getPage(rootpage, false), rootpage, true);
         leafNodeCursor.writeBack();
         this.monbuf = this.summary == null ? null : new byte[this.summary.getSize()];
+        for(int i=0; i<spineSummaries.length; i++)
+            spineSummaries[i] = this.summary == null ? null : new byte[this.summary.getSize()];
     }
 
     /**
@@ -263,6 +278,7 @@ public class BTree
     /** will throw an exception if the key is already in the tree */
     public void insert(K key, V val) {
         uk.serialize(key, keybuf, 0);
+        spineLevels = 0;
         walk(keybuf, 0, null, val, Op.INSERT, 0);
         size++;
     }
@@ -275,6 +291,7 @@ public class BTree
      */
     public V replace(K key, V newval) {
         uk.serialize(key, keybuf, 0);
+        spineLevels = 0;
         return (V)walk(keybuf, 0, null, newval, Op.REPLACE, 0);
     }
 
@@ -288,6 +305,7 @@ public class BTree
         if (summary!=null && !(summary instanceof InvertibleOperation))
             throw new RuntimeException("BTrees with non-InvertibleOperation summaries are insert-only");
         uk.serialize(key, keybuf, 0);
+        spineLevels = 0;
         V ret = (V)walk(keybuf, 0, val, null, Op.REMOVE, 0);
         if (ret!=null) size--;
         return ret;
@@ -315,12 +333,231 @@ public class BTree
     public S getSummaryFromKeys(K min, K max) {
         if (min!=null) uk.serialize(min, keybuf, 0);
         if (max!=null) uk.serialize(max, keybuf2, 0);
-        int ret = 0;
-        ret = (Integer)walk(min==null?null:keybuf, 0, null, null, Op.SUMMARIZE_LEFT,  ret, max==null?null:keybuf2, 0, sbuf, 0);
-        ret = (Integer)walk(min==null?null:keybuf, 0, null, null, Op.SUMMARIZE_RIGHT, ret, max==null?null:keybuf2, 0, sbuf, 0);
-        return ret==0 ? null : (S)summary.deserialize(sbuf, 0);
+        if (min!=null && max!=null && uk.compare(keybuf, 0, keybuf2, 0) > 0) return null;
+        boolean found = summarize(rootpage, min==null?null:keybuf, max==null?null:keybuf2, false);
+        return found ? (S)summary.deserialize(sbuf, 0) : null;
     }
-    
+
+    /**
+     *  Merges into sbuf the summary of all (key,value) pairs below
+     *  pageid with a key between min and max inclusive (null means "no
+     *  limit"); returns true if sbuf holds a summary.  Buckets which
+     *  lie entirely within the range contribute their stored summary,
+     *  so at most two children of each node are visited: the ones
+     *  holding min and max.  The last bucket of a rightmost node has
+     *  no stored summary, so it is always visited.
+     */
+    private boolean summarize(int pageid, byte[] min, byte[] max, boolean initialized) {
+        CachedPage cp = ps.getPage(pageid, true);
+        if (LeafNodeCursor.isLeafNode(cp)) {
+            LeafNodeCursor<K,V,S> leaf = this.leafNodeCursor;
+            leaf.setBuf(cp);
+            int i = 0;
+            if (min!=null) {
+                i = leaf.search(min, 0);
+                if (i<0 || leaf.compare(min, 0, i) > 0) i++;
+            }
+            for(; i<leaf.getNumBuckets() && (max==null || leaf.compare(max, 0, i) >= 0); i++)
+                initialized = mergeSummary(leaf, i, initialized);
+            return initialized;
+        }
+
+        InteriorNodeCursor<K,V,S> cur = this.interiorNodeCursor1;
+        cur.setBuf(cp);
+        int numBuckets = cur.getNumBuckets();
+        int lo = min==null ? 0 : Math.max(0, cur.search(min, 0));
+        int hi = max==null ? numBuckets-1 : cur.search(max, 0);
+        int loPage = -1;
+        int hiPage = -1;
+        for(int i=lo; i<=hi; i++) {
+            boolean stored = i<numBuckets-1 || !cur.isRightMost();
+            boolean inside = (min==null || cur.compare(min, 0, i) <= 0) && (max==null || cur.compare(max, 0, i+1) >= 0);
+            if (stored && inside) initialized = mergeSummary(cur, i, initialized);
+            else if (i==lo) loPage = cur.getBucketPageId(i);
+            else hiPage = cur.getBucketPageId(i);
+        }
+        if (loPage!=-1) initialized = summarize(loPage, min, max, initialized);
+        if (hiPage!=-1) initialized = summarize(hiPage, min, max, initialized);
+        return initialized;
+    }
+
+    private boolean mergeSummary(NodeCursor<K,V,S> cur, int bucket, boolean initialized) {
+        if (!initialized) {
+            cur.getSummary(bucket, sbuf, 0);
+        } else {
+            cur.getSummary(bucket, monbuf, 0);
+            summary.multiply(sbuf, 0, monbuf, 0, sbuf, 0);
+        }
+        return true;
+    }
+
+    /**
+     *  Appends a (key,value) pair whose key is greater than every key
+     *  in the tree; throws an exception otherwise.  This is the fast
+     *  path for loading data which arrives sorted: it does not descend
+     *  from the root.  Values are written sequentially into the
+     *  rightmost leaf, which is filled completely before a new one is
+     *  started, and each node on the right edge of the tree gets the
+     *  count and summary of a child bottom-up, once, when the child
+     *  fills.  The tree is valid after every call, so appends may be
+     *  freely mixed with queries; any other update makes the next
+     *  append re-read the right edge of the tree.
+     */
+    public void append(K key, V val) {
+        uk.serialize(key, keybuf, 0);
+        if (spineLevels == 0) loadSpine();
+        if (size > 0 && uk.compare(keybuf, 0, largestKey, 0) <= 0)
+            throw new RuntimeException("attempt to append key "+key+" which is not greater than the largest key");
+
+        LeafNodeCursor<K,V,S> leaf = this.leafNodeCursor;
+        leaf.setBuf(ps.getPage(spinePages[0], true));
+        if (leaf.isFull()) {
+            // close the full leaf and start a new rightmost one
+            leaf.setRightMost(false);
+            leaf.writeBack();
+            int newpage = ps.createPage();
+            leaf.initBuf(ps.getPage(newpage, false), -1, true);
+            leaf.writeBack();
+            addToSpine(1, keybuf, newpage);
+            spinePages[0] = newpage;
+            spineCounts[0] = 0;
+            leaf.setBuf(ps.getPage(newpage, true));
+        }
+        int bucket = leaf.getNumBuckets();
+        leaf.insertVal(bucket, keybuf, 0, val);
+
+        if (summary!=null) {
+            leaf.getSummary(bucket, monbuf, 0);
+            for(int level=0; level<spineLevels; level++) {
+                if (spineCounts[level]==0) System.arraycopy(monbuf, 0, spineSummaries[level], 0, monbuf.length);
+                else summary.multiply(spineSummaries[level], 0, monbuf, 0, spineSummaries[level], 0);
+            }
+        }
+        for(int level=0; level<spineLevels; level++)
+            spineCounts[level]++;
+        System.arraycopy(keybuf, 0, largestKey, 0, largestKey.length);
+        largestKeyPage = spinePages[0];
+        size++;
+    }
+
+    /**
+     *  Makes childPage, whose least key is key, the new last bucket of
+     *  the rightmost node at the given level.  If that node is full it
+     *  is closed and a new rightmost node is started, which recurses
+     *  one level up; above the root a new root is made.
+     */
+    private void addToSpine(int level, byte[] key, int childPage) {
+        InteriorNodeCursor<K,V,S> cur = this.interiorNodeCursor1;
+        if (level == spineLevels) {
+            cur.initRoot();
+            cur.setBucketPageId(0, spinePages[level-1]);
+            cur.writeBack();
+            setParentPageId(spinePages[level-1], rootpage);
+            growSpine(level+1);
+            spinePages[level] = rootpage;
+            spineCounts[level] = spineCounts[level-1];
+            if (summary!=null) System.arraycopy(spineSummaries[level-1], 0, spineSummaries[level], 0, monbuf.length);
+            spineLevels++;
+        }
+        cur.setBuf(ps.getPage(spinePages[level], true));
+        int numBuckets = cur.getNumBuckets();
+        if (cur.isFull()) {
+            // a node which is not rightmost stores the summary of its last bucket
+            cur.setRightMost(false);
+            if (summary!=null) cur.setSummary(numBuckets-1, spineSummaries[level-1], 0);
+            cur.writeBack();
+            int newpage = ps.createPage();
+            cur.initBuf(ps.getPage(newpage, false), -1, true);
+            cur.setNumBuckets(1);
+            cur.setBucketPageId(0, childPage);
+            cur.writeBack();
+            setParentPageId(childPage, newpage);
+            addToSpine(level+1, key, newpage);
+            spinePages[level] = newpage;
+            spineCounts[level] = 0;
+        } else {
+            int ofs = cur.insertNewBucketAt(numBuckets);
+            System.arraycopy(key, 0, cur.getBuf(), ofs, uk.getSize());
+            cur.setBucketPageId(numBuckets, childPage);
+            cur.setNumValsBelowBucket(numBuckets-1, spineCounts[level-1]);
+            if (summary!=null) cur.setSummary(numBuckets-1, spineSummaries[level-1], 0);
+            cur.writeBack();
+            setParentPageId(childPage, spinePages[level]);
+        }
+    }
+
+    /** reads the pages, counts and summaries of the right edge of the tree for append() */
+    private void loadSpine() {
+        int depth = 0;
+        int pageid = rootpage;
+        int[] pages = new int[spinePages.length];
+        int[] counts = new int[spinePages.length];
+        int count = size;
+        while(true) {
+            if (depth >= pages.length) {
+                pages = Arrays.copyOf(pages, depth*2);
+                counts = Arrays.copyOf(counts, depth*2);
+            }
+            pages[depth] = pageid;
+            counts[depth] = count;
+            depth++;
+            CachedPage cp = ps.getPage(pageid, true);
+            if (LeafNodeCursor.isLeafNode(cp)) break;
+            InteriorNodeCursor<K,V,S> cur = this.interiorNodeCursor1;
+            cur.setBuf(cp);
+            for(int i=0; i<cur.getNumBuckets()-1; i++)
+                count -= cur.getNumValsBelowBucket(i);
+            pageid = cur.getBucketPageId(cur.getNumBuckets()-1);
+        }
+
+        // the spine is stored bottom-up
+        growSpine(depth);
+        for(int level=0; level<depth; level++) {
+            spinePages[level] = pages[depth-1-level];
+            spineCounts[level] = counts[depth-1-level];
+        }
+        if (summary!=null) {
+            LeafNodeCursor<K,V,S> leaf = this.leafNodeCursor;
+            leaf.setBuf(ps.getPage(spinePages[0], true));
+            if (spineCounts[0] > 0) leaf.getSummary(spineSummaries[0], 0);
+            for(int level=1; level<depth; level++) {
+                InteriorNodeCursor<K,V,S> cur = this.interiorNodeCursor1;
+                cur.setBuf(ps.getPage(spinePages[level], true));
+                boolean initialized = spineCounts[level-1] > 0;
+                if (initialized) System.arraycopy(spineSummaries[level-1], 0, spineSummaries[level], 0, monbuf.length);
+                for(int i=0; i<cur.getNumBuckets()-1; i++) {
+                    if (cur.getNumValsBelowBucket(i)==0) continue;
+                    cur.getSummary(i, monbuf, 0);
+                    if (initialized) summary.multiply(spineSummaries[level], 0, monbuf, 0, spineSummaries[level], 0);
+                    else System.arraycopy(monbuf, 0, spineSummaries[level], 0, monbuf.length);
+                    initialized = true;
+                }
+            }
+        }
+        if (size > 0) {
+            uk.serialize(getKeyFromOrd(size-1), largestKey, 0);
+            largestKeyPage = spinePages[0];
+        }
+        spineLevels = depth;
+    }
+
+    private void growSpine(int levels) {
+        if (levels <= spinePages.length) return;
+        int len = Math.max(levels, spinePages.length*2);
+        spinePages = Arrays.copyOf(spinePages, len);
+        spineCounts = Arrays.copyOf(spineCounts, len);
+        byte[][] summaries = Arrays.copyOf(spineSummaries, len);
+        for(int i=spineSummaries.length; i<len; i++)
+            summaries[i] = summary==null ? null : new byte[summary.getSize()];
+        spineSummaries = summaries;
+    }
+
+    private void setParentPageId(int pageid, int parent) {
+        CachedPage cp = ps.getPage(pageid, true);
+        ui.serializeInt(parent, cp.getBuf(), 0);
+        cp.setDirty();
+    }
+
     private static enum Op {
         GET_VAL_FROM_KEY,
         GET_VAL_FROM_KEY_FLOOR,
@@ -335,8 +572,6 @@ public class BTree
         REMOVE,
         INSERT,
         REPLACE,
-        SUMMARIZE_LEFT,
-        SUMMARIZE_RIGHT,
             ;
         public boolean isGetFromOrd() {
             switch(this) {
@@ -391,10 +626,6 @@ public class BTree
     }
     
 
-    private Object walk(byte[] key, int key_ofs, V oldval, V newval, Op op, int ord) {
-        return walk(key, key_ofs, oldval, newval, op, ord, null, 0, null, 0);
-    }
-
     /**
      *  B+Tree walking routine.
      *
@@ -413,20 +644,18 @@ public class BTree
                         V oldval,
                         V newval,
                         Op op,
-                        int ord,
-                        byte[] key2, int key2_ofs,
-                        byte[] ret, int ret_ofs) {
+                        int ord) {
         Object return_val = null;
         int pageid = rootpage;
         int idx = -1;
         int global_ord = 0;
+        int depth = 0;
 
         LeafNodeCursor<K,V,S>       leafNodeCursor = this.leafNodeCursor;
         InteriorNodeCursor<K,V,S>   interiorNodeCursor = this.interiorNodeCursor1;
         InteriorNodeCursor<K,V,S>   parentNodeCursor = this.interiorNodeCursor2;
         NodeCursor cur = null;
 
-        boolean summaryInitialized = ord!=0;
         boolean rightEdge = true;
         boolean cheat = false;
         int comp = 0;
@@ -506,43 +735,20 @@ public class BTree
 
                 cur.writeBack();
                 parentNodeCursor.writeBack();
-                pageid = rootpage;
-                cheat = false;
-                continue;
-            }
 
-            if (op==Op.SUMMARIZE_LEFT || op==Op.SUMMARIZE_RIGHT) {
-                int start = key==null ? 0 : cur.search(key, key_ofs);
-                start--;
-                start = Math.max(0,start);
-                int next = op==Op.SUMMARIZE_RIGHT ? -1 : start;
-                if (!cur.isLeafNode()) start = Math.max(1,start);
-                for(int i=start; i<cur.getNumBuckets(); i++) {
-                    int cmpLeft  = key==null  ? -1 : cur.compare(key, key_ofs, i);
-                    int cmpRight = key2==null ? 1 : cur.isLeafNode()
-                        ? (cur.compare(key2, key2_ofs, i+1) < 0 ? -1 : 1)
-                        : (i==cur.getNumBuckets()-1 ? -1 : cur.compare(key2, key2_ofs, i+1));
-                    if (cmpLeft <= 0 && cmpRight > 0 && (cur.isLeafNode() || i<cur.getNumBuckets()-1)) {
-                        if (summaryInitialized) {
-                            cur.getSummary(i, monbuf, 0);
-                            summary.multiply(ret, ret_ofs, monbuf, 0, ret, ret_ofs);
-                        } else {
-                            cur.getSummary(i, ret, ret_ofs);
-                            summaryInitialized = true;
-                        }
-                    }
-                    if (cmpLeft > 0 && op==Op.SUMMARIZE_LEFT) next = i;
-                    if (cmpRight < 0) {
-                        if (op==Op.SUMMARIZE_RIGHT) next = i;
-                        break;
+                // the split rewrote the counts of the parent, but the ancestors above it
+                // will be incremented again when we descend from the root
+                if (op==Op.INSERT) {
+                    for(int i=0; i<depth-1; i++) {
+                        if (pathSlots[i] == -1) continue;
+                        interiorNodeCursor.setBuf(ps.getPage(pathPages[i], true));
+                        interiorNodeCursor.setNumValsBelowBucket(pathSlots[i], interiorNodeCursor.getNumValsBelowBucket(pathSlots[i])-1);
+                        interiorNodeCursor.writeBack();
                     }
                 }
-                if (next==-1) next = cur.getNumBuckets()-1;
-                if (cur.isLeafNode()) return summaryInitialized ? 1 : 0;
-                pageid = ((InteriorNodeCursor)cur).getBucketPageId(next);
-                InteriorNodeCursor<K,V,S> ic = (InteriorNodeCursor)cur;
-                interiorNodeCursor = parentNodeCursor;
-                parentNodeCursor = ic;
+                pageid = rootpage;
+                depth = 0;
+                cheat = false;
                 continue;
             }
 
@@ -605,9 +811,16 @@ public class BTree
                         }
                         break;
                     case INSERT:
+                        if (depth == pathPages.length) {
+                            pathPages = Arrays.copyOf(pathPages, depth*2);
+                            pathSlots = Arrays.copyOf(pathSlots, depth*2);
+                        }
+                        pathPages[depth] = pageid;
+                        pathSlots[depth] = -1;
                         if (idx < interiorNodeCursor.getNumBuckets()-1) {
                             interiorNodeCursor.setNumValsBelowBucket(idx, interiorNodeCursor.getNumValsBelowBucket(idx)+1);
                             interiorNodeCursor.writeBack();
+                            pathSlots[depth] = idx;
                         }
                         break;
                     default:
@@ -618,6 +831,7 @@ public class BTree
                         global_ord += interiorNodeCursor.getNumValsBelowBucket(i);
                 rightEdge &= idx==interiorNodeCursor.getNumBuckets()-1;
                 pageid = interiorNodeCursor.getBucketPageId(idx);
+                depth++;
                 InteriorNodeCursor<K,V,S> ic = interiorNodeCursor; interiorNodeCursor = parentNodeCursor; parentNodeCursor = ic;
                 assert interiorNodeCursor!=parentNodeCursor;
                 continue;
@@ -628,7 +842,8 @@ public class BTree
             parentNodeCursor.setBuf(ps.getPage(cur.getParent(), true));
             int slot = parentNodeCursor.getSlotByChildPageId(cur.getPageId());
             assert slot!=-1;
-            if (summary!=null && slot < parentNodeCursor.getNumBuckets()-1) {
+            // only the rightmost nodes omit the summary of their last bucket
+            if (summary!=null && (slot < parentNodeCursor.getNumBuckets()-1 || !parentNodeCursor.isRightMost())) {
                 switch(op) {
                     case REMOVE:
                         // TO DO: we can do much better for REPLACE with an InvertibleOperation
@@ -0,0 +1,138 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BTreeBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import java.util.*;
+import com.sun.electric.database.geometry.btree.unboxed.*;
+
+/**
+ *  A crude benchmark of the PageStorage implementations.  Each one
+ *  gets a BTree filled the way a simulation fills its waveforms (keys
+ *  appended in increasing order) and then read back at random keys.
+ *  A second tree on each storage keeps the minimum and maximum value
+ *  as its summary, as waveforms do, and is also queried for the
+ *  summaries of random key ranges.
+ *  Reports the times and the heap in use after the fill.
+ */
+public class BTreeBenchmark {
+    public static void main(String[] s) throws Exception {
+        if (s.length != 3) {
+            System.err.println("");
+            System.err.println("usage: java " + BTreeBenchmark.class.getName() + " <numentries> <numgets> <cachesize>");
+            System.err.println("");
+            System.err.println("  Fills a BTree on each kind of PageStorage and reads it back at random keys,");
+            System.err.println("  then does the same with a min/max summary and also queries random key ranges.");
+            System.err.println("");
+            System.err.println("    <numentries> number of entries appended to the tree");
+            System.err.println("    <numgets>    number of random lookups, and of random range queries");
+            System.err.println("    <cachesize>  number of pages cached in memory by the file storages");
+            System.err.println("");
+            System.exit(-1);
+        }
+        int numentries = Integer.parseInt(s[0]);
+        int numgets = Integer.parseInt(s[1]);
+        int cachesize = Integer.parseInt(s[2]);
+
+        for(int pass=0; pass<2; pass++) {
+            System.out.println("pass " + pass + ":");
+            for(MinMax summary : new MinMax[] { null, new MinMax() }) {
+                String suffix = summary == null ? "" : "+summary";
+                run("memory" + suffix, new MemoryPageStorage(4096 * 4), numentries, numgets, summary);
+                run("file" + suffix, new CachingPageStorageWrapper(FilePageStorage.create(), cachesize, false), numentries, numgets, summary);
+                run("mapped" + suffix, new CachingPageStorageWrapper(MappedFilePageStorage.create(), cachesize, false), numentries, numgets, summary);
+            }
+        }
+    }
+
+    private static void run(String name, CachingPageStorage ps, int numentries, int numgets, MinMax summary) {
+        BTree<Integer,Integer,Pair<Integer,Integer>> btree =
+            new BTree<Integer,Integer,Pair<Integer,Integer>>(ps, UnboxedInt.instance,
+                                                             UnboxedInt.instance,
+                                                             summary);
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for(int i=0; i<numentries; i++)
+            btree.insert(i, i*3);
+        long fillTime = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+
+        Random rand = new Random(0x1234);
+        start = System.nanoTime();
+        for(int i=0; i<numgets; i++) {
+            int key = rand.nextInt(numentries);
+            Integer val = btree.getValFromKey(key);
+            if (val == null || val.intValue() != key*3)
+                throw new RuntimeException("  wrong value for key " + key + ": " + val);
+        }
+        long getTime = System.nanoTime() - start;
+
+        // values are three times their keys, so the summary of a range is known
+        String rangeResult = "";
+        if (summary != null) {
+            start = System.nanoTime();
+            for(int i=0; i<numgets; i++) {
+                int min = rand.nextInt(numentries);
+                int max = min + rand.nextInt(numentries - min);
+                Pair<Integer,Integer> s = btree.getSummaryFromKeys(min, max);
+                if (s == null || s.getKey().intValue() != min*3 || s.getValue().intValue() != max*3)
+                    throw new RuntimeException("  wrong summary for keys " + min + ".." + max + ": " + s);
+            }
+            long rangeTime = System.nanoTime() - start;
+            rangeResult = numgets + " range summaries in " + (rangeTime/1000000) + "ms, ";
+        }
+
+        System.out.println("  " + name + ": " + numentries + " inserts in " + (fillTime/1000000) + "ms, " +
+                           numgets + " gets in " + (getTime/1000000) + "ms, " + rangeResult +
+                           ((heapAfter-heapBefore)/(1024*1024)) + "MB of heap, " + ps.getNumPages() + " pages");
+        ps.close();
+    }
+
+    /** summarizes a range of values by their minimum and maximum */
+    private static class MinMax
+        extends UnboxedPair<Integer,Integer>
+        implements BTree.Summary<Integer,Integer,Pair<Integer,Integer>>,
+                   AssociativeCommutativeOperation<Pair<Integer,Integer>> {
+
+        MinMax() { super(UnboxedInt.instance, UnboxedInt.instance); }
+
+        public void call(byte[] buf_arg, int ofs_arg, byte[] buf_result, int ofs_result) {
+            int v = UnboxedInt.instance.deserializeInt(buf_arg, ofs_arg+4);
+            UnboxedInt.instance.serializeInt(v, buf_result, ofs_result);
+            UnboxedInt.instance.serializeInt(v, buf_result, ofs_result+4);
+        }
+
+        public void multiply(byte[] buf1, int ofs1, byte[] buf2, int ofs2, byte[] buf_dest, int ofs_dest) {
+            int min = Math.min(UnboxedInt.instance.deserializeInt(buf1, ofs1),
+                               UnboxedInt.instance.deserializeInt(buf2, ofs2));
+            int max = Math.max(UnboxedInt.instance.deserializeInt(buf1, ofs1+4),
+                               UnboxedInt.instance.deserializeInt(buf2, ofs2+4));
+            UnboxedInt.instance.serializeInt(min, buf_dest, ofs_dest);
+            UnboxedInt.instance.serializeInt(max, buf_dest, ofs_dest+4);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,158 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedFilePageStorage.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ *  PageStorage kept in a memory-mapped temporary file.  The pages
+ *  live outside of the Java heap, and the operating system's page
+ *  cache decides which of them are resident, so a large tree costs
+ *  neither heap nor garbage collection time.  Reads and writes are
+ *  plain memory copies, with no system call per page.
+ *
+ *  The file is mapped in regions of PAGES_PER_REGION pages; a new
+ *  region is mapped when the pages of the previous ones are used up.
+ *  This PageStorage should be wrapped in a CachingPageStorageWrapper
+ *  with a small cache, which only needs to hold the pages that the
+ *  BTree cursors are working on.
+ *
+ *  A storage created in a given file keeps the file when it is
+ *  closed, and can be opened again to read its pages back.
+ */
+public class MappedFilePageStorage extends PageStorage {
+
+    /** Create a new MappedFilePageStorage in a temporary file. */
+    public static MappedFilePageStorage create() {
+        return new MappedFilePageStorage();
+    }
+
+    /** Create a new MappedFilePageStorage in a file, which is kept when the storage is closed. */
+    public static MappedFilePageStorage create(File file) {
+        return new MappedFilePageStorage(file, false);
+    }
+
+    /** Open the pages of a MappedFilePageStorage that was created in a file and closed. */
+    public static MappedFilePageStorage open(File file) {
+        return new MappedFilePageStorage(file, true);
+    }
+
+    // the same page size as FilePageStorage
+    private static final int BLOCK_SIZE = 4096 * 4;
+
+    // 64MB per region
+    private static final int PAGES_PER_REGION = 4096;
+
+    //////////////////////////////////////////////////////////////////////////////
+
+    private File file;
+    private final boolean keepFile;
+    private RandomAccessFile raf;
+    private volatile ByteBuffer[] regions;
+    private int numpages;
+
+    public synchronized int getNumPages() { return numpages; }
+
+    private MappedFilePageStorage() {
+        super(BLOCK_SIZE);
+        this.keepFile = false;
+        this.regions = new ByteBuffer[0];
+        this.numpages = 0;
+    }
+
+    private MappedFilePageStorage(File file, boolean existing) {
+        super(BLOCK_SIZE);
+        this.file = file;
+        this.keepFile = true;
+        this.regions = new ByteBuffer[0];
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            if (!existing) raf.setLength(0);
+            // the file is cut to its pages when it is closed
+            this.numpages = (int)(raf.length() / getPageSize());
+            for(int pageid = 0; pageid < numpages; pageid += PAGES_PER_REGION)
+                mapRegion(pageid / PAGES_PER_REGION);
+        } catch (IOException e) { throw new RuntimeException(e); }
+    }
+
+    public synchronized int createPage() {
+        try {
+            if (raf == null) {
+                file = File.createTempFile("pagestorage", ".ebtree");
+                file.deleteOnExit();
+                raf = new RandomAccessFile(file, "rw");
+            }
+            int region = numpages / PAGES_PER_REGION;
+            if (region >= regions.length) mapRegion(region);
+        } catch (IOException e) { throw new RuntimeException(e); }
+        return numpages++;
+    }
+
+    /** maps the next region of the file, which grows the file if needed */
+    private void mapRegion(int region) throws IOException {
+        long regionSize = (long)PAGES_PER_REGION * getPageSize();
+        ByteBuffer[] newregions = new ByteBuffer[region+1];
+        System.arraycopy(regions, 0, newregions, 0, regions.length);
+        newregions[region] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, region * regionSize, regionSize);
+        regions = newregions;
+    }
+
+    /** returns a private view of a region positioned at a page, so that threads don't share buffer positions */
+    private ByteBuffer getPageBuffer(int pageid) {
+        ByteBuffer bb = regions[pageid / PAGES_PER_REGION].duplicate();
+        bb.position((pageid % PAGES_PER_REGION) * getPageSize());
+        return bb;
+    }
+
+    public void writePage(int pageid, byte[] buf, int ofs) {
+        getPageBuffer(pageid).put(buf, ofs, getPageSize());
+    }
+
+    public void readPage(int pageid, byte[] buf, int ofs) {
+        getPageBuffer(pageid).get(buf, ofs, getPageSize());
+    }
+
+    public void fsync(int pageid) {
+        // do nothing because the file is temporary
+    }
+
+    public synchronized void close() {
+        // the mapped regions are unmapped when they are garbage collected
+        regions = new ByteBuffer[0];
+        if (raf == null) return;
+        try {
+            if (keepFile) {
+                // mapping rounds the file up to whole regions; keep only the pages
+                // (some systems can't cut a file that is still mapped, and then it keeps empty pages)
+                try {
+                    raf.setLength((long)numpages * getPageSize());
+                } catch (IOException e) { }
+            }
+            raf.close();
+        } catch (IOException e) { throw new RuntimeException(e); }
+        numpages = 0;
+        raf = null;
+        if (!keepFile) file.delete();
+    }
+}
@@ -29,7 +29,12 @@ import com.sun.electric.util.math.AbstractFixpRectangle;
 import com.sun.electric.util.math.FixpCoord;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * The RTNode class implements R-Trees.
@@ -185,6 +190,123 @@ public class RTNode<T extends RTBounds> extends AbstractFixpRectangle {
         return top;
     }
 
+    /**
+     * Method to create a packed R-Tree structure from a collection of RTBounds.
+     * The tree is built bottom-up with the Sort-Tile-Recursive algorithm:
+     * entries are sorted into vertical slices by X center, each slice is sorted by Y center
+     * and cut into R-tree nodes, and the procedure is repeated on the nodes of each level.
+     * This takes O(n log n) time and never splits a node, so it is much faster than calling
+     * linkGeom once per entry when a whole tree must be rebuilt.
+     * Every node except the root holds from M to 2M entries, so the result may be
+     * modified later with linkGeom and unLinkGeom.
+     * @param geoms the RTBounds to put in the tree.
+     * @return root of the new RTree.
+     */
+    public static <T extends RTBounds> RTNode<T> bulkLoad(Collection<? extends T> geoms) {
+        Object[] entries = geoms.toArray();
+        if (entries.length <= MAXRTNODESIZE) {
+            RTNode<T> top = makeTopLevel();
+            for (int i = 0; i < entries.length; i++) {
+                top.setChild(i, entries[i]);
+            }
+            top.setTotal(entries.length);
+            top.figBounds();
+            return top;
+        }
+
+        // pack the leaves, then pack each level of branches until a single node remains
+        List<RTNode<T>> level = RTNode.<T>packLevel(entries, true);
+        while (level.size() > MAXRTNODESIZE) {
+            level = RTNode.<T>packLevel(level.toArray(), false);
+        }
+        RTNode<T> top = new RTNode<T>();
+        top.setFlag(false);
+        for (int i = 0; i < level.size(); i++) {
+            RTNode<T> sub = level.get(i);
+            top.setChild(i, sub);
+            sub.setParent(top);
+        }
+        top.setTotal(level.size());
+        top.figBounds();
+        return top;
+    }
+
+    /**
+     * Method to group one level of entries into packed R-tree nodes.
+     * The entries are distributed as evenly as possible so that no node
+     * has fewer than MINRTNODESIZE entries.
+     * @param entries RTBounds (if "leaves" is true) or RTNodes to group.
+     * @param leaves true if the entries are leaves of the tree.
+     * @return list of new RTNodes that hold the entries.
+     */
+    private static <T extends RTBounds> List<RTNode<T>> packLevel(Object[] entries, boolean leaves) {
+        int count = entries.length;
+        int numNodes = (count + MAXRTNODESIZE - 1) / MAXRTNODESIZE;
+        int numSlices = (int) Math.ceil(Math.sqrt(numNodes));
+        Arrays.sort(entries, new CenterComparator(leaves, true));
+
+        List<RTNode<T>> nodes = new ArrayList<RTNode<T>>(numNodes);
+        Comparator<Object> yOrder = new CenterComparator(leaves, false);
+        for (int s = 0; s < numSlices; s++) {
+            // the slice holds a contiguous run of the nodes
+            int sliceFirstNode = (int) ((long) numNodes * s / numSlices);
+            int sliceLastNode = (int) ((long) numNodes * (s + 1) / numSlices);
+            int sliceStart = nodeStart(count, numNodes, sliceFirstNode);
+            int sliceEnd = nodeStart(count, numNodes, sliceLastNode);
+            Arrays.sort(entries, sliceStart, sliceEnd, yOrder);
+            for (int n = sliceFirstNode; n < sliceLastNode; n++) {
+                int start = nodeStart(count, numNodes, n);
+                int end = nodeStart(count, numNodes, n + 1);
+                RTNode<T> rtn = new RTNode<T>();
+                rtn.setFlag(leaves);
+                for (int i = start; i < end; i++) {
+                    rtn.setChild(i - start, entries[i]);
+                    if (!leaves) {
+                        rtn.getChildTree(i - start).setParent(rtn);
+                    }
+                }
+                rtn.setTotal(end - start);
+                rtn.figBounds();
+                nodes.add(rtn);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Method to return the index of the first entry of node "n"
+     * when "count" entries are spread evenly over "numNodes" nodes.
+     */
+    private static int nodeStart(int count, int numNodes, int n) {
+        return (int) ((long) count * n / numNodes);
+    }
+
+    /**
+     * Comparator for ordering R-tree entries by the X or Y coordinate of their center.
+     */
+    private static class CenterComparator implements Comparator<Object> {
+        private final boolean leaves;
+        private final boolean xAxis;
+
+        private CenterComparator(boolean leaves, boolean xAxis) {
+            this.leaves = leaves;
+            this.xAxis = xAxis;
+        }
+
+        @Override
+        public int compare(Object o1, Object o2) {
+            long c1 = center(o1);
+            long c2 = center(o2);
+            return c1 < c2 ? -1 : c1 > c2 ? 1 : 0;
+        }
+
+        private long center(Object o) {
+            AbstractFixpRectangle r = leaves ? ((RTBounds) o).getBounds() : (RTNode<?>) o;
+            // the sum of the edges orders the same as the center and cannot lose precision
+            return xAxis ? r.getFixpMinX() + r.getFixpMaxX() : r.getFixpMinY() + r.getFixpMaxY();
+        }
+    }
+
     /**
      * Method to link this RTBounds into the R-tree of its parent Cell.
      * This is static, because it may modify the root node, and so it must
@@ -822,15 +822,14 @@ public class Topology {
             computeArcBounds();
         }
         CellId cellId = cell.getId();
-        RTNode<Geometric> root = RTNode.makeTopLevel();
+        List<Geometric> geoms = new ArrayList<Geometric>(getNumNodes() + getNumArcs());
         for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext();) {
-            NodeInst ni = it.next();
-            root = RTNode.linkGeom(cellId, root, ni);
+            geoms.add(it.next());
         }
         for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext();) {
-            ArcInst ai = it.next();
-            root = RTNode.linkGeom(cellId, root, ai);
+            geoms.add(it.next());
         }
+        RTNode<Geometric> root = RTNode.bulkLoad(geoms);
         root.checkRTree(0, cellId);
         rTree = root;
         rTreeFresh = true;
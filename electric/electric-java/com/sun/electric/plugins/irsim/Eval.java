@@ -18,7 +18,9 @@
 
 package com.sun.electric.plugins.irsim;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 
 public class Eval
 {
@@ -32,6 +34,7 @@ public class Eval
 	{
 		/** pointers in doubly-linked list */			Event    fLink, bLink;
 		/** link for list of events for this node */	Event    nLink;
+		/** back link in list of events for this node */	Event    nBLink;
 		/** node this event is all about */				Sim.Node eNode;
 														Sim.Node cause;
 		/** time, in DELTAs, of this event */			long     nTime;
@@ -112,6 +115,7 @@ public class Eval
 				if (xInputs.size() > 0) EvalNOinputs(xInputs);
 
 				long brkFlag = EvalNodes(evList);
+				recycleEvents(evList);
 
 //				if (stopping(STOPREASONSIMULATE))
 //				{
@@ -391,12 +395,97 @@ public class Eval
 
 	/***************************************** SCHED *****************************************/
 
-	/** size of event array, must be power of 2 */		private static final int TSIZE		= 1024;
-	private static final int TMASK		= (TSIZE - 1);
+	/*
+	 * Pending events are kept in a calendar queue: an array of buckets that
+	 * wraps around, where each bucket holds the events of 2^evShift consecutive
+	 * DELTAs and is a doubly-linked list sorted by increasing event time.
+	 * The number of buckets follows the number of pending events, and the
+	 * width of a bucket follows the spacing of the earliest event times, so
+	 * a bucket holds few events and few buckets are empty.  Then adding an
+	 * event and finding the next one take constant time on the average.
+	 * Events are taken from a pool and returned to it when they are done.
+	 */
+
+	/** smallest number of buckets, must be power of 2 */	private static final int MINBUCKETS		= 1024;
+	/** event times sampled to set the bucket width */		private static final int WIDTHSAMPLES	= 64;
+
+	/** used as head of doubly-linked lists */			private Event [] evArray;
+	/** evArray.length - 1 */								private int      evMask;
+	/** log2 of the number of DELTAs in a bucket */		private int      evShift;
+	/** pool of unused events, linked by fLink */			private Event    freeEvents;
+	/** false keeps the fixed wheel of MINBUCKETS single-DELTA buckets that
+	 * older versions used, to check that both process the same events */	boolean  calendarQueue = true;
+	/** number of times the event wheel was rebuilt */		int      numResizes;
+
+	private static final Comparator<Event> EVENT_TIME_ORDER = new Comparator<Event>()
+	{
+		public int compare(Event e1, Event e2)
+		{
+			return e1.nTime < e2.nTime ? -1 : e1.nTime > e2.nTime ? 1 : 0;
+		}
+	};
 
-	/** used as head of doubly-linked lists */			private Event [] evArray = new Event[TSIZE];
+	private Event getEVArray(long t) { return evArray[(int)((t >> evShift) & evMask)]; }
 
-	private Event getEVArray(long t) { return evArray[(int)(t & TMASK)]; }
+	private void makeEVArray(int numBuckets)
+	{
+		evArray = new Event[numBuckets];
+		evMask = numBuckets - 1;
+		for(int i = 0; i < numBuckets; i++)
+		{
+			Event event = new Event();
+			evArray[i] = event;
+			event.fLink = event.bLink = event;
+		}
+	}
+
+	/**
+	 * Rebuild the event wheel with a new number of buckets, and set the width
+	 * of the buckets to about the distance between the earliest event times.
+	 * Many events often have the same time, so a bucket should not hold events
+	 * of several times.  Events of the same time stay in the same order.
+	 */
+	private void resizeEVArray(int numBuckets)
+	{
+		if (!calendarQueue) return;
+		numResizes++;
+		int numEvents = 0;
+		for(Event hdr : evArray)
+			for(Event ev = hdr.fLink; ev != hdr; ev = ev.fLink) numEvents++;
+		Event [] events = new Event[numEvents];
+		numEvents = 0;
+		for(Event hdr : evArray)
+			for(Event ev = hdr.fLink; ev != hdr; ev = ev.fLink) events[numEvents++] = ev;
+		Arrays.sort(events, EVENT_TIME_ORDER);		// stable sort
+
+		int numTimes = 0;
+		long lastTime = 0;
+		for(int i = 0; i < events.length && numTimes < WIDTHSAMPLES; i++)
+		{
+			if (numTimes == 0 || events[i].nTime != lastTime)
+			{
+				numTimes++;
+				lastTime = events[i].nTime;
+			}
+		}
+		if (numTimes > 1)
+		{
+			long gap = (lastTime - events[0].nTime) / (numTimes - 1);
+			evShift = 0;
+			while ((2L << evShift) <= gap) evShift++;
+		}
+
+		// the events are sorted, so each one goes to the end of its bucket
+		makeEVArray(numBuckets);
+		for(Event ev : events)
+		{
+			Event hdr = getEVArray(ev.nTime);
+			ev.fLink = hdr;
+			ev.bLink = hdr.bLink;
+			hdr.bLink.fLink = ev;
+			hdr.bLink = ev;
+		}
+	}
 
 	/**
 	 * find the next event to be processed by scanning event wheel.  Return
@@ -406,39 +495,45 @@ public class Eval
 	private Event getNextEvent(long stopTime)
 	{
 		if (nPending == 0) return null;
+		if (nPending < evArray.length/2 && evArray.length > MINBUCKETS)
+			resizeEVArray(evArray.length/2);
 
 //if (DEBUG) System.out.println("Find events up to " + stopTime);
 		Event event = null;
-		boolean eventValid = false;
-		long time = theSim.maxTime;
-		for(long i = theSim.curDelta, limit = i + TSIZE; i < limit; i++)
+		long width = 1L << evShift;
+		long top = ((theSim.curDelta >> evShift) + 1) << evShift;	// end of the current bucket
+		for(int i = 0, b = (int)((theSim.curDelta >> evShift) & evMask); i < evArray.length; i++, b = (b + 1) & evMask, top += width)
 		{
-			event = getEVArray(i);
-			if (event != event.fLink)
+			Event hdr = evArray[b];
+			if (hdr != hdr.fLink && hdr.fLink.nTime < top)		// common case
 			{
-				if (event.fLink.nTime < limit)		// common case
-				{
-					eventValid = true;
-					break;
-				}
-				if (event.fLink.nTime < time)
-					time = (event.fLink).nTime;
+				event = hdr;
+				break;
 			}
 		}
-		if (!eventValid)
+		if (event == null)
 		{
+			long time = theSim.maxTime;
+			for(Event hdr : evArray)
+			{
+				if (hdr != hdr.fLink && hdr.fLink.nTime < time)
+					time = hdr.fLink.nTime;
+			}
 			if (time == theSim.maxTime)
 			{
 				System.out.println("*** internal error: no events but npending set");
 				return null;
 			}
+			if (time >= stopTime) return null;
 
+			// the events are further apart than the buckets cover: make them wider
+			resizeEVArray(evArray.length);
 			event = getEVArray(time);
 		}
 
 		Event evList = event.fLink;
 
-		time = evList.nTime;
+		long time = evList.nTime;
 
 		if (time >= stopTime)
 		{
@@ -481,6 +576,41 @@ public class Eval
 		return evList;
 	}
 
+	/**
+	 * get an event from the pool
+	 */
+	private Event newEvent()
+	{
+		Event event = freeEvents;
+		if (event == null) return new Event();
+		freeEvents = event.fLink;
+		return event;
+	}
+
+	/**
+	 * return an event to the pool
+	 */
+	private void recycleEvent(Event event)
+	{
+		event.eNode = event.cause = null;
+		event.bLink = event.nLink = event.nBLink = null;
+		event.fLink = freeEvents;
+		freeEvents = event;
+	}
+
+	/**
+	 * return a list of processed events, linked by fLink, to the pool
+	 */
+	private void recycleEvents(Event evList)
+	{
+		Event next = null;
+		for(Event ev = evList; ev != null; ev = next)
+		{
+			next = ev.fLink;
+			recycleEvent(ev);
+		}
+	}
+
 	/**
 	 * remove event from all structures it belongs to and return it to free pool
 	 */
@@ -492,6 +622,53 @@ public class Eval
 		nPending--;
 
 		freeFromNode(event, event.eNode);
+		recycleEvent(event);
+	}
+
+	/**
+	 * Add an event to its bucket of the event wheel, after the events of the same time.
+	 */
+	private void insertEvent(Event ev)
+	{
+		long eTime = ev.nTime;
+		Event hdr = getEVArray(eTime);
+
+		// new events are usually the latest ones, so search from the tail
+		Event marker = hdr;
+		while(marker.bLink != hdr && marker.bLink.nTime > eTime)
+			marker = marker.bLink;
+
+		// insert event right before event pointed to by marker
+		ev.fLink = marker;
+		ev.bLink = marker.bLink;
+		marker.bLink.fLink = ev;
+		marker.bLink = ev;
+	}
+
+	/**
+	 * Thread event onto list of events for its node, keeping it sorted by
+	 * decreasing event time.  New events are usually the latest ones of
+	 * their node, so they go to the head of the list.
+	 */
+	private void threadEvent(Event ev, Sim.Node n)
+	{
+		long eTime = ev.nTime;
+		Event marker = n.events;
+		if (marker != null && marker.nTime > eTime)
+		{
+			while(marker.nLink != null && marker.nLink.nTime > eTime)
+				marker = marker.nLink;
+			ev.nLink = marker.nLink;
+			ev.nBLink = marker;
+			if (marker.nLink != null) marker.nLink.nBLink = ev;
+			marker.nLink = ev;
+		} else
+		{
+			ev.nLink = marker;
+			ev.nBLink = null;
+			if (marker != null) marker.nBLink = ev;
+			n.events = ev;
+		}
 	}
 
 	/**
@@ -500,7 +677,7 @@ public class Eval
 	 */
 	public void enqueueEvent(Sim.Node n, int newValue, long delta, long rTime)
 	{
-		Event newEV = new Event();
+		Event newEV = newEvent();
 
 		// remember facts about this event
 		long eTime = theSim.curDelta + delta;
@@ -523,36 +700,13 @@ public class Eval
 		 * in event wheel.  Event lists are kept sorted by increasing
 		 * event time.
 		 */
-		Event marker = getEVArray(eTime);
-
-		// Check whether we need to insert-sort in the list
-		if ((marker.bLink != marker) && ((marker.bLink).nTime > eTime))
-		{
-			do { marker = marker.fLink; } while (marker.nTime <= eTime);
-		}
-
-		// insert event right before event pointed to by marker
-		newEV.fLink = marker;
-		newEV.bLink = marker.bLink;
-		marker.bLink.fLink = newEV;
-		marker.bLink = newEV;
+		insertEvent(newEV);
 		nPending++;
 //if (DEBUG) System.out.println("Adding event at " + newEV.nTime + " in enqueueEvent (cur="+theSim.curDelta+" delta="+delta);
-		/*
-		 * thread event onto list of events for this node, keeping it
-		 * in sorted order
-		 */
-		if ((n.events != null) && (n.events.nTime > eTime))
-		{
-			for(marker = n.events; (marker.nLink != null) &&
-				(marker.nLink.nTime > eTime); marker = marker.nLink);
-			newEV.nLink = marker.nLink;
-			marker.nLink = newEV;
-		} else
-		{
-			newEV.nLink = n.events;
-			n.events = newEV;
-		}
+		threadEvent(newEV, n);
+
+		if (nPending > 2*evArray.length)
+			resizeEVArray(2*evArray.length);
 	}
 
 	/**
@@ -564,7 +718,7 @@ public class Eval
 		while(n.events != null)
 			freeEvent(n.events);
 
-		Event newEV = new Event();
+		Event newEV = newEvent();
 
 		// remember facts about this event
 		long eTime = theSim.curDelta;
@@ -575,16 +729,19 @@ public class Eval
 		newEV.eval = (byte)newValue;
 		newEV.type = Sim.REVAL;			// anything, doesn't matter
 
-		// Add new event to HEAD of list at appropriate entry in event wheel
-		Event marker = getEVArray(eTime);
-		newEV.fLink = marker.fLink;
-		newEV.bLink = marker;
-		marker.fLink.bLink = newEV;
-		marker.fLink = newEV;
+		// Add new event before the other events of this time in the event wheel
+		Event hdr = getEVArray(eTime);
+		Event marker = hdr.fLink;
+		while(marker != hdr && marker.nTime < eTime)
+			marker = marker.fLink;
+		newEV.fLink = marker;
+		newEV.bLink = marker.bLink;
+		marker.bLink.fLink = newEV;
+		marker.bLink = newEV;
 		nPending++;
 //if (DEBUG) System.out.println("Adding event at " + newEV.nTime + " in enqueueInput");
 		// thread event onto (now empty) list of events for this node
-		newEV.nLink = null;
+		newEV.nLink = newEV.nBLink = null;
 		n.events = newEV;
 	}
 
@@ -593,12 +750,10 @@ public class Eval
 	 */
 	public void initEvent()
 	{
-		for(int i = 0; i < TSIZE; i++)
-		{
-			Event event = new Event();
-			evArray[i] = event;
-			event.fLink = event.bLink = event;
-		}
+		evShift = 0;
+		makeEVArray(MINBUCKETS);
+		numResizes = 0;
+		freeEvents = null;
 		nPending = 0;
 		theSim.nEvent = 0;
 	}
@@ -623,37 +778,10 @@ public class Eval
 			next = ev.fLink;
 
 			nPending++;
-			long eTime = ev.nTime;
-//if (DEBUG) System.out.println("Adding of event at time "+eTime + " in requeueEvents");
-			Event target = getEVArray(eTime);
-
-			if ((target.bLink != target) && ((target.bLink).nTime > eTime))
-			{
-				do { target = target.fLink; } while(target.nTime <= eTime);
-			}
-
-			ev.fLink = target;
-			ev.bLink = target.bLink;
-			target.bLink.fLink = ev;
-			target.bLink = ev;
-
+//if (DEBUG) System.out.println("Adding of event at time "+ev.nTime + " in requeueEvents");
+			insertEvent(ev);
 			if (thread)
-			{
-				Sim.Node n = ev.eNode;
-				Event marker;
-
-				if ((n.events != null) && (n.events.nTime > eTime))
-				{
-					for(marker = n.events; (marker.nLink != null) &&
-						(marker.nLink.nTime > eTime); marker = marker.nLink);
-					ev.nLink = marker.nLink;
-					marker.nLink = ev;
-				} else
-				{
-					ev.nLink = n.events;
-					n.events = ev;
-				}
-			}
+				threadEvent(ev, ev.eNode);
 		}
 	}
 
@@ -662,7 +790,7 @@ public class Eval
 		if (nPending == 0) return;
 		System.out.println("Warning: there are " + nPending + " pending events:");
 
-//		for(int i=0; i<TSIZE; i++)
+//		for(int i=0; i<evArray.length; i++)
 //		{
 //			Event hdr = evArray[i];
 //			for(Event evhdr = hdr.fLink; evhdr != hdr; evhdr = evhdr.fLink)
@@ -683,7 +811,7 @@ public class Eval
 		Event tmpList = null;
 
 		// first empty out the time wheel onto the temporary list
-		for(int i=0; i<TSIZE; i++)
+		for(int i=0; i<evArray.length; i++)
 		{
 			Event hdr = evArray[i];
 			Event next = null;
@@ -700,6 +828,7 @@ public class Eval
 				if (isInc == 0 && ev.nTime - ev.delay >= bTime)
 				{
 					freeFromNode(ev, ev.eNode);
+					recycleEvent(ev);
 				} else
 				{
 					ev.fLink = tmpList;		// move it to tmp list
@@ -730,34 +859,25 @@ public class Eval
 
 			ev.nTime -= ev.delay;
 			ev.type = Sim.PENDING;
-			long eTime = ev.nTime;
-			Event target = getEVArray(eTime);
-
-			if ((target.bLink != target) && (target.bLink.nTime > eTime))
-			{
-				do { target = target.fLink; } while(target.nTime <= eTime);
-			}
-
-			ev.fLink = target;
-			ev.bLink = target.bLink;
-			target.bLink.fLink = ev;
-			target.bLink = ev;
+			insertEvent(ev);
 		}
 
 		nPending = nEvents;
 		return null;
 	}
 
+	/**
+	 * remove event from the list of events for its node
+	 */
 	private void freeFromNode(Event ev, Sim.Node nd)
 	{
-		if (nd.events == ev)
+		if (ev.nBLink == null)
 			nd.events = ev.nLink;
 		else
-		{
-			Event evp = null;
-			for(evp = nd.events; evp.nLink != ev; evp = evp.nLink);
-			evp.nLink = ev.nLink;
-		}
+			ev.nBLink.nLink = ev.nLink;
+		if (ev.nLink != null)
+			ev.nLink.nBLink = ev.nBLink;
+		ev.nLink = ev.nBLink = null;
 	}
 
 }
@@ -0,0 +1,318 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PrimitiveShapes.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.technology;
+
+import com.sun.electric.database.CellBackup;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.geometry.EGraphics;
+import com.sun.electric.database.geometry.Poly;
+import com.sun.electric.database.id.PrimitiveNodeId;
+import com.sun.electric.database.variable.TextDescriptor;
+import com.sun.electric.technology.technologies.Generic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Shapes of the primitive nodes and arcs of a CellBackup in fixed-point coordinates, grouped by Layer.
+ * The shapes are generated once, as a flat view of the Cell sees them: in the coordinates of the Cell,
+ * not electrical, with wiped pins and with all cuts. Nodes which are only visible inside the Cell,
+ * cell-center nodes and essential-bounds nodes have no shapes.
+ * Graphics overrides, ports and messages of text are not kept.
+ * Use CellBackup.getPrimitiveShapes(), which caches the shapes, so that all tools share them.
+ */
+public class PrimitiveShapes {
+
+    private static final long[] NULL_LONG_ARRAY = {};
+    private static final int[] EMPTY_POLY_STARTS = {0};
+    private static final Poly.Type[] NULL_STYLE_ARRAY = {};
+
+    private final Map<Layer, LayerShapes> layerShapes;
+
+    /**
+     * Shapes of a CellBackup on one Layer.
+     */
+    public static class LayerShapes {
+
+        private final Layer layer;
+        /** Coordinates of boxes: lx, ly, hx, hy of each box. */
+        private final long[] boxCoords;
+        /** Coordinates of points of polys: x, y of each point. */
+        private final long[] pointCoords;
+        /** Index of the first point of each poly, followed by the total number of points. */
+        private final int[] polyStarts;
+        /** Style of each poly. */
+        private final Poly.Type[] polyStyles;
+
+        private LayerShapes(Layer layer, long[] boxCoords, long[] pointCoords, int[] polyStarts, Poly.Type[] polyStyles) {
+            this.layer = layer;
+            this.boxCoords = boxCoords;
+            this.pointCoords = pointCoords;
+            this.polyStarts = polyStarts;
+            this.polyStyles = polyStyles;
+        }
+
+        /**
+         * Returns the Layer of these shapes.
+         * @return the Layer of these shapes.
+         */
+        public Layer getLayer() {
+            return layer;
+        }
+
+        /**
+         * Returns the number of boxes on this Layer.
+         * @return the number of boxes on this Layer.
+         */
+        public int getNumBoxes() {
+            return boxCoords.length / 4;
+        }
+
+        /**
+         * Copies fixed-point coordinates of boxes to an array.
+         * Box i is copied to result[(i - offset)*4 ... (i - offset)*4 + 3] as lx, ly, hx, hy.
+         * @param offset index of the first box.
+         * @param size number of boxes.
+         * @param result the array to fill.
+         * @throws IndexOutOfBoundsException if the boxes are out of range or the array is too small.
+         */
+        public void getBoxes(int offset, int size, long[] result) {
+            if (offset < 0 || size < 0 || offset + size > getNumBoxes() || size > result.length / 4) {
+                throw new IndexOutOfBoundsException();
+            }
+            System.arraycopy(boxCoords, offset * 4, result, 0, size * 4);
+        }
+
+        /**
+         * Returns the number of polys on this Layer which are not boxes.
+         * @return the number of polys on this Layer.
+         */
+        public int getNumPolys() {
+            return polyStyles.length;
+        }
+
+        /**
+         * Returns the style of a poly.
+         * @param polyIndex index of the poly.
+         * @return the style of the poly.
+         */
+        public Poly.Type getPolyStyle(int polyIndex) {
+            return polyStyles[polyIndex];
+        }
+
+        /**
+         * Returns the number of points of a poly.
+         * @param polyIndex index of the poly.
+         * @return the number of points of the poly.
+         */
+        public int getPolyNumPoints(int polyIndex) {
+            return polyStarts[polyIndex + 1] - polyStarts[polyIndex];
+        }
+
+        /**
+         * Copies fixed-point coordinates of the points of a poly to an array as x, y of each point.
+         * @param polyIndex index of the poly.
+         * @param result the array to fill.
+         */
+        public void getPolyPoints(int polyIndex, long[] result) {
+            int start = polyStarts[polyIndex];
+            System.arraycopy(pointCoords, start * 2, result, 0, (polyStarts[polyIndex + 1] - start) * 2);
+        }
+
+        private void genShapes(AbstractShapeBuilder b) {
+            for (int i = 0; i < boxCoords.length; i += 4) {
+                b.pointCount = 0;
+                System.arraycopy(boxCoords, i, b.coords, 0, 4);
+                b.addBox(layer);
+            }
+            for (int i = 0; i < polyStyles.length; i++) {
+                int numPoints = getPolyNumPoints(i);
+                if (b.coords.length < numPoints * 2) {
+                    b.coords = new long[numPoints * 2];
+                }
+                getPolyPoints(i, b.coords);
+                b.pointCount = numPoints;
+                b.addPoly(numPoints, polyStyles[i], layer, null, null);
+            }
+            b.pointCount = 0;
+        }
+    }
+
+    /**
+     * Generates shapes of primitive nodes and arcs of a CellBackup.
+     * @param cellBackup the CellBackup.
+     */
+    public PrimitiveShapes(CellBackup cellBackup) {
+        Collector collector = new Collector(cellBackup);
+        for (ImmutableArcInst a : cellBackup.cellRevision.arcs) {
+            collector.genShapeOfArc(a);
+        }
+        Generic generic = cellBackup.techPool.getGeneric();
+        PrimitiveNode cellCenterNode = generic.cellCenterNode;
+        PrimitiveNode essentialBoundsNode = generic.essentialBoundsNode;
+        for (ImmutableNodeInst n : cellBackup.cellRevision.nodes) {
+            if (!(n.protoId instanceof PrimitiveNodeId) || n.is(ImmutableNodeInst.VIS_INSIDE)) {
+                continue;
+            }
+            PrimitiveNode pn = cellBackup.techPool.getPrimitiveNode((PrimitiveNodeId) n.protoId);
+            if (pn == cellCenterNode || pn == essentialBoundsNode) {
+                continue;
+            }
+            pn.genShape(collector, n);
+        }
+        TreeMap<Layer, LayerShapes> layerShapes = new TreeMap<Layer, LayerShapes>();
+        for (LayerCollector lc : collector.layers.values()) {
+            layerShapes.put(lc.layer, lc.toLayerShapes());
+        }
+        this.layerShapes = Collections.unmodifiableMap(layerShapes);
+    }
+
+    /**
+     * Returns the Layers which have shapes.
+     * @return the Layers which have shapes.
+     */
+    public Set<Layer> getLayers() {
+        return layerShapes.keySet();
+    }
+
+    /**
+     * Returns the shapes on a Layer.
+     * @param layer the Layer.
+     * @return the shapes on the Layer or null if the Layer has no shapes.
+     */
+    public LayerShapes getLayerShapes(Layer layer) {
+        return layerShapes.get(layer);
+    }
+
+    /**
+     * Passes all shapes to an AbstractShapeBuilder, by Layer.
+     * Boxes are passed to addBox, other polys to addPoly without graphics override and port.
+     * The coordinates are in the coordinates of the Cell; the setup of the builder is ignored.
+     * @param b the AbstractShapeBuilder.
+     */
+    public void genShapes(AbstractShapeBuilder b) {
+        for (LayerShapes ls : layerShapes.values()) {
+            ls.genShapes(b);
+        }
+    }
+
+    /**
+     * Accumulates shapes of one Layer.
+     */
+    private static class LayerCollector {
+
+        private final Layer layer;
+        private long[] boxCoords = new long[16];
+        private int numBoxCoords;
+        private long[] pointCoords = NULL_LONG_ARRAY;
+        private int numPointCoords;
+        private int[] polyStarts = EMPTY_POLY_STARTS;
+        private final ArrayList<Poly.Type> polyStyles = new ArrayList<Poly.Type>();
+
+        private LayerCollector(Layer layer) {
+            this.layer = layer;
+        }
+
+        private void addBox(long[] coords) {
+            if (numBoxCoords + 4 > boxCoords.length) {
+                long[] newBoxCoords = new long[boxCoords.length * 2];
+                System.arraycopy(boxCoords, 0, newBoxCoords, 0, numBoxCoords);
+                boxCoords = newBoxCoords;
+            }
+            System.arraycopy(coords, 0, boxCoords, numBoxCoords, 4);
+            numBoxCoords += 4;
+        }
+
+        private void addPoly(int numPoints, Poly.Type style, long[] coords) {
+            if (numPointCoords + numPoints * 2 > pointCoords.length) {
+                long[] newPointCoords = new long[Math.max(pointCoords.length * 2, numPointCoords + numPoints * 2)];
+                System.arraycopy(pointCoords, 0, newPointCoords, 0, numPointCoords);
+                pointCoords = newPointCoords;
+            }
+            System.arraycopy(coords, 0, pointCoords, numPointCoords, numPoints * 2);
+            numPointCoords += numPoints * 2;
+            polyStyles.add(style);
+            if (polyStyles.size() >= polyStarts.length) {
+                int[] newPolyStarts = new int[polyStarts.length * 2 + 1];
+                System.arraycopy(polyStarts, 0, newPolyStarts, 0, polyStarts.length);
+                polyStarts = newPolyStarts;
+            }
+            polyStarts[polyStyles.size()] = numPointCoords / 2;
+        }
+
+        private LayerShapes toLayerShapes() {
+            long[] boxes = new long[numBoxCoords];
+            System.arraycopy(boxCoords, 0, boxes, 0, numBoxCoords);
+            if (polyStyles.isEmpty()) {
+                return new LayerShapes(layer, boxes, NULL_LONG_ARRAY, EMPTY_POLY_STARTS, NULL_STYLE_ARRAY);
+            }
+            long[] points = new long[numPointCoords];
+            System.arraycopy(pointCoords, 0, points, 0, numPointCoords);
+            int[] starts = new int[polyStyles.size() + 1];
+            System.arraycopy(polyStarts, 0, starts, 0, starts.length);
+            return new LayerShapes(layer, boxes, points, starts, polyStyles.toArray(NULL_STYLE_ARRAY));
+        }
+    }
+
+    /**
+     * Shape builder which sorts the shapes by Layer.
+     */
+    private static class Collector extends AbstractShapeBuilder {
+
+        private final TreeMap<Layer, LayerCollector> layers = new TreeMap<Layer, LayerCollector>();
+
+        private Collector(CellBackup cellBackup) {
+            setup(cellBackup, null, false, true, false, null);
+        }
+
+        private LayerCollector getLayerCollector(Layer layer) {
+            LayerCollector lc = layers.get(layer);
+            if (lc == null) {
+                lc = new LayerCollector(layer);
+                layers.put(layer, lc);
+            }
+            return lc;
+        }
+
+        @Override
+        public void addTextPoly(int numPoints, Poly.Type style, Layer layer, PrimitivePort pp, String message, TextDescriptor descriptor) {
+            addPoly(numPoints, style, layer, null, pp);
+        }
+
+        @Override
+        protected void addPoly(int numPoints, Poly.Type style, Layer layer, EGraphics graphicsOverride, PrimitivePort pp) {
+            if (layer == null) {
+                return;
+            }
+            getLayerCollector(layer).addPoly(numPoints, style, coords);
+        }
+
+        @Override
+        protected void addBox(Layer layer) {
+            getLayerCollector(layer).addBox(coords);
+        }
+    }
+}
@@ -40,13 +40,18 @@ import java.io.ObjectOutputStream;
 import java.lang.reflect.Field;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import javax.swing.SwingUtilities;
 
 /**
  *
  */
 class ClientJobManager {
-    /** stream for client read Snapshots. */    private final IdReader reader;
+    /** size of the buffer of the decompressor of compact snapshots */
+    private static final int COMPRESSION_BUFFER_SIZE = 1 << 16;
+    /** stream from the server. */              private final InputStream serverInputStream;
+    /** stream for client read Snapshots. */    private IdReader reader;
     /** stream for client to send Jobs. */      private final DataOutputStream clientOutputStream;
     /** Process that launched this. */          private final Process process;
 
@@ -59,7 +64,8 @@ class ClientJobManager {
         process = null;
         System.out.println("Attempting to connect to port " + serverPort + " ...");
         Socket socket = new Socket(serverMachineName, serverPort);
-        reader = new IdReader(new DataInputStream(new BufferedInputStream(socket.getInputStream())), IdManager.stdIdManager);
+        serverInputStream = new BufferedInputStream(socket.getInputStream());
+        reader = new IdReader(new DataInputStream(serverInputStream), IdManager.stdIdManager);
         clientOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
     }
 
@@ -67,7 +73,8 @@ class ClientJobManager {
         this.process = process;
         this.skipOneLine = skipOneLine;
         System.out.println("Attempting to connect to server subprocess ...");
-        reader = new IdReader(new DataInputStream(new BufferedInputStream(process.getInputStream())), IdManager.stdIdManager);
+        serverInputStream = new BufferedInputStream(process.getInputStream());
+        reader = new IdReader(new DataInputStream(serverInputStream), IdManager.stdIdManager);
         clientOutputStream = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
     }
 
@@ -122,6 +129,7 @@ class ClientJobManager {
                 System.exit(1);
             }
             int connectionId = reader.readInt();
+            reader = readCompactFlag(reader, serverInputStream);
             Job.currentUI.patchConnectionId(connectionId);
             System.out.println("Connected id="+connectionId);
         } catch (IOException e) {
@@ -136,16 +144,12 @@ class ClientJobManager {
             }
         });
 
+        Snapshot[] snapshot = { currentSnapshot };
         for (;;) {
             try {
-                byte tag = reader.readByte();
-                long timeStamp = reader.readLong();
-                if (tag == 1) {
-                    currentSnapshot = Snapshot.readSnapshot(reader, currentSnapshot);
-                } else {
-                    Client.ServerEvent serverEvent = Client.read(reader, tag, timeStamp, Job.currentUI, currentSnapshot);
+                Client.ServerEvent serverEvent = readEvent(reader, snapshot);
+                if (serverEvent != null)
                     Client.putEvent(serverEvent);
-                }
             } catch (IOException e) {
                 // reader.in.close();
 //                reader = null;
@@ -157,6 +161,36 @@ class ClientJobManager {
         }
     }
 
+    /**
+     * Method to read the flag at the end of the header of the stream from the server.
+     * @param reader the reader of the header.
+     * @param serverInputStream the stream from the server, which the reader reads without buffering.
+     * @return the reader of the rest of the stream, which decompresses it when the flag is set.
+     */
+    static IdReader readCompactFlag(IdReader reader, InputStream serverInputStream) throws IOException {
+        if (!reader.readBoolean())
+            return reader;
+        // the rest of the stream is compressed
+        return new IdReader(new DataInputStream(new InflaterInputStream(serverInputStream,
+            new Inflater(), COMPRESSION_BUFFER_SIZE)), reader.idManager);
+    }
+
+    /**
+     * Method to read an event from the server.
+     * @param reader the reader of the stream from the server.
+     * @param snapshot the current Snapshot, which is replaced when the server sends a new one.
+     * @return the event, or null if it was a new Snapshot.
+     */
+    static Client.ServerEvent readEvent(IdReader reader, Snapshot[] snapshot) throws IOException {
+        byte tag = reader.readByte();
+        long timeStamp = reader.readLong();
+        if (tag == 1) {
+            snapshot[0] = Snapshot.readSnapshot(reader, snapshot[0]);
+            return null;
+        }
+        return Client.read(reader, tag, timeStamp, Job.currentUI, snapshot[0]);
+    }
+
     private static void printErrorStream(Process process) {
         try {
             process.getOutputStream().close();
@@ -113,7 +113,7 @@ import org.slf4j.LoggerFactory;
 public abstract class Job implements Serializable {
 
 	private static boolean GLOBALDEBUG = false;
-	static final int PROTOCOL_VERSION = 20; // Mar 17
+	static final int PROTOCOL_VERSION = 21; // Oct 18
 	public static boolean LOCALDEBUGFLAG;
 	// private static final String CLASS_NAME = Job.class.getName();
 	static final Logger logger = LoggerFactory.getLogger(Job.class);
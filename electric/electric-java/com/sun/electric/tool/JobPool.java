@@ -0,0 +1,274 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JobPool.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs pieces of work of the current Job in parallel on the pool of working threads
+ * which is shared with MultiTaskJobs.
+ * The pieces run in the context of the calling thread: its Job, Environment and EditingPreferences,
+ * so they may call Job.getRunningJob(), checkAbort() and read preferences as the caller would.
+ * The calling thread takes part in the work, so a list of one piece runs without switching threads,
+ * and calls from a piece itself do not block the pool.
+ * The caller waits only for helpers that started before all pieces were claimed,
+ * so it never waits for working threads that are busy with other work, even if that work waits for the caller.
+ */
+public final class JobPool {
+
+    private JobPool() {
+    }
+
+    /**
+     * Returns the number of working threads of the shared pool.
+     * Callers may use it to choose how finely to split their work.
+     * @return the number of working threads.
+     */
+    public static int getNumThreads() {
+        return MultiTaskPool.getPool().getNumThreads();
+    }
+
+    /**
+     * Runs pieces of work in parallel and waits for all of them.
+     * After a piece fails, pieces that were not started yet are skipped.
+     * If the calling thread is interrupted, it still waits for all pieces and then keeps its interrupt status.
+     * @param tasks the pieces of work.
+     * @return the results of the pieces, in the order of tasks.
+     * @throws ExecutionException if some piece threw an exception, which is the cause.
+     */
+    public static <V> List<V> invokeAll(List<? extends Callable<V>> tasks) throws ExecutionException {
+        MultiTaskPool pool = MultiTaskPool.getPool();
+        TaskGroup<V> group = new TaskGroup<V>(tasks);
+        int numHelpers = Math.min(tasks.size() - 1, pool.getNumThreads());
+        MultiTaskPool.TaskContext context = MultiTaskPool.TaskContext.current();
+        for (int i = 0; i < numHelpers; i++) {
+            pool.submit(new Helper<V>(context, group));
+        }
+        group.work();
+        group.close();
+        boolean interrupted = false;
+        if (Thread.currentThread() instanceof MultiTaskPool.PoolThread) {
+            while (!group.isDone()) {
+                if (!pool.runQueuedTask()) {
+                    interrupted |= group.waitDone(1);
+                }
+            }
+        } else {
+            interrupted = group.waitDone(0);
+        }
+        if (interrupted) {
+            // all pieces are done, so the caller may see the interrupt now
+            Thread.currentThread().interrupt();
+        }
+        if (group.exception != null) {
+            throw new ExecutionException(group.exception);
+        }
+        return Arrays.asList(group.results);
+    }
+
+    /**
+     * Runs pieces of work in parallel and waits for all of them.
+     * After a piece fails, pieces that were not started yet are skipped.
+     * @param tasks the pieces of work.
+     * @throws RuntimeException or Error thrown by some piece.
+     */
+    public static void runAll(List<? extends Runnable> tasks) {
+        List<Callable<Object>> callables = new ArrayList<Callable<Object>>(tasks.size());
+        for (Runnable task : tasks) {
+            callables.add(Executors.callable(task));
+        }
+        try {
+            invokeAll(callables);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Starts a piece of work on the pool and returns at once, so that the caller can do other work meanwhile.
+     * The piece runs in the context of the calling thread.
+     * Its result must be taken with getResult, which runs the piece in the caller if no working thread has started it.
+     * A piece whose result is not needed any more should be cancelled.
+     * @param task the piece of work.
+     * @return the Future of the piece.
+     */
+    public static <V> Future<V> submit(Callable<V> task) {
+        final FutureTask<V> future = new FutureTask<V>(task);
+        MultiTaskPool.getPool().submit(new MultiTaskPool.PoolTask(MultiTaskPool.TaskContext.current()) {
+            @Override
+            void run() {
+                future.run();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the result of a piece of work started by submit.
+     * If no working thread has started the piece yet, the calling thread runs it,
+     * so the caller never waits for a piece that is queued behind other work.
+     * @param future the Future returned by submit.
+     * @return the result of the piece.
+     * @throws ExecutionException if the piece threw an exception, which is the cause.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public static <V> V getResult(Future<V> future) throws ExecutionException, InterruptedException {
+        if (future instanceof FutureTask) {
+            // does nothing if the piece was started or cancelled
+            ((FutureTask<V>) future).run();
+        }
+        return future.get();
+    }
+
+    /**
+     * Pieces of work of one call. The calling thread and helpers in the pool
+     * claim the pieces one at a time until all of them are claimed.
+     * After the caller has found no more pieces the group is closed,
+     * and helpers that start later have nothing to do.
+     */
+    private static class TaskGroup<V> {
+
+        private final List<? extends Callable<V>> tasks;
+        private final V[] results;
+        private final AtomicInteger next = new AtomicInteger();
+        private int helpersRunning;
+        private boolean closed;
+        private volatile Throwable exception;
+
+        @SuppressWarnings("unchecked")
+        private TaskGroup(List<? extends Callable<V>> tasks) {
+            this.tasks = tasks;
+            results = (V[]) new Object[tasks.size()];
+        }
+
+        private void work() {
+            for (;;) {
+                int index = next.getAndIncrement();
+                if (index >= tasks.size() || exception != null) {
+                    return;
+                }
+                try {
+                    results[index] = tasks.get(index).call();
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private synchronized void fail(Throwable e) {
+            if (exception == null) {
+                exception = e;
+            }
+        }
+
+        /**
+         * Registers a helper that starts to work.
+         * @return false if the group is closed and the helper has nothing to do.
+         */
+        private synchronized boolean helperStarted() {
+            if (closed) {
+                return false;
+            }
+            helpersRunning++;
+            return true;
+        }
+
+        private synchronized void close() {
+            closed = true;
+        }
+
+        private synchronized void helperDone() {
+            helpersRunning--;
+            if (helpersRunning == 0) {
+                notifyAll();
+            }
+        }
+
+        private synchronized boolean isDone() {
+            return helpersRunning == 0;
+        }
+
+        /**
+         * Waits for the helpers, with a timeout or until all of them are done.
+         * An interrupt does not stop the wait, because the results are not complete before that.
+         * @return true if the calling thread was interrupted while waiting.
+         */
+        private synchronized boolean waitDone(long timeout) {
+            boolean interrupted = false;
+            if (timeout > 0) {
+                if (helpersRunning > 0) {
+                    try {
+                        wait(timeout);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } else {
+                while (helpersRunning > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            return interrupted;
+        }
+    }
+
+    private static class Helper<V> extends MultiTaskPool.PoolTask {
+
+        private final TaskGroup<V> group;
+
+        private Helper(MultiTaskPool.TaskContext context, TaskGroup<V> group) {
+            super(context);
+            this.group = group;
+        }
+
+        @Override
+        void run() {
+            if (!group.helperStarted()) {
+                return;
+            }
+            try {
+                group.work();
+            } finally {
+                group.helperDone();
+            }
+        }
+    }
+}
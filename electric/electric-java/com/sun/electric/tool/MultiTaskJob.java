@@ -25,9 +25,11 @@ import com.sun.electric.database.EditingPreferences;
 import com.sun.electric.database.Environment;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * This generic class supports map-reduce scheme of computation on Electric database.
@@ -41,18 +43,19 @@ import java.util.Map;
  * This stage is performed by mergeTaskResults method.
  * 4) Result is consumed on server.
  * This stage is performed by consumer.consume method.
+ * Tasks run on a pool of working threads which is shared by all MultiTaskJobs.
+ * A task may split itself further with runSubTasks.
  */
 public abstract class MultiTaskJob<TaskKey, TaskResult, Result> extends Job {
 
     private transient LinkedHashMap<TaskKey, Task> tasks;
-    private transient ArrayList<Task> allTasks;
     private transient int tasksStarted;
     private transient int tasksDone;
     private transient Environment env;
     private transient EditingPreferences editingPreferences;
     private transient EThread ownerThread;
-    private transient int numberOfRunningThreads;
-    private transient int numberOfFinishedThreads;
+    private transient MultiTaskPool pool;
+    private transient MultiTaskPool.TaskContext taskContext;
     private Consumer<Result> consumer;
 
     private transient ThreadMXBean threadMX;
@@ -117,14 +120,11 @@ public abstract class MultiTaskJob<TaskKey, TaskResult, Result> extends Job {
         env = Environment.getThreadEnvironment();
         editingPreferences = getEditingPreferences();
         ownerThread = (EThread) Thread.currentThread();
-        numberOfRunningThreads = ServerJobManager.getMaxNumberOfThreads();
+        pool = MultiTaskPool.getPool();
+        taskContext = new MultiTaskPool.TaskContext(this, ownerThread, env, editingPreferences);
         tasks = new LinkedHashMap<TaskKey, Task>();
-        allTasks = new ArrayList<Task>();
+        tasksStarted = tasksDone = 0;
         prepareTasks();
-        tasksDone = -numberOfRunningThreads;
-        for (int id = 0; id < numberOfRunningThreads; id++) {
-            new MultiTaskWorkingThread(id).start();
-        }
         waitTasks();
 
         LinkedHashMap<TaskKey, TaskResult> taskResults = new LinkedHashMap<TaskKey, TaskResult>();
@@ -138,7 +138,7 @@ public abstract class MultiTaskJob<TaskKey, TaskResult, Result> extends Job {
         taskResults.clear();
         long endClockTime = System.currentTimeMillis();
         accumulatedCpuTime += (threadMX.getCurrentThreadCpuTime() - startCpuTime);
-        accumulatedUserTime += (threadMX.getCurrentThreadCpuTime() - startUserTime);
+        accumulatedUserTime += (threadMX.getCurrentThreadUserTime() - startUserTime);
         System.out.println(this  + " took " +
                 (endClockTime - startClockTime)/MILLIS_IN_SEC + " sec, cpu=" + accumulatedCpuTime/NANOS_IN_SEC + " user=" + accumulatedUserTime/NANOS_IN_SEC);
         if (consumer != null) {
@@ -158,30 +158,34 @@ public abstract class MultiTaskJob<TaskKey, TaskResult, Result> extends Job {
             throw new IllegalArgumentException();
         }
         tasks.put(taskKey, task);
-        allTasks.add(task);
-        notifyAll();
+        tasksStarted++;
+        pool.submit(task);
     }
 
-    private synchronized Task getTask() {
-        tasksDone++;
-        assert tasksDone <= tasksStarted;
+    /**
+     * Runs finer-grained pieces of work in parallel and waits for all of them.
+     * Should be called from runTask method only, for example to split a task into spatial tiles.
+     * The pieces run on the JobPool in the context of the task, so their CPU time is charged to this job.
+     * @param subTasks the pieces of work.
+     * @return the results of the pieces, in the order of subTasks.
+     * @throws JobException if some piece threw an exception.
+     */
+    public <V> List<V> runSubTasks(List<? extends Callable<V>> subTasks) throws JobException {
         try {
-            while (tasksDone < allTasks.size() && tasksStarted == allTasks.size()) {
-                wait();
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        if (tasksDone == allTasks.size()) {
-            assert tasksStarted == tasksDone;
-            return null;
+            return JobPool.invokeAll(subTasks);
+        } catch (ExecutionException e) {
+            throw new JobException(e.getCause());
         }
-        return allTasks.get(tasksStarted++);
+    }
+
+    synchronized void addTaskTime(long cpuTime, long userTime) {
+        this.accumulatedCpuTime += cpuTime;
+        this.accumulatedUserTime += userTime;
     }
 
     private synchronized void waitTasks() {
         try {
-            while (numberOfFinishedThreads < numberOfRunningThreads) {
+            while (tasksDone < tasksStarted) {
                 wait();
             }
         } catch (InterruptedException e) {
@@ -189,61 +193,36 @@ public abstract class MultiTaskJob<TaskKey, TaskResult, Result> extends Job {
         }
     }
 
-    private synchronized void finishWorkingThread(long cpuTime, long userTime) {
-        this.accumulatedCpuTime += cpuTime;
-        this.accumulatedUserTime += userTime;
-        numberOfFinishedThreads++;
-        notifyAll();
+    private synchronized void finishTask() {
+        tasksDone++;
+        if (tasksDone == tasksStarted) {
+            notifyAll();
+        }
     }
 
-    private class Task {
+    private class Task extends MultiTaskPool.PoolTask {
 
 //        private final String taskName;
         private final TaskKey taskKey;
         private TaskResult taskResult;
 
         private Task(String taskName, TaskKey taskKey) {
+            super(taskContext);
 //            this.taskName = taskName;
             this.taskKey = taskKey;
         }
-    }
-
-    class MultiTaskWorkingThread extends EThread {
-
-        private MultiTaskWorkingThread(int id) {
-            super("WorkingThread-" + id);
-            userInterface = new ServerJobManager.UserInterfaceRedirect(ownerThread.ejob.jobKey);
-            ejob = ownerThread.ejob;
-            isServerThread = ownerThread.isServerThread;
-            database = ownerThread.database;
-        }
 
         @Override
-        public void run() {
-            long accumulatedTime = 0;
-            Environment.setThreadEnvironment(env);
-            EditingPreferences.lowLevelSetThreadLocalEditingPreferences(editingPreferences);
-            for (;;) {
-                Task t = getTask();
-                if (t == null) {
-                    break;
-                }
-                ;
-                try {
-                    long startTime = System.currentTimeMillis();
-                    t.taskResult = runTask(t.taskKey);
-                    long endTime = System.currentTimeMillis();
-                    accumulatedTime += (endTime - startTime);
-                } catch (Throwable e) {
-                    e.getStackTrace();
-                    e.printStackTrace(System.out);
-                    e.printStackTrace();
-                }
+        void run() {
+            try {
+                taskResult = runTask(taskKey);
+            } catch (Throwable e) {
+                e.getStackTrace();
+                e.printStackTrace(System.out);
+                e.printStackTrace();
+            } finally {
+                finishTask();
             }
-            long cpuTime = threadMX.getCurrentThreadCpuTime();
-            long userTime = threadMX.getCurrentThreadUserTime();
-            System.out.println(getName() + " clock=" + accumulatedTime/MILLIS_IN_SEC + " cpu=" + cpuTime/NANOS_IN_SEC + " user=" + userTime/NANOS_IN_SEC);
-            finishWorkingThread(cpuTime, userTime);
         }
     }
 }
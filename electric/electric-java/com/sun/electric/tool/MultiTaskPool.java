@@ -0,0 +1,258 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MultiTaskPool.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Environment;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.tool.util.concurrent.datastructures.WorkStealingStructure;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool of working threads shared by all MultiTaskJobs and by JobPool.
+ * The threads are started on first use and live as long as the server.
+ * Each working thread owns a queue of a WorkStealingStructure.
+ * Work submitted by a working thread goes to its own queue and idle threads steal from others,
+ * so tasks of uneven size keep all threads busy.
+ */
+class MultiTaskPool {
+
+    private static MultiTaskPool pool;
+
+    private final WorkStealingStructure<PoolTask> queue;
+    /** One permit for each task in the queue. */
+    private final Semaphore available = new Semaphore(0);
+    private final ThreadMXBean threadMX = ManagementFactory.getThreadMXBean();
+    private final int numThreads;
+
+    /**
+     * Returns the shared pool, starting its threads on first use.
+     * @return the shared pool.
+     */
+    static synchronized MultiTaskPool getPool() {
+        if (pool == null) {
+            int numThreads = ServerJobManager.getMaxNumberOfThreads();
+            if (numThreads <= 0) {
+                // the server was not initialized, as in batch tools and tests
+                numThreads = ServerJobManager.getDefaultNumberOfThreads();
+            }
+            pool = new MultiTaskPool(numThreads);
+        }
+        return pool;
+    }
+
+    private MultiTaskPool(int numThreads) {
+        this.numThreads = numThreads;
+        queue = new WorkStealingStructure<PoolTask>(numThreads);
+        for (int id = 0; id < numThreads; id++) {
+            new PoolThread(id).start();
+        }
+    }
+
+    /**
+     * Returns the number of working threads.
+     * @return the number of working threads.
+     */
+    int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Schedules a task on the pool.
+     * When called from a working thread the task goes to its own queue.
+     * @param task the task to run.
+     */
+    void submit(PoolTask task) {
+        queue.add(task);
+        available.release();
+    }
+
+    /**
+     * Runs one queued task in the current working thread, if there is one.
+     * Used by working threads that wait for subtasks so that they help rather than block.
+     * @return true if a task was run.
+     */
+    boolean runQueuedTask() {
+        if (!available.tryAcquire()) {
+            return false;
+        }
+        ((PoolThread) Thread.currentThread()).runTask(take());
+        return true;
+    }
+
+    /**
+     * Removes a task from the queues after a permit was acquired.
+     * A task exists but may be briefly invisible while another thread steals it.
+     */
+    private PoolTask take() {
+        for (;;) {
+            PoolTask task = queue.remove();
+            if (task != null) {
+                return task;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Context in which a PoolTask runs: the EThread state, Environment and EditingPreferences
+     * of the thread that submitted it, and the MultiTaskJob charged for its CPU time.
+     */
+    static class TaskContext {
+
+        /** the MultiTaskJob charged for CPU time, or null */
+        final MultiTaskJob<?, ?, ?> chargedJob;
+        final EJob ejob;
+        final boolean isServerThread;
+        final EDatabase database;
+        final Environment env;
+        final EditingPreferences editingPreferences;
+
+        TaskContext(MultiTaskJob<?, ?, ?> chargedJob, EThread ownerThread, Environment env, EditingPreferences editingPreferences) {
+            this.chargedJob = chargedJob;
+            ejob = ownerThread != null ? ownerThread.ejob : null;
+            isServerThread = ownerThread != null && ownerThread.isServerThread;
+            database = ownerThread != null ? ownerThread.database : null;
+            this.env = env;
+            this.editingPreferences = editingPreferences;
+        }
+
+        /**
+         * Returns the context of the current thread.
+         * In a working thread this is the context of the running task.
+         * @return the context of the current thread.
+         */
+        static TaskContext current() {
+            Thread thread = Thread.currentThread();
+            if (thread instanceof PoolThread) {
+                TaskContext context = ((PoolThread) thread).context;
+                if (context != null) {
+                    return context;
+                }
+            }
+            EThread ownerThread = thread instanceof EThread ? (EThread) thread : null;
+            return new TaskContext(null, ownerThread, Environment.getThreadEnvironment(), EditingPreferences.getInstance());
+        }
+    }
+
+    /**
+     * Unit of work in the pool.
+     * A PoolTask runs in the context of the thread that submitted it.
+     */
+    abstract static class PoolTask {
+
+        final TaskContext context;
+
+        PoolTask(TaskContext context) {
+            this.context = context;
+        }
+
+        abstract void run();
+    }
+
+    /**
+     * Working thread of the pool.
+     * Before each task it takes the EThread state, Environment and EditingPreferences
+     * of the task's context, and charges the CPU time it spends to the MultiTaskJob of that context.
+     */
+    class PoolThread extends EThread {
+
+        private TaskContext context;
+        private EJob redirectedEJob;
+        private ServerJobManager.UserInterfaceRedirect redirectedUserInterface;
+        private long lastCpuTime;
+        private long lastUserTime;
+
+        private PoolThread(int id) {
+            super("WorkingThread-" + id);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            queue.registerThread();
+            for (;;) {
+                available.acquireUninterruptibly();
+                runTask(take());
+            }
+        }
+
+        /**
+         * Runs a task in its context, then restores the previous context.
+         * The previous context is not empty when this thread helps while waiting for subtasks.
+         */
+        private void runTask(PoolTask task) {
+            TaskContext oldContext = context;
+            EJob oldEJob = ejob;
+            boolean oldIsServerThread = isServerThread;
+            EDatabase oldDatabase = database;
+            ServerJobManager.UserInterfaceRedirect oldUserInterface = userInterface;
+            enter(task.context);
+            Environment oldEnv = Environment.setThreadEnvironment(task.context.env);
+            EditingPreferences oldEp = EditingPreferences.lowLevelSetThreadLocalEditingPreferences(task.context.editingPreferences);
+            try {
+                task.run();
+            } catch (Throwable e) {
+                e.printStackTrace(System.out);
+                e.printStackTrace();
+            } finally {
+                EditingPreferences.lowLevelSetThreadLocalEditingPreferences(oldEp);
+                Environment.setThreadEnvironment(oldEnv);
+                enter(oldContext);
+                ejob = oldEJob;
+                isServerThread = oldIsServerThread;
+                database = oldDatabase;
+                userInterface = oldUserInterface;
+            }
+        }
+
+        /**
+         * Charges the CPU time spent since the last switch to the current context and switches to a new one.
+         */
+        private void enter(TaskContext newContext) {
+            long cpuTime = threadMX.getCurrentThreadCpuTime();
+            long userTime = threadMX.getCurrentThreadUserTime();
+            if (context != null && context.chargedJob != null) {
+                context.chargedJob.addTaskTime(cpuTime - lastCpuTime, userTime - lastUserTime);
+            }
+            lastCpuTime = cpuTime;
+            lastUserTime = userTime;
+            if (newContext != null && newContext != context) {
+                ejob = newContext.ejob;
+                isServerThread = newContext.isServerThread;
+                database = newContext.database;
+                if (ejob == null) {
+                    userInterface = null;
+                } else {
+                    if (redirectedEJob != ejob) {
+                        redirectedEJob = ejob;
+                        redirectedUserInterface = new ServerJobManager.UserInterfaceRedirect(ejob.jobKey);
+                    }
+                    userInterface = redirectedUserInterface;
+                }
+            }
+            context = newContext;
+        }
+    }
+}
@@ -48,6 +48,7 @@ import java.io.OutputStream;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Map;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Simple client for regressions.
@@ -65,7 +66,8 @@ public class Regression {
             OutputStream outStream = process.getOutputStream();
             InputStream errStream = process.getErrorStream();
             new ExecProcessReader(errStream).start();
-            reader = new IdReader(new DataInputStream(new BufferedInputStream(inStream)), IdManager.stdIdManager);
+            InputStream bufferedInStream = new BufferedInputStream(inStream);
+            reader = new IdReader(new DataInputStream(bufferedInStream), IdManager.stdIdManager);
             int protocolVersion = reader.readInt();
             if (protocolVersion != Job.PROTOCOL_VERSION) {
                 System.out.println("Client's protocol version " + Job.PROTOCOL_VERSION + " is incompatible with Server's protocol version " + protocolVersion);
@@ -76,6 +78,10 @@ public class Regression {
                 return false;
             }
             int connectionId = reader.readInt();
+            if (reader.readBoolean()) {
+                // the rest of the stream is compressed
+                reader = new IdReader(new DataInputStream(new InflaterInputStream(bufferedInStream)), IdManager.stdIdManager);
+            }
             System.out.format("%1$tT.%1$tL ", Calendar.getInstance());
             System.out.println("Connected id=" + connectionId);
 
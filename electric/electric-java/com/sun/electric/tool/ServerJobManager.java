@@ -25,6 +25,7 @@ import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.EDatabase;
 import com.sun.electric.database.hierarchy.Library;
 import com.sun.electric.Main;
+import com.sun.electric.StartupPrefs;
 import com.sun.electric.database.id.CellId;
 import com.sun.electric.database.id.IdWriter;
 import com.sun.electric.database.id.LibId;
@@ -165,7 +166,7 @@ public class ServerJobManager {
         lock();
         try {
             int connectionId = serverConnections.size();
-            conn = new StreamClient(connectionId, System.in, stdout);
+            conn = new StreamClient(connectionId, System.in, stdout, StartupPrefs.isCompactSnapshotTransport());
             serverConnections.add(conn);
         } finally {
             unlock();
@@ -417,7 +418,8 @@ public class ServerJobManager {
                 StreamClient conn;
                 lock();
                 try {
-                    conn = new StreamClient(connectionId, socket.getInputStream(), socket.getOutputStream());
+                    conn = new StreamClient(connectionId, socket.getInputStream(), socket.getOutputStream(),
+                        StartupPrefs.isCompactSnapshotTransport());
                     serverConnections.add(conn);
                 } finally {
                     unlock();
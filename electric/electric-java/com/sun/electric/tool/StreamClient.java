@@ -37,11 +37,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * Class for maintaining Connection on Server side.
  */
 public class StreamClient extends Client {
+    /** size of the buffer of the compressor of compact snapshots */
+    private static final int COMPRESSION_BUFFER_SIZE = 1 << 16;
+    private final DataOutputStream headerOut;
+    private final boolean compact;
     private final IdWriter writer;
     private Snapshot currentSnapshot = EDatabase.serverDatabase().getInitialSnapshot();
     private final ServerEventDispatcher dispatcher;
@@ -50,7 +56,26 @@ public class StreamClient extends Client {
     private final static int STACK_SIZE_READER = 0/*isOSMac()?0:32*(1 << 10)*/;
 
     StreamClient(int connectionId, InputStream inputStream, OutputStream outputStream) {
+        this(connectionId, inputStream, outputStream, false);
+    }
+
+    /**
+     * Creates the connection with a client.
+     * When the transport is compact, everything after the header is compressed,
+     * and consecutive SnapshotEvents are sent as the last one of them.
+     * @param connectionId the id of the connection.
+     * @param inputStream the stream from the client, or null.
+     * @param outputStream the stream to the client.
+     * @param compact true to use the compact transport.
+     */
+    StreamClient(int connectionId, InputStream inputStream, OutputStream outputStream, boolean compact) {
         super(connectionId);
+        this.compact = compact;
+        headerOut = new DataOutputStream(outputStream);
+        if (compact) {
+            // sync flush, so that each flush of the writer sends whole events
+            outputStream = new DeflaterOutputStream(outputStream, new Deflater(Deflater.BEST_SPEED), COMPRESSION_BUFFER_SIZE, true);
+        }
         writer = new IdWriter(IdManager.stdIdManager, new DataOutputStream(outputStream));
         dispatcher = new ServerEventDispatcher();
         reader = inputStream != null ? new ClientReader(inputStream) : null;
@@ -58,6 +83,14 @@ public class StreamClient extends Client {
 
     void start() { dispatcher.start(); }
 
+    /**
+     * Method to write the stream to the client in this thread, up to the ShutdownEvent.
+     * The events are those queued after this StreamClient was created.
+     */
+    void writeEvents() throws IOException, InterruptedException {
+        dispatcher.writeEvents();
+    }
+
     class ServerEventDispatcher extends Thread {
         private ServerEvent lastEvent = Client.getQueueTail();
 
@@ -70,28 +103,7 @@ public class StreamClient extends Client {
             try {
                 if (reader != null)
                     reader.start();
-                writer.writeInt(Job.PROTOCOL_VERSION);
-                writer.writeInt(connectionId);
-                writeSnapshot(lastEvent);
-                for (;;) {
-                    writer.flush();
-                    lastEvent = Client.getEvent(lastEvent);
-                    for (;;) {
-                        if (lastEvent.getSnapshot() != currentSnapshot) {
-                            assert lastEvent instanceof Client.EJobEvent || lastEvent instanceof Client.SnapshotEvent;
-                            writeSnapshot(lastEvent);
-                        }
-                        lastEvent.write(writer);
-                        if (lastEvent instanceof ShutdownEvent) {
-                            writer.close();
-                            return;
-                        }
-                        ServerEvent event = lastEvent.getNext();
-                        if (event == null)
-                            break;
-                        lastEvent = event;
-                    }
-                }
+                writeEvents();
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
@@ -99,6 +111,38 @@ public class StreamClient extends Client {
                 Job.serverJobManager.connectionClosed();
             }
         }
+
+        private void writeEvents() throws IOException, InterruptedException {
+            headerOut.writeInt(Job.PROTOCOL_VERSION);
+            headerOut.writeInt(connectionId);
+            headerOut.writeBoolean(compact);
+            headerOut.flush();
+            writeSnapshot(lastEvent);
+            for (;;) {
+                writer.flush();
+                lastEvent = Client.getEvent(lastEvent);
+                for (;;) {
+                    if (compact) {
+                        // a SnapshotEvent only shows the progress of a Job, so it is superseded by the next one
+                        while (lastEvent instanceof Client.SnapshotEvent && lastEvent.getNext() instanceof Client.SnapshotEvent)
+                            lastEvent = lastEvent.getNext();
+                    }
+                    if (lastEvent.getSnapshot() != currentSnapshot) {
+                        assert lastEvent instanceof Client.EJobEvent || lastEvent instanceof Client.SnapshotEvent;
+                        writeSnapshot(lastEvent);
+                    }
+                    lastEvent.write(writer);
+                    if (lastEvent instanceof ShutdownEvent) {
+                        writer.close();
+                        return;
+                    }
+                    ServerEvent event = lastEvent.getNext();
+                    if (event == null)
+                        break;
+                    lastEvent = event;
+                }
+            }
+        }
     }
 
     private void writeSnapshot(ServerEvent event) throws IOException {
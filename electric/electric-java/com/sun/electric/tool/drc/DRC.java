@@ -31,10 +31,12 @@ import com.sun.electric.database.network.Netlist;
 import com.sun.electric.database.constraint.Layout;
 import com.sun.electric.database.geometry.*;
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
 import com.sun.electric.database.hierarchy.Library;
 import com.sun.electric.database.hierarchy.HierarchyEnumerator;
 import com.sun.electric.database.hierarchy.Nodable;
 import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.id.PrimitiveNodeId;
 import com.sun.electric.database.prototype.NodeProto;
 import com.sun.electric.database.text.PrefPackage;
 import com.sun.electric.database.text.TextUtils;
@@ -78,6 +80,7 @@ public class DRC extends Listener
      // Client static variables
     /** for logging incremental errors */                    private static ErrorLogger errorLoggerIncremental = ErrorLogger.newInst("DRC (incremental)", true);
 	/** map of cells and their objects to DRC */		     private static Map<Cell,Set<Geometric>> cellsToCheck = new HashMap<Cell,Set<Geometric>>();
+	/** map of cells and their changed regions to DRC */	 private static Map<Cell,List<Rectangle2D>> regionsToCheck = new HashMap<Cell,List<Rectangle2D>>();
     /** flag to show that incremental DRC is running */    private static boolean incrementalRunning = false;
 
    // Server static variables
@@ -1310,11 +1313,32 @@ public class DRC extends Listener
 		}
     }
 
+    private static void includeRegions(Cell cell, List<Rectangle2D> regions)
+	{
+        if (regions.isEmpty()) return;
+        assert !THREAD_SAFE_DRC || Job.isClientThread();
+        synchronized (regionsToCheck)
+		{
+			List<Rectangle2D> cellRegions = regionsToCheck.get(cell);
+			if (cellRegions == null)
+			{
+				cellRegions = new ArrayList<Rectangle2D>();
+				regionsToCheck.put(cell, cellRegions);
+			}
+			cellRegions.addAll(regions);
+		}
+    }
+
     private static void doIncrementalDRCTask(DRCPreferences dp, Cell cellToCheck)
 	{
 		if (!dp.incrementalDRC) return;
         assert !THREAD_SAFE_DRC || Job.isClientThread();
 		if (incrementalRunning) return;
+        if (dp.incrementalDRCInRegions)
+        {
+            doRegionDRCTask(dp, cellToCheck);
+            return;
+        }
 
 		Set<Geometric> cellSet = null;
 
@@ -1358,6 +1382,190 @@ public class DRC extends Listener
 		}
 	}
 
+    /**
+     * Method to check again the changed regions of a cell, grown by the worst spacing rule.
+     * Errors of the incremental logger in these regions are removed, the others are kept.
+     */
+    private static void doRegionDRCTask(DRCPreferences dp, Cell cellToCheck)
+	{
+		List<Rectangle2D> regions = null;
+
+		// get a cell to check
+		synchronized (regionsToCheck)
+		{
+			if (cellToCheck != null)
+				regions = regionsToCheck.get(cellToCheck);
+			if (regions == null && regionsToCheck.size() > 0)
+			{
+				cellToCheck = regionsToCheck.keySet().iterator().next();
+				regions = regionsToCheck.get(cellToCheck);
+			}
+			if (regions != null)
+				regionsToCheck.remove(cellToCheck);
+		}
+
+		if (cellToCheck == null || regions == null) return; // nothing to do
+
+		// don't check if cell not in database anymore
+		if (!cellToCheck.isLinked()) return;
+		// Handling clipboard case (one type of hidden libraries)
+		if (cellToCheck.getLibrary().isHidden()) return;
+
+		// objects near the changes may have had errors with the changed objects
+		List<Rectangle2D> haloRegions = growRegions(regions, getWorstSpacingDistance(cellToCheck.getTechnology(), -1));
+
+		// cleaning previous errors in the regions, or on objects that are gone
+		List<ErrorLogger.MessageLog> oldLogs = getLogsInRegions(errorLoggerIncremental, cellToCheck, haloRegions);
+		if (!oldLogs.isEmpty())
+			Job.updateIncrementalDRCErrors(cellToCheck, null, oldLogs);
+
+		// check everything in the regions
+		Set<Geometric> geomsToCheck = new HashSet<Geometric>();
+		for (Rectangle2D region : haloRegions)
+		{
+			for (Iterator<Geometric> it = cellToCheck.searchIterator(region); it.hasNext(); )
+				geomsToCheck.add(it.next());
+		}
+		if (geomsToCheck.isEmpty())
+		{
+			// everything in the regions was deleted, go to the next cell
+			doRegionDRCTask(dp, null);
+			return;
+		}
+		Geometric [] objectsToCheck = geomsToCheck.toArray(new Geometric[geomsToCheck.size()]);
+		new CheckDRCIncrementally(dp, cellToCheck, objectsToCheck, cellToCheck.getTechnology().isScaleRelevant());
+	}
+
+    /**
+     * Method to grow the changed regions of a cell by the worst spacing rule.
+     * The worst spacing may be negative when no rule was found, which would shrink the regions,
+     * so it is then ignored.
+     * @param regions the changed regions.
+     * @param worstSpacing the worst spacing rule of the technology.
+     * @return the grown regions.
+     */
+    static List<Rectangle2D> growRegions(List<Rectangle2D> regions, double worstSpacing)
+    {
+        double halo = Math.max(0, worstSpacing);
+        List<Rectangle2D> haloRegions = new ArrayList<Rectangle2D>(regions.size());
+        for (Rectangle2D region : regions)
+        {
+            haloRegions.add(new Rectangle2D.Double(region.getMinX() - halo, region.getMinY() - halo,
+                region.getWidth() + halo*2, region.getHeight() + halo*2));
+        }
+        return haloRegions;
+    }
+
+    /**
+     * Method to find the errors of a cell which must be checked again.
+     * These are the errors which touch one of the regions, and the errors on objects that are gone.
+     * The other errors of the cell are kept.
+     * @param logger the error logger.
+     * @param cell the cell to examine.
+     * @param regions the regions which are checked again.
+     * @return the errors to remove.
+     */
+    static List<ErrorLogger.MessageLog> getLogsInRegions(ErrorLogger logger, Cell cell, List<Rectangle2D> regions)
+    {
+        EDatabase database = cell.getDatabase();
+        List<ErrorLogger.MessageLog> logs = new ArrayList<ErrorLogger.MessageLog>();
+        for (ErrorLogger.MessageLog log : logger.getAllLogs(cell))
+        {
+            boolean inRegion = !log.isValid(database);
+            for (int i = 0; i < regions.size() && !inRegion; i++)
+                inRegion = log.intersects(database, cell, regions.get(i));
+            if (inRegion)
+                logs.add(log);
+        }
+        return logs;
+    }
+
+    /**
+     * Method to find the regions of a cell changed between two snapshots.
+     * There is one region for every node or arc that was added, removed or modified:
+     * its bounds before the change and its bounds after the change.
+     * Arc bounds include the largest layer extension of the arc, so they may be larger than the geometry.
+     * @param oldSnapshot database snapshot before the change.
+     * @param newSnapshot database snapshot after the change.
+     * @param cellId the cell to examine.
+     * @return the changed regions of the cell, empty if the cell was deleted.
+     */
+    static List<Rectangle2D> getChangedRegions(Snapshot oldSnapshot, Snapshot newSnapshot, CellId cellId)
+    {
+        List<Rectangle2D> regions = new ArrayList<Rectangle2D>();
+        CellBackup oldBackup = oldSnapshot.getCell(cellId);
+        CellBackup newBackup = newSnapshot.getCell(cellId);
+        if (newBackup == null) return regions;
+        CellRevision oldRevision = oldBackup != null ? oldBackup.cellRevision : null;
+        CellRevision newRevision = newBackup.cellRevision;
+        long[] gridCoords = new long[4];
+
+        for (ImmutableNodeInst n : newRevision.nodes)
+        {
+            ImmutableNodeInst oldN = oldRevision != null ? oldRevision.getNodeById(n.nodeId) : null;
+            if (oldN == n) continue;
+            addNodeRegion(newSnapshot, n, gridCoords, regions);
+            if (oldN != null)
+                addNodeRegion(oldSnapshot, oldN, gridCoords, regions);
+        }
+        for (ImmutableArcInst a : newRevision.arcs)
+        {
+            ImmutableArcInst oldA = oldRevision != null ? oldRevision.getArcById(a.arcId) : null;
+            if (oldA == a) continue;
+            addArcRegion(newSnapshot, a, gridCoords, regions);
+            if (oldA != null)
+                addArcRegion(oldSnapshot, oldA, gridCoords, regions);
+        }
+
+        // deleted objects
+        if (oldRevision != null)
+        {
+            for (ImmutableNodeInst n : oldRevision.nodes)
+            {
+                if (newRevision.getNodeById(n.nodeId) == null)
+                    addNodeRegion(oldSnapshot, n, gridCoords, regions);
+            }
+            for (ImmutableArcInst a : oldRevision.arcs)
+            {
+                if (newRevision.getArcById(a.arcId) == null)
+                    addArcRegion(oldSnapshot, a, gridCoords, regions);
+            }
+        }
+        return regions;
+    }
+
+    private static void addNodeRegion(Snapshot snapshot, ImmutableNodeInst n, long[] gridCoords, List<Rectangle2D> regions)
+    {
+        if (n.protoId instanceof CellId)
+        {
+            ERectangle b = snapshot.getCellBounds((CellId)n.protoId);
+            if (b == null) return;
+            gridCoords[0] = b.getGridMinX();
+            gridCoords[1] = b.getGridMinY();
+            gridCoords[2] = b.getGridMaxX();
+            gridCoords[3] = b.getGridMaxY();
+            n.orient.rectangleBounds(gridCoords);
+            gridCoords[0] += n.anchor.getGridX();
+            gridCoords[1] += n.anchor.getGridY();
+            gridCoords[2] += n.anchor.getGridX();
+            gridCoords[3] += n.anchor.getGridY();
+        } else
+        {
+            PrimitiveNode pn = snapshot.techPool.getPrimitiveNode((PrimitiveNodeId)n.protoId);
+            if (pn == null) return;
+            pn.genBounds(n, gridCoords);
+        }
+        regions.add(ERectangle.fromGrid(gridCoords[0], gridCoords[1], gridCoords[2] - gridCoords[0], gridCoords[3] - gridCoords[1]));
+    }
+
+    private static void addArcRegion(Snapshot snapshot, ImmutableArcInst a, long[] gridCoords, List<Rectangle2D> regions)
+    {
+        ArcProto ap = snapshot.techPool.getArcProto(a.protoId);
+        if (ap == null) return;
+        a.makeGridBox(gridCoords, true, true, a.getGridExtendOverMin() + ap.getMaxLayerExtend().getGrid());
+        regions.add(ERectangle.fromGrid(gridCoords[0], gridCoords[1], gridCoords[2] - gridCoords[0], gridCoords[3] - gridCoords[1]));
+    }
+
    /**
      * Handles database changes of a Job.
      * @param oldSnapshot database snapshot before Job.
@@ -1371,6 +1579,10 @@ public class DRC extends Listener
             for (CellId cellId: newSnapshot.getChangedCells(oldSnapshot)) {
                 Cell cell = Cell.inCurrentThread(cellId);
                 if (cell == null) continue;
+                if (dp.incrementalDRCInRegions) {
+                    includeRegions(cell, getChangedRegions(oldSnapshot, newSnapshot, cellId));
+                    continue;
+                }
                 CellBackup oldBackup = oldSnapshot.getCell(cellId);
                 CellRevision oldRevision = oldBackup != null ? oldBackup.cellRevision : null;
                 for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); ) {
@@ -2097,7 +2309,7 @@ public class DRC extends Listener
      * @param errorLog error logger
      * @param cell cell to check
      */
-    private static void checkNetworks(ErrorLogger errorLog, Cell cell, boolean isLayout) {
+    static void checkNetworks(ErrorLogger errorLog, Cell cell, boolean isLayout) {
         final int errorSortNetworks = 0;
         final int errorSortNodes = 1;
         Map<NodeProto,ArrayList<NodeInst>> strangeNodes = null;
@@ -2215,6 +2427,12 @@ public class DRC extends Listener
         @BooleanPref(node = DRC_NODE, key = "IncrementalDRCOn", factory = false)
         public boolean incrementalDRC;
 
+        /** Whether incremental DRC checks again only the changed regions of a cell, keeping the errors elsewhere.
+         * Otherwise the changed objects are checked and all previous errors of the cell are removed.
+         * The default is "false". */
+        @BooleanPref(node = DRC_NODE, key = "IncrementalDRCInRegions", factory = false)
+        public boolean incrementalDRCInRegions;
+
         /** Whether DRC violations should be shown while nodes and arcs are dragged. The default is "true". */
         @BooleanPref(node = DRC_NODE, key = "InteractiveDRCDrag", factory = true)
         public boolean interactiveDRCDrag;
@@ -2257,6 +2475,11 @@ public class DRC extends Listener
         @BooleanPref(node=DRC_NODE, key = "MinMultiThread", factory = false)
         public boolean isMultiThreaded;
 
+        /** Whether multi-threaded DRC checks the cells of the hierarchy in parallel instead of splitting by layer.
+         * The default is "false". */
+        @BooleanPref(node=DRC_NODE, key = "ParallelHierarchy", factory = false)
+        public boolean isParallelHierarchy;
+
         public Map<Technology,ECoord> resolutions = new HashMap<Technology,ECoord>();
         public Map<Technology,Double> angleSteps = new HashMap<Technology,Double>();
         public Map<Technology,String> overrides = new HashMap<Technology,String>();
@@ -0,0 +1,129 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MTDRCHierarchyTool.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.drc;
+
+import com.sun.electric.database.geometry.GeometryHandler;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.tool.Consumer;
+import com.sun.electric.tool.JobException;
+import com.sun.electric.tool.MultiTaskJob;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.util.ElapseTimer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to run the hierarchical "quick" DRC with the cells of the hierarchy checked in parallel.
+ * Each cell is a task that starts as soon as all its subcells are checked, so independent cells
+ * are checked concurrently, bottom-up. The nodes and arcs of a cell, including the pairs of
+ * interacting instances, are split in subtasks.
+ * The result is the same as the one of Quick.checkDesignRules on the whole cell.
+ */
+public class MTDRCHierarchyTool extends MultiTaskJob<Cell, Integer, MTDRCTool.MTDRCResult>
+{
+    private DRC.DRCPreferences dp;
+    private Cell topCell;
+    private transient ElapseTimer globalStartTime;
+    private transient ErrorLogger errorLog;
+    private transient Quick quick;
+    private transient Map<Cell,Quick.CellCheck> checks;
+
+    public MTDRCHierarchyTool(DRC.DRCPreferences dp, Cell c, Consumer<MTDRCTool.MTDRCResult> consumer)
+    {
+        super("Design-Rule Hierarchical Check " + c, DRC.getDRCTool(), consumer);
+        this.dp = dp;
+        this.topCell = c;
+    }
+
+    @Override
+    public void prepareTasks()
+    {
+        globalStartTime = ElapseTimer.createInstance().start();
+        errorLog = DRC.getDRCErrorLogger(true, null);
+        DRC.checkNetworks(errorLog, topCell, true);
+        quick = Quick.prepareParallelCheck(errorLog, topCell, this, dp, GeometryHandler.GHMode.ALGO_SWEEP);
+        if (quick == null) return;
+
+        // start with the cells that have no subcells to check
+        List<Quick.CellCheck> order = quick.planHierarchicalCheck();
+        checks = new HashMap<Cell,Quick.CellCheck>();
+        for (Quick.CellCheck check : order)
+            checks.put(check.cell, check);
+        for (Quick.CellCheck check : order)
+        {
+            if (check.pendingSubCells == 0)
+                startTask(check.cell.describe(false), check.cell);
+        }
+    }
+
+    @Override
+    public Integer runTask(Cell taskKey) throws JobException
+    {
+        Quick.CellCheck check = checks.get(taskKey);
+        check.numMsgFound = -1;
+        try
+        {
+            check.numMsgFound = quick.checkCellInParallel(check, this);
+        } finally
+        {
+            // the parents are started even if this cell failed, they will see the failure
+            List<Cell> ready = new ArrayList<Cell>();
+            synchronized (checks)
+            {
+                for (Quick.CellCheck parent : check.parents)
+                {
+                    parent.pendingSubCells--;
+                    if (parent.pendingSubCells == 0)
+                        ready.add(parent.cell);
+                }
+            }
+            for (Cell cell : ready)
+                startTask(cell.describe(false), cell);
+        }
+        return Integer.valueOf(check.numMsgFound);
+    }
+
+    @Override
+    public MTDRCTool.MTDRCResult mergeTaskResults(Map<Cell,Integer> taskResults)
+    {
+        boolean runFine = quick != null && taskResults.size() == checks.size();
+        for (Integer numMsgFound : taskResults.values())
+        {
+            if (numMsgFound.intValue() < 0)
+                runFine = false;
+        }
+        if (quick != null)
+            quick.finishParallelCheck(runFine);
+        errorLog.termLogging(true);
+        globalStartTime.end();
+
+        int numErrors = errorLog.getNumErrors();
+        int numWarnings = errorLog.getNumWarnings();
+        if (quick != null)
+            System.out.println("Finished " + ((runFine)?"without":"with") + " problems, " + checks.size() + " cells.");
+        System.out.println(numErrors + " errors and " + numWarnings + " warnings found (took " + globalStartTime + ")");
+        return new MTDRCTool.MTDRCResult(numErrors, numWarnings, runFine, null, null, null, null, null);
+    }
+}
@@ -46,6 +46,8 @@ import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.*;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobException;
+import com.sun.electric.tool.MultiTaskJob;
 import com.sun.electric.tool.user.ErrorLogger;
 import com.sun.electric.util.ElapseTimer;
 import com.sun.electric.util.math.DBMath;
@@ -58,6 +60,7 @@ import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * This is the "quick" DRC which does full hierarchical examination of the circuit.
@@ -88,6 +91,10 @@ import java.util.*;
  * building these arrays is quick (1 second for a million-transistor chip) and the memory requirement
  * is not excessive (8 megabytes for a million-transistor chip).  It uses the CheckInst and CheckProto
  * objects.
+ * <P>
+ * The same numbering lets the cells of the hierarchy be checked in parallel (see MTDRCHierarchyTool).
+ * Cells are checked bottom-up, a cell as soon as all its subcells are done, and the nodes and arcs
+ * of one cell are split in chunks that are checked by workers sharing the prepared data.
  * @author  Steven Rubin, Gilda Garreton
  */
 
@@ -105,20 +112,44 @@ public class Quick
 	private HashMap<Layer,DRCTemplate> enclosedAreaLayerMap = new HashMap<Layer,DRCTemplate>();    // For enclosed area checking
     private HashMap<Layer,DRCTemplate> spacingLayerMap = new HashMap<Layer,DRCTemplate>();    // to detect holes using the area function
     private HashMap<Layer,DRCTemplate> slotSizeLayerMap = new HashMap<Layer,DRCTemplate>();    // For max length checking
-    private DRC.CheckDRCJob job; // Reference to running job
+    private Job job; // Reference to running job
     private DRC.DRCPreferences dp;
 	private HashMap<Cell,Cell> cellsMap = new HashMap<Cell,Cell>(); // for cell caching
     private HashMap<Geometric,Geometric> nodesMap = new HashMap<Geometric,Geometric>(); // for node caching
     private GeometryHandler.GHMode mergeMode = GeometryHandler.GHMode.ALGO_SWEEP; // .ALGO_QTREE;
     private Map<Layer,NodeInst> od2Layers = new HashMap<Layer,NodeInst>(3);  /** to control OD2 combination in the same die according to foundries */
 
-	public Quick(DRC.CheckDRCJob j, DRC.DRCPreferences dp, GeometryHandler.GHMode mode)
+	public Quick(Job j, DRC.DRCPreferences dp, GeometryHandler.GHMode mode)
 	{
 		this.job = j;
         this.dp = dp;
         this.mergeMode = mode;
 	}
 
+	/**
+	 * Constructor of a worker of the parallel hierarchical check.
+	 * The worker shares the prepared data of "shared" and has its own node cache and "tiny" node state.
+	 * @param shared the Quick that prepared the check.
+	 * @param instanceInteractionMap the cache of instance interactions of the cell being checked.
+	 */
+	private Quick(Quick shared, Map<NodeInst,List<InstanceInter>> instanceInteractionMap)
+	{
+		this(shared.job, shared.dp, shared.mergeMode);
+		this.instanceInteractionMap = instanceInteractionMap;
+		cellLayersCon = shared.cellLayersCon;
+		checkInsts = shared.checkInsts;
+		checkProtos = shared.checkProtos;
+		networkLists = shared.networkLists;
+		minAreaLayerMap = shared.minAreaLayerMap;
+		enclosedAreaLayerMap = shared.enclosedAreaLayerMap;
+		spacingLayerMap = shared.spacingLayerMap;
+		slotSizeLayerMap = shared.slotSizeLayerMap;
+		od2Layers = shared.od2Layers;
+		topCell = shared.topCell;
+		reportInfo = shared.reportInfo;
+		validLayers = shared.validLayers;
+	}
+
     /** a NodeInst that is too tiny for its connection. */			private NodeInst tinyNodeInst;
 	/** the other Geometric in "tiny" errors. */					private Geometric tinyGeometric;
 	/** for tracking the time of good DRC. */						private HashSet<Cell> goodSpacingDRCDate = new HashSet<Cell>();
@@ -160,16 +191,70 @@ public class Quick
     // returns the number of errors found
 	private void doCheck(ErrorLogger errorLog, Cell cell, Geometric[] geomsToCheck, boolean[] validity,
                          Rectangle2D bounds, boolean onlyArea)
+	{
+        // if checking specific instances, adjust options and processor count
+        int count = (geomsToCheck != null) ? geomsToCheck.length : 0;
+        ErrorLogger errorLogger = errorLog;
+
+        if (!prepareCheck(errorLog, cell, count, onlyArea))
+            return;
+
+		// now do the DRC
+//        int logsFound = 0;
+//        int totalErrors = 0;
+
+		if (count == 0)
+		{
+			// just do full DRC here
+			/*totalErrors =*/ checkThisCell(cell, 0, bounds);
+			// sort the errors by layer
+			errorLogger.sortLogs();
+		} else
+		{
+			// check only these "count" instances (either an incremental DRC or a quiet one...from Array command)
+			if (validity == null)
+			{
+				// not a quiet DRC, so it must be incremental
+//                logsFound = errorLogger.getNumLogs();
+			}
+
+            // @TODO missing counting this number of errors.
+			checkTheseGeometrics(cell, count, geomsToCheck, validity);
+		}
+
+//		if (errorLogger != null) {
+//            errorLogger.termLogging(true);
+//            logsFound = errorLogger.getNumLogs() - logsFound;
+//        }
+
+        // -2 if cells and subcells are okay
+        // Commented out on May 2, 2006. Not sure why this condition is valid
+        // If goodDRCDate contains information of DRC clean cells, it destroys that information -> wrong
+//		if (totalErrors != 0 && totalErrors != -2) goodDRCDate.clear();
+
+		// some cells were successfully checked: save that information in the database
+	    // some cells don't have valid DRC date anymore and therefore they should be clean
+        // This is only going to happen if job was not aborted.
+	    if ((job == null || !job.checkAbort()))
+	    {
+            DRC.addDRCUpdate(reportInfo.activeSpacingBits, goodSpacingDRCDate, cleanSpacingDRCDate,
+                goodAreaDRCDate, cleanAreaDRCDate, null, dp);
+	    }
+	}
+
+	/**
+	 * Method to prepare the data shared by the whole check of cell "cell": the valid layers,
+	 * the area rules, the hierarchical network numbering and the DRC exclusion areas.
+	 * @param count number of geometries to check, zero to check the entire cell.
+	 * @return true if the cell must be checked now, false if there are no rules or only the area was checked.
+	 */
+	private boolean prepareCheck(ErrorLogger errorLog, Cell cell, int count, boolean onlyArea)
 	{
 		// Check if there are DRC rules for particular tech
         Technology tech = cell.getTechnology();
         XMLRules rules = DRC.getRules(tech);
 
-        // if checking specific instances, adjust options and processor count
-        int count = (geomsToCheck != null) ? geomsToCheck.length : 0;
-
         reportInfo = new DRC.ReportInfo(errorLog, tech, dp, (count > 0));
-        ErrorLogger errorLogger = errorLog;
 
         // caching bits
         System.out.println("Running DRC with " + DRC.explainBits(reportInfo.activeSpacingBits, dp));
@@ -179,7 +264,7 @@ public class Quick
 		if (rules == null || rules.getNumberOfRules() == 0)
 		{
 			System.out.println("No DRC rules found for technology '" + tech.getTechName() + "'");
-			return /*errorLogger*/;
+			return false;
 		}
 
 	    topCell = cell; /* Especially important for minArea checking */
@@ -234,7 +319,7 @@ public class Quick
                 else
                     cleanAreaDRCDate.add(cell);
                 System.out.println("Missing update in dates");
-                return /*errorLogger*/;
+                return false;
             }
         }
 
@@ -330,48 +415,7 @@ public class Quick
 		// now search for DRC exclusion areas
         reportInfo.exclusionMap.clear();
 		getAllExclusionBounds(cell);
-
-		// now do the DRC
-//        int logsFound = 0;
-//        int totalErrors = 0;
-
-		if (count == 0)
-		{
-			// just do full DRC here
-			/*totalErrors =*/ checkThisCell(cell, 0, bounds);
-			// sort the errors by layer
-			errorLogger.sortLogs();
-		} else
-		{
-			// check only these "count" instances (either an incremental DRC or a quiet one...from Array command)
-			if (validity == null)
-			{
-				// not a quiet DRC, so it must be incremental
-//                logsFound = errorLogger.getNumLogs();
-			}
-
-            // @TODO missing counting this number of errors.
-			checkTheseGeometrics(cell, count, geomsToCheck, validity);
-		}
-
-//		if (errorLogger != null) {
-//            errorLogger.termLogging(true);
-//            logsFound = errorLogger.getNumLogs() - logsFound;
-//        }
-
-        // -2 if cells and subcells are okay
-        // Commented out on May 2, 2006. Not sure why this condition is valid
-        // If goodDRCDate contains information of DRC clean cells, it destroys that information -> wrong
-//		if (totalErrors != 0 && totalErrors != -2) goodDRCDate.clear();
-
-		// some cells were successfully checked: save that information in the database
-	    // some cells don't have valid DRC date anymore and therefore they should be clean
-        // This is only going to happen if job was not aborted.
-	    if ((job == null || !job.checkAbort()))
-	    {
-            DRC.addDRCUpdate(reportInfo.activeSpacingBits, goodSpacingDRCDate, cleanSpacingDRCDate,
-                goodAreaDRCDate, cleanAreaDRCDate, null, dp);
-	    }
+        return true;
 	}
 
     /*************************** QUICK DRC CELL EXAMINATION ***************************/
@@ -507,11 +551,66 @@ public class Quick
 
         instanceInteractionMap.clear(); // part4
 
-        for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+        int numMsgFound = checkCellGeometrics(cell, cp, cell.getNodes(), cell.getArcs(), globalIndex, bounds, area);
+        if (numMsgFound < 0) return -1;
+        reportInfo.totalSpacingMsgFound = numMsgFound;
+
+		// If message founds, then remove any possible good date
+        // !allSubCellsStillOK disconnected on April 18, 2006. totalMsgFound should
+        // dictate if this cell is re-marked.
+		if (reportInfo.totalSpacingMsgFound > 0) //  || !allSubCellsStillOK)
+		{
+			cleanSpacingDRCDate.add(cell);
+		}
+		else
+		{
+            // Only mark the cell when it passes with a new version of DRC or didn't have
+            // the DRC bit on
+            // If lastGoodDate == null, wrong bits stored or no date available.
+            if (lastSpacingGoodDate == null)
+			    goodSpacingDRCDate.add(cell);
+		}
+
+		// if there were no errors, remember that
+		if (reportInfo.errorLogger != null)
+		{
+			int localErrors = reportInfo.errorLogger.getNumErrors() - prevErrors;
+			int localWarnings = reportInfo.errorLogger.getNumWarnings() - prevWarns;
+            timer.end();
+			if (localErrors == 0 &&  localWarnings == 0)
+			{
+				System.out.println("\tNo errors/warnings found");
+			} else
+			{
+				if (localErrors > 0)
+					System.out.println("\tFOUND " + localErrors + " ERRORS");
+				if (localWarnings > 0)
+					System.out.println("\tFOUND " + localWarnings + " WARNINGS");
+			}
+            if (Job.getDebug())
+                System.out.println("\t(took " + timer + ")");
+		}
+
+		return reportInfo.totalSpacingMsgFound;
+	}
+
+	/**
+	 * Method to check the nodes and arcs of cell "cell" with global network index "globalIndex".
+	 * @param nodes the nodes to check.
+	 * @param arcs the arcs to check.
+	 * @param bounds if not null, only check objects in bounds.
+	 * @param area the DRC exclusion area of the cell, null if none.
+	 * @return the number of objects with errors, -1 if job was aborted.
+	 */
+	private int checkCellGeometrics(Cell cell, CheckProto cp, Iterator<NodeInst> nodes, Iterator<ArcInst> arcs,
+                                    int globalIndex, Rectangle2D bounds, Area area)
+	{
+		int numMsgFound = 0;
+        while (nodes.hasNext())
 		{
             if (job != null && job.checkAbort()) return -1;
 
-            NodeInst ni = it.next();
+            NodeInst ni = nodes.next();
             if (NodeInst.isSpecialNode(ni)) continue;
             
 			if (bounds != null)
@@ -531,16 +630,16 @@ public class Quick
 			        checkNodeInst(ni, globalIndex);
 			if (ret)
 			{
-				reportInfo.totalSpacingMsgFound++;
+				numMsgFound++;
 				if (reportInfo.errorTypeSearch == DRC.DRCCheckMode.ERROR_CHECK_CELL) break;
 			}
 		}
 		Technology cellTech = cell.getTechnology();
-		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
+		while (arcs.hasNext())
 		{
             if (job != null && job.checkAbort()) return -1;
 
-            ArcInst ai = it.next();
+            ArcInst ai = arcs.next();
 			Technology tech = ai.getProto().getTechnology();
 			if (tech != cellTech)
 			{
@@ -554,48 +653,218 @@ public class Quick
 			}
 			if (checkArcInst(cp, ai, globalIndex))
 			{
-				reportInfo.totalSpacingMsgFound++;
+				numMsgFound++;
 				if (reportInfo.errorTypeSearch == DRC.DRCCheckMode.ERROR_CHECK_CELL) break;
 			}
 		}
+		return numMsgFound;
+	}
 
-		// If message founds, then remove any possible good date
-        // !allSubCellsStillOK disconnected on April 18, 2006. totalMsgFound should
-        // dictate if this cell is re-marked.
-		if (reportInfo.totalSpacingMsgFound > 0) //  || !allSubCellsStillOK)
+    /*************************** PARALLEL HIERARCHICAL CHECK ***************************/
+
+    /** minimum number of nodes and arcs in a chunk of a cell checked in parallel */	private static final int MINCHUNKSIZE = 256;
+
+	/**
+	 * Class to describe one cell of a parallel hierarchical check.
+	 * Cells are linked to their subcells, which must be checked first.
+	 */
+	static class CellCheck
+	{
+		/** the cell to check */								final Cell cell;
+		/** global network index of the first visit */			final int globalIndex;
+		/** true if the cell is annotated as a black box */		final boolean blackBox;
+		/** the subcells to check before this cell */			final List<CellCheck> subCells = new ArrayList<CellCheck>();
+		/** the cells that wait for this cell */				final List<CellCheck> parents = new ArrayList<CellCheck>();
+		/** number of subcells not checked yet */				int pendingSubCells;
+		/** result of the check, as in checkThisCell */			int numMsgFound;
+
+		private CellCheck(Cell cell, int globalIndex, boolean blackBox)
 		{
-			cleanSpacingDRCDate.add(cell);
+			this.cell = cell;
+			this.globalIndex = globalIndex;
+			this.blackBox = blackBox;
 		}
-		else
+	}
+
+	/**
+	 * Method to prepare a parallel hierarchical check of cell "cell".
+	 * @param job the job which checks the cells in parallel.
+	 * @return the Quick which holds the shared data of the check, null if there is nothing to check.
+	 */
+	static Quick prepareParallelCheck(ErrorLogger errorLog, Cell cell, Job job, DRC.DRCPreferences dp, GeometryHandler.GHMode mode)
+	{
+		Quick q = new Quick(job, dp, mode);
+		if (!q.prepareCheck(errorLog, cell, 0, false)) return null;
+		return q;
+	}
+
+	/**
+	 * Method to list the cells to check in the order checkThisCell visits them.
+	 * Each cell appears once, after all its subcells, with the global network index of its first visit.
+	 * @return the cells to check, bottom-up.
+	 */
+	List<CellCheck> planHierarchicalCheck()
+	{
+		Map<Cell,CellCheck> planned = new HashMap<Cell,CellCheck>();
+		List<CellCheck> order = new ArrayList<CellCheck>();
+		planCell(topCell, 0, planned, order);
+		return order;
+	}
+
+	private CellCheck planCell(Cell cell, int globalIndex, Map<Cell,CellCheck> planned, List<CellCheck> order)
+	{
+        Variable drcVar = cell.getVar(DRC.DRC_ANNOTATION_KEY);
+        boolean blackBox = drcVar != null && ((String)drcVar.getObject(0)).toUpperCase().equals("BLACK");
+		CellCheck check = new CellCheck(cell, globalIndex, blackBox);
+		planned.put(cell, check);
+
+		// black boxes are not entered
+		if (!blackBox)
 		{
-            // Only mark the cell when it passes with a new version of DRC or didn't have
-            // the DRC bit on
-            // If lastGoodDate == null, wrong bits stored or no date available.
-            if (lastSpacingGoodDate == null)
-			    goodSpacingDRCDate.add(cell);
+	        Area area = reportInfo.exclusionMap.get(cell);
+			for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+			{
+				NodeInst ni = it.next();
+				if (!ni.isCellInstance()) continue;
+
+				// ignore documentation icons and excluded instances
+				if (ni.isIconOfParent()) continue;
+	            if (area != null && area.contains(ni.getBounds())) continue;
+
+				Cell subCell = (Cell)ni.getProto();
+				CellCheck subCheck = planned.get(subCell);
+				if (subCheck == null)
+				{
+					CheckInst ci = checkInsts.get(ni);
+					int localIndex = globalIndex * ci.multiplier + ci.localIndex + ci.offset;
+					subCheck = planCell(subCell, localIndex, planned, order);
+				}
+				if (!check.subCells.contains(subCheck))
+				{
+					check.subCells.add(subCheck);
+					subCheck.parents.add(check);
+				}
+			}
 		}
+		check.pendingSubCells = check.subCells.size();
+		order.add(check);
+		return check;
+	}
 
-		// if there were no errors, remember that
-		if (reportInfo.errorLogger != null)
+	/**
+	 * Method to check the contents of one cell of a parallel hierarchical check, once its subcells are checked.
+	 * The nodes and arcs of the cell are split in chunks that run as subtasks of "mtJob".
+	 * Each chunk has its own worker, and the workers share the cache of instance interactions of the cell.
+	 * @param check the cell to check.
+	 * @param mtJob the job which runs the chunks.
+	 * @return positive number if errors are found, zero if no errors are found or the cell is OK with DRC date stored,
+	 * and -1 if job was aborted.
+	 * @throws JobException if a chunk failed.
+	 */
+	int checkCellInParallel(CellCheck check, MultiTaskJob<?,?,?> mtJob) throws JobException
+	{
+		// Job aborted or scheduled for abort
+		if (job != null && job.checkAbort()) return -1;
+		if (check.blackBox) return 0;
+
+		// a subcell with errors, or checked again, forces this cell to be checked again
+		final Cell cell = check.cell;
+		boolean allSubCellsStillOK = true;
+		synchronized (this)
 		{
-			int localErrors = reportInfo.errorLogger.getNumErrors() - prevErrors;
-			int localWarnings = reportInfo.errorLogger.getNumWarnings() - prevWarns;
-            timer.end();
-			if (localErrors == 0 &&  localWarnings == 0)
+			for (CellCheck subCheck : check.subCells)
 			{
-				System.out.println("\tNo errors/warnings found");
-			} else
-			{
-				if (localErrors > 0)
-					System.out.println("\tFOUND " + localErrors + " ERRORS");
-				if (localWarnings > 0)
-					System.out.println("\tFOUND " + localWarnings + " WARNINGS");
+				if (subCheck.numMsgFound < 0) return -1;
+				if (subCheck.numMsgFound > 0 || goodSpacingDRCDate.contains(subCheck.cell))
+					allSubCellsStillOK = false;
 			}
-            if (Job.getDebug())
-                System.out.println("\t(took " + timer + ")");
 		}
 
-		return reportInfo.totalSpacingMsgFound;
+		// if the cell hasn't changed since the last good check, stop now
+		final CheckProto cp = getCheckProto(cell);
+        boolean checkArea = (cell == topCell && !dp.ignoreAreaCheck && reportInfo.errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_CELL);
+        Date lastSpacingGoodDate = DRC.getLastDRCDateBasedOnBits(cell, true, reportInfo.activeSpacingBits, !reportInfo.inMemory);
+        Date lastAreaGoodDate = DRC.getLastDRCDateBasedOnBits(cell, false, -1, !reportInfo.inMemory);
+        if (allSubCellsStillOK && DRC.isCellDRCDateGood(cell, lastSpacingGoodDate) &&
+            (!checkArea || DRC.isCellDRCDateGood(cell, lastAreaGoodDate)))
+		{
+            return 0;
+		}
+        ElapseTimer timer = ElapseTimer.createInstance().start();
+
+		// Check the area first, only for the most top cell
+		if (checkArea)
+        {
+            int totalAreaMsgFound = checkMinAreaSlow(cell);
+            synchronized (this)
+            {
+                if (totalAreaMsgFound == 0)
+                    goodAreaDRCDate.add(cell);
+                else
+                    cleanAreaDRCDate.add(cell);
+            }
+        }
+
+		// split the nodes and arcs in chunks
+		List<NodeInst> nodes = new ArrayList<NodeInst>(cell.getNumNodes());
+		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); ) nodes.add(it.next());
+		List<ArcInst> arcs = new ArrayList<ArcInst>(cell.getNumArcs());
+		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); ) arcs.add(it.next());
+		int numChunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4,
+			(nodes.size() + arcs.size()) / MINCHUNKSIZE));
+		final int globalIndex = check.globalIndex;
+		final Area area = reportInfo.exclusionMap.get(cell);
+		final Map<NodeInst,List<InstanceInter>> interactions = new HashMap<NodeInst,List<InstanceInter>>();
+		List<Callable<Integer>> chunks = new ArrayList<Callable<Integer>>(numChunks);
+		for (int i = 0; i < numChunks; i++)
+		{
+			final List<NodeInst> chunkNodes = nodes.subList(nodes.size() * i / numChunks, nodes.size() * (i + 1) / numChunks);
+			final List<ArcInst> chunkArcs = arcs.subList(arcs.size() * i / numChunks, arcs.size() * (i + 1) / numChunks);
+			chunks.add(new Callable<Integer>()
+			{
+				public Integer call()
+				{
+					Quick worker = new Quick(Quick.this, interactions);
+					return Integer.valueOf(worker.checkCellGeometrics(cell, cp, chunkNodes.iterator(), chunkArcs.iterator(),
+						globalIndex, null, area));
+				}
+			});
+		}
+		int numMsgFound = 0;
+		for (Integer chunkMsgFound : mtJob.runSubTasks(chunks))
+		{
+			if (chunkMsgFound.intValue() < 0) return -1;
+			numMsgFound += chunkMsgFound.intValue();
+		}
+
+		// If message founds, then remove any possible good date
+		synchronized (this)
+		{
+			if (numMsgFound > 0)
+				cleanSpacingDRCDate.add(cell);
+			else if (lastSpacingGoodDate == null)
+				goodSpacingDRCDate.add(cell);
+		}
+        timer.end();
+		System.out.println("Checked " + cell + " in " + numChunks + " chunks: " +
+			(numMsgFound == 0 ? "no errors/warnings found" : "FOUND " + numMsgFound + " ERRORS/WARNINGS") +
+			(Job.getDebug() ? " (took " + timer + ")" : ""));
+		return numMsgFound;
+	}
+
+	/**
+	 * Method to finish a parallel hierarchical check.
+	 * Sorts the errors and, if the check was not aborted, saves the DRC dates of the checked cells.
+	 * @param completed true if all cells were checked.
+	 */
+	void finishParallelCheck(boolean completed)
+	{
+		reportInfo.errorLogger.sortLogs();
+		if (completed && (job == null || !job.checkAbort()))
+		{
+            DRC.addDRCUpdate(reportInfo.activeSpacingBits, goodSpacingDRCDate, cleanSpacingDRCDate,
+                goodAreaDRCDate, cleanAreaDRCDate, null, dp);
+		}
 	}
 
     /**
@@ -751,8 +1020,12 @@ public class Quick
             if (coverByExclusion(poly, cell))
                 continue;
 
-            // Checking combination
-            boolean ret = DRC.checkOD2Combination(tech, ni, layer, od2Layers, reportInfo);
+            // Checking combination, od2Layers is shared by the workers of a parallel check
+            boolean ret;
+            synchronized (od2Layers)
+            {
+                ret = DRC.checkOD2Combination(tech, ni, layer, od2Layers, reportInfo);
+            }
             if (ret)
             {
                 // panic errors -> return regardless errorTypeSearch
@@ -967,9 +1240,14 @@ public class Quick
 
             CheckProto cpoNi = getCheckProto((Cell)oNi.getProto()); // assume oNi is a cell
             // see if this configuration of instances has already been done
-			if (DRC.checkInteraction(instanceInteractionMap, reportInfo.errorTypeSearch,
-                ni, ni, cpNi.cellParameterized, oNi, oNi, cpoNi.cellParameterized, ni, searchBounds))
-                continue;
+			// the cache is shared by the workers of a parallel check
+			boolean done;
+			synchronized (instanceInteractionMap)
+			{
+				done = DRC.checkInteraction(instanceInteractionMap, reportInfo.errorTypeSearch,
+					ni, ni, cpNi.cellParameterized, oNi, oNi, cpoNi.cellParameterized, ni, searchBounds);
+			}
+			if (done) continue;
 
 			// found other instance "oNi", look for everything in "ni" that is near it
 			Rectangle2D nearNodeBounds = oNi.getBounds();
@@ -1039,8 +1317,13 @@ public class Quick
 				{
                     CheckProto cpNi = getCheckProto((Cell)np);
                     // see if this configuration of instances has already been done
-                    if (DRC.checkInteraction(instanceInteractionMap, reportInfo.errorTypeSearch,
-                        ni, thisNi, cpNi.cellParameterized, oNi, oNiParent, cpoNi.cellParameterized, triggerNi, bb))
+                    boolean done;
+                    synchronized (instanceInteractionMap)
+                    {
+                        done = DRC.checkInteraction(instanceInteractionMap, reportInfo.errorTypeSearch,
+                            ni, thisNi, cpNi.cellParameterized, oNi, oNiParent, cpoNi.cellParameterized, triggerNi, bb);
+                    }
+                    if (done)
                         continue;  // January 27 2005. Removed on May'05
                     // You can't discard by interaction because two cells could be visited many times
                     // during this type of checking
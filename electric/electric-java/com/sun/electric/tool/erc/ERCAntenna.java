@@ -70,6 +70,9 @@ import java.util.prefs.Preferences;
  * is too large, the transistors will be destroyed.  The "sidewall area" is the area of the sides
  * of the poly or metal wires, so it is the perimeter times the thickness.
  *<P>
+ * If the "hierarchical" preference is on, the check is done by ERCAntennaHierarchy instead,
+ * which summarizes each Cell once.
+ *<P>
  * Things to do:
  *   Have errors show the gates;
  *   Not all active connections excuse the area trouble...they should be part of the ratio formula
@@ -80,11 +83,25 @@ public class ERCAntenna
 	{
 		// In TECH_NODE
 		private static final String KEY_ANTENNA_RATIO = "DefaultAntennaRatio";
+		private static final String ERC_NODE = "tool/erc";
 
 		private transient final TechPool techPool;
 		public Map<ArcProtoId,Double> antennaRatio = new HashMap<ArcProtoId,Double>();
 		public boolean disablePopups = false;
 
+		/**
+		 * Whether the Antenna check summarizes each Cell once and checks each network where it is complete,
+		 * instead of following every path through the hierarchy. The default is "false".
+		 */
+		@BooleanPref(node = ERC_NODE, key = "HierarchicalAntennaCheck", factory = false)
+		public boolean hierarchical;
+
+		/**
+		 * The number of threads to use in the hierarchical Antenna check. The default is "0" (all threads of the Job pool).
+		 */
+		@IntegerPref(node = ERC_NODE, key = "AntennaCheckNumProc", factory = 0)
+		public int maxProc;
+
 		public AntennaPreferences(boolean factory, TechPool techPool)
 		{
 			super(factory);
@@ -272,23 +289,37 @@ public class ERCAntenna
 		ElapseTimer timer = ElapseTimer.createInstance().start();
 		errorLogger = ErrorLogger.newInst("ERC Antenna Rules Check");
 
-		// now check each layer of the cell
-		int lasterrorcount = 0;
-		worstRatio = 0;
-		for(Layer lay : layerToArcProto.keySet())
+		if (antennaPrefs.hierarchical)
 		{
-			System.out.println("Checking Antenna rules for " + lay.getName() + "...");
+			// summarize each cell once and check all levels together
+			List<Layer> layers = new ArrayList<Layer>(layerToArcProto.keySet());
+			double[] limits = new double[layers.size()];
+			for (int i = 0; i < limits.length; i++)
+				limits[i] = getAntennaRatio(layers.get(i));
+			System.out.println("Checking Antenna rules hierarchically...");
+			ERCAntennaHierarchy hierarchy = new ERCAntennaHierarchy(curTech, layers, arcProtoToLayer, limits, errorLogger,
+				antennaPrefs.maxProc);
+			hierarchy.checkHierarchy(topCell, job);
+		} else
+		{
+			// now check each layer of the cell
+			int lasterrorcount = 0;
+			worstRatio = 0;
+			for(Layer lay : layerToArcProto.keySet())
+			{
+				System.out.println("Checking Antenna rules for " + lay.getName() + "...");
 
-			// clear timestamps on all cells
-			fsCell.clear();
+				// clear timestamps on all cells
+				fsCell.clear();
 
-			// do the check for this level
-			if (checkThisCell(topCell, lay, job)) break;
-			int i = errorLogger.getNumErrors();
-			if (i != lasterrorcount)
-			{
-				System.out.println("  Found " + (i - lasterrorcount) + " errors");
-				lasterrorcount = i;
+				// do the check for this level
+				if (checkThisCell(topCell, lay, job)) break;
+				int i = errorLogger.getNumErrors();
+				if (i != lasterrorcount)
+				{
+					System.out.println("  Found " + (i - lasterrorcount) + " errors");
+					lasterrorcount = i;
+				}
 			}
 		}
 
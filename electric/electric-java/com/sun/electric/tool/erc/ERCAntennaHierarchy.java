@@ -0,0 +1,575 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ERCAntennaHierarchy.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.erc;
+
+import com.sun.electric.database.geometry.Poly;
+import com.sun.electric.database.geometry.PolyBase;
+import com.sun.electric.database.geometry.PolyMerge;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.prototype.PortProto;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.topology.PortInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.PrimitivePort;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.technology.TransistorSize;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobPool;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.util.math.FixpTransform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is the hierarchical engine of the Antenna checker.
+ * <P>
+ * Every Cell is examined once, no matter how many times it is instantiated.
+ * Each checked layer is a cut-off level: when it is made, the layers above it are not there yet,
+ * so its Networks are connected only through arcs which are not made after it.
+ * For each level, the geometry and transistors of the Cell are summarized per Network:
+ * the sidewall area of the checked layer, the gate area, and whether the Network touches diffusion.
+ * The summaries of the Networks which reach Exports are kept with the Cell,
+ * and parents add them to their own Networks through the ports of the instances,
+ * instead of walking the geometry of the subcell again.
+ * A Network which does not leave its Cell is complete there, so it is checked once for all instances.
+ * The top Cell checks all of its Networks.
+ * <P>
+ * The sidewall area of a Network is the sum over the Cells it crosses of the merged perimeter in each Cell,
+ * so geometry which overlaps between a Cell and its subcells is counted in both.
+ * Merging the geometry of the Networks of a Cell is most of the work, and it is spread over the Job pool.
+ */
+class ERCAntennaHierarchy
+{
+	/** Cells with fewer Networks are done by one thread */		private static final int MIN_PARALLEL_NETS = 64;
+
+	/**
+	 * Class to describe the antenna on one Network at one level.
+	 */
+	private static class NetSummary
+	{
+		/** sidewall area of the checked layer */				double sideArea;
+		/** gate area of the transistors on the Network */		double gateArea;
+		/** true if the Network touches diffusion */			boolean active;
+
+		void add(NetSummary other)
+		{
+			sideArea += other.sideArea;
+			gateArea += other.gateArea;
+			active |= other.active;
+		}
+	}
+
+	/**
+	 * Class to hold a Network of the Cell being examined at one level, with its local geometry.
+	 */
+	private static class NetGeometry
+	{
+		/** the level of the Network */							final int level;
+		/** the summary of the Network */						final NetSummary summary = new NetSummary();
+		/** the shapes of the checked layer in the Cell */		final List<Poly> shapes = new ArrayList<Poly>();
+		/** true to check the Network in this Cell */			boolean check;
+		/** merged shapes if the Network violates the rules */	List<PolyBase> errorShapes;
+
+		NetGeometry(int level) { this.level = level; }
+	}
+
+	/**
+	 * Class to hold a shape of a checked layer in the Cell being examined.
+	 */
+	private static class LayerShape
+	{
+		/** the shape, in the coordinates of the Cell */		final Poly poly;
+		/** index of the layer of the shape */					final int layer;
+		/** the port which the shape is on */					final int port;
+
+		LayerShape(Poly poly, int layer, int port)
+		{
+			this.poly = poly;
+			this.layer = layer;
+			this.port = port;
+		}
+	}
+
+	/**
+	 * Class to describe the Networks of a Cell which reach Exports, at each level.
+	 */
+	private static class CellSummary
+	{
+		/** the Network of each Export (-1 if none) */			final int[][] exportNets;
+		/** the summary of each Network */						final NetSummary[][] nets;
+
+		CellSummary(int numLevels, int numExports)
+		{
+			exportNets = new int[numLevels][numExports];
+			nets = new NetSummary[numLevels][];
+		}
+	}
+
+	/** the technology being checked */							private final Technology curTech;
+	/** the checked layers */									private final Layer[] layers;
+	/** the layer of each arc which is followed */				private final Map<ArcProto,Layer> arcProtoToLayer;
+	/** thickness of each checked layer */						private final double[] thickness;
+	/** maximum antenna ratio of each checked layer */			private final double[] limits;
+	/** for storing errors */									private final ErrorLogger errorLogger;
+	/** the number of threads to use */							private final int numThreads;
+	/** summaries of the external Networks of each Cell */		private final Map<Cell,CellSummary> cellSummaries = new HashMap<Cell,CellSummary>();
+
+	/**
+	 * Constructor for the hierarchical Antenna checker.
+	 * @param curTech the technology to check.
+	 * @param layers the poly and metal layers to check.
+	 * @param arcProtoToLayer the layer of each poly and metal arc of the technology.
+	 * @param limits the maximum antenna ratio of each layer.
+	 * @param errorLogger the ErrorLogger where errors are stored.
+	 * @param numThreads the number of threads to use. Zero or less means all threads of the Job pool.
+	 */
+	ERCAntennaHierarchy(Technology curTech, List<Layer> layers, Map<ArcProto,Layer> arcProtoToLayer, double[] limits,
+		ErrorLogger errorLogger, int numThreads)
+	{
+		this.curTech = curTech;
+		this.layers = layers.toArray(new Layer[layers.size()]);
+		this.arcProtoToLayer = arcProtoToLayer;
+		this.limits = limits;
+		this.errorLogger = errorLogger;
+		this.numThreads = numThreads > 0 ? numThreads : JobPool.getNumThreads() + 1;
+		thickness = new double[this.layers.length];
+		for (int i = 0; i < this.layers.length; i++)
+		{
+			Layer lay = this.layers[i];
+			thickness[i] = lay.getThickness();
+			if (thickness[i] == 0)
+			{
+				if (lay.getFunction().isMetal()) thickness[i] = ERCAntenna.DEFMETALTHICKNESS; else
+					if (lay.getFunction().isPoly()) thickness[i] = ERCAntenna.DEFPOLYTHICKNESS;
+			}
+		}
+	}
+
+	/**
+	 * Method to check a Cell and everything below it.
+	 * @param topCell the Cell to check.
+	 * @param job the Job that is running (for abort checking).
+	 * @return true if aborted.
+	 */
+	boolean checkHierarchy(Cell topCell, Job job)
+	{
+		return summarizeCell(topCell, true, job) == null;
+	}
+
+	/**
+	 * Method to summarize the external Networks of a Cell, after checking its internal Networks.
+	 * The ports of all NodeInsts in the Cell are numbered, and the Networks of each level are found
+	 * by joining the ports which are connected at that level.
+	 * @param cell the Cell to examine.
+	 * @param top true if this is the top Cell, where all Networks are checked.
+	 * @param job the Job that is running (for abort checking).
+	 * @return the summary of the external Networks, or null if aborted.
+	 */
+	private CellSummary summarizeCell(Cell cell, boolean top, Job job)
+	{
+		CellSummary cellSummary = cellSummaries.get(cell);
+		if (cellSummary != null) return cellSummary;
+
+		// summarize the subcells, and number the ports of the Cell
+		Map<NodeInst,Integer> firstPorts = new HashMap<NodeInst,Integer>();
+		int numPorts = 0;
+		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+		{
+			NodeInst ni = it.next();
+			firstPorts.put(ni, Integer.valueOf(numPorts));
+			numPorts += ni.getNumPortInsts();
+			if (!isSubCell(ni)) continue;
+			if (summarizeCell((Cell)ni.getProto(), false, job) == null) return null;
+		}
+		if (job != null && job.checkAbort()) return null;
+
+		// gather the shapes of the checked layers in this Cell, and the nodes with diffusion
+		List<LayerShape> shapes = new ArrayList<LayerShape>();
+		Set<NodeInst> diffusionNodes = new HashSet<NodeInst>();
+		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+		{
+			NodeInst ni = it.next();
+			if (ni.isCellInstance() || ni.getFunction().isFET()) continue;
+			if (hasDiffusion(ni))
+			{
+				diffusionNodes.add(ni);
+				continue;
+			}
+			Technology tech = ni.getProto().getTechnology();
+			if (tech != curTech) continue;
+			Poly [] polyList = tech.getShapeOfNode(ni, true, false, null);
+			FixpTransform trans = ni.rotateOut();
+			for(int i=0; i<polyList.length; i++)
+			{
+				Poly poly = polyList[i];
+				int layerIndex = getLayerIndex(poly.getLayer());
+				if (layerIndex < 0) continue;
+				PortProto pp = poly.getPort();
+				if (pp == null)
+				{
+					if (ni.getNumPortInsts() != 1) continue;
+					pp = ni.getPortInst(0).getPortProto();
+				}
+				poly.transform(trans);
+				shapes.add(new LayerShape(poly, layerIndex, getPort(firstPorts, ni.findPortInstFromProto(pp))));
+			}
+		}
+		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
+		{
+			ArcInst ai = it.next();
+			Technology tech = ai.getProto().getTechnology();
+			if (tech != curTech || arcProtoToLayer.get(ai.getProto()) == null) continue;
+			Poly [] polyList = tech.getShapeOfArc(ai);
+			for(int i=0; i<polyList.length; i++)
+			{
+				Poly poly = polyList[i];
+				int layerIndex = getLayerIndex(poly.getLayer());
+				if (layerIndex < 0) continue;
+				shapes.add(new LayerShape(poly, layerIndex, getPort(firstPorts, ai.getHeadPortInst())));
+			}
+		}
+
+		// find the Networks of each level
+		int numExports = cell.getNumPorts();
+		cellSummary = new CellSummary(layers.length, numExports);
+		List<NetGeometry[]> levelNets = new ArrayList<NetGeometry[]>();
+		List<NetGeometry> work = new ArrayList<NetGeometry>();
+		for (int level = 0; level < layers.length; level++)
+		{
+			int[] netOfPort = connectPorts(cell, level, firstPorts, numPorts);
+			NetGeometry[] nets = new NetGeometry[numPorts];
+			levelNets.add(nets);
+			addLevel(cell, level, firstPorts, diffusionNodes, netOfPort, nets);
+			for (LayerShape ls : shapes)
+			{
+				if (ls.layer == level) getNet(nets, netOfPort[ls.port], level).shapes.add(ls.poly);
+			}
+
+			// Networks on Exports are kept for the parents
+			int[] exportNets = cellSummary.exportNets[level];
+			Arrays.fill(exportNets, -1);
+			int[] summaryIndex = new int[numPorts];
+			Arrays.fill(summaryIndex, -1);
+			List<NetSummary> summaries = new ArrayList<NetSummary>();
+			for (int i = 0; i < numExports; i++)
+			{
+				Export e = cell.getPort(i);
+				int net = netOfPort[getPort(firstPorts, e.getOriginalPort())];
+				if (summaryIndex[net] < 0)
+				{
+					summaryIndex[net] = summaries.size();
+					summaries.add(getNet(nets, net, level).summary);
+				}
+				exportNets[i] = summaryIndex[net];
+			}
+			cellSummary.nets[level] = summaries.toArray(new NetSummary[summaries.size()]);
+
+			// internal Networks are complete here, and are checked
+			for (int i = 0; i < numPorts; i++)
+			{
+				NetGeometry ng = nets[i];
+				if (ng == null) continue;
+				ng.check = top || summaryIndex[i] < 0;
+				if (ng.shapes.isEmpty() && !ng.check) continue;
+				work.add(ng);
+			}
+		}
+		if (!measureNets(work, job)) return null;
+		for (int level = 0; level < layers.length; level++)
+		{
+			for (NetGeometry ng : levelNets.get(level))
+			{
+				if (ng == null || ng.errorShapes == null) continue;
+				NetSummary ns = ng.summary;
+				double ratio = ns.sideArea / ns.gateArea;
+				String errMsg = "layer " + layers[level].getName() + " has perimeter-area " + ns.sideArea +
+					"; gates have area " + ns.gateArea + ", ratio is " + ratio + " but limit is " + limits[level];
+				errorLogger.logMessage(errMsg, ng.errorShapes, cell, 0, true);
+			}
+		}
+		cellSummaries.put(cell, cellSummary);
+		return cellSummary;
+	}
+
+	/**
+	 * Method to join the ports of a Cell which are connected at a level.
+	 * Ports are connected inside of primitive nodes, by arcs which are not made after the checked layer,
+	 * and through subcells by the Networks of that level in the subcells.
+	 * @return the Network of each port, which is the lowest port on the Network.
+	 */
+	private int[] connectPorts(Cell cell, int level, Map<NodeInst,Integer> firstPorts, int numPorts)
+	{
+		int[] parent = new int[numPorts];
+		for (int i = 0; i < numPorts; i++) parent[i] = i;
+		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+		{
+			NodeInst ni = it.next();
+			int first = firstPorts.get(ni).intValue();
+			if (isSubCell(ni))
+			{
+				// ports which reach the same Network of the subcell
+				int[] exportNets = cellSummaries.get(ni.getProto()).exportNets[level];
+				int[] netPorts = new int[exportNets.length];
+				Arrays.fill(netPorts, -1);
+				for (int i = 0; i < exportNets.length; i++)
+				{
+					int net = exportNets[i];
+					if (net < 0) continue;
+					if (netPorts[net] < 0) netPorts[net] = first + i; else
+						union(parent, netPorts[net], first + i);
+				}
+			} else if (!ni.isCellInstance())
+			{
+				// ports which are connected inside of the primitive
+				int numPortInsts = ni.getNumPortInsts();
+				for (int i = 1; i < numPortInsts; i++)
+				{
+					int topology = ((PrimitivePort)ni.getProto().getPort(i)).getTopology();
+					for (int j = 0; j < i; j++)
+					{
+						if (((PrimitivePort)ni.getProto().getPort(j)).getTopology() != topology) continue;
+						union(parent, first + j, first + i);
+						break;
+					}
+				}
+			}
+		}
+		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
+		{
+			ArcInst ai = it.next();
+			if (!ai.getProto().getFunction().isDiffusion())
+			{
+				Layer aLayer = arcProtoToLayer.get(ai.getProto());
+				if (aLayer == null || isMadeAfter(aLayer, layers[level])) continue;
+			}
+			union(parent, getPort(firstPorts, ai.getHeadPortInst()), getPort(firstPorts, ai.getTailPortInst()));
+		}
+		int[] netOfPort = new int[numPorts];
+		for (int i = 0; i < numPorts; i++) netOfPort[i] = find(parent, i);
+		return netOfPort;
+	}
+
+	/**
+	 * Method to add the transistors, diffusion and subcells of a Cell to the summaries of its Networks at a level.
+	 */
+	private void addLevel(Cell cell, int level, Map<NodeInst,Integer> firstPorts, Set<NodeInst> diffusionNodes,
+		int[] netOfPort, NetGeometry[] nets)
+	{
+		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+		{
+			NodeInst ni = it.next();
+			int first = firstPorts.get(ni).intValue();
+			if (isSubCell(ni))
+			{
+				// each Network of the subcell is added once, through its first port
+				CellSummary subSummary = cellSummaries.get(ni.getProto());
+				int[] exportNets = subSummary.exportNets[level];
+				boolean[] added = new boolean[subSummary.nets[level].length];
+				for (int i = 0; i < exportNets.length; i++)
+				{
+					int net = exportNets[i];
+					if (net < 0 || added[net]) continue;
+					added[net] = true;
+					getNet(nets, netOfPort[first + i], level).summary.add(subSummary.nets[level][net]);
+				}
+				continue;
+			}
+			if (ni.isCellInstance()) continue;
+			if (ni.getFunction().isFET())
+			{
+				PortInst gate = ni.getTransistorGatePort();
+				PortInst altGate = ni.getTransistorAltGatePort();
+				TransistorSize dim = ni.getTransistorSize(VarContext.globalContext);
+				double gateArea = dim != null ? dim.getDoubleLength() * dim.getDoubleWidth() : 0;
+				int gateNet = gate != null ? netOfPort[getPort(firstPorts, gate)] : -1;
+				int altGateNet = altGate != null ? netOfPort[getPort(firstPorts, altGate)] : -1;
+				if (gateNet >= 0) getNet(nets, gateNet, level).summary.gateArea += gateArea;
+				if (altGateNet >= 0 && altGateNet != gateNet) getNet(nets, altGateNet, level).summary.gateArea += gateArea;
+
+				// diffusion or bias ports protect their Networks
+				for (int i = 0; i < ni.getNumPortInsts(); i++)
+				{
+					PortInst pi = ni.getPortInst(i);
+					if (pi == gate || pi == altGate) continue;
+					getNet(nets, netOfPort[first + i], level).summary.active = true;
+				}
+			} else if (diffusionNodes.contains(ni))
+			{
+				for (int i = 0; i < ni.getNumPortInsts(); i++)
+					getNet(nets, netOfPort[first + i], level).summary.active = true;
+			}
+		}
+		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
+		{
+			ArcInst ai = it.next();
+			if (!ai.getProto().getFunction().isDiffusion()) continue;
+			getNet(nets, netOfPort[getPort(firstPorts, ai.getHeadPortInst())], level).summary.active = true;
+			getNet(nets, netOfPort[getPort(firstPorts, ai.getTailPortInst())], level).summary.active = true;
+		}
+	}
+
+	private static boolean isSubCell(NodeInst ni)
+	{
+		return ni.isCellInstance() && !((Cell)ni.getProto()).isIcon();
+	}
+
+	/**
+	 * Method to tell whether a primitive NodeInst has diffusion on it, as ERCAntenna does.
+	 */
+	private static boolean hasDiffusion(NodeInst ni)
+	{
+		if (ni.getFunction().isPin()) return false;
+		Poly [] polyList = ni.getProto().getTechnology().getShapeOfNode(ni);
+		for(int i=0; i<polyList.length; i++)
+		{
+			if (polyList[i].getLayer().getFunction().isDiff()) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Method to tell whether a layer is made after the layer being checked,
+	 * so that it does not connect anything yet when the checked layer is made.
+	 * Poly is made before metal, and lower levels before higher ones.
+	 * @param aLayer the layer of an arc.
+	 * @param lay the layer being checked.
+	 * @return true if aLayer is made after lay.
+	 */
+	private static boolean isMadeAfter(Layer aLayer, Layer lay)
+	{
+		Layer.Function aFun = aLayer.getFunction();
+		Layer.Function fun = lay.getFunction();
+		if (aFun.isMetal() != fun.isMetal()) return aFun.isMetal();
+		return aFun.getLevel() > fun.getLevel();
+	}
+
+	private static int getPort(Map<NodeInst,Integer> firstPorts, PortInst pi)
+	{
+		return firstPorts.get(pi.getNodeInst()).intValue() + pi.getPortIndex();
+	}
+
+	private static int find(int[] parent, int i)
+	{
+		while (parent[i] != i)
+		{
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parent, int i, int j)
+	{
+		i = find(parent, i);
+		j = find(parent, j);
+		if (i < j) parent[j] = i; else
+			parent[i] = j;
+	}
+
+	private static NetGeometry getNet(NetGeometry[] nets, int net, int level)
+	{
+		NetGeometry ng = nets[net];
+		if (ng == null) nets[net] = ng = new NetGeometry(level);
+		return ng;
+	}
+
+	private int getLayerIndex(Layer lay)
+	{
+		for (int i = 0; i < layers.length; i++)
+			if (layers[i] == lay) return i;
+		return -1;
+	}
+
+	/**
+	 * Method to merge the geometry of Networks and to check them, on the Job pool.
+	 * @param work the Networks to measure.
+	 * @param job the Job that is running (for abort checking).
+	 * @return false if aborted.
+	 */
+	private boolean measureNets(final List<NetGeometry> work, final Job job)
+	{
+		final AtomicInteger nextNet = new AtomicInteger();
+		final AtomicBoolean aborted = new AtomicBoolean();
+		List<Runnable> workers = new ArrayList<Runnable>();
+		int numWorkers = work.size() >= MIN_PARALLEL_NETS ? numThreads : 1;
+		for (int w = 0; w < numWorkers; w++)
+		{
+			workers.add(new Runnable() {
+				public void run() {
+					for (int i = nextNet.getAndIncrement(); i < work.size() && !aborted.get(); i = nextNet.getAndIncrement())
+					{
+						if (job != null && job.checkAbort())
+						{
+							aborted.set(true);
+							break;
+						}
+						measureNet(work.get(i));
+					}
+				}
+			});
+		}
+		JobPool.runAll(workers);
+		return !aborted.get();
+	}
+
+	/**
+	 * Method to add the merged perimeter of the geometry of a Network to its summary,
+	 * and to find whether it violates the antenna rules.
+	 * It only uses the NetGeometry, so it may run on any thread.
+	 */
+	private void measureNet(NetGeometry ng)
+	{
+		NetSummary ns = ng.summary;
+		List<PolyBase> merged = null;
+		if (!ng.shapes.isEmpty())
+		{
+			Layer lay = layers[ng.level];
+			PolyMerge merge = new PolyMerge();
+			for (Poly poly : ng.shapes)
+				merge.addPolygon(lay, poly);
+			merged = merge.getMergedPoints(lay, true);
+			double perimeter = 0;
+			for (PolyBase poly : merged)
+				perimeter += poly.getPerimeter();
+			ns.sideArea += perimeter * thickness[ng.level];
+		}
+		if (!ng.check || ns.active || ns.gateArea <= 0 || ns.sideArea == 0) return;
+
+		// see if it is an antenna violation
+		double ratio = ns.sideArea / ns.gateArea;
+		if (ratio < limits[ng.level]) return;
+		ng.errorShapes = merged != null ? merged : new ArrayList<PolyBase>();
+	}
+}
@@ -339,4 +339,25 @@ public class Extract extends Tool
 	 * @return true if the node extractor should use pure-layer nodes for connectivity, by default.
 	 */
 	public static boolean isFactoryUsePureLayerNodes() { return cacheUsePureLayerNodes.getBooleanFactoryValue(); }
+
+	private static Pref cacheUseScanlineMerge = Pref.makeBooleanPref("UseScanlineMerge", Extract.tool.prefs, false);
+	/**
+	 * Method to tell whether the node extractor should merge Manhattan geometry with scanlines.
+	 * The alternative is to merge with java.awt.geom.Area, which is slower but is the reference.
+	 * The default is "false".
+	 * @return true if the node extractor should merge Manhattan geometry with scanlines.
+	 */
+	public static boolean isUseScanlineMerge() { return cacheUseScanlineMerge.getBoolean(); }
+	/**
+	 * Method to set whether the node extractor should merge Manhattan geometry with scanlines.
+	 * The alternative is to merge with java.awt.geom.Area, which is slower but is the reference.
+	 * @param a true if the node extractor should merge Manhattan geometry with scanlines.
+	 */
+	public static void setUseScanlineMerge(boolean a) { cacheUseScanlineMerge.setBoolean(a); }
+	/**
+	 * Method to tell whether the node extractor should merge Manhattan geometry with scanlines by default.
+	 * The alternative is to merge with java.awt.geom.Area, which is slower but is the reference.
+	 * @return true if the node extractor should merge Manhattan geometry with scanlines, by default.
+	 */
+	public static boolean isFactoryUseScanlineMerge() { return cacheUseScanlineMerge.getBooleanFactoryValue(); }
 }
@@ -121,6 +121,10 @@ public class LayerCoverageTool extends Tool
         @DoublePref(node = EXTRACT_NODE, key = "Height", factory = defaultSize)
         public double heightInMicrons;
 
+        /** User preference for number of threads of area coverage. The default is 0 (all threads of the Job pool). */
+        @IntegerPref(node = EXTRACT_NODE, key = "NumThreads", factory = 0)
+        public int numThreads;
+
         /** Preference for SeaOfGate if used */
         public SeaOfGates.SeaOfGatesOptions seaIfGatesPrefs;
 
@@ -197,6 +201,7 @@ public class LayerCoverageTool extends Tool
         public void reset() {
             areaCoverage.clear();
             deltaXInMicrons = deltaYInMicrons = widthInMicrons = heightInMicrons = defaultSize;
+            numThreads = 0;
         }
     }
 
@@ -226,12 +231,44 @@ public class LayerCoverageTool extends Tool
 
     /**
      * Method to kick area coverage per layer in a cell. It has to be public due to regressions.
+     * The geometry of each window is merged by LayerDensityMap, so only poly and metal layers are measured.
+     * @param cell
+     * @param startJob to determine if job has to run in a separate thread
+     * @return the area of each layer, summed over all windows. Only valid if startJob is false (regression purpose)
+     */
+    public static Map<Layer,Double> layerCoverageCommand(Cell cell, boolean startJob, LayerCoveragePreferences lcp)
+    {
+        return layerCoverageCommand(cell, startJob, lcp, null);
+    }
+
+    /**
+     * Method to kick area coverage per layer in a cell and to write the coverage of every window in a CSV file.
+     * The geometry of each window is merged by LayerDensityMap, so only poly and metal layers are measured.
+     * @param cell
+     * @param startJob to determine if job has to run in a separate thread
+     * @param csvFile the CSV file to write (null to write nothing)
+     * @return the area of each layer, summed over all windows. Only valid if startJob is false (regression purpose)
+     */
+    public static Map<Layer,Double> layerCoverageCommand(Cell cell, boolean startJob, LayerCoveragePreferences lcp, String csvFile)
+    {
+        return layerCoverageCommand(cell, null, startJob, lcp, csvFile);
+    }
+
+    /**
+     * Method to kick area coverage per layer in a cell. It has to be public due to regressions.
+     * The geometry of each window is merged by LayerCoverageData, one window after the other.
      * @param cell
-     * @param mode
+     * @param mode geometric algorithm to use: GeometryHandler.ALGO_SWEEP or GeometryHandler.ALGO_MERGE
      * @param startJob to determine if job has to run in a separate thread
-     * @return true if job runs without errors. Only valid if startJob is false (regression purpose)
+     * @return the area of each layer, summed over all windows. Only valid if startJob is false (regression purpose)
      */
     public static Map<Layer,Double> layerCoverageCommand(Cell cell, GeometryHandler.GHMode mode, boolean startJob, LayerCoveragePreferences lcp)
+    {
+        return layerCoverageCommand(cell, mode, startJob, lcp, null);
+    }
+
+    private static Map<Layer,Double> layerCoverageCommand(Cell cell, GeometryHandler.GHMode mode, boolean startJob, LayerCoveragePreferences lcp,
+                                                          String csvFile)
     {
         if (cell == null) return null;
 
@@ -246,7 +283,7 @@ public class LayerCoverageTool extends Tool
         if (width > bbox.getWidth()) width = bbox.getWidth();
         if (height > bbox.getHeight()) height = bbox.getHeight();
         Map<Layer,Double> map = null;
-        AreaCoverageJob job = new AreaCoverageJob(cell, mode, width, height, deltaX, deltaY, lcp);
+        AreaCoverageJob job = new AreaCoverageJob(cell, mode, width, height, deltaX, deltaY, lcp, csvFile);
 
         // No regression
         if (startJob)
@@ -651,12 +688,13 @@ public class LayerCoverageTool extends Tool
         private Cell curCell;
         private double deltaX, deltaY;
         private double width, height;
-        private GeometryHandler.GHMode mode;
+        private GeometryHandler.GHMode mode; // null to merge the windows by LayerDensityMap
         private Map<Layer,Double> internalMap;
         private LayerCoverageTool.LayerCoveragePreferences lcp;
+        private String csvFile;
 
-        public AreaCoverageJob(Cell cell, GeometryHandler.GHMode mode,
-                               double width, double height, double deltaX, double deltaY, LayerCoveragePreferences lcp)
+        public AreaCoverageJob(Cell cell, GeometryHandler.GHMode mode, double width, double height, double deltaX, double deltaY,
+                               LayerCoveragePreferences lcp, String csvFile)
         {
             super("Layer Coverage", User.getUserTool(), Type.SERVER_EXAMINE, null, null, Priority.USER);
             this.curCell = cell;
@@ -666,14 +704,65 @@ public class LayerCoverageTool extends Tool
             this.deltaX = deltaX;
             this.deltaY = deltaY;
             this.lcp = lcp;
+            this.csvFile = csvFile;
             setReportExecutionFlag(true); // Want to report statistics
         }
 
         @Override
         public boolean doIt() throws JobException
+        {
+            ErrorLogger errorLogger = ErrorLogger.newInstance("Area Coverage");
+            if (mode != null)
+                return doItByMode(errorLogger);
+
+            System.out.println("Calculating Coverage on cell '" + curCell.getName() + "'");
+
+            // windows are computed in parallel
+            LayerDensityMap densityMap = LayerDensityMap.compute(curCell, width, height, deltaX, deltaY, lcp.numThreads, this);
+            if (densityMap == null) // aborted by user
+                return false; // didn't finish
+
+            internalMap = new HashMap<Layer,Double>();
+//            fieldVariableChanged("internalMap");
+
+            for (int row = 0; row < densityMap.getNumRows(); row++)
+            {
+                for (int col = 0; col < densityMap.getNumColumns(); col++)
+                {
+                    Rectangle2D box = densityMap.getWindow(col, row);
+                    System.out.println("Coverage on cell '" + curCell.getName() + "' for area (" +
+                            DBMath.round(box.getMinX()) + "," + DBMath.round(box.getMinY()) + ") (" +
+                            DBMath.round(box.getMaxX()) + "," + DBMath.round(box.getMaxY()) + ")");
+                    GeometryOnNetwork geoms = new GeometryOnNetwork(curCell, null, 1, true, null, lcp);
+                    for (Layer layer : densityMap.getLayers())
+                    {
+                        double area = densityMap.getArea(layer, col, row);
+                        if (area == 0) continue;
+                        geoms.addLayer(layer, area, 0);
+                        System.out.println("\tLayer " + layer.getName() + ":\t area " + TextUtils.formatDouble(area) +
+                                "(" + TextUtils.formatDouble(densityMap.getCoverage(layer, col, row)) + "%)");
+
+                        Double oldV = internalMap.get(layer);
+                        double newV = area;
+                        if (oldV != null)
+                            newV += oldV.doubleValue();
+                        internalMap.put(layer, Double.valueOf(newV));
+                    }
+                    geoms.analyzeCoverage(box, errorLogger);
+                }
+            }
+            if (csvFile != null && densityMap.writeCSV(csvFile))
+                System.out.println("Wrote " + csvFile);
+            errorLogger.termLogging(true);
+            return true;
+        }
+
+        /**
+         * Method to merge the geometry of each window with LayerCoverageData, one window after the other.
+         */
+        private boolean doItByMode(ErrorLogger errorLogger)
         {
             EditingPreferences ep = getEditingPreferences();
-            ErrorLogger errorLogger = ErrorLogger.newInst("Area Coverage");
             Rectangle2D bBoxOrig = curCell.getBounds();
             double maxY = bBoxOrig.getMaxY();
             double maxX = bBoxOrig.getMaxX();
@@ -685,7 +774,6 @@ public class LayerCoverageTool extends Tool
             if (height <= 0) height = bBoxOrig.getHeight();
 
             internalMap = new HashMap<Layer,Double>();
-//            fieldVariableChanged("internalMap");
 
             for (double posY = bBoxOrig.getMinY(); posY < maxY; posY += deltaY)
             {
@@ -0,0 +1,808 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: LayerDensityMap.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.extract;
+
+import com.sun.electric.database.geometry.ERectangle;
+import com.sun.electric.database.geometry.Poly;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.PrimitiveShapes;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobPool;
+import com.sun.electric.util.TextUtils;
+import com.sun.electric.util.math.FixpCoord;
+import com.sun.electric.util.math.Orientation;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to hold the coverage of poly and metal layers in the windows of a Cell.
+ * The windows are laid out like the Area Coverage preferences ask: they start at the lower-left
+ * corner of the Cell, step by deltaX and deltaY, and have the given width and height, so they may overlap.
+ * <P>
+ * Each window is computed separately on the Job pool.
+ * Shapes are taken from CellBackup.getPrimitiveShapes() and clipped to the window as integer rectangles,
+ * and the union area of each layer is found with a sweep, so overlapping shapes are counted once.
+ * The few shapes which are not rectangles are added with java.awt.geom.Area.
+ * The merged shapes of a Cell are computed the first time that an instance of it lies entirely inside of a window,
+ * and are reused for all of its other instances which lie entirely inside of a window.
+ */
+public class LayerDensityMap
+{
+	/** square lambda in one square grid unit */				private static final double LAMBDA_AREA = 1.0 / (FixpCoord.GRIDS_IN_LAMBDA * FixpCoord.GRIDS_IN_LAMBDA);
+	/** larger Cells keep their shapes without merging them */	private static final int MAX_MERGED_RECTS = 20000;
+
+	private final Cell cell;
+	private final double[] windowX, windowY;
+	private final double width, height;
+	private final List<Layer> layers;
+	/** area in square lambda of each layer in each window */	private final double[][] areas;
+
+	private LayerDensityMap(Cell cell, double[] windowX, double[] windowY, double width, double height, List<Layer> layers)
+	{
+		this.cell = cell;
+		this.windowX = windowX;
+		this.windowY = windowY;
+		this.width = width;
+		this.height = height;
+		this.layers = Collections.unmodifiableList(layers);
+		areas = new double[layers.size()][windowX.length * windowY.length];
+	}
+
+	/**
+	 * Method to compute the coverage of the poly and metal layers of a Cell.
+	 * @param cell the Cell to analyze.
+	 * @param width the width of each window (in lambda). Zero or less means the width of the Cell.
+	 * @param height the height of each window (in lambda). Zero or less means the height of the Cell.
+	 * @param deltaX the horizontal step between windows (in lambda). Zero or less means the width of the Cell.
+	 * @param deltaY the vertical step between windows (in lambda). Zero or less means the height of the Cell.
+	 * @param numThreads the number of threads to use. Zero or less means all threads of the Job pool.
+	 * @param job the Job which is running this, to stop when it is aborted (may be null).
+	 * @return the coverage of each window, or null if the Job was aborted.
+	 */
+	public static LayerDensityMap compute(Cell cell, double width, double height, double deltaX, double deltaY,
+		int numThreads, Job job)
+	{
+		Rectangle2D bounds = cell.getBounds();
+		if (deltaX <= 0) deltaX = bounds.getWidth();
+		if (deltaY <= 0) deltaY = bounds.getHeight();
+		if (width <= 0) width = bounds.getWidth();
+		if (height <= 0) height = bounds.getHeight();
+		List<Double> xList = new ArrayList<Double>(), yList = new ArrayList<Double>();
+		for (double posX = bounds.getMinX(); posX < bounds.getMaxX(); posX += deltaX) xList.add(Double.valueOf(posX));
+		for (double posY = bounds.getMinY(); posY < bounds.getMaxY(); posY += deltaY) yList.add(Double.valueOf(posY));
+		double[] windowX = new double[xList.size()], windowY = new double[yList.size()];
+		for (int i = 0; i < windowX.length; i++) windowX[i] = xList.get(i).doubleValue();
+		for (int i = 0; i < windowY.length; i++) windowY[i] = yList.get(i).doubleValue();
+
+		// the database is only examined by this thread
+		Map<Cell,CellData> cellData = new HashMap<Cell,CellData>();
+		final CellData top = getCellData(cell, cellData);
+		List<Layer> layers = new ArrayList<Layer>();
+		for (CellData cd : cellData.values())
+		{
+			for (Layer layer : cd.layers)
+				if (!layers.contains(layer)) layers.add(layer);
+		}
+		Layer.getLayersSortedByRule(layers, Layer.LayerSortingType.ByName);
+
+		final LayerDensityMap map = new LayerDensityMap(cell, windowX, windowY, width, height, layers);
+		final int numWindows = windowX.length * windowY.length;
+		if (numThreads <= 0)
+			numThreads = JobPool.getNumThreads() + 1;
+		final AtomicInteger nextWindow = new AtomicInteger();
+		final AtomicBoolean aborted = new AtomicBoolean();
+
+		// the pieces run in the context of this thread, so each of them can watch the Job
+		final Job abortJob = job;
+		List<Runnable> workers = new ArrayList<Runnable>();
+		for (int w = 0; w < Math.min(numThreads, numWindows); w++)
+		{
+			workers.add(new Runnable() {
+				public void run() {
+					for (int i = nextWindow.getAndIncrement(); i < numWindows && !aborted.get(); i = nextWindow.getAndIncrement())
+					{
+						if (abortJob != null && abortJob.checkAbort())
+						{
+							aborted.set(true);
+							break;
+						}
+						map.computeWindow(top, i);
+					}
+				}
+			});
+		}
+		JobPool.runAll(workers);
+		return aborted.get() ? null : map;
+	}
+
+	/**
+	 * Method to tell whether a layer is analyzed, which is the case for poly and metal layers.
+	 */
+	static boolean isDensityLayer(Layer layer)
+	{
+		Layer.Function func = layer.getFunction();
+		return func.isPoly() || func.isMetal();
+	}
+
+	/** Returns the Cell which was analyzed. */
+	public Cell getCell() { return cell; }
+
+	/** Returns the number of columns of windows. */
+	public int getNumColumns() { return windowX.length; }
+
+	/** Returns the number of rows of windows. */
+	public int getNumRows() { return windowY.length; }
+
+	/** Returns the poly and metal layers found in the Cell, sorted by name. */
+	public List<Layer> getLayers() { return layers; }
+
+	/**
+	 * Method to return the bounds of a window.
+	 * @param col the column of the window.
+	 * @param row the row of the window.
+	 * @return the bounds of the window (in lambda).
+	 */
+	public Rectangle2D getWindow(int col, int row)
+	{
+		return new Rectangle2D.Double(windowX[col], windowY[row], width, height);
+	}
+
+	/**
+	 * Method to return the area covered by a layer in a window.
+	 * @param layer the layer.
+	 * @param col the column of the window.
+	 * @param row the row of the window.
+	 * @return the covered area (in square lambda), or zero if the layer is not in the Cell.
+	 */
+	public double getArea(Layer layer, int col, int row)
+	{
+		int index = layers.indexOf(layer);
+		return index < 0 ? 0 : areas[index][row * windowX.length + col];
+	}
+
+	/**
+	 * Method to return the percentage of a window which is covered by a layer.
+	 * @param layer the layer.
+	 * @param col the column of the window.
+	 * @param row the row of the window.
+	 * @return the coverage of the window, from 0 to 100.
+	 */
+	public double getCoverage(Layer layer, int col, int row)
+	{
+		return getArea(layer, col, row) / (width * height) * 100;
+	}
+
+	/**
+	 * Method to write the map in a CSV file.
+	 * There is one line per window with its bounds (in lambda) followed by the coverage of each layer (in percent).
+	 * @param fileName the name of the file to write.
+	 * @return true if the file was written.
+	 */
+	public boolean writeCSV(String fileName)
+	{
+		try
+		{
+			PrintWriter printWriter = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+			printWriter.print("MinX,MinY,MaxX,MaxY");
+			for (Layer layer : layers)
+				printWriter.print("," + layer.getName());
+			printWriter.println();
+			for (int row = 0; row < getNumRows(); row++)
+			{
+				for (int col = 0; col < getNumColumns(); col++)
+				{
+					Rectangle2D window = getWindow(col, row);
+					printWriter.print(TextUtils.formatDouble(window.getMinX()) + "," + TextUtils.formatDouble(window.getMinY()) + "," +
+						TextUtils.formatDouble(window.getMaxX()) + "," + TextUtils.formatDouble(window.getMaxY()));
+					for (Layer layer : layers)
+						printWriter.print("," + TextUtils.formatDouble(getCoverage(layer, col, row)));
+					printWriter.println();
+				}
+			}
+			printWriter.close();
+		} catch (IOException e)
+		{
+			System.out.println("Error writing " + fileName + ": " + e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/****************************** WINDOWS ******************************/
+
+	private void computeWindow(CellData top, int windowIndex)
+	{
+		int col = windowIndex % windowX.length;
+		int row = windowIndex / windowX.length;
+		long[] window = new long[4];
+		window[0] = lambdaToGrid(windowX[col]);
+		window[1] = lambdaToGrid(windowY[row]);
+		window[2] = lambdaToGrid(windowX[col] + width);
+		window[3] = lambdaToGrid(windowY[row] + height);
+
+		Map<Layer,Shapes> shapes = new HashMap<Layer,Shapes>();
+		collect(top, Orientation.IDENT, 0, 0, window, shapes);
+		for (int i = 0; i < layers.size(); i++)
+		{
+			Shapes s = shapes.get(layers.get(i));
+			if (s == null) continue;
+			long area = unionArea(s.rects, s.numRects);
+			double polyArea = s.polys.isEmpty() ? 0 : polyArea(s, window);
+			areas[i][windowIndex] = (area + polyArea) * LAMBDA_AREA;
+		}
+	}
+
+	/**
+	 * Method to add the shapes of a Cell instance which touch a window.
+	 * Rectangles are clipped to the window, other polygons are kept whole.
+	 * @param cd the Cell.
+	 * @param orient the orientation of the instance.
+	 * @param x the X position of the instance.
+	 * @param y the Y position of the instance.
+	 * @param window the window, as lx, ly, hx, hy.
+	 * @param result the shapes found, by layer.
+	 */
+	private static void collect(CellData cd, Orientation orient, long x, long y, long[] window, Map<Layer,Shapes> result)
+	{
+		addShapes(cd.boxes, cd.polys, cd.layers, orient, x, y, window, result);
+
+		long[] coords = new long[4];
+		for (Instance inst : cd.subCells)
+		{
+			coords[0] = inst.bounds[0];
+			coords[1] = inst.bounds[1];
+			coords[2] = inst.bounds[2];
+			coords[3] = inst.bounds[3];
+			orient.rectangleBounds(coords);
+			long lx = coords[0] + x, ly = coords[1] + y, hx = coords[2] + x, hy = coords[3] + y;
+			if (lx >= window[2] || hx <= window[0] || ly >= window[3] || hy <= window[1]) continue;
+
+			coords[0] = inst.x;
+			coords[1] = inst.y;
+			orient.transformPoints(1, coords);
+			Orientation subOrient = orient.concatenate(inst.orient).canonic();
+			if (lx >= window[0] && hx <= window[2] && ly >= window[1] && hy <= window[3])
+			{
+				// entirely inside: use the merged shapes of the Cell
+				CellData.Merged merged = inst.cd.getMerged();
+				addShapes(merged.boxes, merged.polys, inst.cd.layers, subOrient, x + coords[0], y + coords[1], window, result);
+			} else
+			{
+				collect(inst.cd, subOrient, x + coords[0], y + coords[1], window, result);
+			}
+		}
+	}
+
+	private static void addShapes(long[][] boxes, long[][][] polys, Layer[] layers, Orientation orient, long x, long y,
+		long[] window, Map<Layer,Shapes> result)
+	{
+		long[] coords = new long[8];
+		for (int k = 0; k < layers.length; k++)
+		{
+			Shapes s = null;
+			long[] b = boxes[k];
+			for (int i = 0; i < b.length; i += 4)
+			{
+				if (orient.isManhattan())
+				{
+					coords[0] = b[i];
+					coords[1] = b[i + 1];
+					coords[2] = b[i + 2];
+					coords[3] = b[i + 3];
+					orient.rectangleBounds(coords);
+					long lx = Math.max(coords[0] + x, window[0]);
+					long ly = Math.max(coords[1] + y, window[1]);
+					long hx = Math.min(coords[2] + x, window[2]);
+					long hy = Math.min(coords[3] + y, window[3]);
+					if (lx >= hx || ly >= hy) continue;
+					if (s == null) s = getShapes(result, layers[k]);
+					s.addRect(lx, ly, hx, hy);
+				} else
+				{
+					long[] points = new long[] {b[i], b[i + 1], b[i + 2], b[i + 1], b[i + 2], b[i + 3], b[i], b[i + 3]};
+					if (s == null) s = getShapes(result, layers[k]);
+					addPoly(s, points, orient, x, y, window);
+				}
+			}
+			for (long[] p : polys[k])
+			{
+				if (s == null) s = getShapes(result, layers[k]);
+				addPoly(s, p.clone(), orient, x, y, window);
+			}
+		}
+	}
+
+	private static void addPoly(Shapes s, long[] points, Orientation orient, long x, long y, long[] window)
+	{
+		int numPoints = points.length / 2;
+		orient.transformPoints(numPoints, points);
+		long lx = Long.MAX_VALUE, ly = Long.MAX_VALUE, hx = Long.MIN_VALUE, hy = Long.MIN_VALUE;
+		for (int i = 0; i < numPoints; i++)
+		{
+			points[i * 2] += x;
+			points[i * 2 + 1] += y;
+			lx = Math.min(lx, points[i * 2]);
+			hx = Math.max(hx, points[i * 2]);
+			ly = Math.min(ly, points[i * 2 + 1]);
+			hy = Math.max(hy, points[i * 2 + 1]);
+		}
+		if (lx >= window[2] || hx <= window[0] || ly >= window[3] || hy <= window[1]) return;
+		s.polys.add(points);
+	}
+
+	private static Shapes getShapes(Map<Layer,Shapes> result, Layer layer)
+	{
+		Shapes s = result.get(layer);
+		if (s == null)
+		{
+			s = new Shapes();
+			result.put(layer, s);
+		}
+		return s;
+	}
+
+	/**
+	 * Method to compute the area of the polygons of a layer in a window which is not already covered by its rectangles.
+	 */
+	private static double polyArea(Shapes s, long[] window)
+	{
+		Area area = new Area();
+		for (long[] points : s.polys)
+		{
+			Path2D.Double path = new Path2D.Double();
+			path.moveTo(points[0], points[1]);
+			for (int i = 2; i < points.length; i += 2)
+				path.lineTo(points[i], points[i + 1]);
+			path.closePath();
+			area.add(new Area(path));
+		}
+		area.intersect(new Area(new Rectangle2D.Double(window[0], window[1], window[2] - window[0], window[3] - window[1])));
+		if (area.isEmpty()) return 0;
+
+		Rectangle2D polyBounds = area.getBounds2D();
+		Path2D.Double covered = new Path2D.Double();
+		for (int i = 0; i < s.numRects; i++)
+		{
+			long lx = s.rects[i * 4], ly = s.rects[i * 4 + 1], hx = s.rects[i * 4 + 2], hy = s.rects[i * 4 + 3];
+			if (lx >= polyBounds.getMaxX() || hx <= polyBounds.getMinX() || ly >= polyBounds.getMaxY() || hy <= polyBounds.getMinY()) continue;
+			covered.append(new Rectangle2D.Double(lx, ly, hx - lx, hy - ly), false);
+		}
+		area.subtract(new Area(covered));
+
+		// outlines and holes of an Area go in opposite directions
+		double sum = 0;
+		double[] coords = new double[6];
+		double startX = 0, startY = 0, lastX = 0, lastY = 0;
+		for (PathIterator it = area.getPathIterator(null); !it.isDone(); it.next())
+		{
+			switch (it.currentSegment(coords))
+			{
+				case PathIterator.SEG_MOVETO:
+					startX = lastX = coords[0];
+					startY = lastY = coords[1];
+					break;
+				case PathIterator.SEG_LINETO:
+					sum += lastX * coords[1] - coords[0] * lastY;
+					lastX = coords[0];
+					lastY = coords[1];
+					break;
+				case PathIterator.SEG_CLOSE:
+					sum += lastX * startY - startX * lastY;
+					lastX = startX;
+					lastY = startY;
+					break;
+			}
+		}
+		return Math.abs(sum) / 2;
+	}
+
+	private static long lambdaToGrid(double lambda)
+	{
+		return Math.round(lambda * FixpCoord.GRIDS_IN_LAMBDA);
+	}
+
+	private static long fixpToGrid(long fixp)
+	{
+		return (fixp + (1L << (FixpCoord.FRACTION_BITS - 1))) >> FixpCoord.FRACTION_BITS;
+	}
+
+	/****************************** CELLS ******************************/
+
+	private static CellData getCellData(Cell cell, Map<Cell,CellData> cellData)
+	{
+		CellData cd = cellData.get(cell);
+		if (cd == null)
+		{
+			cd = new CellData(cell, cellData);
+			cellData.put(cell, cd);
+		}
+		return cd;
+	}
+
+	/**
+	 * Shapes of one Cell in grid units, with its instances of other Cells.
+	 */
+	private static class CellData
+	{
+		private final Layer[] layers;
+		/** boxes of each layer as lx, ly, hx, hy */					private final long[][] boxes;
+		/** points of the polygons of each layer as x, y */				private final long[][][] polys;
+		private final List<Instance> subCells = new ArrayList<Instance>();
+		private final long[] bounds;
+		private Merged merged;
+
+		/**
+		 * The shapes of a Cell and all Cells below it, in the coordinates of the Cell.
+		 * Boxes are merged into disjoint rectangles.
+		 */
+		private static class Merged
+		{
+			private final long[][] boxes;
+			private final long[][][] polys;
+
+			private Merged(long[][] boxes, long[][][] polys)
+			{
+				this.boxes = boxes;
+				this.polys = polys;
+			}
+		}
+
+		private CellData(Cell cell, Map<Cell,CellData> cellData)
+		{
+			ERectangle b = cell.getBounds();
+			bounds = new long[] {b.getFixpMinX() >> FixpCoord.FRACTION_BITS, b.getFixpMinY() >> FixpCoord.FRACTION_BITS,
+				-((-b.getFixpMaxX()) >> FixpCoord.FRACTION_BITS), -((-b.getFixpMaxY()) >> FixpCoord.FRACTION_BITS)};
+
+			PrimitiveShapes shapes = cell.backup().getPrimitiveShapes();
+			List<Layer> layerList = new ArrayList<Layer>();
+			List<long[]> boxList = new ArrayList<long[]>();
+			List<long[][]> polyList = new ArrayList<long[][]>();
+			for (Layer layer : shapes.getLayers())
+			{
+				if (!isDensityLayer(layer)) continue;
+				PrimitiveShapes.LayerShapes ls = shapes.getLayerShapes(layer);
+				long[] layerBoxes = new long[ls.getNumBoxes() * 4];
+				ls.getBoxes(0, ls.getNumBoxes(), layerBoxes);
+				for (int i = 0; i < layerBoxes.length; i++)
+					layerBoxes[i] = fixpToGrid(layerBoxes[i]);
+				List<long[]> layerPolys = new ArrayList<long[]>();
+				for (int i = 0; i < ls.getNumPolys(); i++)
+				{
+					// lines, circles and text cover nothing
+					Poly.Type style = ls.getPolyStyle(i);
+					if (style != Poly.Type.FILLED && style != Poly.Type.CLOSED) continue;
+					long[] points = new long[ls.getPolyNumPoints(i) * 2];
+					ls.getPolyPoints(i, points);
+					for (int j = 0; j < points.length; j++)
+						points[j] = fixpToGrid(points[j]);
+					layerPolys.add(points);
+				}
+				layerList.add(layer);
+				boxList.add(layerBoxes);
+				polyList.add(layerPolys.toArray(new long[layerPolys.size()][]));
+			}
+
+			for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+			{
+				NodeInst ni = it.next();
+				if (!ni.isCellInstance()) continue;
+				CellData sub = getCellData((Cell)ni.getProto(), cellData);
+				Instance inst = new Instance(sub, ni.getOrient(), ni.getD().anchor.getGridX(), ni.getD().anchor.getGridY());
+				subCells.add(inst);
+				for (Layer layer : sub.layers)
+				{
+					if (layerList.contains(layer)) continue;
+					layerList.add(layer);
+					boxList.add(new long[0]);
+					polyList.add(new long[0][]);
+				}
+			}
+
+			// every layer below this Cell is listed, so that merged shapes line up with them
+			layers = layerList.toArray(new Layer[layerList.size()]);
+			boxes = boxList.toArray(new long[boxList.size()][]);
+			polys = polyList.toArray(new long[polyList.size()][][]);
+		}
+
+		/**
+		 * Method to return the merged shapes of this Cell, computing them the first time.
+		 */
+		private synchronized Merged getMerged()
+		{
+			if (merged == null)
+			{
+				Map<Layer,Shapes> shapes = new HashMap<Layer,Shapes>();
+				collect(this, Orientation.IDENT, 0, 0, bounds, shapes);
+				long[][] mergedBoxes = new long[layers.length][];
+				long[][][] mergedPolys = new long[layers.length][][];
+				for (int k = 0; k < layers.length; k++)
+				{
+					Shapes s = shapes.get(layers[k]);
+					if (s == null)
+						mergedBoxes[k] = new long[0];
+					else if (s.numRects > MAX_MERGED_RECTS)
+						mergedBoxes[k] = Arrays.copyOf(s.rects, s.numRects * 4);
+					else
+						mergedBoxes[k] = mergeRectangles(s.rects, s.numRects);
+					mergedPolys[k] = s == null ? new long[0][] : s.polys.toArray(new long[s.polys.size()][]);
+				}
+				merged = new Merged(mergedBoxes, mergedPolys);
+			}
+			return merged;
+		}
+	}
+
+	/**
+	 * An instance of a Cell inside of another Cell.
+	 */
+	private static class Instance
+	{
+		private final CellData cd;
+		private final Orientation orient;
+		private final long x, y;
+		/** bounds of the instance in the parent Cell */		private final long[] bounds;
+
+		private Instance(CellData cd, Orientation orient, long x, long y)
+		{
+			this.cd = cd;
+			this.orient = orient;
+			this.x = x;
+			this.y = y;
+			bounds = cd.bounds.clone();
+			orient.rectangleBounds(bounds);
+			bounds[0] += x;
+			bounds[1] += y;
+			bounds[2] += x;
+			bounds[3] += y;
+		}
+	}
+
+	/**
+	 * Shapes of one layer found in a window.
+	 */
+	private static class Shapes
+	{
+		private long[] rects = new long[64];
+		private int numRects;
+		private final List<long[]> polys = new ArrayList<long[]>();
+
+		private void addRect(long lx, long ly, long hx, long hy)
+		{
+			if (numRects * 4 == rects.length)
+				rects = Arrays.copyOf(rects, rects.length * 2);
+			rects[numRects * 4] = lx;
+			rects[numRects * 4 + 1] = ly;
+			rects[numRects * 4 + 2] = hx;
+			rects[numRects * 4 + 3] = hy;
+			numRects++;
+		}
+	}
+
+	/****************************** SWEEP ******************************/
+
+	/**
+	 * Method to compute the area covered by a set of rectangles, counting overlaps once.
+	 * @param rects the rectangles as lx, ly, hx, hy.
+	 * @param numRects the number of rectangles.
+	 * @return the covered area.
+	 */
+	static long unionArea(long[] rects, int numRects)
+	{
+		Sweep sweep = new Sweep(rects, numRects);
+		long area = 0;
+		long prevX = 0;
+		for (int e = 0; e < sweep.events.length; )
+		{
+			long x = sweep.xs[(int)(sweep.events[e] >>> 32)];
+			area += sweep.covered[1] * (x - prevX);
+			e = sweep.advance(e);
+			prevX = x;
+		}
+		return area;
+	}
+
+	/**
+	 * Method to merge a set of rectangles into disjoint rectangles which cover the same area.
+	 * @param rects the rectangles as lx, ly, hx, hy.
+	 * @param numRects the number of rectangles.
+	 * @return the disjoint rectangles as lx, ly, hx, hy.
+	 */
+	static long[] mergeRectangles(long[] rects, int numRects)
+	{
+		Sweep sweep = new Sweep(rects, numRects);
+		long[] result = new long[64];
+		int numResult = 0;
+
+		// rectangles of the previous slab which may be extended
+		long[] prevIntervals = new long[0];
+		int[] prevRects = new int[0];
+		int numPrev = 0;
+		long[] intervals = new long[16];
+		for (int e = 0; e < sweep.events.length; )
+		{
+			long x = sweep.xs[(int)(sweep.events[e] >>> 32)];
+			e = sweep.advance(e);
+			if (e >= sweep.events.length) break;
+			long nextX = sweep.xs[(int)(sweep.events[e] >>> 32)];
+
+			if (intervals.length < sweep.ys.length * 2)
+				intervals = new long[sweep.ys.length * 2];
+			int numIntervals = sweep.getIntervals(1, 0, sweep.numYs - 1, intervals, 0);
+			int[] curRects = new int[numIntervals];
+			int p = 0;
+			for (int i = 0; i < numIntervals; i++)
+			{
+				long lo = intervals[i * 2], hi = intervals[i * 2 + 1];
+				while (p < numPrev && prevIntervals[p * 2] < lo) p++;
+				if (p < numPrev && prevIntervals[p * 2] == lo && prevIntervals[p * 2 + 1] == hi)
+				{
+					// same interval as the slab on the left: extend its rectangle
+					curRects[i] = prevRects[p];
+					result[prevRects[p] * 4 + 2] = nextX;
+					continue;
+				}
+				if (numResult * 4 == result.length)
+					result = Arrays.copyOf(result, result.length * 2);
+				result[numResult * 4] = x;
+				result[numResult * 4 + 1] = lo;
+				result[numResult * 4 + 2] = nextX;
+				result[numResult * 4 + 3] = hi;
+				curRects[i] = numResult++;
+			}
+			prevIntervals = Arrays.copyOf(intervals, numIntervals * 2);
+			prevRects = curRects;
+			numPrev = numIntervals;
+		}
+		return Arrays.copyOf(result, numResult * 4);
+	}
+
+	/**
+	 * A sweep of rectangles from left to right.
+	 * The Y coordinates are kept in a segment tree which knows how much of each range is covered.
+	 */
+	private static class Sweep
+	{
+		private final long[] rects;
+		private final long[] xs, ys;
+		private final int numYs;
+		/** events sorted by X: index of X in the high word, rectangle*2+start in the low word */
+		private final long[] events;
+		private final int[] count;
+		private final long[] covered;
+
+		private Sweep(long[] rects, int numRects)
+		{
+			this.rects = rects;
+			int numValid = 0;
+			long[] xs = new long[numRects * 2], ys = new long[numRects * 2];
+			for (int i = 0; i < numRects; i++)
+			{
+				if (rects[i * 4] >= rects[i * 4 + 2] || rects[i * 4 + 1] >= rects[i * 4 + 3]) continue;
+				xs[numValid * 2] = rects[i * 4];
+				xs[numValid * 2 + 1] = rects[i * 4 + 2];
+				ys[numValid * 2] = rects[i * 4 + 1];
+				ys[numValid * 2 + 1] = rects[i * 4 + 3];
+				numValid++;
+			}
+			this.xs = unique(xs, numValid * 2);
+			this.ys = unique(ys, numValid * 2);
+			numYs = this.ys.length;
+			events = new long[numValid * 2];
+			int e = 0;
+			for (int i = 0; i < numRects; i++)
+			{
+				if (rects[i * 4] >= rects[i * 4 + 2] || rects[i * 4 + 1] >= rects[i * 4 + 3]) continue;
+				events[e++] = ((long)Arrays.binarySearch(this.xs, rects[i * 4]) << 32) | (i * 2 + 1);
+				events[e++] = ((long)Arrays.binarySearch(this.xs, rects[i * 4 + 2]) << 32) | (i * 2);
+			}
+			Arrays.sort(events);
+			count = new int[Math.max(1, numYs * 4)];
+			covered = new long[Math.max(2, numYs * 4)];
+		}
+
+		private static long[] unique(long[] values, int n)
+		{
+			Arrays.sort(values, 0, n);
+			int k = 0;
+			for (int i = 0; i < n; i++)
+				if (k == 0 || values[i] != values[k - 1]) values[k++] = values[i];
+			return Arrays.copyOf(values, k);
+		}
+
+		/**
+		 * Method to apply all events at the X of an event.
+		 * @return the index of the first event at the next X.
+		 */
+		private int advance(int e)
+		{
+			long xIndex = events[e] >>> 32;
+			for ( ; e < events.length && (events[e] >>> 32) == xIndex; e++)
+			{
+				int code = (int)events[e];
+				int r = code >> 1;
+				int lo = Arrays.binarySearch(ys, rects[r * 4 + 1]);
+				int hi = Arrays.binarySearch(ys, rects[r * 4 + 3]);
+				update(1, 0, numYs - 1, lo, hi, (code & 1) != 0 ? 1 : -1);
+			}
+			return e;
+		}
+
+		/** Adds delta to the Y range [ys[lo], ys[hi]) in the node for the range [ys[l], ys[r]). */
+		private void update(int node, int l, int r, int lo, int hi, int delta)
+		{
+			if (hi <= l || r <= lo) return;
+			if (lo <= l && r <= hi)
+			{
+				count[node] += delta;
+			} else
+			{
+				int mid = (l + r) >>> 1;
+				update(node * 2, l, mid, lo, hi, delta);
+				update(node * 2 + 1, mid, r, lo, hi, delta);
+			}
+			if (count[node] > 0)
+				covered[node] = ys[r] - ys[l];
+			else if (r - l == 1)
+				covered[node] = 0;
+			else
+				covered[node] = covered[node * 2] + covered[node * 2 + 1];
+		}
+
+		/** Collects the covered Y intervals below a node, joining those which touch. */
+		private int getIntervals(int node, int l, int r, long[] intervals, int numIntervals)
+		{
+			if (covered[node] == 0) return numIntervals;
+			if (count[node] > 0 || covered[node] == ys[r] - ys[l])
+			{
+				if (numIntervals > 0 && intervals[numIntervals * 2 - 1] == ys[l])
+				{
+					intervals[numIntervals * 2 - 1] = ys[r];
+					return numIntervals;
+				}
+				intervals[numIntervals * 2] = ys[l];
+				intervals[numIntervals * 2 + 1] = ys[r];
+				return numIntervals + 1;
+			}
+			int mid = (l + r) >>> 1;
+			numIntervals = getIntervals(node * 2, l, mid, intervals, numIntervals);
+			return getIntervals(node * 2 + 1, mid, r, intervals, numIntervals);
+		}
+	}
+}
@@ -26,11 +26,20 @@ import com.sun.electric.database.variable.UserInterface;
 import com.sun.electric.tool.Job;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * This class does low-level reading of GDS files.
+ * The data comes either from a stream or from a memory-mapped file.
+ * A memory-mapped reader can move to any position in the file,
+ * and can be duplicated so that several threads read different parts of the same file.
  */
 public class GDSReader
 {
@@ -48,7 +57,16 @@ public class GDSReader
 	private final static double twoTo32 = makePower(2, 32);
 	private final static double twoToNeg56 = 1.0 / makePower (2, 56);
 
+	/** size of each memory-mapped region of the file */	private static final long MAPCHUNKSIZE = 1L << 30;
+	/** bytes read between progress updates when mapped */	private static final long PROGRESSINTERVAL = 1L << 20;
+
 	private DataInputStream dataInputStream;
+	private ByteBuffer []   mappedChunks;
+	private ByteBuffer      mappedChunk;
+	private int             mappedChunkIndex;
+	private boolean         showProgress;
+	private long            nextProgress;
+	private long            recordStart;
 	private DatatypeSymbol  valuetype;
 	private long            fileLength;
 	private String          filePath;
@@ -155,6 +173,114 @@ public class GDSReader
 		this.fileLength = fileLength;
 		byteCount = 0;
 		recordCount = 0;
+		showProgress = true;
+	}
+
+	/**
+	 * Creates a new instance of GDSReader that reads a memory-mapped file.
+	 * The file is mapped in regions of at most 1GB, so files of any size can be read.
+	 * @param filePath the name of the file, for error messages.
+	 * @param file the file to map.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	public GDSReader(String filePath, File file)
+		throws IOException
+	{
+		this.filePath = filePath;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			fileLength = channel.size();
+			mappedChunks = new ByteBuffer[(int)((fileLength + MAPCHUNKSIZE - 1) / MAPCHUNKSIZE)];
+			for (int i = 0; i < mappedChunks.length; i++)
+			{
+				long start = i * MAPCHUNKSIZE;
+				mappedChunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPCHUNKSIZE, fileLength - start));
+			}
+		} finally
+		{
+			// the mapping remains valid after the file is closed
+			raf.close();
+		}
+		showProgress = true;
+		seek(0);
+	}
+
+	/**
+	 * Creates a new instance of GDSReader that shares the memory-mapped file of another one.
+	 * The new reader has its own position and does not report progress.
+	 */
+	private GDSReader(GDSReader other)
+	{
+		filePath = other.filePath;
+		fileLength = other.fileLength;
+		mappedChunks = new ByteBuffer[other.mappedChunks.length];
+		for (int i = 0; i < mappedChunks.length; i++)
+			mappedChunks[i] = other.mappedChunks[i].duplicate();
+		showProgress = false;
+		seek(0);
+	}
+
+	/**
+	 * Method to create another reader of the same memory-mapped file.
+	 * Each thread that reads the file must use its own reader.
+	 * @return a new reader positioned at the start of the file.
+	 */
+	public GDSReader duplicate()
+	{
+		if (mappedChunks == null) throw new IllegalStateException("Only memory-mapped GDS readers can be duplicated");
+		return new GDSReader(this);
+	}
+
+	/**
+	 * Method to tell whether this reader reads a memory-mapped file.
+	 * Only memory-mapped readers can seek, skip records, and be duplicated.
+	 * @return true if this reader reads a memory-mapped file.
+	 */
+	public boolean isMemoryMapped() { return mappedChunks != null; }
+
+	/**
+	 * Method to tell the length of the file being read.
+	 * @return the length of the file being read (0 if unknown).
+	 */
+	public long getFileLength() { return fileLength; }
+
+	/**
+	 * Method to tell the position in the file of the GDS object header that was just read by "getToken()".
+	 * @return the position in the file of the GDS object header that was just read by "getToken()".
+	 */
+	public long getRecordStart() { return recordStart; }
+
+	/**
+	 * Method to move a memory-mapped reader to a position in the file.
+	 * The position must be the start of a GDS object header, and the next call to "getToken()" reads it.
+	 * @param position the position in the file.
+	 */
+	public void seek(long position)
+	{
+		mappedChunkIndex = (int)(position / MAPCHUNKSIZE);
+		if (mappedChunkIndex < mappedChunks.length)
+		{
+			mappedChunk = mappedChunks[mappedChunkIndex];
+			mappedChunk.position((int)(position - mappedChunkIndex * MAPCHUNKSIZE));
+		} else
+		{
+			mappedChunk = null;
+		}
+		byteCount = position;
+		nextProgress = position + PROGRESSINTERVAL;
+		recordCount = 0;
+	}
+
+	/**
+	 * Method to skip the data of the GDS object that was just read by "getToken()".
+	 * The next call to "getToken()" reads the following GDS object header.
+	 * Only memory-mapped readers can skip records.
+	 */
+	public void skipRecord()
+	{
+		seek(byteCount + recordCount);
 	}
 
 	/**
@@ -280,6 +406,12 @@ public class GDSReader
 	private DatatypeSymbol readRecord()
 		throws Exception
 	{
+		recordStart = byteCount;
+		if (mappedChunks != null && byteCount >= nextProgress)
+		{
+			nextProgress = byteCount + PROGRESSINTERVAL;
+			updateProgressDialog(0);
+		}
 		dataWord = (short)getWord();
 		recordCount = (dataWord & 0xFFFF) - 2;
 		recordType = (byte)(getByte() & 0xFF);
@@ -430,6 +562,20 @@ public class GDSReader
 	public byte getByte()
 		throws Exception
 	{
+		if (mappedChunks != null)
+		{
+			// memory-mapped files report progress once per megabyte, in "readRecord()"
+			while (mappedChunk == null || !mappedChunk.hasRemaining())
+			{
+				if (mappedChunkIndex + 1 >= mappedChunks.length) throw new EOFException();
+				mappedChunkIndex++;
+				mappedChunk = mappedChunks[mappedChunkIndex];
+				mappedChunk.position(0);
+			}
+			byteCount++;
+			recordCount--;
+			return mappedChunk.get();
+		}
 		byte b = dataInputStream.readByte();
 		updateProgressDialog(1);
 		recordCount--;
@@ -465,7 +611,7 @@ public class GDSReader
 	private void updateProgressDialog(int bytesRead)
 	{
 		byteCount += bytesRead;
-		if (fileLength == 0) return;
+		if (fileLength == 0 || !showProgress) return;
 		long pct = byteCount * 100L / fileLength;
 		UserInterface ui = Job.getUserInterface();
 		if (ui != null)
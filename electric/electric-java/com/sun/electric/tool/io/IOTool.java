@@ -441,6 +441,62 @@ public class IOTool extends Tool
 	 */
 	public static int getFactoryBackupRedundancy() { return cacheBackupRedundancy.getIntFactoryValue(); }
 
+	private static Pref cacheJELIBInParallel = Pref.makeBooleanPref("JELIBInParallel", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether JELIB input parses the contents of the cells of a library in parallel.
+	 * The default is "false".
+	 * @return true if JELIB input parses the contents of the cells of a library in parallel.
+	 */
+	public static boolean isJELIBInParallel() { return cacheJELIBInParallel.getBoolean(); }
+	/**
+	 * Method to set whether JELIB input parses the contents of the cells of a library in parallel.
+	 * @param on true if JELIB input parses the contents of the cells of a library in parallel.
+	 */
+	public static void setJELIBInParallel(boolean on) { cacheJELIBInParallel.setBoolean(on); }
+	/**
+	 * Method to tell whether JELIB input parses the contents of the cells of a library in parallel, by default.
+	 * @return true if JELIB input parses the contents of the cells of a library in parallel, by default.
+	 */
+	public static boolean isFactoryJELIBInParallel() { return cacheJELIBInParallel.getBooleanFactoryValue(); }
+
+	private static Pref cacheJELIBBinaryCache = Pref.makeBooleanPref("JELIBBinaryCache", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether the immutable JELIB reader keeps the parsed cells of a library in a binary file next to it.
+	 * The binary file is used instead of the library as long as the library is not changed.
+	 * The default is "false".
+	 * @return true if the immutable JELIB reader keeps the parsed cells in a binary file.
+	 */
+	public static boolean isJELIBBinaryCache() { return cacheJELIBBinaryCache.getBoolean(); }
+	/**
+	 * Method to set whether the immutable JELIB reader keeps the parsed cells of a library in a binary file next to it.
+	 * @param on true if the immutable JELIB reader keeps the parsed cells in a binary file.
+	 */
+	public static void setJELIBBinaryCache(boolean on) { cacheJELIBBinaryCache.setBoolean(on); }
+	/**
+	 * Method to tell whether the immutable JELIB reader keeps the parsed cells of a library in a binary file, by default.
+	 * @return true if the immutable JELIB reader keeps the parsed cells in a binary file, by default.
+	 */
+	public static boolean isFactoryJELIBBinaryCache() { return cacheJELIBBinaryCache.getBooleanFactoryValue(); }
+
+	private static Pref cacheNetlistInParallel = Pref.makeBooleanPref("NetlistInParallel", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether the netlisters analyze the networks of the cells in parallel.
+	 * The cells are analyzed on the working threads of the Job, ahead of the traversal, and are still written in order.
+	 * The default is false (each cell is analyzed when it is written).
+	 * @return true if the netlisters analyze the networks of the cells in parallel.
+	 */
+	public static boolean isNetlistInParallel() { return cacheNetlistInParallel.getBoolean(); }
+	/**
+	 * Method to set whether the netlisters analyze the networks of the cells in parallel.
+	 * @param on true if the netlisters analyze the networks of the cells in parallel.
+	 */
+	public static void setNetlistInParallel(boolean on) { cacheNetlistInParallel.setBoolean(on); }
+	/**
+	 * Method to tell whether the netlisters analyze the networks of the cells in parallel, by default.
+	 * @return true if the netlisters analyze the networks of the cells in parallel, by default.
+	 */
+	public static boolean isFactoryNetlistInParallel() { return cacheNetlistInParallel.getBooleanFactoryValue(); }
+
 	/****************************** GENERAL OUTPUT PREFERENCES ******************************/
 
 	/**
@@ -1380,6 +1436,25 @@ public class IOTool extends Tool
 	 */
 	public static boolean isFactoryGDSDumpReadable() { return cacheGDSDumpReadable.getBooleanFactoryValue(); }
 
+	private static Pref cacheGDSInParallel = Pref.makeBooleanPref("GDSInParallel", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether GDS input memory-maps the file and reads its structures in parallel.
+	 * Only local, uncompressed files are read this way.
+	 * The default is "false".
+	 * @return true if GDS input memory-maps the file and reads its structures in parallel.
+	 */
+	public static boolean isGDSInParallel() { return cacheGDSInParallel.getBoolean(); }
+	/**
+	 * Method to set whether GDS input memory-maps the file and reads its structures in parallel.
+	 * @param on true if GDS input memory-maps the file and reads its structures in parallel.
+	 */
+	public static void setGDSInParallel(boolean on) { cacheGDSInParallel.setBoolean(on); }
+	/**
+	 * Method to tell whether GDS input memory-maps the file and reads its structures in parallel, by default.
+	 * @return true if GDS input memory-maps the file and reads its structures in parallel, by default.
+	 */
+	public static boolean isFactoryGDSInParallel() { return cacheGDSInParallel.getBooleanFactoryValue(); }
+
     /****************************** POSTSCRIPT OUTPUT PREFERENCES ******************************/
 
 	private static Pref cachePrintEncapsulated = Pref.makeBooleanPref("PostScriptEncapsulated", IOTool.tool.prefs, false);
@@ -71,6 +71,7 @@ import com.sun.electric.technology.Technology.ArcLayer;
 import com.sun.electric.technology.technologies.Artwork;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobPool;
 import com.sun.electric.tool.io.FileType;
 import com.sun.electric.tool.io.GDSReader;
 import com.sun.electric.tool.io.GDSReader.GSymbol;
@@ -79,6 +80,7 @@ import com.sun.electric.tool.io.input.CellArrayBuilder;
 import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
 import com.sun.electric.tool.user.dialogs.OpenFile;
 import com.sun.electric.tool.user.ui.LayerVisibility;
+import com.sun.electric.util.ElapseTimer;
 import com.sun.electric.util.math.DBMath;
 import com.sun.electric.util.math.FixpCoord;
 import com.sun.electric.util.math.GenMath;
@@ -90,6 +92,7 @@ import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -102,6 +105,7 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -110,6 +114,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class reads files in GDS files.
@@ -181,6 +188,8 @@ public class GDS extends Input<Object>
 	private Set<Cell>        missingCells;
 	private MakeInstance     lastExportInstance = null;
 	private PrintWriter      printWriter;
+	private StructureIndex   decoding;
+	private int              decodingRef, decodingLayer;
 
 	private static GSymbol [] optionSet = {GDSReader.GDS_ATTRTABLE, GDSReader.GDS_REFLIBS, GDSReader.GDS_FONTS, GDSReader.GDS_GENERATIONS};
 	private static GSymbol [] shapeSet = {GDSReader.GDS_AREF, GDSReader.GDS_SREF, GDSReader.GDS_BOUNDARY, GDSReader.GDS_PATH,
@@ -211,6 +220,7 @@ public class GDS extends Input<Object>
 		public boolean cadenceCompatibility;
 		public boolean dumpReadable;
 		public boolean skeletonize;
+		public boolean parallelRead;
         boolean onlyVisibleLayers;
         boolean[] visibility;
         boolean[][] techVisibility;
@@ -234,6 +244,7 @@ public class GDS extends Input<Object>
 				cadenceCompatibility = IOTool.isFactoryGDSCadenceCompatibility();
 				dumpReadable = IOTool.isFactoryGDSDumpReadable();
 				onlyVisibleLayers = IOTool.isFactoryGDSOnlyInvisibleLayers();
+				parallelRead = IOTool.isFactoryGDSInParallel();
 			} else {
                 inputScale = IOTool.getGDSInputScale();
                 simplifyCells = IOTool.isGDSInSimplifyCells();
@@ -246,6 +257,7 @@ public class GDS extends Input<Object>
                 cadenceCompatibility = IOTool.isGDSCadenceCompatibility();
 				dumpReadable = IOTool.isGDSDumpReadable();
                 onlyVisibleLayers = IOTool.isGDSOnlyInvisibleLayers();
+				parallelRead = IOTool.isGDSInParallel();
             }
 			if (onlyVisibleLayers)
 				techVisibility = LayerVisibility.getLayerVisibility().getTechDataArray();
@@ -269,7 +281,19 @@ public class GDS extends Input<Object>
 				visibility = techVisibility[tech.getId().techIndex];
 			
 			// create a low-level GDS reader
-			in.gdsRead = new GDSReader(in.filePath, in.dataInputStream, in.fileLength);
+			File file = parallelRead && !fileURL.toString().endsWith(".gz") ? TextUtils.getFile(fileURL) : null;
+			if (file != null)
+			{
+				try
+				{
+					in.gdsRead = new GDSReader(in.filePath, file);
+				} catch (IOException e)
+				{
+					System.out.println("Cannot memory-map " + in.filePath + ", reading it sequentially (" + e.getMessage() + ")");
+				}
+			}
+			if (in.gdsRead == null)
+				in.gdsRead = new GDSReader(in.filePath, in.dataInputStream, in.fileLength);
 
             // Libraries before loading
             Set<Library> oldLibs = new HashSet<Library>();
@@ -626,7 +650,11 @@ public class GDS extends Input<Object>
             instArrays.add(mia);
         }
 
-		private void makeExport(NodeProto proto, Point2D loc, Orientation orient,
+		/**
+		 * Method to make an export.
+		 * @return the instance that holds the export, or null if none was made.
+		 */
+		private MakeInstance makeExport(NodeProto proto, Point2D loc, Orientation orient,
 			String exportName, UnknownLayerMessage ulm)
 		{
 			if (localPrefs.cadenceCompatibility && exportName.contains("<") && exportName.contains("<"))
@@ -642,17 +670,19 @@ public class GDS extends Input<Object>
 				if (localPrefs.skeletonize)
 				{
 					doSkeleton(proto, loc, orient, wid, hei, null);
-	    			if (!topLevel) return;
+	    			if (!topLevel) return null;
 				}
-				lastExportInstance = new MakeInstance(this, proto, loc, orient, 1.0, wid, hei, null, exportName, null, false);
-		        insts.add(lastExportInstance);
+				MakeInstance mi = new MakeInstance(this, proto, loc, orient, 1.0, wid, hei, null, exportName, null, false);
+		        insts.add(mi);
 				if (ulm != null)
 				{
         			List<MakeInstance> errorList = allErrorInsts.get(ulm);
                 	if (errorList == null) allErrorInsts.put(ulm, errorList = new ArrayList<MakeInstance>());
-                    errorList.add(lastExportInstance);
+                    errorList.add(mi);
 				}
+				return mi;
 			}
+			return null;
         }
 
 		private void makeText(NodeProto proto, Point2D loc, String text,
@@ -1733,10 +1763,16 @@ public class GDS extends Input<Object>
 		readUnits();
 		gdsRead.getToken();
 
-		while (gdsRead.getTokenType() != GDSReader.GDS_ENDLIB)
+		if (gdsRead.isMemoryMapped() && !localPrefs.dumpReadable && !localPrefs.skeletonize && !TALLYCONTENTS)
 		{
-			readStructure();
-			gdsRead.getToken();
+			readStructuresInParallel();
+		} else
+		{
+			while (gdsRead.getTokenType() != GDSReader.GDS_ENDLIB)
+			{
+				readStructure();
+				gdsRead.getToken();
+			}
 		}
 
     	if (localPrefs.dumpReadable)
@@ -1747,6 +1783,256 @@ public class GDS extends Input<Object>
     	}
 	}
 
+	/**
+	 * Class to describe a structure found by the first pass of a parallel read.
+	 */
+	private static class StructureIndex
+	{
+		/** position of the BGNSTR record in the file */		private long start;
+		/** position after the ENDSTR record in the file */	private long end;
+		/** the name of the structure */						private String name;
+		/** the names in the SREF and AREF records */			private List<String> refNames = new ArrayList<String>();
+		/** the prototypes of the SREF and AREF records */		private Cell [] refs;
+		/** the layers of the elements */						private List<LayerChoice> layers = new ArrayList<LayerChoice>();
+		/** the builder of the structure */					private CellBuilder builder;
+		/** true if decoding made an export */				private boolean madeExport;
+		/** the export at the end of decoding */				private MakeInstance lastExport;
+		/** a port property found before any export */			private String [] inheritedProperty;
+
+		private StructureIndex(long start) { this.start = start; }
+	}
+
+	/**
+	 * Class to remember the layer chosen for an element by the first pass of a parallel read.
+	 * The choice for a GDS layer can depend on the elements before it,
+	 * so the layers are chosen in file order before the structures are decoded.
+	 */
+	private static class LayerChoice
+	{
+		private final PrimitiveNode layerNodeProto, pinNodeProto;
+		private final boolean layerIsPin;
+		private final UnknownLayerMessage message;
+
+		private LayerChoice(PrimitiveNode layerNodeProto, PrimitiveNode pinNodeProto, boolean layerIsPin, UnknownLayerMessage message)
+		{
+			this.layerNodeProto = layerNodeProto;
+			this.pinNodeProto = pinNodeProto;
+			this.layerIsPin = layerIsPin;
+			this.message = message;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof LayerChoice)) return false;
+			LayerChoice lc = (LayerChoice)o;
+			return layerNodeProto == lc.layerNodeProto && pinNodeProto == lc.pinNodeProto &&
+				layerIsPin == lc.layerIsPin && message == lc.message;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return System.identityHashCode(layerNodeProto) * 31 + System.identityHashCode(message);
+		}
+	}
+
+	/**
+	 * Method to read the structures of a memory-mapped file in parallel.
+	 * A first pass finds the structures and the names they reference, and creates their cells
+	 * in the order that a sequential read would.
+	 * Then the structures are decoded in parallel, each into its own CellBuilder,
+	 * so the result is the same as reading the structures one at a time.
+	 * On return, the current token is the end of the library.
+	 */
+	private void readStructuresInParallel()
+		throws Exception
+	{
+		ElapseTimer timer = ElapseTimer.createInstance().start();
+		long startPos = gdsRead.getRecordStart();
+		List<StructureIndex> structures = indexStructures();
+		long bytes = gdsRead.getRecordStart() - startPos;
+
+		// create the cells and find the references, as a sequential read would
+		for (StructureIndex si : structures)
+		{
+			startCell(scaleName(si.name, 1.0));
+			si.builder = theCell;
+			si.refs = new Cell[si.refNames.size()];
+			for (int i = 0; i < si.refs.length; i++)
+				si.refs[i] = getPrototype(si.refNames.get(i));
+		}
+		theCell = null;
+
+		// decode the biggest structures first to balance the threads
+		final StructureIndex [] order = structures.toArray(new StructureIndex[structures.size()]);
+		Arrays.sort(order, new Comparator<StructureIndex>()
+		{
+			public int compare(StructureIndex s1, StructureIndex s2)
+			{
+				return Long.compare(s2.end - s2.start, s1.end - s1.start);
+			}
+		});
+		int numberOfThreads = Math.max(1, Math.min(JobPool.getNumThreads(), order.length));
+		final AtomicInteger nextStructure = new AtomicInteger(0);
+		List<Callable<Object>> decoders = new ArrayList<Callable<Object>>();
+		for (int t = 0; t < numberOfThreads; t++)
+		{
+			final GDS worker = makeWorker();
+			decoders.add(new Callable<Object>()
+			{
+				public Object call() throws Exception
+				{
+					for (int i = nextStructure.getAndIncrement(); i < order.length; i = nextStructure.getAndIncrement())
+						worker.decodeStructure(order[i]);
+					return null;
+				}
+			});
+		}
+		try
+		{
+			JobPool.invokeAll(decoders);
+		} catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+			throw e;
+		}
+
+		// a port property may refer to the last export of an earlier structure
+		for (StructureIndex si : structures)
+		{
+			if (si.inheritedProperty != null)
+			{
+				if (lastExportInstance != null) setExportCharacteristic(lastExportInstance, si.inheritedProperty);
+				lastExportInstance = null;
+			}
+			if (si.madeExport) lastExportInstance = si.lastExport;
+		}
+
+		timer.end();
+		double megabytes = bytes / (1024.0 * 1024.0);
+		System.out.println("Read " + structures.size() + " structures (" + TextUtils.formatDouble(megabytes, 1) + " MB) with " +
+			numberOfThreads + " threads in " + timer + " (" +
+			TextUtils.formatDouble(megabytes * 1000 / Math.max(timer.getTime(), 1), 1) + " MB/s)");
+	}
+
+	/**
+	 * Method to find the structures of a memory-mapped file without decoding them.
+	 * Only the records that name structures or layers are decoded, all others are skipped.
+	 * The layers of the elements are chosen here, in file order.
+	 * On entry, the current token is the first structure; on return it is the end of the library.
+	 * @return the structures in the order they appear in the file.
+	 */
+	private List<StructureIndex> indexStructures()
+		throws Exception
+	{
+		List<StructureIndex> structures = new ArrayList<StructureIndex>();
+		Map<LayerChoice,LayerChoice> uniqueChoices = new HashMap<LayerChoice,LayerChoice>();
+		while (gdsRead.getTokenType() != GDSReader.GDS_ENDLIB)
+		{
+			if (gdsRead.getTokenType() != GDSReader.GDS_BGNSTR) gdsRead.handleError("Begin structure statement is missing");
+			StructureIndex si = new StructureIndex(gdsRead.getRecordStart());
+			GSymbol element = null;
+			boolean layerFound = false;
+			int layerNum = 0;
+			while (gdsRead.getTokenType() != GDSReader.GDS_ENDSTR)
+			{
+				GSymbol type = gdsRead.getTokenType();
+				if (type == GDSReader.GDS_STRNAME || type == GDSReader.GDS_SNAME)
+				{
+					gdsRead.getToken();
+					if (gdsRead.getTokenType() != GDSReader.GDS_IDENT)
+						gdsRead.handleError(type == GDSReader.GDS_STRNAME ? "Structure name is missing" : "Structure reference name is missing");
+					if (type == GDSReader.GDS_STRNAME) si.name = gdsRead.getStringValue(); else
+						si.refNames.add(gdsRead.getStringValue());
+				} else if (type == GDSReader.GDS_BOUNDARY || type == GDSReader.GDS_PATH || type == GDSReader.GDS_TEXTSYM ||
+					type == GDSReader.GDS_BOX || type == GDSReader.GDS_NODE)
+				{
+					element = type;
+					layerFound = false;
+				} else if (element != null && !layerFound && type == GDSReader.GDS_LAYER)
+				{
+					gdsRead.getToken();
+					layerNum = gdsRead.getShortValue();
+					layerFound = true;
+
+					// nodes use the layer number as the type (see "determineNode()")
+					if (element == GDSReader.GDS_NODE)
+					{
+						chooseLayer(si, layerNum, layerNum, false, uniqueChoices);
+						element = null;
+					}
+				} else if (element != null && layerFound)
+				{
+					// the layer type follows the layer number (see "determineLayer()")
+					if (isMember(type, maskSet))
+					{
+						gdsRead.getToken();
+						chooseLayer(si, layerNum, gdsRead.getShortValue(),
+							element == GDSReader.GDS_BOUNDARY || element == GDSReader.GDS_TEXTSYM, uniqueChoices);
+					}
+					element = null;
+				}
+				gdsRead.skipRecord();
+				gdsRead.getToken();
+			}
+			if (si.name == null) gdsRead.handleError("Strname statement is missing");
+			gdsRead.skipRecord();
+			gdsRead.getToken();
+			si.end = gdsRead.getRecordStart();
+			structures.add(si);
+		}
+		return structures;
+	}
+
+	/**
+	 * Method to choose the layer of an element in the first pass of a parallel read.
+	 */
+	private void chooseLayer(StructureIndex si, int layerNum, int layerType, boolean textCase,
+		Map<LayerChoice,LayerChoice> uniqueChoices)
+	{
+		setLayer(layerNum, layerType, textCase);
+		LayerChoice choice = new LayerChoice(layerNodeProto, pinNodeProto, layerIsPin, currentUnknownLayerMessage);
+		LayerChoice unique = uniqueChoices.get(choice);
+		if (unique == null) uniqueChoices.put(choice, unique = choice);
+		si.layers.add(unique);
+	}
+
+	/**
+	 * Method to make a reader of structures for a parallel read.
+	 * The worker shares the library and technology with this reader
+	 * but has its own position in the file and its own geometry.
+	 */
+	private GDS makeWorker()
+	{
+		GDS worker = new GDS(ep, localPrefs);
+		worker.gdsRead = gdsRead.duplicate();
+		worker.theLibrary = theLibrary;
+		worker.curTech = curTech;
+		worker.theScale = theScale;
+		worker.alignment = alignment;
+		worker.allBuilders = allBuilders;
+		worker.missingCells = missingCells;
+		worker.layerNodeProto = Generic.tech().drcNode;
+		worker.theVertices = new Point2D[MAXPOINTS];
+		for(int i=0; i<MAXPOINTS; i++) worker.theVertices[i] = new Point2D.Double();
+		return worker;
+	}
+
+	/**
+	 * Method to decode one structure in a worker of a parallel read.
+	 */
+	private void decodeStructure(StructureIndex si)
+		throws Exception
+	{
+		decoding = si;
+		gdsRead.seek(si.start);
+		gdsRead.getToken();
+		readStructure();
+		si.lastExport = lastExportInstance;
+		decoding = null;
+	}
+
 	private void readHeader()
 		throws Exception
 	{
@@ -1925,6 +2211,15 @@ public class GDS extends Input<Object>
 		gdsRead.getToken();
 		if (gdsRead.getTokenType() != GDSReader.GDS_IDENT) gdsRead.handleError("Structure name is missing");
 
+		// when reading in parallel, the cell was made by the first pass
+		if (decoding != null)
+		{
+			theCell = decoding.builder;
+			decodingRef = decodingLayer = 0;
+			lastExportInstance = null;
+			return;
+		}
+
 		// look for this nodeproto
 		String name = gdsRead.getStringValue();
 		name = scaleName(name, 1.0);
@@ -1933,6 +2228,16 @@ public class GDS extends Input<Object>
 			printWriter.println();
 			printWriter.println("- Cell: " + name);
 		}
+		startCell(name);
+	}
+
+	/**
+	 * Method to find or create the cell of a structure and start building it.
+	 * @param name the name of the cell.
+	 */
+	private void startCell(String name)
+		throws Exception
+	{
 		Cell cell = findCell(name);
 		if (cell == null)
 		{
@@ -2672,8 +2977,13 @@ public class GDS extends Input<Object>
 		// handle pins specially
 		if (layerIsPin)
 		{
-            theCell.makeExport(pinNodeProto, new Point2D.Double(theVertices[0].getX(), theVertices[0].getY()),
+            MakeInstance mi = theCell.makeExport(pinNodeProto, new Point2D.Double(theVertices[0].getX(), theVertices[0].getY()),
             	Orientation.IDENT, charstring, currentUnknownLayerMessage);
+			if (mi != null)
+			{
+				lastExportInstance = mi;
+				if (decoding != null) decoding.madeExport = true;
+			}
 			return;
 		}
 
@@ -2783,6 +3093,17 @@ public class GDS extends Input<Object>
 	{
 		curLayerNum = layerNum;
 		curLayerType = layerType;
+
+		// when reading in parallel, the layers were chosen by the first pass
+		if (decoding != null)
+		{
+			LayerChoice choice = decoding.layers.get(decodingLayer++);
+			layerNodeProto = choice.layerNodeProto;
+			pinNodeProto = choice.pinNodeProto;
+			layerIsPin = choice.layerIsPin;
+			currentUnknownLayerMessage = choice.message;
+			return;
+		}
 		layerIsPin = false;
 		currentUnknownLayerMessage = null;
 		Integer layerInt = Integer.valueOf(layerNum + (layerType<<16));
@@ -2966,25 +3287,38 @@ public class GDS extends Input<Object>
 			String[] parts = property.split(" ");
 			if (parts.length >= 4)
 			{
-				String portName = parts[2];
-				String direction = parts[3];
-				if (portName.equals(lastExportInstance.exportOrTextName))
-				{
-					if (direction.equals("input")) lastExportInstance.pc = PortCharacteristic.IN; else
-						if (direction.equals("output")) lastExportInstance.pc = PortCharacteristic.OUT; else
-							if (direction.equals("inputOutput")) lastExportInstance.pc = PortCharacteristic.BIDIR;
-				}
+				setExportCharacteristic(lastExportInstance, parts);
 				lastExportInstance = null;
 			}
+		} else if (decoding != null && !decoding.madeExport && decoding.inheritedProperty == null)
+		{
+			// when reading in parallel, the property may apply to the last export of the previous structure
+			String[] parts = property.split(" ");
+			if (parts.length >= 4) decoding.inheritedProperty = parts;
 		}
 
 		// add to the current structure as a variable?
 		gdsRead.getToken();
 	}
 
+	private void setExportCharacteristic(MakeInstance mi, String[] parts)
+	{
+		String portName = parts[2];
+		String direction = parts[3];
+		if (portName.equals(mi.exportOrTextName))
+		{
+			if (direction.equals("input")) mi.pc = PortCharacteristic.IN; else
+				if (direction.equals("output")) mi.pc = PortCharacteristic.OUT; else
+					if (direction.equals("inputOutput")) mi.pc = PortCharacteristic.BIDIR;
+		}
+	}
+
 	private Cell getPrototype(String name)
 		throws Exception
 	{
+		// when reading in parallel, the prototypes were found by the first pass
+		if (decoding != null) return decoding.refs[decodingRef++];
+
 		// scan for this prototype
 		name = scaleName(name, 1.0);
 		Cell np = findCell(name);
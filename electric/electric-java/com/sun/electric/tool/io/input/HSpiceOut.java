@@ -844,13 +844,13 @@ public class HSpiceOut extends Input<Stimuli>
                         MutableSignal<ComplexSample> signal = (MutableSignal<ComplexSample>)allSignals[(k + numnoi) % numSignals][fileNum*sweepsThisFile + sweepIndex];
 						float realPart = getHSpiceFloat(false);
 						float imagPart = getHSpiceFloat(false);
-                        if (signal.getSample(time) == null)
+                        if (time > signal.getMaxTime() || signal.getSample(time) == null)
                             signal.addSample(time, new ComplexSample(realPart, imagPart));
 					} else
 					{
                         MutableSignal<ScalarSample> signal = (MutableSignal<ScalarSample>)allSignals[(k + numnoi) % numSignals][fileNum*sweepsThisFile + sweepIndex];
                         double val = getHSpiceFloat(false);
-                        if (signal.getSample(time) == null)
+                        if (time > signal.getMaxTime() || signal.getSample(time) == null)
                             signal.addSample(time, new ScalarSample(val));
 					}
 					if (eofReached)
@@ -50,6 +50,7 @@ import com.sun.electric.tool.Job;
 import com.sun.electric.tool.JobException;
 import com.sun.electric.tool.MultiTaskJob;
 import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.user.ErrorLogger;
 import com.sun.electric.tool.user.User;
 import com.sun.electric.tool.user.dialogs.OpenFile;
@@ -72,6 +73,7 @@ public class JELIB2 {
 
     LibId libId;
     JelibParser parser;
+    final Map<LibId, String> externalLibIds;
     public LibraryBackup libBackup;
     ArrayList<CellRevision> cellRevisions = new ArrayList<CellRevision>();
     public ArrayList<CellBackup> cellBackups = new ArrayList<CellBackup>();
@@ -79,6 +81,17 @@ public class JELIB2 {
     public JELIB2(LibId libId, JelibParser parser) {
         this.libId = libId;
         this.parser = parser;
+        externalLibIds = parser.externalLibIds;
+    }
+
+    /**
+     * Creates a library that is already instantiated, for example from a JelibCache.
+     * The CellRevisions and CellBackups are added by the caller.
+     */
+    JELIB2(LibId libId, LibraryBackup libBackup, Map<LibId, String> externalLibIds) {
+        this.libId = libId;
+        this.libBackup = libBackup;
+        this.externalLibIds = externalLibIds;
     }
 
     public CellRevision[] getCellRevisions() {
@@ -294,7 +307,8 @@ public class JELIB2 {
                 }
             }
         };
-        new JelibReaderMultiTaskJob(externalURL, instantiate, doBackup, getPrimitiveBounds, doSnapshot, doDatabase, false, consumer).startJob();
+        new JelibReaderMultiTaskJob(externalURL, instantiate, doBackup, getPrimitiveBounds, doSnapshot, doDatabase, false,
+                IOTool.isJELIBInParallel(), IOTool.isJELIBBinaryCache(), consumer).startJob();
     }
 
     private static class JelibReaderMultiTaskJob extends MultiTaskJob<URL, JELIB2, Snapshot> {
@@ -305,12 +319,15 @@ public class JELIB2 {
         private final boolean doSnapshot;
         private final boolean doDatabase;
         private final boolean check;
+        private final boolean parallel;
+        private final boolean useCache;
         private final URL topLibFile;
         private String mainLibDirectory;
         private transient IdManager idManager;
         private transient HashSet<LibId> externalLibraries;
 
-        private JelibReaderMultiTaskJob(URL topLibFile, boolean instantiate, boolean doBackup, boolean getPrimitiveBounds, boolean doSnapshot, boolean doDatabase, boolean check, Consumer<Snapshot> c) {
+        private JelibReaderMultiTaskJob(URL topLibFile, boolean instantiate, boolean doBackup, boolean getPrimitiveBounds, boolean doSnapshot, boolean doDatabase, boolean check,
+                boolean parallel, boolean useCache, Consumer<Snapshot> c) {
             super("JelibReaderMultiTaskJobLight", null, c);
             this.topLibFile = topLibFile;
             this.instantiate = instantiate;
@@ -319,6 +336,8 @@ public class JELIB2 {
             this.doSnapshot = doSnapshot;
             this.doDatabase = doDatabase;
             this.check = check;
+            this.parallel = parallel;
+            this.useCache = useCache;
             String topLibName = TextUtils.getFileNameWithoutExtension(topLibFile);
             mainLibDirectory = TextUtils.getFilePath(topLibFile);
             FileType type = FileType.findTypeByExtension(TextUtils.getExtension(topLibFile));
@@ -371,8 +390,16 @@ public class JELIB2 {
             ErrorLogger errorLogger = ErrorLogger.newInst(libId.toString());
             TechPool techPool = doBackup ? getTechPool() : null;
             try {
-                JelibParser parser = JelibParser.parse(libId, libFile, fileType, false, errorLogger);
-                for (Map.Entry<LibId, String> e : parser.externalLibIds.entrySet()) {
+                JelibCache cache = useCache && instantiate ? JelibCache.find(libFile, fileType) : null;
+                if (cache != null) {
+                    jelib2 = cache.read(libId, techPool, getPrimitiveBounds);
+                }
+                boolean cached = jelib2 != null;
+                if (!cached) {
+                    JelibParser parser = JelibParser.parse(libId, libFile, fileType, false, parallel, errorLogger);
+                    jelib2 = new JELIB2(libId, parser);
+                }
+                for (Map.Entry<LibId, String> e : jelib2.externalLibIds.entrySet()) {
                     LibId externallibId = e.getKey();
                     String libFileName = e.getValue();
                     if (Library.findLibrary(libId.libName) != null) {
@@ -381,13 +408,15 @@ public class JELIB2 {
                     startTask(externallibId, libFileName, fileType);
                 }
 
-                jelib2 = new JELIB2(libId, parser);
-                boolean ok = false;
-                if (instantiate) {
+                boolean ok = cached;
+                if (instantiate && !cached) {
                     ok = jelib2.instantiate(techPool, getPrimitiveBounds);
+                    if (ok && cache != null) {
+                        cache.write(jelib2);
+                    }
                 }
                 Date stopDate = new Date();
-                System.out.println("Parsing " + errorLogger.getInfo() + " " + ok + " " + startDate + " " + stopDate + " " + Thread.currentThread().getName());
+                System.out.println((cached ? "Cached " : "Parsing ") + errorLogger.getInfo() + " " + ok + " " + startDate + " " + stopDate + " " + Thread.currentThread().getName());
 
             } catch (Exception e) {
                 System.out.println("Parsing " + libId + " caused an exception " + e);
@@ -0,0 +1,445 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JelibCache.java
+ * Input/output tool: binary cache of JELIB libraries
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.CellBackup;
+import com.sun.electric.database.CellRevision;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableCell;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.LibraryBackup;
+import com.sun.electric.database.id.ArcProtoId;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.IdReader;
+import com.sun.electric.database.id.IdWriter;
+import com.sun.electric.database.id.LibId;
+import com.sun.electric.database.id.NodeProtoId;
+import com.sun.electric.database.id.PortProtoId;
+import com.sun.electric.database.id.PrimitiveNodeId;
+import com.sun.electric.database.id.TechId;
+import com.sun.electric.database.text.CellName;
+import com.sun.electric.database.text.Version;
+import com.sun.electric.technology.TechPool;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.util.TextUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the parsed cells of a JELIB library in a binary file next to the library.
+ * The binary file has the LibraryBackup and the CellRevisions of the library in the IdWriter encoding,
+ * after a table of the ids that they use, by name.
+ * So reading the cache makes only the ids of the library and of the cells and primitives it refers to,
+ * and the contents of the cache do not depend on the other libraries of the session.
+ * It is keyed by a hash of the library file and by the version of Electric,
+ * so it is used only while the library is not changed.
+ * It is read with one sequential read and no parsing.
+ */
+class JelibCache {
+
+    /** extension added to the name of the library file */
+    static final String EXTENSION = ".cache";
+    private static final String MAGIC = "Electric JELIB cache 2";
+
+    private final URL fileURL;
+    private final File cacheFile;
+    private final String key;
+
+    private JelibCache(URL fileURL, File cacheFile, String key) {
+        this.fileURL = fileURL;
+        this.cacheFile = cacheFile;
+        this.key = key;
+    }
+
+    /**
+     * Method to find the binary cache of a library file.
+     * Only local JELIB files are cached.
+     * @param fileURL the URL of the library file.
+     * @param fileType the type of the library file.
+     * @return the cache of the library file, or null if the library file can't be cached.
+     */
+    static JelibCache find(URL fileURL, FileType fileType) {
+        if (fileType != FileType.JELIB || !fileURL.getProtocol().equals("file")) {
+            return null;
+        }
+        File libFile = TextUtils.getFile(fileURL);
+        if (libFile == null || !libFile.isFile()) {
+            return null;
+        }
+        try {
+            return new JelibCache(fileURL, new File(libFile.getPath() + EXTENSION), getKey(libFile));
+        } catch (IOException e) {
+            System.out.println("Cannot compute the hash of " + libFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Method to compute the key of a library file.
+     * It is the version of Electric, the length of the file and the MD5 hash of its contents.
+     */
+    private static String getKey(File libFile) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream in = new FileInputStream(libFile);
+        try {
+            byte[] buf = new byte[1 << 16];
+            for (;;) {
+                int n = in.read(buf);
+                if (n < 0) {
+                    break;
+                }
+                md.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(Version.getVersion()).append(' ').append(libFile.length()).append(' ');
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Method to read the library from the binary cache.
+     * @param libId the LibId of the library.
+     * @param techPool the technologies to make CellBackups, or null to make only CellRevisions.
+     * @param primitiveBounds true to compute the bounds of the primitives in the CellBackups.
+     * @return the library, or null if the cache is missing or is not for this library file.
+     */
+    JELIB2 read(LibId libId, TechPool techPool, boolean primitiveBounds) {
+        if (!cacheFile.isFile() || cacheFile.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        try {
+            byte[] data = new byte[(int) cacheFile.length()];
+            DataInputStream fileIn = new DataInputStream(new FileInputStream(cacheFile));
+            try {
+                fileIn.readFully(data);
+            } finally {
+                fileIn.close();
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (!in.readUTF().equals(MAGIC) || !in.readUTF().equals(key)) {
+                return null;
+            }
+
+            IdReader reader = new CacheIdReader(in, libId);
+            LibraryBackup libBackup = LibraryBackup.read(reader);
+            if (libBackup.d.libId != libId) {
+                return null;
+            }
+            libBackup = new LibraryBackup(libBackup.d.withLibFile(fileURL), libBackup.modified, libBackup.referencedLibs);
+            int numExternalLibs = reader.readInt();
+            LinkedHashMap<LibId, String> externalLibIds = new LinkedHashMap<LibId, String>();
+            for (int i = 0; i < numExternalLibs; i++) {
+                LibId externalLibId = reader.readLibId();
+                externalLibIds.put(externalLibId, reader.readString());
+            }
+
+            JELIB2 jelib2 = new JELIB2(libId, libBackup, externalLibIds);
+            int numCells = reader.readInt();
+            for (int i = 0; i < numCells; i++) {
+                CellRevision cellRevision = CellRevision.read(reader);
+                if (techPool == null) {
+                    jelib2.cellRevisions.add(cellRevision);
+                    continue;
+                }
+                ImmutableCell c = cellRevision.d;
+                ImmutableNodeInst[] nodes = new ImmutableNodeInst[cellRevision.nodes.size()];
+                for (int nodeIndex = 0; nodeIndex < nodes.length; nodeIndex++) {
+                    nodes[nodeIndex] = cellRevision.nodes.get(nodeIndex);
+                }
+                ImmutableArcInst[] arcs = new ImmutableArcInst[cellRevision.arcs.size()];
+                for (int arcIndex = 0; arcIndex < arcs.length; arcIndex++) {
+                    arcs[arcIndex] = cellRevision.arcs.get(arcIndex);
+                }
+                CellBackup cellBackup = CellBackup.newInst(c, techPool).with(c, nodes, arcs, cellRevision.exports.toArray(), techPool).withoutModified();
+                if (primitiveBounds) {
+                    cellBackup.getPrimitiveBounds();
+                }
+                jelib2.cellBackups.add(cellBackup);
+                jelib2.cellRevisions.add(cellBackup.cellRevision);
+            }
+            return jelib2;
+        } catch (Exception e) {
+            System.out.println("Cannot read " + cacheFile + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Method to write the library to the binary cache.
+     * The file is written under another name and renamed, so a partly written file is never used.
+     * @param jelib2 the instantiated library.
+     */
+    void write(JELIB2 jelib2) {
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+            // the ids are known only after the library is written, and they are written first
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            CacheIdWriter writer = new CacheIdWriter(new DataOutputStream(body), jelib2.libId);
+            jelib2.libBackup.write(writer);
+            writer.writeInt(jelib2.externalLibIds.size());
+            for (Map.Entry<LibId, String> e : jelib2.externalLibIds.entrySet()) {
+                writer.writeLibId(e.getKey());
+                writer.writeString(e.getValue());
+            }
+            writer.writeInt(jelib2.cellRevisions.size());
+            for (CellRevision cellRevision : jelib2.cellRevisions) {
+                cellRevision.write(writer);
+            }
+            writer.flush();
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+            try {
+                out.writeUTF(MAGIC);
+                out.writeUTF(key);
+                writer.writeIds(out);
+                body.writeTo(out);
+            } finally {
+                out.close();
+            }
+            if (cacheFile.exists() && !cacheFile.delete() || !tempFile.renameTo(cacheFile)) {
+                throw new IOException("cannot rename " + tempFile);
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            System.out.println("Cannot write " + cacheFile + ": " + e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * IdWriter which writes only the ids that the library uses, as indices in tables of its own.
+     * The tables are written by writeIds, with names, so that they don't depend on the other libraries of the session.
+     * The library itself is the first library of the tables.
+     */
+    private static class CacheIdWriter extends IdWriter {
+
+        private final LinkedHashMap<TechId, Integer> techIds = new LinkedHashMap<TechId, Integer>();
+        private final LinkedHashMap<LibId, Integer> libIds = new LinkedHashMap<LibId, Integer>();
+        private final LinkedHashMap<CellId, Integer> cellIds = new LinkedHashMap<CellId, Integer>();
+        private final LinkedHashMap<ArcProtoId, Integer> arcProtoIds = new LinkedHashMap<ArcProtoId, Integer>();
+        private final LinkedHashMap<PrimitiveNodeId, Integer> primitiveNodeIds = new LinkedHashMap<PrimitiveNodeId, Integer>();
+        private final LinkedHashMap<PortProtoId, Integer> portIds = new LinkedHashMap<PortProtoId, Integer>();
+
+        private CacheIdWriter(DataOutputStream out, LibId libId) {
+            super(libId.idManager, out);
+            getIndex(libIds, libId);
+        }
+
+        private static <K> int getIndex(Map<K, Integer> ids, K id) {
+            Integer index = ids.get(id);
+            if (index == null) {
+                index = Integer.valueOf(ids.size());
+                ids.put(id, index);
+            }
+            return index.intValue();
+        }
+
+        private int getTechIndex(TechId techId) {
+            return getIndex(techIds, techId);
+        }
+
+        private int getLibIndex(LibId libId) {
+            return getIndex(libIds, libId);
+        }
+
+        private int getNodeProtoIndex(NodeProtoId nodeProtoId) {
+            if (nodeProtoId instanceof CellId) {
+                CellId cellId = (CellId) nodeProtoId;
+                getLibIndex(cellId.libId);
+                return getIndex(cellIds, cellId);
+            }
+            PrimitiveNodeId primitiveNodeId = (PrimitiveNodeId) nodeProtoId;
+            getTechIndex(primitiveNodeId.techId);
+            return ~getIndex(primitiveNodeIds, primitiveNodeId);
+        }
+
+        @Override
+        public void writeTechId(TechId techId) throws IOException {
+            writeInt(getTechIndex(techId));
+        }
+
+        @Override
+        public void writeArcProtoId(ArcProtoId arcProtoId) throws IOException {
+            getTechIndex(arcProtoId.techId);
+            writeInt(getIndex(arcProtoIds, arcProtoId));
+        }
+
+        @Override
+        public void writeLibId(LibId libId) throws IOException {
+            writeInt(getLibIndex(libId));
+        }
+
+        @Override
+        public void writeNodeProtoId(NodeProtoId nodeProtoId) throws IOException {
+            writeInt(getNodeProtoIndex(nodeProtoId));
+        }
+
+        @Override
+        public void writePortProtoId(PortProtoId portProtoId) throws IOException {
+            getNodeProtoIndex(portProtoId.getParentId());
+            writeInt(getIndex(portIds, portProtoId));
+        }
+
+        /**
+         * Writes the tables of the ids that were written, by name.
+         * Each id refers only to ids of the tables before it.
+         */
+        private void writeIds(DataOutputStream out) throws IOException {
+            out.writeInt(techIds.size());
+            for (TechId techId : techIds.keySet()) {
+                out.writeUTF(techId.techName);
+            }
+            out.writeInt(libIds.size());
+            for (LibId libId : libIds.keySet()) {
+                out.writeUTF(libId.libName);
+            }
+            out.writeInt(cellIds.size());
+            for (CellId cellId : cellIds.keySet()) {
+                out.writeInt(libIds.get(cellId.libId).intValue());
+                out.writeUTF(cellId.cellName.toString());
+            }
+            out.writeInt(arcProtoIds.size());
+            for (ArcProtoId arcProtoId : arcProtoIds.keySet()) {
+                out.writeInt(techIds.get(arcProtoId.techId).intValue());
+                out.writeUTF(arcProtoId.name);
+            }
+            out.writeInt(primitiveNodeIds.size());
+            for (PrimitiveNodeId primitiveNodeId : primitiveNodeIds.keySet()) {
+                out.writeInt(techIds.get(primitiveNodeId.techId).intValue());
+                out.writeUTF(primitiveNodeId.name);
+            }
+            out.writeInt(portIds.size());
+            for (PortProtoId portId : portIds.keySet()) {
+                out.writeInt(getNodeProtoIndex(portId.getParentId()));
+                out.writeUTF(portId.externalId);
+            }
+        }
+    }
+
+    /**
+     * IdReader which reads the ids written by CacheIdWriter.
+     * The ids in the tables are found or created by name, and the first library is the library being read.
+     */
+    private static class CacheIdReader extends IdReader {
+
+        private final TechId[] techIds;
+        private final LibId[] libIds;
+        private final CellId[] cellIds;
+        private final ArcProtoId[] arcProtoIds;
+        private final PrimitiveNodeId[] primitiveNodeIds;
+        private final PortProtoId[] portIds;
+
+        private CacheIdReader(DataInputStream in, LibId libId) throws IOException {
+            super(in, libId.idManager);
+            IdManager idManager = libId.idManager;
+            techIds = new TechId[in.readInt()];
+            for (int i = 0; i < techIds.length; i++) {
+                techIds[i] = idManager.newTechId(in.readUTF());
+            }
+            libIds = new LibId[in.readInt()];
+            for (int i = 0; i < libIds.length; i++) {
+                String libName = in.readUTF();
+                libIds[i] = i == 0 ? libId : idManager.newLibId(libName);
+            }
+            cellIds = new CellId[in.readInt()];
+            for (int i = 0; i < cellIds.length; i++) {
+                LibId cellLibId = libIds[in.readInt()];
+                cellIds[i] = cellLibId.newCellId(CellName.parseName(in.readUTF()));
+            }
+            arcProtoIds = new ArcProtoId[in.readInt()];
+            for (int i = 0; i < arcProtoIds.length; i++) {
+                TechId techId = techIds[in.readInt()];
+                arcProtoIds[i] = techId.newArcProtoId(in.readUTF());
+            }
+            primitiveNodeIds = new PrimitiveNodeId[in.readInt()];
+            for (int i = 0; i < primitiveNodeIds.length; i++) {
+                TechId techId = techIds[in.readInt()];
+                primitiveNodeIds[i] = techId.newPrimitiveNodeId(in.readUTF());
+            }
+            portIds = new PortProtoId[in.readInt()];
+            for (int i = 0; i < portIds.length; i++) {
+                NodeProtoId nodeProtoId = getNodeProtoId(in.readInt());
+                portIds[i] = nodeProtoId.newPortId(in.readUTF());
+            }
+        }
+
+        private NodeProtoId getNodeProtoId(int index) {
+            return index >= 0 ? cellIds[index] : primitiveNodeIds[~index];
+        }
+
+        @Override
+        public TechId readTechId() throws IOException {
+            return techIds[readInt()];
+        }
+
+        @Override
+        public ArcProtoId readArcProtoId() throws IOException {
+            return arcProtoIds[readInt()];
+        }
+
+        @Override
+        public LibId readLibId() throws IOException {
+            return libIds[readInt()];
+        }
+
+        @Override
+        public NodeProtoId readNodeProtoId() throws IOException {
+            return getNodeProtoId(readInt());
+        }
+
+        @Override
+        public PortProtoId readPortProtoId() throws IOException {
+            return portIds[readInt()];
+        }
+    }
+}
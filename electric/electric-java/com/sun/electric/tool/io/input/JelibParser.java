@@ -49,8 +49,10 @@ import com.sun.electric.database.variable.MutableTextDescriptor;
 import com.sun.electric.database.variable.TextDescriptor;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobPool;
 import com.sun.electric.tool.Tool;
 import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.ncc.basic.TransitiveRelation;
 import com.sun.electric.tool.user.ErrorLogger;
 import com.sun.electric.util.TextUtils;
@@ -65,17 +67,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
+import java.io.StringReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class reads files in new library file (.jelib) format.
+ * When reading in parallel, the declarations of the cells are read in file order,
+ * and the nodes, exports and arcs of the cells are parsed afterwards by several threads.
  */
 public class JelibParser
 {
@@ -266,12 +276,38 @@ public class JelibParser
         }
     }
 
+    /**
+     * The lines of a cell whose nodes, exports and arcs are parsed later, in parallel with other cells.
+     * The state of the parser at the cell declaration is kept with them.
+     */
+    private static class DeferredCell {
+        private final CellContents cc;
+        private final String body;
+        private final int lineNumber;
+        private final int revision;
+        private final char escapeChar;
+        private final String curLibName;
+        private final String curReadFile;
+
+        DeferredCell(CellContents cc, String body, int lineNumber, int revision, char escapeChar, String curLibName, String curReadFile) {
+            this.cc = cc;
+            this.body = body;
+            this.lineNumber = lineNumber;
+            this.revision = revision;
+            this.escapeChar = escapeChar;
+            this.curLibName = curLibName;
+            this.curReadFile = curReadFile;
+        }
+    }
+
+    /** cells to parse in parallel, null when reading sequentially */ private ArrayList<DeferredCell> deferredCells;
+
     private LibId curExternalLibId = null;
     private CellId curExternalCellId = null;
     private TechId curTechId = null;
     private PrimitiveNodeId curPrimId = null;
 
-	JelibParser(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, ErrorLogger errorLogger) throws IOException
+	JelibParser(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, boolean parallel, ErrorLogger errorLogger) throws IOException
 	{
         idManager = libId.idManager;
         this.libId = libId;
@@ -303,8 +339,12 @@ public class JelibParser
         InputStreamReader is = new InputStreamReader(inputStream, "UTF-8");
         this.lineReader = new LineNumberReader(is);
         delibHeaderReader = fileType == FileType.DELIB ? lineReader : null;
+        if (parallel && !onlyProjectSettings)
+            deferredCells = new ArrayList<DeferredCell>();
         try {
             readFromFile(onlyProjectSettings);
+            if (deferredCells != null)
+                parseDeferredCells();
             collectCellGroups();
         } catch (IOException e) {
             throw e;
@@ -343,8 +383,90 @@ public class JelibParser
         }
     }
 
+    /**
+     * Creates a parser to parse the cells of a library by another thread.
+     * @param parser the parser of the library.
+     */
+    private JelibParser(JelibParser parser) {
+        idManager = parser.idManager;
+        libId = parser.libId;
+        fileURL = parser.fileURL;
+        filePath = parser.filePath;
+        errorLogger = parser.errorLogger;
+        delibHeaderReader = null;
+        version = parser.version;
+    }
+
     public static JelibParser parse(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, ErrorLogger errorLogger) throws IOException {
-        return new JelibParser(libId, fileURL, fileType, onlyProjectSettings, errorLogger);
+        return parse(libId, fileURL, fileType, onlyProjectSettings, IOTool.isJELIBInParallel(), errorLogger);
+    }
+
+    /**
+     * Method to parse a library file.
+     * @param libId the LibId of the library.
+     * @param fileURL the URL of the library file.
+     * @param fileType JELIB or DELIB.
+     * @param onlyProjectSettings true to read only the project settings.
+     * @param parallel true to parse the contents of the cells in parallel.
+     * @param errorLogger the ErrorLogger for the problems in the file.
+     * @return the parser with the contents of the library.
+     * @throws IOException on errors reading the file.
+     */
+    public static JelibParser parse(LibId libId, URL fileURL, FileType fileType, boolean onlyProjectSettings, boolean parallel, ErrorLogger errorLogger) throws IOException {
+        return new JelibParser(libId, fileURL, fileType, onlyProjectSettings, parallel, errorLogger);
+    }
+
+    /**
+     * Method to parse the nodes, exports and arcs of the deferred cells in parallel.
+     * The biggest cells are parsed first to balance the threads.
+     */
+    private void parseDeferredCells() throws IOException {
+        final DeferredCell[] order = deferredCells.toArray(new DeferredCell[deferredCells.size()]);
+        deferredCells = null;
+        Arrays.sort(order, new Comparator<DeferredCell>() {
+            public int compare(DeferredCell dc1, DeferredCell dc2) {
+                return dc2.body.length() - dc1.body.length();
+            }
+        });
+        int numberOfThreads = Math.min(JobPool.getNumThreads(), order.length);
+        if (numberOfThreads <= 1) {
+            for (DeferredCell dc : order)
+                parseDeferredCell(dc);
+            return;
+        }
+        final AtomicInteger nextCell = new AtomicInteger(0);
+        List<Callable<Object>> parsers = new ArrayList<Callable<Object>>();
+        for (int t = 0; t < numberOfThreads; t++) {
+            final JelibParser worker = new JelibParser(this);
+            parsers.add(new Callable<Object>() {
+                public Object call() throws Exception {
+                    for (int i = nextCell.getAndIncrement(); i < order.length; i = nextCell.getAndIncrement())
+                        worker.parseDeferredCell(order[i]);
+                    return null;
+                }
+            });
+        }
+        try {
+            JobPool.invokeAll(parsers);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void parseDeferredCell(DeferredCell dc) throws IOException {
+        revision = dc.revision;
+        escapeChar = dc.escapeChar;
+        curLibName = dc.curLibName;
+        curReadFile = dc.curReadFile;
+        lineReader = new LineNumberReader(new StringReader(dc.body));
+        lineReader.setLineNumber(dc.lineNumber);
+        try {
+            readCellBody(dc.cc);
+        } finally {
+            lineReader.close();
+        }
     }
 
     private void readFromFile(boolean onlyProjectSettings) throws IOException {
@@ -733,29 +855,21 @@ public class JelibParser
         assert fieldIndex == numPieces;
         cc.vars = readVariables(pieces, numPieces);
 
-        // gather the contents of the cell
-        for(;;)
-        {
-            String nextLine = lineReader.readLine();
-            if (nextLine == null) break;
-            if (nextLine.length() == 0) continue;
-            char nextFirst = nextLine.charAt(0);
-            if (nextFirst == 'X') break;
-            switch (nextFirst) {
-                case '#':
-                    break;
-                case 'N':
-                case 'I':
-                    parseNode(nextLine, cc);
-                    break;
-                case 'E':
-                    parseExport(nextLine, cc);
-                    break;
-                case 'A':
-                    parseArc(nextLine, cc);
-                    break;
-                default:
+        // gather the contents of the cell, or keep them to parse later
+        DeferredCell deferred = null;
+        if (deferredCells != null) {
+            int lineNumber = lineReader.getLineNumber();
+            StringBuilder body = new StringBuilder();
+            for(;;)
+            {
+                String nextLine = lineReader.readLine();
+                if (nextLine == null) break;
+                if (nextLine.length() > 0 && nextLine.charAt(0) == 'X') break;
+                body.append(nextLine).append('\n');
             }
+            deferred = new DeferredCell(cc, body.toString(), lineNumber, revision, escapeChar, curLibName, curReadFile);
+        } else {
+            readCellBody(cc);
         }
 
         // check if the version is not null
@@ -784,9 +898,37 @@ public class JelibParser
             cellsWithProtoName.put(protoName, list);
         }
         list.add(cc);
+        if (deferred != null)
+            deferredCells.add(deferred);
         return;
     }
 
+    private void readCellBody(CellContents cc) throws IOException {
+        for(;;)
+        {
+            String nextLine = lineReader.readLine();
+            if (nextLine == null) break;
+            if (nextLine.length() == 0) continue;
+            char nextFirst = nextLine.charAt(0);
+            if (nextFirst == 'X') break;
+            switch (nextFirst) {
+                case '#':
+                    break;
+                case 'N':
+                case 'I':
+                    parseNode(nextLine, cc);
+                    break;
+                case 'E':
+                    parseExport(nextLine, cc);
+                    break;
+                case 'A':
+                    parseArc(nextLine, cc);
+                    break;
+                default:
+            }
+        }
+    }
+
     private void parseNode(String cellString, CellContents cc) {
         NodeContents n = new NodeContents();
         n.line = lineReader.getLineNumber();
@@ -256,6 +256,7 @@ public class EDIF extends Topology
 	 */
 	EDIF(EditingPreferences ep, EDIFPreferences edp)
 	{
+		super(edp);
         this.ep = ep;
 		localPrefs = edp;
         libsToWrite = new HashMap<Library,LibToWrite>();
@@ -145,6 +145,7 @@ public class GenerateVHDL extends Topology
 
 
     private GenerateVHDL(VHDLPreferences vp) {
+        super(vp);
         this.vp = vp;
         this.pp = new VHDLPrefPackage(false);
     }
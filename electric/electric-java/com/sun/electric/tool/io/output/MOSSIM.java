@@ -75,7 +75,7 @@ public class MOSSIM extends Topology
 	/**
 	 * Creates a new instance of the MOSSIM netlister.
 	 */
-	MOSSIM(MOSSIMPreferences mp) { /* localPrefs = mp; */ }
+	MOSSIM(MOSSIMPreferences mp) { super(mp); /* localPrefs = mp; */ }
 
 	protected void start() {}
 
@@ -208,6 +208,7 @@ public class Output
         // IO Settings
         public boolean useCopyrightMessage = IOTool.isUseCopyrightMessage();
         public boolean includeDateAndVersionInOutput = User.isIncludeDateAndVersionInOutput();
+        public boolean netlistInParallel = IOTool.isNetlistInParallel();
         private int unitsPrecision = EditingPreferences.getInstance().getUnitsPrecision();
         private double unitsScale = 0;
         private boolean disablePopups = false;
@@ -80,7 +80,11 @@ public class Silos extends Topology
 	/**
 	 * Creates a new instance of the Silos netlister.
 	 */
-	Silos(SilosPreferences sp) { localPrefs = sp; }
+	Silos(SilosPreferences sp)
+	{
+		super(sp);
+		localPrefs = sp;
+	}
 
 	protected void start()
 	{
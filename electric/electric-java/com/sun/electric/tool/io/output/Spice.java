@@ -373,7 +373,11 @@ public class Spice extends Topology
 	/**
 	 * Constructor for the Spice netlister.
 	 */
-	Spice(SpicePreferences sp) { localPrefs = sp; }
+	Spice(SpicePreferences sp)
+	{
+		super(sp);
+		localPrefs = sp;
+	}
 
 	/**
 	 * Method called once by the traversal mechanism.
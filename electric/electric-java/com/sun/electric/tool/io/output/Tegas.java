@@ -90,7 +90,11 @@ public class Tegas extends Topology
 	/**
 	 * Creates a new instance of the Tegas netlister.
 	 */
-	Tegas(TegasPreferences tp) { localPrefs = tp; }
+	Tegas(TegasPreferences tp)
+	{
+		super(tp);
+		localPrefs = tp;
+	}
 
 	protected void start()
 	{
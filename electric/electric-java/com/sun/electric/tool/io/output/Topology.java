@@ -42,6 +42,7 @@ import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.PrimitiveNode;
 import com.sun.electric.technology.PrimitivePort;
+import com.sun.electric.tool.JobPool;
 import com.sun.electric.tool.generator.sclibrary.SCLibraryGen;
 import com.sun.electric.util.TextUtils;
 
@@ -52,6 +53,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This is the Simulation Interface tool.
@@ -65,10 +69,21 @@ public abstract class Topology extends Output
 	/** Map of all CellTopologies */				private Map<String,CellNetInfo> cellTopos;
 	/** Map of all Cell names */					private Map<Cell,String> cellNameMap;
 													private HierarchyEnumerator.CellInfo lastInfo;
+	/** true to analyze the cells in parallel */	private boolean netlistInParallel;
+	/** Map of CellTopologies being analyzed */		private Map<String,Future<CellNetInfo>> pendingTopos;
 
 	/** Creates a new instance of Topology */
 	public Topology() {}
 
+	/**
+	 * Creates a new instance of Topology that analyzes the cells in parallel if the preferences ask for it.
+	 * @param op the preferences of the netlister.
+	 */
+	protected Topology(OutputPreferences op)
+	{
+		netlistInParallel = op.netlistInParallel;
+	}
+
 	/**
 	 * Write cell to file
 	 * @return true on error
@@ -95,10 +110,26 @@ public abstract class Topology extends Output
 		// make a map of cell names to use (unique across libraries)
 		cellNameMap = makeCellNameMap(topCell);
 
+		// analyze the cells on the pool of the Job, ahead of the traversal
+		if (netlistInParallel)
+			pendingTopos = new HashMap<String,Future<CellNetInfo>>();
+
 		// write out cells
-		start();
-		HierarchyEnumerator.enumerateCell(cell, context, visitor, getShortResistors());
-		done();
+		try
+		{
+			start();
+			HierarchyEnumerator.enumerateCell(cell, context, visitor, getShortResistors());
+			done();
+		} finally
+		{
+			if (pendingTopos != null)
+			{
+				// the analysis of cells that were not written is not needed
+				for(Future<CellNetInfo> future : pendingTopos.values())
+					future.cancel(false);
+				pendingTopos = null;
+			}
+		}
 		return false;
 	}
 
@@ -218,6 +249,77 @@ public abstract class Topology extends Output
 	/** Used to switch from schematic enumeration to layout enumeration */
 	protected boolean enumerateLayoutView(Cell cell) { return false; }
 
+	/**
+	 * Method to start the analysis of a cell that is entered, and of the cells that it instantiates,
+	 * on the pool of the Job.
+	 * The traversal picks the results when it exits these cells, so the cells are still written
+	 * in the same order and by the same thread as when they are analyzed by the traversal.
+	 */
+	private void analyzeAhead(HierarchyEnumerator.CellInfo info)
+	{
+		Netlist netList = info.getNetlist();
+		if (info.isRootCell())
+		{
+			Cell cell = info.getCell();
+			submitNetworkInformation(cell, cell.getName(), getSafeCellName(cell.getName()), netList);
+		}
+		for(Iterator<Nodable> it = netList.getNodables(); it.hasNext(); )
+		{
+			Nodable no = it.next();
+			if (!no.isCellInstance()) continue;
+
+			// skip the cells that the traversal won't enter
+			Cell subCell = (Cell)no.getProto();
+			if (subCell.isIcon() && !visitIcons()) continue;
+			Cell schCell = subCell.contentsView();
+			if (schCell == null) schCell = subCell;
+			if (subCell.isSchematic() && enumerateLayoutView(schCell) && subCell.otherView(View.LAYOUT) != null) continue;
+
+			String parameterizedName = parameterizedName(no, info.getContext());
+			if (cellTopos.containsKey(parameterizedName)) continue;
+			submitNetworkInformation(subCell, parameterizedName, parameterizedName, netList.getNetlist(no));
+		}
+	}
+
+	private void submitNetworkInformation(final Cell cell, String key, final String paramName, final Netlist netList)
+	{
+		if (pendingTopos.containsKey(key)) return;
+		final boolean useExportedName = isNetworksUseExportedNames();
+		pendingTopos.put(key, JobPool.submit(new Callable<CellNetInfo>()
+		{
+			public CellNetInfo call()
+			{
+				return getNetworkInformation(cell, false, paramName, useExportedName, netList);
+			}
+		}));
+	}
+
+	/**
+	 * Method to get the network information of a cell that was analyzed ahead.
+	 * @param key the name of the cell in the map of CellTopologies.
+	 * @return the network information, or null if the cell was not analyzed ahead.
+	 */
+	private CellNetInfo takeNetworkInformation(String key)
+	{
+		if (pendingTopos == null) return null;
+		Future<CellNetInfo> future = pendingTopos.remove(key);
+		if (future == null) return null;
+		try
+		{
+			return JobPool.getResult(future);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
 	//------------------ override for HierarchyEnumerator.Visitor ----------------------
 
 	public class MyCellInfo extends HierarchyEnumerator.CellInfo
@@ -244,13 +346,15 @@ public abstract class Topology extends Output
 					HierarchyEnumerator.CellInfo parentInfo = info.getParentInfo();
 					Nodable no = info.getParentInst();
 					String parameterizedName = parameterizedName(no, parentInfo.getContext());
-					CellNetInfo cni = getNetworkInformation(info.getCell(), false, parameterizedName,
-						isNetworksUseExportedNames(), info);
+					CellNetInfo cni = takeNetworkInformation(parameterizedName);
+					if (cni == null) cni = getNetworkInformation(info.getCell(), false, parameterizedName,
+						isNetworksUseExportedNames(), info.getNetlist());
 					cellTopos.put(parameterizedName, cni);
 				}
 				validateSkippedCell(info);
 				return false;
 			}
+			if (pendingTopos != null) analyzeAhead(info);
 			outGeom.enterCell(info);
 			return true;
 		}
@@ -262,8 +366,9 @@ public abstract class Topology extends Output
 			CellNetInfo cni = null;
 			if (info.isRootCell())
 			{
-				cni = getNetworkInformation(cell, false, getSafeCellName(cell.getName()),
-					isNetworksUseExportedNames(), info);
+				cni = takeNetworkInformation(cell.getName());
+				if (cni == null) cni = getNetworkInformation(cell, false, getSafeCellName(cell.getName()),
+					isNetworksUseExportedNames(), info.getNetlist());
 				cellTopos.put(cell.getName(), cni);
 			} else
 			{
@@ -271,8 +376,9 @@ public abstract class Topology extends Output
 				HierarchyEnumerator.CellInfo parentInfo = info.getParentInfo();
 				Nodable no = info.getParentInst();
 				String parameterizedName = parameterizedName(no, parentInfo.getContext());
-				cni = getNetworkInformation(info.getCell(), false, parameterizedName,
-					isNetworksUseExportedNames(), info);
+				cni = takeNetworkInformation(parameterizedName);
+				if (cni == null) cni = getNetworkInformation(info.getCell(), false, parameterizedName,
+					isNetworksUseExportedNames(), info.getNetlist());
 				cellTopos.put(parameterizedName, cni);
 			}
 			String cellName = cni.getParameterizedName();
@@ -318,7 +424,7 @@ public abstract class Topology extends Output
 					HierarchyEnumerator.enumerateCell(layCell, context, this);
 					// save subcell topology, even though the cell isn't being written
 					CellNetInfo cni = getNetworkInformation(layCell, false, layCell.getName(),
-						isNetworksUseExportedNames(), lastInfo);
+						isNetworksUseExportedNames(), lastInfo.getNetlist());
 					cellTopos.put(parameterizedName, cni);
 					return false;
 				}
@@ -465,9 +571,9 @@ public abstract class Topology extends Output
 	}
 
 	private CellNetInfo getNetworkInformation(Cell cell, boolean quiet, String paramName, boolean useExportedName,
-		HierarchyEnumerator.CellInfo info)
+		Netlist netList)
 	{
-		CellNetInfo cni = doGetNetworks(cell, quiet, paramName, useExportedName, info);
+		CellNetInfo cni = doGetNetworks(cell, quiet, paramName, useExportedName, netList);
 		if (DEBUGTOPOLOGY)
 		{
 			printWriter.println("********Decomposition of " + cell);
@@ -504,7 +610,7 @@ public abstract class Topology extends Output
 	}
 
 	private CellNetInfo doGetNetworks(Cell cell, boolean quiet, String paramName, boolean useExportedName,
-		HierarchyEnumerator.CellInfo info)
+		Netlist netList)
 	{
 		// create the object with cell net information
 		CellNetInfo cni = new CellNetInfo();
@@ -512,7 +618,7 @@ public abstract class Topology extends Output
 		cni.paramName = paramName;
 
 		// get network information about this cell
-		cni.netList = info.getNetlist();
+		cni.netList = netList;
 		Global.Set globals = cni.netList.getGlobals();
 		int globalSize = globals.size();
 
@@ -152,6 +152,7 @@ public class Verilog extends Topology
 	 */
 	Verilog(VerilogPreferences vp)
 	{
+		super(vp);
 		localPrefs = vp;
 
 		reservedWords = new HashSet<String>();
@@ -21,20 +21,30 @@
 */
 package com.sun.electric.tool.ncc;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Nodable;
+import com.sun.electric.database.prototype.NodeProto;
 import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.JobPool;
 import com.sun.electric.tool.ncc.basic.CellContext;
 import com.sun.electric.tool.ncc.basic.CompareList;
 import com.sun.electric.tool.ncc.basic.CompareLists;
 import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
 import com.sun.electric.tool.ncc.basic.NccUtils;
+import com.sun.electric.tool.ncc.netlist.NccNetlist;
 import com.sun.electric.tool.ncc.netlist.PrimitiveNameToFunction;
 import com.sun.electric.tool.ncc.processing.HierarchyInfo;
 import com.sun.electric.tool.ncc.result.NccResult;
@@ -46,8 +56,14 @@ import com.sun.electric.tool.ncc.result.NccResults;
  * More specifically, when we are asked to compare a schematic and a layout,
  * we scan both hierarchies to identify cell groups that have one or more cells
  * in the schematic hierarchy AND one or more cells in the schematic hierarchy.
+ * <p>If NccOptions.numThreads isn't 1 then CompareLists are compared in 
+ * parallel on the shared pool of the Job. A CompareList is compared as soon as the CompareLists of the 
+ * Cells it instantiates have been compared. The results are the same, and 
+ * in the same order, as those of the sequential comparison.
  */
 public class NccBottomUp {
+	/** CompareLists are compared by more than one thread */
+	private boolean parallel;
 	
 	private void prln(String s) {System.out.println(s);}
 
@@ -99,7 +115,13 @@ public class NccBottomUp {
 
         if (!aborter.userWantsToAbort()) {
         	String timeStr = NccUtils.hourMinSec(before, after);
-        	prln(result.summary(options.checkSizes)+" in "+timeStr+".");
+        	// other comparisons may have printed since "Comparing:"
+        	if (parallel)
+        		prln("Compared: "+NccUtils.fullName(cell1)+
+        		     " with: "+NccUtils.fullName(cell2)+": "+
+        		     result.summary(options.checkSizes)+" in "+timeStr+".");
+        	else
+        		prln(result.summary(options.checkSizes)+" in "+timeStr+".");
             System.out.flush();
         }
 
@@ -196,6 +218,49 @@ public class NccBottomUp {
 		return false;
 	}
 	
+	/** @return true if error building black box */
+	private boolean processCompareList(NccResults results,
+			                           CompareList compareList,
+			                           HierarchyInfo hierInfo,
+			                           boolean blackBoxAnn,
+			                           PassedNcc passed,
+			                           NccOptions options,
+			                           Aborter aborter) {
+		// release storage from previous Cell pair comparisons
+		if (options.operation==NccOptions.FLAT_EACH_CELL) 
+			results.abandonPriorResults();
+		
+		boolean blackBoxErr;
+		if (!compareList.isSafeToCheckSizes() &&
+		    options.operation!=NccOptions.FLAT_TOP_CELL &&
+		    !blackBoxAnn) {
+			// This cell isn't safe to compare with size 
+			// checking because it is parameterized and it is instantiated 
+			// more than once. Just compare without size checking but purge
+			// any record of the fact that unsized comparison took place.
+			// This guarantees that when NCC checks this cell's parent,
+			// this cell will get flattened and therefore size checked.
+			// Subtle: we purge this cell even if we aren't size checking
+			// because want NCC to report the same errors with or without
+			// size checking.
+			NccOptions tmpOptions = new NccOptions(options);
+			tmpOptions.checkSizes = false;
+
+			blackBoxErr = 
+				compareCellsInCompareList(results, compareList, hierInfo, 
+					                      blackBoxAnn, passed, tmpOptions, 
+					                      aborter); 
+
+			hierInfo.purgeCurrentCompareList();
+		} else {
+			blackBoxErr = 
+				compareCellsInCompareList(results, compareList, hierInfo, 
+					                      blackBoxAnn, passed, options, 
+					                      aborter); 
+		}
+		return blackBoxErr;
+	}
+	
 	private NccResults processCompareLists(List<CompareList> compareLists,
 			                               PassedNcc passed,
 	                                       NccOptions options, 
@@ -211,38 +276,9 @@ public class NccBottomUp {
 			if (options.operation==NccOptions.FLAT_TOP_CELL && !blackBoxAnn &&
 			    it.hasNext()) continue;
 
-			// release storage from previous Cell pair comparisons
-			if (options.operation==NccOptions.FLAT_EACH_CELL) 
-				results.abandonPriorResults();
-			
-			boolean blackBoxErr;
-			if (!compareList.isSafeToCheckSizes() &&
-			    options.operation!=NccOptions.FLAT_TOP_CELL &&
-			    !blackBoxAnn) {
-				// This cell isn't safe to compare with size 
-				// checking because it is parameterized and it is instantiated 
-				// more than once. Just compare without size checking but purge
-				// any record of the fact that unsized comparison took place.
-				// This guarantees that when NCC checks this cell's parent,
-				// this cell will get flattened and therefore size checked.
-				// Subtle: we purge this cell even if we aren't size checking
-				// because want NCC to report the same errors with or without
-				// size checking.
-				NccOptions tmpOptions = new NccOptions(options);
-				tmpOptions.checkSizes = false;
-
-				blackBoxErr = 
-					compareCellsInCompareList(results, compareList, hierInfo, 
-						                      blackBoxAnn, passed, tmpOptions, 
-						                      aborter); 
-
-				hierInfo.purgeCurrentCompareList();
-			} else {
-				blackBoxErr = 
-					compareCellsInCompareList(results, compareList, hierInfo, 
-						                      blackBoxAnn, passed, options, 
-						                      aborter); 
-			}
+			boolean blackBoxErr = 
+				processCompareList(results, compareList, hierInfo, blackBoxAnn,
+				                   passed, options, aborter);
 			
 			if (blackBoxErr) {
 				prln(
@@ -264,10 +300,208 @@ public class NccBottomUp {
 		return results;
 	}
 
+	/** Find the Cells that are in the CompareLists that are instantiated
+	 * below a Cell.
+	 * @return the indices of the CompareLists */
+	private BitSet getCompareListsBelow(Cell cell, Map<Cell,Integer> cellToCompareList,
+	                                    Map<Cell,BitSet> cellToListsBelow) {
+		BitSet below = cellToListsBelow.get(cell);
+		if (below!=null) return below;
+		below = new BitSet();
+		for (Iterator<Nodable> it=cell.getNetlist(NccNetlist.SHORT_RESISTORS).getNodables(); it.hasNext();) {
+			NodeProto np = it.next().getProto();
+			if (!(np instanceof Cell)) continue;
+			Cell child = (Cell) np;
+			if (child.isIcon()) {
+				child = child.contentsView();
+				if (child==null) continue;
+			}
+			Integer childList = cellToCompareList.get(child);
+			if (childList!=null) below.set(childList.intValue());
+			below.or(getCompareListsBelow(child, cellToCompareList, cellToListsBelow));
+		}
+		cellToListsBelow.put(cell, below);
+		return below;
+	}
+
+	/** A CompareList must be compared after the CompareLists with Cells
+	 * in the hierarchies of its Cells. When two CompareLists have Cells in
+	 * each other's hierarchies, the later one is compared after the earlier 
+	 * one, the way the sequential comparison does.
+	 * @param parents for each CompareList, the CompareLists that wait for it
+	 * @return for each CompareList, the number of CompareLists it waits for */
+	private int[] findDependencies(List<CompareList> compareLists, 
+	                               List<List<Integer>> parents) {
+		Map<Cell,Integer> cellToCompareList = new HashMap<Cell,Integer>();
+		for (int i=0; i<compareLists.size(); i++) {
+			for (CellContext cc : compareLists.get(i))
+				cellToCompareList.put(cc.cell, Integer.valueOf(i));
+			parents.add(new ArrayList<Integer>());
+		}
+		Map<Cell,BitSet> cellToListsBelow = new HashMap<Cell,BitSet>();
+		BitSet[] waitsFor = new BitSet[compareLists.size()];
+		for (int i=0; i<compareLists.size(); i++) waitsFor[i] = new BitSet();
+		for (int i=0; i<compareLists.size(); i++) {
+			for (CellContext cc : compareLists.get(i)) {
+				BitSet below = getCompareListsBelow(cc.cell, cellToCompareList, cellToListsBelow);
+				for (int j=below.nextSetBit(0); j>=0; j=below.nextSetBit(j+1)) {
+					if (j<i) waitsFor[i].set(j);
+					else if (j>i) waitsFor[j].set(i);
+				}
+			}
+		}
+		int[] numWaits = new int[compareLists.size()];
+		for (int i=0; i<compareLists.size(); i++) {
+			numWaits[i] = waitsFor[i].cardinality();
+			for (int j=waitsFor[i].nextSetBit(0); j>=0; j=waitsFor[i].nextSetBit(j+1))
+				parents.get(j).add(Integer.valueOf(i));
+		}
+		return numWaits;
+	}
+
+	/** Hands out the CompareLists whose dependencies have been compared. 
+	 * The threads that compare CompareLists take them from here until there
+	 * are none left. */
+	private static class CompareListQueue {
+		private final List<List<Integer>> parents;
+		private final int[] numWaits;
+		private final LinkedList<Integer> ready = new LinkedList<Integer>();
+		private int numRunning = 0;
+		/** CompareLists after this one are not compared */
+		private int haltIndex;
+		private boolean aborted = false;
+		private boolean failed = false;
+
+		CompareListQueue(List<List<Integer>> parents, int[] numWaits) {
+			this.parents = parents;
+			this.numWaits = numWaits;
+			haltIndex = numWaits.length;
+			for (int i=0; i<numWaits.length; i++) 
+				if (numWaits[i]==0) ready.add(Integer.valueOf(i));
+		}
+		/** Wait until a CompareList is ready to compare.
+		 * @return its index, or -1 if no more CompareLists will be ready */
+		synchronized int take() {
+			try {
+				while (ready.isEmpty() && numRunning>0 && !aborted && !failed) wait();
+			} catch (InterruptedException e) {
+				aborted = true;
+			}
+			if (ready.isEmpty() || aborted || failed) return -1;
+			numRunning++;
+			return ready.removeFirst().intValue();
+		}
+		/** A CompareList has been compared. The CompareLists that wait for 
+		 * it become ready when they don't wait for any other. */
+		synchronized void done(int i, boolean halt, boolean abort) {
+			numRunning--;
+			if (halt) haltIndex = Math.min(haltIndex, i);
+			if (abort) aborted = true;
+			for (Integer parent : parents.get(i)) {
+				int p = parent.intValue();
+				numWaits[p]--;
+				if (numWaits[p]>0 || p>haltIndex || aborted) continue;
+				ready.add(parent);
+			}
+			notifyAll();
+		}
+		/** The comparison of a CompareList threw. No more CompareLists are 
+		 * handed out, so the other threads stop. */
+		synchronized void fail() {
+			numRunning--;
+			failed = true;
+			notifyAll();
+		}
+		synchronized int getHaltIndex() {return haltIndex;}
+		synchronized boolean isAborted() {return aborted;}
+	}
+
+	/** Compare the CompareLists in parallel on the shared pool of the Job.
+	 * Each CompareList has its own NccResults and HierarchyInfo. The results
+	 * are put together in the order of the CompareLists. If a CompareList 
+	 * halts NCC then the CompareLists after it are not compared, or their 
+	 * results are dropped, so the results don't depend on the order in which
+	 * the threads finish. */
+	private NccResults processCompareListsInParallel(final List<CompareList> compareLists,
+			                                         final PassedNcc passed,
+	                                                 final NccOptions options, 
+										             final Aborter aborter) {
+		int numLists = compareLists.size();
+		List<List<Integer>> parents = new ArrayList<List<Integer>>();
+		int[] numWaits = findDependencies(compareLists, parents);
+
+		final HierarchyInfo hierInfo = new HierarchyInfo();
+		final NccResults[] listResults = new NccResults[numLists];
+		final boolean[] blackBoxErrs = new boolean[numLists];
+		final CompareListQueue queue = new CompareListQueue(parents, numWaits);
+		// the calling thread compares CompareLists too
+		int numThreads = options.numThreads>0 ? options.numThreads : 
+			JobPool.getNumThreads()+1;
+		List<Callable<Object>> workers = new ArrayList<Callable<Object>>();
+		for (int t=0; t<Math.min(numThreads, numLists); t++) {
+			workers.add(new Callable<Object>() {
+				public Object call() {
+					for (int i; (i=queue.take())>=0; ) {
+						boolean compared = false;
+						try {
+							CompareList compareList = compareLists.get(i);
+							NccResults r = new NccResults();
+							boolean blackBoxAnn = hasBlackBoxAnnotation(compareList);
+							blackBoxErrs[i] = 
+								processCompareList(r, compareList, 
+								                   hierInfo.newParallelHierarchyInfo(i+1), 
+								                   blackBoxAnn, passed, options, aborter);
+							listResults[i] = r;
+							boolean halt = blackBoxErrs[i] || 
+								(!r.exportMatch() || !r.topologyMatch()) && options.haltAfterFirstMismatch;
+							boolean abort = aborter.userWantsToAbort();
+							compared = true;
+							queue.done(i, halt, abort);
+						} finally {
+							if (!compared) queue.fail();
+						}
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			JobPool.invokeAll(workers);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+
+		int haltIndex = queue.getHaltIndex();
+		NccResults results = new NccResults();
+		for (int i=0; i<numLists && i<=haltIndex; i++) {
+			// stop at the first CompareList that wasn't compared
+			if (listResults[i]==null) break;
+			for (NccResult r : listResults[i]) results.add(r);
+		}
+		if (queue.isAborted()) return results;
+		if (haltIndex<numLists) {
+			if (blackBoxErrs[haltIndex])
+				prln(
+					"Halting multiple cell NCC because of failure to build " +
+					"a black box"
+				);
+			else
+				prln("Halting NCC after finding first mismatch");
+		}
+		return results;
+	}
+
 	private NccResults compareCells(CellContext cc1, CellContext cc2, 
 								    PassedNcc passed, NccOptions options, 
 								    Aborter aborter) {
 		List<CompareList> compareLists = CompareLists.getCompareLists(cc1, cc2);
+		parallel = options.numThreads!=1 && compareLists.size()>1 &&
+			options.operation!=NccOptions.FLAT_TOP_CELL;
+		if (parallel)
+			return processCompareListsInParallel(compareLists, passed, options, aborter);
 		return processCompareLists(compareLists, passed, options, aborter);
 	}
 
@@ -279,6 +279,7 @@ public class NccEngine {
 					  		        HierarchyInfo hierInfo,
 					  		        boolean blackBox, 
 					  		        NccOptions options, Aborter aborter) {
+		long start = NccUtils.getTime();
 		globals = new NccGlobals(options, aborter);
 		
 		globals.status2("****************************************"+					  		
@@ -303,6 +304,9 @@ public class NccEngine {
 		else{
 			NccUtils.incrementBenchmarkCount(BenchIdx.FAIL_RESULT, globals);
 		}
+		// time of the whole comparison, to see which Cells take longest
+		// when Cells are compared in parallel
+		NccUtils.registerTiming(null, start, BenchIdx.COMPARE_TIME, globals);
 		
 		globals.status2("****************************************"+					  		
 		                "****************************************");
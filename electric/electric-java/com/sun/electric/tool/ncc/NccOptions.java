@@ -85,10 +85,20 @@ public class NccOptions implements Serializable {
 
 	/** This is false only for old regressions */
 	public boolean oneNamePerPort = true;
+
+	/** Divide equivalence classes by sorting the hash codes of their 
+	 * NetObjects. false builds a map per Circuit the way older versions of
+	 * NCC did. Both give the same results; false is only for regressions. */
+	public boolean sortHashCodes = true;
 	
 	/** Check the body connections of MOS transistors. */
 	public boolean checkBody = false;
 	
+	/** For hierarchical comparisons, how many threads compare Cells at the
+	 * same time. 1 compares the Cells one after the other. 0 uses the 
+	 * working threads of the Job pool. */
+	public int numThreads = 1;
+	
 	/** Construct an NccOptions with the default options */
 	public NccOptions() {}
 	
@@ -108,7 +118,9 @@ public class NccOptions implements Serializable {
 		maxMatchedEquivRecsToPrint = o.maxMatchedEquivRecsToPrint;
 		maxEquivRecMembersToPrint = o.maxEquivRecMembersToPrint;
 		oneNamePerPort = o.oneNamePerPort;
+		sortHashCodes = o.sortHashCodes;
 		checkBody = o.checkBody;
+		numThreads = o.numThreads;
 		
 		defaultLayoutTech = o.defaultLayoutTech;
 	}
@@ -135,6 +147,7 @@ public class NccOptions implements Serializable {
 		options.maxMismatchedEquivRecsToPrint = NccPreferences.getMaxMismatchedClasses();
 		options.maxMatchedEquivRecsToPrint = NccPreferences.getMaxMatchedClasses();
 		options.maxEquivRecMembersToPrint = NccPreferences.getMaxClassMembers();
+		options.numThreads = NccPreferences.getNumThreads();
 		
 		options.defaultLayoutTech = User.getSchematicTechnology();
 		
@@ -183,6 +183,18 @@ public class NccPreferences {
 		return op;
 	}
 
+	private static Pref numThreads =
+		Pref.makeIntPref("NumThreads", NccPreferences.tool.prefs, 1);
+	public static int getNumThreads() {
+		return Math.max(numThreads.getInt(), 0);
+	}
+	public static void setNumThreads(int i) {
+		numThreads.setInt(Math.max(i, 0));
+	}
+	public static int getFactoryNumThreads() {
+		return Math.max(numThreads.getIntFactoryValue(), 0);
+	}
+
 	private static int boundStatus(int s) {		
 		s = Math.max(s, 0);
 		s = Math.min(s, 3);
@@ -199,7 +199,7 @@ public class NccUtils {
 	private static DecimalFormat round2DF = new DecimalFormat("#.##");
 	private static DecimalFormat round2DFExp = new DecimalFormat("#.##E00");
 
-	public static String roundedString(double x) {
+	public static synchronized String roundedString(double x) {
 		if (x == 0) return "0";
 		if (x < 0.1) return round2DFExp.format(x);
 		return round2DF.format(x);
@@ -148,14 +148,14 @@ public abstract class Part extends NetObject implements PartReportable {
         return numConnected;
     }
 
-	public Integer computeHashCode(){
+	public int computeHashCode(){
         int sum= 0;
         int codes[]= getPinCoeffs();
 		for(int i=0; i<pins.length; i++) {
 			Wire w = pins[i];
             sum += w.getCode() * codes[i];
         }
-        return Integer.valueOf(sum);
+        return sum;
     }
 
 	/**  The Part must compute a hash code contribution for a Wire to
@@ -114,13 +114,13 @@ public class Wire extends NetObject implements WireReportable {
      * @return true if Wire connects to Port p
      */
     public boolean touches(Port p) {return port==p;}
-    public Integer computeHashCode(){
+    public int computeHashCode(){
         int sum= 0;
-        for (Iterator<Part> it=getParts(); it.hasNext();) {
-            Part pp= it.next();
+        for (int i=0; i<parts.size(); i++) {
+            Part pp= parts.get(i);
             sum += pp.getHashFor(this);
         }
-        return Integer.valueOf(sum);
+        return sum;
     }
 
     /** count the number of Parts connected to this wire.
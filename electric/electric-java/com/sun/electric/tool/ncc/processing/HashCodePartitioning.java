@@ -21,11 +21,11 @@
 */
 package com.sun.electric.tool.ncc.processing;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -92,9 +92,9 @@ public class HashCodePartitioning {
 		private Map<EquivRecord, Integer> recToRehashDate = 
 			new HashMap<EquivRecord, Integer>();
 
-		private LinkedList<ChildAndBirthday> matchedNewBorns = new LinkedList<ChildAndBirthday>();
-		private LinkedList<ChildAndBirthday> activeNewBorns = new  LinkedList<ChildAndBirthday>();
-		private LinkedList<ChildAndBirthday> mismatchedNewBorns = new  LinkedList<ChildAndBirthday>();
+		private ArrayDeque<ChildAndBirthday> matchedNewBorns = new ArrayDeque<ChildAndBirthday>();
+		private ArrayDeque<ChildAndBirthday> activeNewBorns = new ArrayDeque<ChildAndBirthday>();
+		private ArrayDeque<ChildAndBirthday> mismatchedNewBorns = new ArrayDeque<ChildAndBirthday>();
 
 		private ChildAndBirthday selectHighPriorityNewBorn2() {
 			if (!matchedNewBorns.isEmpty()) {
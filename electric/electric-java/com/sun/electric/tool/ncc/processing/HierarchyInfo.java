@@ -21,12 +21,12 @@
  */
 package com.sun.electric.tool.ncc.processing;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.tool.ncc.basic.CellContext;
@@ -40,7 +40,10 @@ import com.sun.electric.tool.Job;
  * Cells that are lower in the design hierarchy, NCC saves information
  * that allows it abstract those cells when it compare Cells 
  * higher in the design hierarchy. The information necessary to abstract
- * lower level cells is stored in HierarchyInfo.  */
+ * lower level cells is stored in HierarchyInfo.
+ * <p>When compareLists are compared in parallel each compareList gets its
+ * own HierarchyInfo from newParallelHierarchyInfo(). They share the 
+ * information of the Cells that were already compared. */
 public class HierarchyInfo {
 	/** name of the current CompareList (usually CellGroup name) */ 
 	private String subcktName;
@@ -52,11 +55,28 @@ public class HierarchyInfo {
 	 * current Cell Group. */
 	private boolean purgeCurrentCompareList;
 	/** information for all Cells in all the compareLists we've encountered 
-	 * so far */
-	private Map<Cell,SubcircuitInfo> cellToSubcktInfo = new HashMap<Cell,SubcircuitInfo>();
+	 * so far. Shared by the HierarchyInfos of parallel compareLists. */
+	private final Map<Cell,SubcircuitInfo> cellToSubcktInfo;
 	private Set<Cell> cellsInSharedCellGroups;
 
+	private HierarchyInfo(Map<Cell,SubcircuitInfo> cellToSubcktInfo, int compareListID) {
+		this.cellToSubcktInfo = cellToSubcktInfo;
+		this.compareListID = compareListID;
+	}
+
 	// ----------------------------- public methods ---------------------------
+	public HierarchyInfo() {
+		cellToSubcktInfo = new ConcurrentHashMap<Cell,SubcircuitInfo>();
+	}
+	/** Make a HierarchyInfo for a compareList that is compared in parallel 
+	 * with other compareLists. It shares the subcircuit information with 
+	 * this HierarchyInfo. The caller must make sure that the compareLists 
+	 * of the Cells it instantiates have been compared.
+	 * @param compareListID the unique int of the compareList. 
+	 * beginNextCompareList() will make it the ID of the current compareList. */
+	public HierarchyInfo newParallelHierarchyInfo(int compareListID) {
+		return new HierarchyInfo(cellToSubcktInfo, compareListID-1);
+	}
 	/** You must call this before you begin comparing Cells in a new 
 	 * compareList. Then for each Cell in the compareList you must call 
 	 * addSubcircuitInfo(). However, if a comparison reveals an Export name 
@@ -56,6 +56,7 @@ public class BenchmarkResults implements Serializable {
 		PASS_RESULT,
 		FAIL_RESULT,
 		MAYBE_RESULT,
+		COMPARE_TIME,
 		NUMBER_OF_VALUES;
 	}
 	public long[] results = new long[BenchIdx.NUMBER_OF_VALUES.ordinal()];
@@ -124,7 +125,7 @@ public class BenchmarkResults implements Serializable {
 	}
 	
 	public long get(BenchIdx idx){
-		return idx==BenchIdx.NUMBER_OF_VALUES?results[idx.ordinal()]:0;
+		return idx!=BenchIdx.NUMBER_OF_VALUES?results[idx.ordinal()]:0;
 	}
 
 	public void addInfo(String name, CellInfo newInfo){
@@ -0,0 +1,79 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: HashCodeComputer.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.ncc.strategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.electric.tool.ncc.NccGlobals;
+import com.sun.electric.tool.ncc.netlist.NetObject;
+import com.sun.electric.tool.ncc.trees.Circuit;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobPool;
+
+/** Compute the hash codes of all NetObjects of a Circuit into an int array.
+ * The hash code of a NetObject only reads the codes of its neighbors,
+ * which don't change while the codes are computed, so large Circuits
+ * are split in blocks that are hashed on the shared pool of the Job.
+ */
+abstract class HashCodeComputer {
+	/** Circuits are split in blocks of at least this many NetObjects */
+	private static final int BLOCK_SIZE = 8192;
+
+	static void error(boolean pred, String msg) {
+		Job.error(pred, msg);
+	}
+
+	private void computeHashCodes(Circuit c, int[] codes, int from, int to) {
+		for (int i=from; i<to; i++)  codes[i] = computeHashCode(c.getNetObj(i));
+	}
+
+	/** @return the hash code of a NetObject */
+	abstract int computeHashCode(NetObject n);
+
+	/** @return the hash codes of the NetObjects of a Circuit in the order of
+	 * Circuit.getNetObjs() */
+	int[] computeHashCodes(final Circuit c, NccGlobals globals) {
+		final int[] codes = new int[c.numNetObjs()];
+		int numThreads = globals.getOptions().numThreads;
+		// the calling thread hashes blocks too
+		if (numThreads==0) numThreads = JobPool.getNumThreads()+1;
+		int numBlocks = Math.min(numThreads, codes.length/BLOCK_SIZE);
+		if (numBlocks<=1) {
+			computeHashCodes(c, codes, 0, codes.length);
+			return codes;
+		}
+
+		List<Runnable> blocks = new ArrayList<Runnable>();
+		for (int b=0; b<numBlocks; b++) {
+			final int from = (int)((long)codes.length*b/numBlocks);
+			final int to = (int)((long)codes.length*(b+1)/numBlocks);
+			blocks.add(new Runnable() {
+				public void run() {
+					computeHashCodes(c, codes, from, to);
+				}
+			});
+		}
+		JobPool.runAll(blocks);
+		return codes;
+	}
+}
@@ -26,6 +26,7 @@ import com.sun.electric.tool.ncc.NccGlobals;
 import com.sun.electric.tool.ncc.lists.LeafList;
 import com.sun.electric.tool.ncc.netlist.NetObject;
 import com.sun.electric.tool.ncc.netlist.Part;
+import com.sun.electric.tool.ncc.trees.Circuit;
 import com.sun.electric.tool.ncc.trees.EquivRecord;
 
 /** Perform a Gemini II style hash code partitioning of Parts.
@@ -58,8 +59,23 @@ public class StratHashParts extends Strategy {
 		error(!(n instanceof Part), "StratHashPartAll expects only Parts");
 		numPartsProcessed++;
 		Part p= (Part)n;
-		return p.computeHashCode();
+		return Integer.valueOf(p.computeHashCode());
     }
+
+    /** Compute the hash codes of all Parts of the Circuit, in parallel
+     * if the Circuit is large. */
+    @Override
+    public int[] codesFor(Circuit c){
+		numPartsProcessed += c.numNetObjs();
+		return HASHER.computeHashCodes(c, globals);
+    }
+
+    private static final HashCodeComputer HASHER = new HashCodeComputer() {
+    	int computeHashCode(NetObject n) {
+    		error(!(n instanceof Part), "StratHashPartAll expects only Parts");
+    		return ((Part)n).computeHashCode();
+    	}
+    };
 	
 	// ------------------ intended interface -----------------
 	public static LeafList doYourJob(Iterator<EquivRecord> it, NccGlobals globals) {
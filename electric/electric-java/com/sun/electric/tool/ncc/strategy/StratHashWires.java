@@ -28,6 +28,7 @@ import com.sun.electric.tool.ncc.NccGlobals;
 import com.sun.electric.tool.ncc.lists.LeafList;
 import com.sun.electric.tool.ncc.netlist.NetObject;
 import com.sun.electric.tool.ncc.netlist.Wire;
+import com.sun.electric.tool.ncc.trees.Circuit;
 import com.sun.electric.tool.ncc.trees.EquivRecord;
 
 /** Perform a Gemini II style hash code partitioning of Wires.
@@ -68,9 +69,24 @@ public class StratHashWires extends Strategy {
 		error(!(n instanceof Wire), "StratHashWires expects wires only");
 		numWiresProcessed++;
 		Wire w= (Wire)n;
-		return w.computeHashCode();
+		return Integer.valueOf(w.computeHashCode());
 	}
 
+	/** Compute the hash codes of all Wires of the Circuit, in parallel
+	 * if the Circuit is large. */
+	@Override
+	public int[] codesFor(Circuit c){
+		numWiresProcessed += c.numNetObjs();
+		return HASHER.computeHashCodes(c, globals);
+	}
+
+	private static final HashCodeComputer HASHER = new HashCodeComputer() {
+		int computeHashCode(NetObject n) {
+			error(!(n instanceof Wire), "StratHashWires expects wires only");
+			return ((Wire)n).computeHashCode();
+		}
+	};
+
 	// --------------- intended interface ------------------	
 	public static LeafList doYourJob(Iterator<EquivRecord> it, NccGlobals globals){
 		// if no Wires suppress all StratHashWires messages
@@ -127,6 +127,16 @@ public abstract class Strategy {
 		return codeToNetObjs;
 	}
 
+    /** Method codesFor(Circuit) computes the code of every NetObject of a
+     * Circuit. Strategies that divide Circuits by these codes alone 
+     * implement it so that EquivRecord can divide Circuits by sorting 
+     * the codes instead of building a map per Circuit. The default 
+     * returns null, and EquivRecord calls doFor(Circuit).
+     * @param c the Circuit to process.
+     * @return the codes of the NetObjects, in the order of 
+     * Circuit.getNetObjs(), or null. */
+    public int[] codesFor(Circuit c) {return null;}
+
     /**  doFor(NetObject) tests the NetObject to decide its catagory.
 	 * The default method generates no offspring.
 	 * @param n the NetObject to catagorize
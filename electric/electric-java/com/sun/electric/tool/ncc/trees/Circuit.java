@@ -70,6 +70,8 @@ public class Circuit {
 	}
     
 	public Iterator<NetObject> getNetObjs() {return netObjs.iterator();}
+	/** @return the NetObject at index i of getNetObjs() */
+	public NetObject getNetObj(int i) {return netObjs.get(i);}
 	public int numNetObjs() {return netObjs.size();}
 	public int numUndeletedNetObjs() {
 		int count = 0;
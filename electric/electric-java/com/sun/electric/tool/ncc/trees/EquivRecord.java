@@ -24,6 +24,7 @@
 
 package com.sun.electric.tool.ncc.trees;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -185,6 +186,96 @@ public class EquivRecord implements EquivRecReportable {
 		return EquivRecord.newLeafRecord(key.intValue(), ckts, globals);												 	
 	}
 
+	/** For a leaf record, apply strategy to compute the codes of the 
+	 * NetObjects of each Circuit.
+	 * @return one array of codes per Circuit, or null if the strategy 
+	 * doesn't compute codes or the options ask for maps */
+	private int[][] getCodesPerCircuit(Strategy js) {
+		if (!js.globals.getOptions().sortHashCodes) return null;
+		int[][] codesPerCkt = new int[circuits.size()][];
+		for (int i=0; i<codesPerCkt.length; i++) {
+			codesPerCkt[i] = js.codesFor(circuits.get(i));
+			if (codesPerCkt[i]==null) return null;
+		}
+		return codesPerCkt;
+	}
+
+	/** @return true if all NetObjects of all Circuits have the same code */
+	private static boolean allCodesEqual(int[][] codesPerCkt) {
+		boolean first = true;
+		int code = 0;
+		for (int[] codes : codesPerCkt) {
+			for (int c : codes) {
+				if (first) {
+					code = c;
+					first = false;
+				} else if (c!=code) {
+					return false;
+				}
+			}
+		}
+		error(first, "must have at least one key");
+		return true;
+	}
+
+	/** Sort the indices of the NetObjects of a Circuit by code. Each long 
+	 * holds a code in the high half and an index in the low half, so the 
+	 * NetObjects with the same code stay in Circuit order. */
+	private static long[] sortByCode(int[] codes) {
+		long[] sorted = new long[codes.length];
+		for (int i=0; i<codes.length; i++) {
+			sorted[i] = ((long)codes[i] << 32) | i;
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/** Get all the keys of all the Circuits in the order that 
+	 * getKeysFromAllMaps() returns them. Each Circuit's Map would have been 
+	 * filled in Circuit order, so its keys are added in the order of the first
+	 * NetObject with each key. */
+	private Set<Integer> getKeysFromAllCodes(int[][] codesPerCkt, long[][] sortedPerCkt) {
+		Set<Integer> keys = new HashSet<Integer>();
+		for (int i=0; i<codesPerCkt.length; i++) {
+			long[] sorted = sortedPerCkt[i];
+			// index of the first NetObject of each run of equal codes
+			int[] firsts = new int[sorted.length];
+			int numFirsts = 0;
+			for (int j=0; j<sorted.length; j++) {
+				if (j==0 || (sorted[j] >> 32)!=(sorted[j-1] >> 32)) {
+					firsts[numFirsts++] = (int)sorted[j];
+				}
+			}
+			Arrays.sort(firsts, 0, numFirsts);
+			Set<Integer> cktKeys = new HashSet<Integer>();
+			for (int j=0; j<numFirsts; j++) {
+				cktKeys.add(Integer.valueOf(codesPerCkt[i][firsts[j]]));
+			}
+			keys.addAll(cktKeys);
+		}
+		return keys;
+	}
+
+	/** Create a leaf record for all the Circuits corresponding to a
+	 * given key, the way makeEquivRecForKey() does from the maps.
+	 * @param sortedPerCkt the indices of the NetObjects of each Circuit 
+	 * sorted by code */
+	private EquivRecord makeEquivRecForKey(List<Circuit> oldCkts, long[][] sortedPerCkt, Integer key, NccGlobals globals) {
+		List<Circuit> ckts = new ArrayList<Circuit>();
+		long code = key.intValue();
+		for (int i=0; i<sortedPerCkt.length; i++) {
+			long[] sorted = sortedPerCkt[i];
+			int j = Arrays.binarySearch(sorted, code << 32);
+			if (j<0) j = -j-1;
+			ArrayList<NetObject> netObjs = new ArrayList<NetObject>();
+			for (; j<sorted.length && (sorted[j] >> 32)==code; j++) {
+				netObjs.add(oldCkts.get(i).getNetObj((int)sorted[j]));
+			}
+			ckts.add(Circuit.please(netObjs));
+		}
+		return EquivRecord.newLeafRecord(key.intValue(), ckts, globals);
+	}
+
 	/** constructor*/
 	private EquivRecord(){}
 	
@@ -193,7 +284,38 @@ public class EquivRecord implements EquivRecReportable {
 		r.setParent(this);
 	}
 
+	/** Divide this leaf record by the codes that the strategy computed,
+	 * without building a map per Circuit. The offspring are the same, and
+	 * are made in the same order, as those of applyToLeaf() from maps. */
+	private LeafList applyToLeafByCodes(int[][] codesPerCkt, Strategy js) {
+		// If everything maps to one hash code then no offspring
+		if (allCodesEqual(codesPerCkt)) return new LeafList();
+
+		long[][] sortedPerCkt = new long[codesPerCkt.length][];
+		for (int i=0; i<codesPerCkt.length; i++) {
+			sortedPerCkt[i] = sortByCode(codesPerCkt[i]);
+		}
+		Set<Integer> keys = getKeysFromAllCodes(codesPerCkt, sortedPerCkt);
+
+		// Change this record from leaf to internal
+		List<Circuit> oldCkts = circuits;
+		circuits = null;
+		offspring = new RecordList();
+
+		for (Integer key : keys) {
+			EquivRecord er = makeEquivRecForKey(oldCkts, sortedPerCkt, key, js.globals);
+			addOffspring(er);
+		}
+
+		LeafList el = new LeafList();
+		el.addAll(offspring);
+		return el;
+	}
+
 	private LeafList applyToLeaf(Strategy js) {
+		int[][] codesPerCkt = getCodesPerCircuit(js);
+		if (codesPerCkt!=null) return applyToLeafByCodes(codesPerCkt, js);
+
 		ArrayList<HashMap<Integer,List<NetObject>>> mapPerCkt = getOneMapPerCircuit(js);
 		
 		Set<Integer> keys = getKeysFromAllMaps(mapPerCkt);
@@ -0,0 +1,428 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: NetBoxCache.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.placement.simulatedAnnealing2;
+
+import com.sun.electric.tool.placement.PlacementFrame.PlacementNetwork;
+import com.sun.electric.tool.placement.PlacementFrame.PlacementNode;
+import com.sun.electric.tool.placement.PlacementFrame.PlacementPort;
+import com.sun.electric.util.math.FixpTransform;
+import com.sun.electric.util.math.Orientation;
+
+import java.awt.geom.Point2D;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that keeps the bounding box net length of every net of one placement,
+ * so that a perturbation only recomputes the nets of the nodes it moves.
+ * Each net remembers its bounding box and how many pins lie on each side of it.
+ * A net is scanned again only when the pins that alone defined a side of its box move inwards.
+ *
+ * A perturbation is first evaluated (evaluateMove, evaluateSwap) and then applied with commit.
+ * The cache has its own copy of the node positions and orientations and does not look at
+ * the PlacementNodes, so each placement of the parallel tempering has one.
+ * It is not thread safe.
+ */
+final class NetBoxCache
+{
+	private final Map<ProxyNode, Integer> nodeIndex = new HashMap<ProxyNode, Integer>();
+	private final double[] nodeX, nodeY;
+	private final Orientation[] nodeOrient;
+
+	// pins of each node, as indices in the pin arrays
+	private final int[] nodePinStart, nodePins;
+
+	// pins, grouped by net
+	private final int[] netPinStart;
+	private final int[] pinNet;
+	private final int[] pinNode;				// -1 for pins which are not on a placed node
+	private final double[] pinOffX, pinOffY;	// offset before rotation (absolute position for fixed pins)
+	private final double[] pinRotX, pinRotY;	// offset after rotation
+
+	private final double[] netMinX, netMaxX, netMinY, netMaxY, netLength;
+	private final int[] netMinXCount, netMaxXCount, netMinYCount, netMaxYCount;
+	private double totalLength;
+
+	// the evaluated perturbation
+	private int numMoved;
+	private final int[] movedNodes = new int[2];
+	private final double[] movedX = new double[2], movedY = new double[2];
+	private final Orientation[] movedOrient = new Orientation[2];
+	private final int[] pinStamp, netStamp;
+	private final double[] newPinX, newPinY;
+	private int stamp;
+	private int numTouched;
+	private int[] touchedNets = new int[16];
+	private double[] touchedBox = new double[16 * 5];
+	private int[] touchedCounts = new int[16 * 4];
+	private double delta;
+
+	/**
+	 * Constructor to build the cache from the current placement of a set of proxies.
+	 * @param nodes the proxies of the nodes. Their positions and orientations are the starting placement.
+	 * @param nets the nets to measure. Ports which are not on one of the proxies stay where they are.
+	 */
+	NetBoxCache(List<ProxyNode> nodes, List<PlacementNetwork> nets)
+	{
+		Map<PlacementNode, Integer> placementIndex = new HashMap<PlacementNode, Integer>();
+		int numNodes = nodes.size();
+		nodeX = new double[numNodes];
+		nodeY = new double[numNodes];
+		nodeOrient = new Orientation[numNodes];
+		for (int i = 0; i < numNodes; i++) {
+			ProxyNode node = nodes.get(i);
+			nodeIndex.put(node, Integer.valueOf(i));
+			placementIndex.put(node.getNode(), Integer.valueOf(i));
+			nodeX[i] = node.getPlacementX();
+			nodeY[i] = node.getPlacementY();
+			nodeOrient[i] = node.getPlacementOrientation();
+		}
+
+		int numPins = 0;
+		for (PlacementNetwork net : nets)
+			numPins += net.getPortsOnNet().size();
+		netPinStart = new int[nets.size() + 1];
+		pinNet = new int[numPins];
+		pinNode = new int[numPins];
+		pinOffX = new double[numPins];
+		pinOffY = new double[numPins];
+		pinRotX = new double[numPins];
+		pinRotY = new double[numPins];
+		int[] pinsOnNode = new int[numNodes + 1];
+		int p = 0;
+		for (int n = 0; n < nets.size(); n++) {
+			netPinStart[n] = p;
+			for (PlacementPort port : nets.get(n).getPortsOnNet()) {
+				pinNet[p] = n;
+				Integer index = placementIndex.get(port.getPlacementNode());
+				if (index == null) {
+					pinNode[p] = -1;
+					pinOffX[p] = pinRotX[p] = port.getPlacementNode().getPlacementX() + port.getRotatedOffX();
+					pinOffY[p] = pinRotY[p] = port.getPlacementNode().getPlacementY() + port.getRotatedOffY();
+				} else {
+					int i = index.intValue();
+					pinNode[p] = i;
+					pinOffX[p] = port.getOffX();
+					pinOffY[p] = port.getOffY();
+					pinsOnNode[i + 1]++;
+				}
+				p++;
+			}
+		}
+		netPinStart[nets.size()] = p;
+
+		nodePinStart = new int[numNodes + 1];
+		for (int i = 0; i < numNodes; i++)
+			nodePinStart[i + 1] = nodePinStart[i] + pinsOnNode[i + 1];
+		nodePins = new int[nodePinStart[numNodes]];
+		int[] fill = new int[numNodes];
+		for (int i = 0; i < numPins; i++) {
+			int node = pinNode[i];
+			if (node < 0) continue;
+			nodePins[nodePinStart[node] + fill[node]++] = i;
+			rotatePin(i, nodeOrient[node]);
+		}
+
+		int numNets = nets.size();
+		netMinX = new double[numNets];
+		netMaxX = new double[numNets];
+		netMinY = new double[numNets];
+		netMaxY = new double[numNets];
+		netLength = new double[numNets];
+		netMinXCount = new int[numNets];
+		netMaxXCount = new int[numNets];
+		netMinYCount = new int[numNets];
+		netMaxYCount = new int[numNets];
+		pinStamp = new int[numPins];
+		netStamp = new int[numNets];
+		newPinX = new double[numPins];
+		newPinY = new double[numPins];
+		for (int n = 0; n < numNets; n++) {
+			scanNet(n, false, 0);
+			netMinX[n] = touchedBox[0];
+			netMaxX[n] = touchedBox[1];
+			netMinY[n] = touchedBox[2];
+			netMaxY[n] = touchedBox[3];
+			netLength[n] = touchedBox[4];
+			netMinXCount[n] = touchedCounts[0];
+			netMaxXCount[n] = touchedCounts[1];
+			netMinYCount[n] = touchedCounts[2];
+			netMaxYCount[n] = touchedCounts[3];
+			totalLength += netLength[n];
+		}
+	}
+
+	/**
+	 * Method to return the total bounding box length of all nets in the current placement.
+	 * The value is accumulated move by move, so it may drift slightly from a full recomputation.
+	 */
+	double getTotalLength() { return totalLength; }
+
+	/**
+	 * Method to return the length of the longest net on a node.
+	 * @param node the node.
+	 * @return the length of the longest net on the node, or -1 if it is on no net.
+	 */
+	double getLongestNet(ProxyNode node)
+	{
+		int i = nodeIndex.get(node).intValue();
+		double longest = -1;
+		for (int k = nodePinStart[i]; k < nodePinStart[i + 1]; k++) {
+			int net = pinNet[nodePins[k]];
+			longest = Math.max(longest, netLength[net]);
+		}
+		return longest;
+	}
+
+	/**
+	 * Method to evaluate moving and rotating one node.
+	 * @param node the node to move.
+	 * @param x the new X position of the node.
+	 * @param y the new Y position of the node.
+	 * @param orient the new orientation of the node.
+	 * @return the change of the total net length.
+	 */
+	double evaluateMove(ProxyNode node, double x, double y, Orientation orient)
+	{
+		numMoved = 1;
+		movedNodes[0] = nodeIndex.get(node).intValue();
+		movedX[0] = x;
+		movedY[0] = y;
+		movedOrient[0] = orient;
+		return evaluate();
+	}
+
+	/**
+	 * Method to evaluate exchanging the positions of two nodes. They keep their orientations.
+	 * @param node1 the first node.
+	 * @param node2 the second node.
+	 * @return the change of the total net length.
+	 */
+	double evaluateSwap(ProxyNode node1, ProxyNode node2)
+	{
+		numMoved = 2;
+		int i1 = nodeIndex.get(node1).intValue(), i2 = nodeIndex.get(node2).intValue();
+		movedNodes[0] = i1;
+		movedNodes[1] = i2;
+		movedX[0] = nodeX[i2];
+		movedY[0] = nodeY[i2];
+		movedOrient[0] = nodeOrient[i1];
+		movedX[1] = nodeX[i1];
+		movedY[1] = nodeY[i1];
+		movedOrient[1] = nodeOrient[i2];
+		return evaluate();
+	}
+
+	/**
+	 * Method to apply the perturbation which was evaluated last.
+	 */
+	void commit()
+	{
+		for (int t = 0; t < numTouched; t++) {
+			int n = touchedNets[t];
+			netMinX[n] = touchedBox[t*5];
+			netMaxX[n] = touchedBox[t*5+1];
+			netMinY[n] = touchedBox[t*5+2];
+			netMaxY[n] = touchedBox[t*5+3];
+			netLength[n] = touchedBox[t*5+4];
+			netMinXCount[n] = touchedCounts[t*4];
+			netMaxXCount[n] = touchedCounts[t*4+1];
+			netMinYCount[n] = touchedCounts[t*4+2];
+			netMaxYCount[n] = touchedCounts[t*4+3];
+		}
+		for (int m = 0; m < numMoved; m++) {
+			int i = movedNodes[m];
+			nodeX[i] = movedX[m];
+			nodeY[i] = movedY[m];
+			if (nodeOrient[i] != movedOrient[m]) {
+				nodeOrient[i] = movedOrient[m];
+				for (int k = nodePinStart[i]; k < nodePinStart[i + 1]; k++)
+					rotatePin(nodePins[k], nodeOrient[i]);
+			}
+		}
+		totalLength += delta;
+		numTouched = 0;
+		numMoved = 0;
+	}
+
+	private double evaluate()
+	{
+		// compute the new positions of the pins which move and find their nets
+		stamp++;
+		numTouched = 0;
+		Point2D offset = new Point2D.Double();
+		for (int m = 0; m < numMoved; m++) {
+			int i = movedNodes[m];
+			FixpTransform trans = movedOrient[m] != nodeOrient[i] && movedOrient[m] != Orientation.IDENT ?
+				movedOrient[m].pureRotate() : null;
+			for (int k = nodePinStart[i]; k < nodePinStart[i + 1]; k++) {
+				int pin = nodePins[k];
+				pinStamp[pin] = stamp;
+				double offX = pinRotX[pin], offY = pinRotY[pin];
+				if (movedOrient[m] != nodeOrient[i]) {
+					offX = pinOffX[pin];
+					offY = pinOffY[pin];
+					if (trans != null) {
+						offset.setLocation(offX, offY);
+						trans.transform(offset, offset);
+						offX = offset.getX();
+						offY = offset.getY();
+					}
+				}
+				newPinX[pin] = movedX[m] + offX;
+				newPinY[pin] = movedY[m] + offY;
+				int net = pinNet[pin];
+				if (netStamp[net] != stamp) {
+					netStamp[net] = stamp;
+					if (numTouched == touchedNets.length) {
+						int[] newNets = new int[numTouched * 2];
+						System.arraycopy(touchedNets, 0, newNets, 0, numTouched);
+						touchedNets = newNets;
+						double[] newBox = new double[numTouched * 2 * 5];
+						System.arraycopy(touchedBox, 0, newBox, 0, numTouched * 5);
+						touchedBox = newBox;
+						int[] newCounts = new int[numTouched * 2 * 4];
+						System.arraycopy(touchedCounts, 0, newCounts, 0, numTouched * 4);
+						touchedCounts = newCounts;
+					}
+					touchedNets[numTouched++] = net;
+				}
+			}
+		}
+
+		// compute the new box of each net
+		delta = 0;
+		for (int t = 0; t < numTouched; t++) {
+			int n = touchedNets[t];
+			if (!updateNet(n, t))
+				scanNet(n, true, t);
+			delta += touchedBox[t*5+4] - netLength[n];
+		}
+		return delta;
+	}
+
+	/**
+	 * Method to compute the new box of a net from its old box and the pins which move.
+	 * @return false if a side of the box was only defined by pins which move, so the net must be scanned.
+	 */
+	private boolean updateNet(int n, int t)
+	{
+		int movedMinX = 0, movedMaxX = 0, movedMinY = 0, movedMaxY = 0;
+		double newMinX = Double.MAX_VALUE, newMaxX = -Double.MAX_VALUE, newMinY = Double.MAX_VALUE, newMaxY = -Double.MAX_VALUE;
+		int newMinXCount = 0, newMaxXCount = 0, newMinYCount = 0, newMaxYCount = 0;
+		for (int m = 0; m < numMoved; m++) {
+			int i = movedNodes[m];
+			for (int k = nodePinStart[i]; k < nodePinStart[i + 1]; k++) {
+				int pin = nodePins[k];
+				if (pinNet[pin] != n) continue;
+				double oldX = nodeX[i] + pinRotX[pin], oldY = nodeY[i] + pinRotY[pin];
+				if (oldX == netMinX[n]) movedMinX++;
+				if (oldX == netMaxX[n]) movedMaxX++;
+				if (oldY == netMinY[n]) movedMinY++;
+				if (oldY == netMaxY[n]) movedMaxY++;
+				double x = newPinX[pin], y = newPinY[pin];
+				if (x < newMinX) { newMinX = x;   newMinXCount = 1; } else if (x == newMinX) newMinXCount++;
+				if (x > newMaxX) { newMaxX = x;   newMaxXCount = 1; } else if (x == newMaxX) newMaxXCount++;
+				if (y < newMinY) { newMinY = y;   newMinYCount = 1; } else if (y == newMinY) newMinYCount++;
+				if (y > newMaxY) { newMaxY = y;   newMaxYCount = 1; } else if (y == newMaxY) newMaxYCount++;
+			}
+		}
+
+		// the pins which stay still keep each side only if one of them is on it
+		if (netMinXCount[n] <= movedMinX || netMaxXCount[n] <= movedMaxX ||
+			netMinYCount[n] <= movedMinY || netMaxYCount[n] <= movedMaxY) return false;
+		setSide(t, 0, netMinX[n], netMinXCount[n] - movedMinX, newMinX, newMinXCount, true);
+		setSide(t, 1, netMaxX[n], netMaxXCount[n] - movedMaxX, newMaxX, newMaxXCount, false);
+		setSide(t, 2, netMinY[n], netMinYCount[n] - movedMinY, newMinY, newMinYCount, true);
+		setSide(t, 3, netMaxY[n], netMaxYCount[n] - movedMaxY, newMaxY, newMaxYCount, false);
+		touchedBox[t*5+4] = (touchedBox[t*5+1] - touchedBox[t*5]) + (touchedBox[t*5+3] - touchedBox[t*5+2]);
+		return true;
+	}
+
+	/**
+	 * Method to combine a side of the pins which stay still with the same side of the pins which move.
+	 */
+	private void setSide(int t, int side, double still, int stillCount, double moved, int movedCount, boolean min)
+	{
+		double value = still;
+		int count = stillCount;
+		if (min ? moved < still : moved > still) {
+			value = moved;
+			count = movedCount;
+		} else if (moved == still)
+			count += movedCount;
+		touchedBox[t*5+side] = value;
+		touchedCounts[t*4+side] = count;
+	}
+
+	/**
+	 * Method to compute the box of a net by looking at all of its pins.
+	 * @param n the net.
+	 * @param moved true to use the new positions of the pins which move.
+	 * @param t where to store the box in the touched nets.
+	 */
+	private void scanNet(int n, boolean moved, int t)
+	{
+		double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		int minXCount = 0, maxXCount = 0, minYCount = 0, maxYCount = 0;
+		for (int pin = netPinStart[n]; pin < netPinStart[n + 1]; pin++) {
+			double x, y;
+			if (moved && pinStamp[pin] == stamp) {
+				x = newPinX[pin];
+				y = newPinY[pin];
+			} else if (pinNode[pin] < 0) {
+				x = pinRotX[pin];
+				y = pinRotY[pin];
+			} else {
+				x = nodeX[pinNode[pin]] + pinRotX[pin];
+				y = nodeY[pinNode[pin]] + pinRotY[pin];
+			}
+			if (x < minX) { minX = x;   minXCount = 1; } else if (x == minX) minXCount++;
+			if (x > maxX) { maxX = x;   maxXCount = 1; } else if (x == maxX) maxXCount++;
+			if (y < minY) { minY = y;   minYCount = 1; } else if (y == minY) minYCount++;
+			if (y > maxY) { maxY = y;   maxYCount = 1; } else if (y == maxY) maxYCount++;
+		}
+		touchedBox[t*5] = minX;
+		touchedBox[t*5+1] = maxX;
+		touchedBox[t*5+2] = minY;
+		touchedBox[t*5+3] = maxY;
+		touchedBox[t*5+4] = netPinStart[n + 1] - netPinStart[n] < 2 ? 0 : (maxX - minX) + (maxY - minY);
+		touchedCounts[t*4] = minXCount;
+		touchedCounts[t*4+1] = maxXCount;
+		touchedCounts[t*4+2] = minYCount;
+		touchedCounts[t*4+3] = maxYCount;
+	}
+
+	private void rotatePin(int pin, Orientation orient)
+	{
+		if (orient == Orientation.IDENT) {
+			pinRotX[pin] = pinOffX[pin];
+			pinRotY[pin] = pinOffY[pin];
+			return;
+		}
+		Point2D offset = new Point2D.Double(pinOffX[pin], pinOffY[pin]);
+		orient.pureRotate().transform(offset, offset);
+		pinRotX[pin] = offset.getX();
+		pinRotY[pin] = offset.getY();
+	}
+}
@@ -34,6 +34,7 @@ import com.sun.electric.tool.placement.simulatedAnnealing2.PositionIndex.AreaSna
 import com.sun.electric.util.math.Orientation;
 
 import java.awt.geom.Point2D;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -42,9 +43,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 
 /**
  * Implementation of the simulated annealing placement algorithm
+ *
+ * By default all threads improve the same placement. In parallel tempering mode
+ * every thread anneals its own copy of the placement at its own temperature, and
+ * the threads periodically exchange placements between neighboring temperatures.
+ * Each copy keeps the length of its nets in a NetBoxCache, so a perturbation only
+ * recomputes the nets it touches.
  */
 public class PlacementSimulatedAnnealing extends PlacementFrame {
 	// Benchmarking properties
@@ -56,6 +65,10 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 	public PlacementParameter numThreadsParam = new PlacementParameter("threads", "Number of threads:", 2);
 	public PlacementParameter maxRuntimeParam = new PlacementParameter("runtime",
 			"Runtime (seconds, 0 means no time limit):", 240);
+	public PlacementParameter temperingParam = new PlacementParameter("tempering",
+			"Parallel tempering (one placement per thread):", false);
+	public PlacementParameter qualityLogParam = new PlacementParameter("qualityLog",
+			"Wire length log file (CSV, empty for none):", "");
 
 	public boolean printDebugInformation = false;
 
@@ -78,6 +91,7 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 
 	private ArrayList<ProxyNode> nodesToPlace;
 	private List<PlacementNetwork> allNetworks;
+	private List<PlacementNetwork> placedNets; // all networks except the ignored ones
 	private BoundingBoxMetric metric = null;
 	private Map<PlacementNode, ProxyNode> proxyMap;
 	private Map<PlacementNetwork, Double> netLengths = null;
@@ -103,10 +117,26 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 	double[] stepdurationLog;
 	int stepsPerUpdate = 50;
 
+	// Parallel tempering: ladder[0] is the hottest placement
+	private TemperingReplica[] ladder;
+	private TemperingReplica[] replicas;
+	private CyclicBarrier exchangeBarrier;
+	private volatile boolean temperingDone;
+	private Throwable temperingFailure; // the first exception of a replica, thrown when all of them are done
+	private boolean temperingStopped; // true after a replica failed or the tempering was interrupted
+	private int exchangeParity;
+	private int exchangesTried, exchangesAccepted;
+	private Random exchangeRandom;
+
+	// wire length over time: milliseconds, temperature, wire length
+	private List<double[]> qualityLog;
+
 	// Tweaking Parameter
 	private final double OVERLAP_WEIGHT = 100;
 	private final double MANHATTAN_WEIGHT = 0.1;
 	private final double AREA_WEIGHT = 10000;
+	private final int TEMPERING_EXCHANGE_MOVES = 1000; // moves of each thread between exchanges
+	private final double TEMPERING_RATIO = 0.7; // temperature ratio of neighboring placements
 
 	/**
 	 * Method that creates a map that hashes a node to its proxy node This is
@@ -175,9 +205,15 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 		minArea = 0;
 
 		ArrayList<PlacementNetwork> ignoredNets = new ArrayList<PlacementNetwork>();
+		placedNets = new ArrayList<PlacementNetwork>();
 		for (PlacementNetwork net : allNetworks)
 			if (net.getPortsOnNet().size() >= nodesToPlace.size() * 0.4 && net.getPortsOnNet().size() > 100)
 				ignoredNets.add(net);
+			else
+				placedNets.add(net);
+		String qualityLogFile = qualityLogParam.getStringValue();
+		qualityLog = qualityLogFile.length() > 0 ? new ArrayList<double[]>() : null;
+		ladder = null;
 
 		// create an initial layout to be improved by simulated annealing
 		initLayout(nodesToPlace);
@@ -217,19 +253,23 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 
 		stepStartTime = System.nanoTime();
 
-		int numThreads = numOfThreads;
-		SimulatedAnnealing[] threads = new SimulatedAnnealing[numThreads];
+		if (temperingParam.getBooleanValue()) {
+			runTempering(ignoredNets);
+		} else {
+			int numThreads = numOfThreads;
+			SimulatedAnnealing[] threads = new SimulatedAnnealing[numThreads];
 
-		for (int n = 0; n < numThreads; n++) {
-			threads[n] = new SimulatedAnnealing();
-			threads[n].start();
-		}
+			for (int n = 0; n < numThreads; n++) {
+				threads[n] = new SimulatedAnnealing();
+				threads[n].start();
+			}
 
-		for (int i = 0; i < numThreads; i++) {
-			try {
-				threads[i].join();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+			for (int i = 0; i < numThreads; i++) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
 			}
 		}
 
@@ -243,6 +283,169 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 		if (performance_log) {
 			writeLog(performance_log_filename);
 		}
+		if (qualityLog != null) {
+			qualityLog.add(new double[] { System.currentTimeMillis() - timestampStart, 0,
+					metric.netLength(placedNets, proxyMap) });
+			writeQualityLog(qualityLogFile, cellName);
+		}
+	}
+
+	/**
+	 * Method that anneals one copy of the placement per thread, each at its own
+	 * temperature. The temperatures follow the usual schedule for the hottest
+	 * copy, and every other copy is TEMPERING_RATIO times colder than the
+	 * previous one. At each exchange, neighboring copies swap their
+	 * temperatures with the usual tempering probability, which moves good
+	 * placements towards the cold end. The copy with the lowest cost is kept.
+	 * 
+	 * @param ignoredNets
+	 *            the nets that are not considered
+	 */
+	private void runTempering(ArrayList<PlacementNetwork> ignoredNets) {
+		int numReplicas = Math.max(numOfThreads, 1);
+		ladder = new TemperingReplica[numReplicas];
+		for (int r = 0; r < numReplicas; r++) {
+			ArrayList<ProxyNode> nodes = new ArrayList<ProxyNode>(nodesToPlace.size());
+			for (ProxyNode p : nodesToPlace)
+				nodes.add(new ProxyNode(p.getNode(), ignoredNets, true));
+			ladder[r] = new TemperingReplica(nodes);
+		}
+		replicas = ladder.clone();
+		setLadderTemperatures(temperature);
+		exchangeRandom = new Random();
+		exchangeParity = 0;
+		exchangesTried = exchangesAccepted = 0;
+		temperingDone = false;
+		temperingFailure = null;
+		temperingStopped = false;
+		exchangeBarrier = new CyclicBarrier(numReplicas, new Runnable() {
+			public void run() {
+				exchangeReplicas();
+			}
+		});
+
+		for (int r = 0; r < numReplicas; r++)
+			replicas[r].start();
+		boolean interrupted = false;
+		for (int r = 0; r < numReplicas; r++) {
+			for (;;) {
+				try {
+					replicas[r].join();
+					break;
+				} catch (InterruptedException e) {
+					// the job is cancelled: stop every replica, and wait for them
+					interrupted = true;
+					stopTempering(null, null);
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		Throwable failure = getTemperingFailure();
+		if (failure instanceof Error)
+			throw (Error) failure;
+		if (failure != null)
+			throw (RuntimeException) failure;
+
+		// keep the best placement
+		TemperingReplica best = replicas[0];
+		for (TemperingReplica replica : replicas)
+			if (replica.energy < best.energy)
+				best = replica;
+		nodesToPlace = best.nodes;
+		posIndex = best.index;
+		proxyMap = createProxyHashmap(nodesToPlace);
+		if (printDebugInformation)
+			System.out.println("Parallel tempering: " + numReplicas + " placements, " + exchangesAccepted + " of "
+					+ exchangesTried + " exchanges accepted");
+	}
+
+	/**
+	 * Method that is called when a replica throws an exception or when the
+	 * tempering is interrupted. The other replicas are interrupted, so that
+	 * none of them waits at the exchange barrier for the stopped one, and
+	 * runTempering throws the exception when all of them are done.
+	 * 
+	 * @param failed
+	 *            the replica that stopped, or null if the caller was interrupted
+	 * @param e
+	 *            the exception, or null if the tempering was interrupted
+	 */
+	private synchronized void stopTempering(TemperingReplica failed, Throwable e) {
+		if (temperingStopped)
+			return;
+		temperingStopped = true;
+		temperingFailure = e;
+		temperingDone = true;
+		for (TemperingReplica replica : replicas)
+			if (replica != failed)
+				replica.interrupt();
+	}
+
+	private synchronized Throwable getTemperingFailure() {
+		return temperingFailure;
+	}
+
+	/**
+	 * Method that runs while all threads wait at the exchange barrier. It
+	 * swaps the temperatures of neighboring placements, then gives the ladder
+	 * the current temperature of the schedule.
+	 */
+	private void exchangeReplicas() {
+		double scheduleTemperature;
+		synchronized (this) {
+			scheduleTemperature = temperature;
+		}
+
+		// alternate between even and odd pairs so that every pair gets a chance
+		for (int k = exchangeParity; k + 1 < ladder.length; k += 2) {
+			TemperingReplica hot = ladder[k], cold = ladder[k + 1];
+			double d = (1 / hot.replicaTemperature - 1 / cold.replicaTemperature) * (hot.energy - cold.energy);
+			exchangesTried++;
+			if (d >= 0 || Math.exp(d) > exchangeRandom.nextDouble()) {
+				ladder[k] = cold;
+				ladder[k + 1] = hot;
+				exchangesAccepted++;
+			}
+		}
+		exchangeParity = 1 - exchangeParity;
+		setLadderTemperatures(scheduleTemperature);
+
+		if (qualityLog != null) {
+			double best = Double.MAX_VALUE;
+			for (TemperingReplica replica : ladder)
+				best = Math.min(best, replica.nets.getTotalLength());
+			qualityLog.add(new double[] { System.currentTimeMillis() - timestampStart, scheduleTemperature, best });
+		}
+		temperingDone = scheduleTemperature <= 1;
+	}
+
+	private void setLadderTemperatures(double hottest) {
+		for (int k = 0; k < ladder.length; k++)
+			ladder[k].replicaTemperature = hottest * Math.pow(TEMPERING_RATIO, k);
+	}
+
+	/**
+	 * Method that appends the wire length over time of this run to a CSV file.
+	 * 
+	 * @param filename
+	 * @param cellName
+	 *            the name of the cell being placed
+	 */
+	private void writeQualityLog(String filename, String cellName) {
+		try {
+			boolean header = !new File(filename).exists();
+			FileWriter f = new FileWriter(filename, true);
+			if (header)
+				f.append("cell,mode,threads,milliseconds,temperature,wirelength\n");
+			String mode = ladder != null ? "tempering" : "shared";
+			for (double[] entry : qualityLog)
+				f.append(cellName + "," + mode + "," + numOfThreads + "," + (long) entry[0] + "," + entry[1] + ","
+						+ entry[2] + "\n");
+			f.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	private void initializeParameters() {
@@ -430,6 +633,10 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 				conflictLog[temperatureStep] = this.conflicts;
 				stepdurationLog[temperatureStep] = stepDuration;
 			}
+			if (qualityLog != null && ladder == null) {
+				qualityLog.add(new double[] { System.currentTimeMillis() - timestampStart, temperature,
+						metric.netLength(placedNets, proxyMap) });
+			}
 
 			// adjust how many moves to try before the next temperature decrease
 			if (runtime > 0) {
@@ -606,9 +813,9 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 	 * 
 	 */
 	class SimulatedAnnealing extends Thread {
-		private static final int MUTATIONSWAP = 1;
-		private static final int MUTATIONMOVE = 2;
-		private static final int MUTATIONORIENTATE = 3;
+		static final int MUTATIONSWAP = 1;
+		static final int MUTATIONMOVE = 2;
+		static final int MUTATIONORIENTATE = 3;
 
 		Orientation[] orientations = { Orientation.IDENT, Orientation.R, Orientation.RR, Orientation.RRR,
 				Orientation.X, Orientation.XR, Orientation.XRR, Orientation.XRRR, Orientation.Y, Orientation.YR,
@@ -625,6 +832,13 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 			return nodesToPlace.get(rand.nextInt(nodesToPlace.size()));
 		}
 
+		/**
+		 * Method that returns the index of the placement this thread improves
+		 */
+		PositionIndex getIndex() {
+			return posIndex;
+		}
+
 		/**
 		 * Method that calculates the net metric for a node in the placement
 		 * using node information provided by a dummy This is typically used
@@ -702,10 +916,10 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 		 *            replacement of <original>
 		 * @return
 		 */
-		private double overlapForDummy(ProxyNode original, ProxyNode dummy) {
+		double overlapForDummy(ProxyNode original, ProxyNode dummy) {
 			// in the list of nodes in the proximity of the dummy,
 			// we remove node that the dummy replaced an then calculate the
-			List<ProxyNode> candidates = posIndex.getPossibleOverlaps(dummy);
+			List<ProxyNode> candidates = getIndex().getPossibleOverlaps(dummy);
 			while (candidates.remove(original))
 				;
 			return metric.overlap(dummy, candidates);
@@ -723,13 +937,13 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 		 *            replacement of <original2>
 		 * @return
 		 */
-		private double overlapForDummy(ProxyNode original1, ProxyNode original2, ProxyNode dummy1, ProxyNode dummy2) {
+		double overlapForDummy(ProxyNode original1, ProxyNode original2, ProxyNode dummy1, ProxyNode dummy2) {
 			double overlap = 0;
 			List<ProxyNode> candidates1 = null;
 			List<ProxyNode> candidates2 = null;
 
-			candidates1 = posIndex.getPossibleOverlaps(dummy1);
-			candidates2 = posIndex.getPossibleOverlaps(dummy2);
+			candidates1 = getIndex().getPossibleOverlaps(dummy1);
+			candidates2 = getIndex().getPossibleOverlaps(dummy2);
 
 			// in the list of nodes in the proximity of dummy1,
 			// we remove the nodes that are replaced and add
@@ -958,23 +1172,13 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 		 * @param node
 		 * @return a translation vector
 		 */
-		private Point2D randomMove(ProxyNode node) {
-			double maxBoundingBox = 1;
-
+		Point2D randomMove(ProxyNode node) {
 			// the length of the vector is a function of the maximum bounding
 			// box
 			// the further away connected nodes are, the further the node may
 			// move
-			ArrayList<PlacementNetwork> nets = node.getNets();
-			if (nets.size() > 0) {
-				for (PlacementNetwork net : nets) {
-					double metric = netLengths.get(net).doubleValue();
-					if (metric > maxBoundingBox)
-						maxBoundingBox = metric;
-				}
-			} else {
-				maxBoundingBox = maxChipLength;
-			}
+			double longest = longestNet(node);
+			double maxBoundingBox = longest < 0 ? maxChipLength : Math.max(longest, 1);
 
 			// shorter vectors are more likely
 			// don't move nodes too far away if they are already good positioned
@@ -984,12 +1188,28 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 			return new Point2D.Double(offsetX, offsetY);
 		}
 
+		/**
+		 * Method that finds the longest net of a node
+		 * 
+		 * @param node
+		 * @return the length of the longest net, or -1 if the node is on no net
+		 */
+		double longestNet(ProxyNode node) {
+			ArrayList<PlacementNetwork> nets = node.getNets();
+			if (nets.size() == 0)
+				return -1;
+			double longest = 0;
+			for (PlacementNetwork net : nets)
+				longest = Math.max(longest, netLengths.get(net).doubleValue());
+			return longest;
+		}
+
 		/**
 		 * Returns a random perturbation type.
 		 * 
 		 * @return
 		 */
-		private int randomPerturbationType() {
+		int randomPerturbationType() {
 			int r = rand.nextInt(100);
 
 			// TODO: replace with variables
@@ -1038,4 +1258,139 @@ public class PlacementSimulatedAnnealing extends PlacementFrame {
 			return metric;
 		}
 	}
+
+	/**
+	 * Class that anneals one copy of the placement in parallel tempering mode.
+	 * It does the same perturbations and uses the same cost function as
+	 * SimulatedAnnealing, but nobody else touches its placement, so nothing is
+	 * checked twice, and the net lengths come from its NetBoxCache.
+	 */
+	class TemperingReplica extends SimulatedAnnealing {
+		final ArrayList<ProxyNode> nodes;
+		final PositionIndex index;
+		final NetBoxCache nets;
+		double replicaTemperature; // only changed while all threads wait at the exchange barrier
+		double energy; // the cost of the placement, updated with every accepted perturbation
+
+		TemperingReplica(ArrayList<ProxyNode> nodes) {
+			this.nodes = nodes;
+			index = new PositionIndex(maxChipLength, nodes);
+			nets = new NetBoxCache(nodes, placedNets);
+			energy = nets.getTotalLength() + index.area.getArea() / minArea * AREA_WEIGHT;
+			for (ProxyNode node : nodes) {
+				energy += metric.overlap(node, index.getPossibleOverlaps(node)) / 2 * OVERLAP_WEIGHT;
+				energy += Math.max(Math.abs(node.getPlacementX()), Math.abs(node.getPlacementY())) * MANHATTAN_WEIGHT;
+			}
+		}
+
+		PositionIndex getIndex() {
+			return index;
+		}
+
+		double longestNet(ProxyNode node) {
+			return nets.getLongestNet(node);
+		}
+
+		public void run() {
+			int movesSinceExchange = 0;
+			try {
+				while (!temperingDone) {
+					int acceptCount = 0;
+					for (int i = 0; i < stepsPerUpdate; i++)
+						if (perturb())
+							acceptCount++;
+
+					// the schedule is shared by all threads
+					update(stepsPerUpdate, acceptCount, 0);
+					movesSinceExchange += stepsPerUpdate;
+					if (movesSinceExchange >= TEMPERING_EXCHANGE_MOVES) {
+						movesSinceExchange = 0;
+						exchangeBarrier.await();
+					}
+				}
+			} catch (InterruptedException e) {
+				// cancelled, or stopped by another replica
+				stopTempering(this, null);
+				Thread.currentThread().interrupt();
+			} catch (BrokenBarrierException e) {
+				// another replica was interrupted at the barrier
+				stopTempering(this, null);
+			} catch (RuntimeException e) {
+				stopTempering(this, e);
+			} catch (Error e) {
+				stopTempering(this, e);
+			}
+		}
+
+		/**
+		 * Method that tries one random perturbation of the placement
+		 * 
+		 * @return true if the perturbation was accepted
+		 */
+		private boolean perturb() {
+			ProxyNode node1 = nodes.get(rand.nextInt(nodes.size()));
+			ProxyNode node2 = null;
+			ProxyNode dummy1 = node1.clone();
+			ProxyNode dummy2 = null;
+			AreaSnapshot area = index.area;
+			double networkGain, overlapGain, areaGain, manhattanRadiusGain = 0;
+
+			int mutationType = randomPerturbationType();
+			switch (mutationType) {
+			case MUTATIONSWAP:
+				while ((node2 = nodes.get(rand.nextInt(nodes.size()))) == node1)
+					;
+				dummy2 = node2.clone();
+				dummy1.setPlacement(node2.getPlacementX(), node2.getPlacementY());
+				dummy2.setPlacement(node1.getPlacementX(), node1.getPlacementY());
+				networkGain = -nets.evaluateSwap(node1, node2);
+				overlapGain = metric.overlap(node1, index.getPossibleOverlaps(node1))
+						+ metric.overlap(node2, index.getPossibleOverlaps(node2))
+						- overlapForDummy(node1, node2, dummy1, dummy2);
+				areaGain = area.getArea() - area.areaForDummy(node1, node2, dummy1, dummy2);
+				break;
+
+			case MUTATIONMOVE:
+				Point2D position_t = randomMove(node1);
+				double new_x = (node1.getPlacementX() + position_t.getX() * (0.1 + 0.1 * replicaTemperature / startingTemperature))
+						% maxChipLength;
+				double new_y = (node1.getPlacementY() + position_t.getY() * (0.1 + 0.1 * replicaTemperature / startingTemperature))
+						% maxChipLength;
+				dummy1.setPlacement(new_x, new_y);
+				networkGain = -nets.evaluateMove(node1, new_x, new_y, node1.getPlacementOrientation());
+				overlapGain = metric.overlap(node1, index.getPossibleOverlaps(node1)) - overlapForDummy(node1, dummy1);
+				areaGain = area.getArea() - area.areaForDummy(node1, dummy1);
+				manhattanRadiusGain = Math.max(Math.abs(node1.getPlacementX()), Math.abs(node1.getPlacementY()))
+						- Math.max(Math.abs(new_x), Math.abs(new_y));
+				break;
+
+			default:
+				// the dummy of a replica does not need copies of its nets
+				dummy1.setPlacementOrientation(orientations[rand.nextInt(orientations.length)], false);
+				networkGain = -nets.evaluateMove(node1, node1.getPlacementX(), node1.getPlacementY(),
+						dummy1.getPlacementOrientation());
+				overlapGain = metric.overlap(node1, index.getPossibleOverlaps(node1)) - overlapForDummy(node1, dummy1);
+				areaGain = area.getArea() - area.areaForDummy(node1, dummy1);
+			}
+
+			double gain = networkGain + overlapGain * OVERLAP_WEIGHT + areaGain / minArea * AREA_WEIGHT
+					+ manhattanRadiusGain * MANHATTAN_WEIGHT;
+			if (Math.exp(gain / replicaTemperature) < rand.nextDouble())
+				return false;
+
+			nets.commit();
+			switch (mutationType) {
+			case MUTATIONSWAP:
+				index.swap(node1, node2);
+				break;
+			case MUTATIONMOVE:
+				index.move(node1, dummy1.getPlacementX(), dummy1.getPlacementY());
+				break;
+			default:
+				index.rotate(node1, dummy1.getPlacementOrientation());
+			}
+			energy -= gain;
+			return true;
+		}
+	}
 }
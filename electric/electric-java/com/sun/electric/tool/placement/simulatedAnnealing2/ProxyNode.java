@@ -51,6 +51,9 @@ final class ProxyNode implements Comparable<ProxyNode>
 	public boolean finalized = false;
 
 	private PlacementNode node = null;
+	// true if this proxy is one of several copies of the node (parallel tempering),
+	// so it must not change the orientation of the placement node
+	private boolean replica = false;
 
 	private ArrayList<PlacementNetwork> nets = new ArrayList<PlacementNetwork>();
 	private HashMap<PlacementNetwork, PlacementNetwork> netMap = null;
@@ -135,6 +138,18 @@ final class ProxyNode implements Comparable<ProxyNode>
 		orientation = node.getPlacementOrientation();
 	}
 
+	/**
+	 * Constructor to create a ProxyNode that is one of several copies of a node
+	 * @param node the PlacementNode that should be proxied
+	 * @param ignoredNets a list of nets that should be ignored
+	 * @param replica true if other proxies of the same node exist
+	 */
+	public ProxyNode(PlacementNode node, ArrayList<PlacementNetwork> ignoredNets, boolean replica)
+	{
+		this(node, ignoredNets);
+		this.replica = replica;
+	}
+
 	/**
 	 * Constructor used by cloning that doesn't create a new net list
 	 * @param node
@@ -187,7 +202,9 @@ final class ProxyNode implements Comparable<ProxyNode>
 	 * Method that clones this proxy
 	 */
 	public ProxyNode clone() {
-		return new ProxyNode(this.node, x, y, width, height, orientation, nets);
+		ProxyNode clone = new ProxyNode(this.node, x, y, width, height, orientation, nets);
+		clone.replica = replica;
+		return clone;
 	}
 
 	/**
@@ -294,7 +311,7 @@ final class ProxyNode implements Comparable<ProxyNode>
 
 			this.nets = newNets;
 		}
-		else
+		else if (!replica)
 		{
 			// this actually makes the rotation visible to other threads!
 			node.setOrientation(o);
@@ -2559,6 +2559,7 @@ name=null;
 	 */
 	private class GatherPolygonVisitor extends HierarchyEnumerator.Visitor
 	{
+		private List<SubPolygon> polygons;
 		private RTNode<SubPolygon> rtree;
 		private Rectangle2D intersectArea;
 		private NodeInst cellOfInterest;
@@ -2566,13 +2567,18 @@ name=null;
 
         public GatherPolygonVisitor(Rectangle2D intersectArea, NodeInst cellOfInterest, GatherNetworksVisitor gatherNetworks)
 		{
-			rtree = RTNode.makeTopLevel();
+			polygons = new ArrayList<SubPolygon>();
 			this.intersectArea = intersectArea;
 			this.cellOfInterest = cellOfInterest;
             this.gatherNetworks = gatherNetworks;
         }
 
-		public RTNode<SubPolygon> getRTree() { return rtree; }
+		public RTNode<SubPolygon> getRTree()
+		{
+			// build the R-Tree in one pass once all polygons have been gathered
+			if (rtree == null) rtree = RTNode.bulkLoad(polygons);
+			return rtree;
+		}
 
         @Override
 		public boolean enterCell(HierarchyEnumerator.CellInfo info) { return true; }
@@ -2601,7 +2607,7 @@ name=null;
 					if (!DBMath.rectsIntersect(poly.getBounds2D(), intersectArea)) continue;
 					int netID = gatherNetworks.getGlobalNetworkID(info.getContext(), 
 																  ni.findPortInstFromEquivalentProto(poly.getPort()));
-					rtree = RTNode.linkGeom(null, rtree, new SubPolygon(poly, info.getContext(), netID, ni));
+					polygons.add(new SubPolygon(poly, info.getContext(), netID, ni));
 				}
 			}
 
@@ -2619,7 +2625,7 @@ name=null;
 					poly.transform(toTop);
 					if (!DBMath.rectsIntersect(poly.getBounds2D(), intersectArea)) continue;
 					int netID = gatherNetworks.getGlobalNetworkID(info.getContext(), ai.getHeadPortInst());
-					rtree = RTNode.linkGeom(null, rtree, new SubPolygon(poly, info.getContext(), netID, ai));
+					polygons.add(new SubPolygon(poly, info.getContext(), netID, ai));
 				}
 			}
 		}
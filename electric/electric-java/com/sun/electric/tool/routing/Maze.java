@@ -32,6 +32,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.sun.electric.database.EditingPreferences;
 import com.sun.electric.database.geometry.Poly;
@@ -60,6 +62,7 @@ import com.sun.electric.technology.Technology;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Job;
 import com.sun.electric.tool.JobException;
+import com.sun.electric.tool.JobPool;
 import com.sun.electric.tool.drc.DRC;
 import com.sun.electric.tool.user.User;
 import com.sun.electric.util.math.DBMath;
@@ -106,6 +109,7 @@ public class Maze
 	/** the routing region with all data */			private SRREGION theRegion = null;
 	/** The netlist for the cell being routed */	private Netlist netList;
 	/** Space around net to build search grid */	private int mazeBoundary = 20;
+	/** true to search packed grids in parallel */	private final boolean packedGrid;
 
 	static class SRDIRECTION {}
 	SRDIRECTION SRVERTPREF = new SRDIRECTION();
@@ -246,35 +250,49 @@ public class Maze
 		wnd.clearHighlighting();
 		wnd.finishedHighlighting();
 
-		new MazeRouteJob(cell, arcsToRoute);
+		new MazeRouteJob(cell, arcsToRoute, Routing.isMazePackedGrid());
 	}
 
 	private static class MazeRouteJob extends Job
 	{
 		private Cell cell;
 		private List<ArcInst> arcs;
+		private boolean packedGrid;
 
-		protected MazeRouteJob(Cell cell, List<ArcInst> arcs)
+		protected MazeRouteJob(Cell cell, List<ArcInst> arcs, boolean packedGrid)
 		{
 			super("Maze Route", Routing.getRoutingTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
 			this.cell = cell;
 			this.arcs = arcs;
+			this.packedGrid = packedGrid;
 			startJob();
 		}
 
         @Override
 		public boolean doIt() throws JobException
 		{
-			Maze router = new Maze(getEditingPreferences());
+			Maze router = new Maze(getEditingPreferences(), packedGrid);
 			router.routeSelected(cell, arcs);
 			return true;
 		}
 	}
 
     public Maze(EditingPreferences ep) {
-        this.ep = ep;
+        this(ep, false);
     }
 
+	/**
+	 * Constructor for a Maze router.
+	 * @param ep the EditingPreferences for the new geometry.
+	 * @param packedGrid true to search each net on a bit-packed MazeGrid, routing nets that are
+	 * far apart on several threads.  False to use the original wavefront search, one net at a time.
+	 */
+	public Maze(EditingPreferences ep, boolean packedGrid)
+	{
+		this.ep = ep;
+		this.packedGrid = packedGrid;
+	}
+
 	/**
 	 * This is the public interface for Maze Routing when done in batch mode.
 	 * It replaces the selected unrouted arcs with routed geometry
@@ -297,6 +315,12 @@ public class Maze
 			}
 		}
 
+		if (packedGrid)
+		{
+			routeInBatches(cell, arcsToRoute);
+			return;
+		}
+
 		// now route each arc
 		for(ArcInst ai : arcsToRoute)
 		{
@@ -317,41 +341,58 @@ public class Maze
 	 * @return true on error.
 	 */
 	private boolean routeNet(Network net, Map<Network,ArcInst[]> arcMap)
+	{
+		MazeRoute route = prepareRoute(net, arcMap);
+		if (route == null) return true;
+
+		// do maze routing
+		if (routeANet(route.srnet))
+		{
+			System.out.println("Could not route net " + route.srnet.eNet.describe(false));
+			return true;
+		}
+		return finishRoute(net.getParent(), route);
+	}
+
+	/**
+	 * Class to hold a network that is ready to be searched, and the unrouted geometry it replaces.
+	 */
+	private static class MazeRoute
+	{
+		/** the net in its routing region */			SRNET srnet;
+		/** the arc used for the wires */				ArcProto routingArc;
+		/** unrouted arcs to remove when routed */		Set<ArcInst> arcsToDelete;
+		/** unrouted pins to remove when routed */		Set<NodeInst> nodesToDelete;
+		/** true if a path was found */					boolean routed;
+	}
+
+	/**
+	 * Method to build the routing region of a network and to define its ports.
+	 * @param net the network to route.
+	 * @return the network ready for searching, or null if there is nothing to route or on error.
+	 */
+	private MazeRoute prepareRoute(Network net, Map<Network,ArcInst[]> arcMap)
 	{
 		// get extent of net and mark nodes and arcs on it
 		HashSet<ArcInst> arcsToDelete = new HashSet<ArcInst>();
 		HashSet<NodeInst> nodesToDelete = new HashSet<NodeInst>();
 		List<Connection> netEnds = Routing.findNetEnds(net, arcMap, arcsToDelete, nodesToDelete, netList, true);
 		int count = netEnds.size();
-		if (count == 0) return false;
+		if (count == 0) return null;
 		if (count != 2)
 		{
 			System.out.println("Error: Network " + net.describe(false) + " has " + count +
 				" ends, but can only route nets with 2 ends");
-			return true;
+			return null;
 		}
 
 		// determine bounds of this networks
 		Cell cell = net.getParent();
-		Rectangle2D routingBounds = null;
-		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
-		{
-			ArcInst ai = it.next();
-			Network aNet = netList.getNetwork(ai, 0);
-			if (aNet != net) continue;
-			Rectangle2D arcBounds = ai.getBounds();
-			if (routingBounds == null)
-			{
-				routingBounds = new Rectangle2D.Double(arcBounds.getMinX(), arcBounds.getMinY(), arcBounds.getWidth(), arcBounds.getHeight());
-			} else
-			{
-				Rectangle2D.union(routingBounds, arcBounds, routingBounds);
-			}
-		}
+		Rectangle2D routingBounds = getNetBounds(net);
 		if (routingBounds == null)
 		{
 			System.out.println("Internal error: no bounding area for routing");
-			return true;
+			return null;
 		}
 
 		// determine arc to route
@@ -411,21 +452,9 @@ public class Maze
 		if (routingArc == null)
 		{
 			System.out.println("Cannot find wire to route");
-			return true;
+			return null;
 		}
-		mazeVertWire = routingArc;
-		mazeHorizWire = routingArc;
-		mazeSteinerNode = routingArc.findPinProto();
-        mazeVertLayer = mazeVertWire.getLayer(0);
-        mazeHorizLayer = mazeHorizWire.getLayer(0);
-//		Iterator<ArcLayer> it = mazeVertWire.getArcLayers();
-//		mazeVertLayer = it.next().getLayer();
-//		it = mazeHorizWire.getArcLayers();
-//		mazeHorizLayer = it.next().getLayer();
-		mazeBloat = 0;
-		double wid = 10, len = 100;
-		DRCTemplate rule = DRC.getSpacingRule(mazeVertLayer, null, mazeVertLayer, null, false, 0, wid, len);
-		if (rule != null) mazeBloat = rule.getValue(0) + mazeVertWire.getDefaultLambdaBaseWidth(ep)/2;
+		setRoutingArc(routingArc);
 
 		// now create the routing region
 		int lx = (int)routingBounds.getMinX();
@@ -433,14 +462,14 @@ public class Maze
 		int ly = (int)routingBounds.getMinY();
 		int hy = (int)routingBounds.getMaxY();
 		SRREGION region = defineRegion(cell, net, lx, ly, hx, hy, arcsToDelete, nodesToDelete);
-		if (region == null) return true;
+		if (region == null) return null;
 
 		// create the net in the region
 		SRNET srnet = addNet(region, net);
 		if (srnet == null)
 		{
 			System.out.println("Could not allocate internal net");
-			return true;
+			return null;
 		}
 
 		// add the ports to the net
@@ -454,35 +483,303 @@ public class Maze
 			if (fsp == null)
 			{
 				System.out.println("Port could not be defined");
-				return true;
+				return null;
 			}
 		}
 //dumpLayer("BEFORE ROUTING", region, 0xFF);
 
-		// do maze routing
-		if (routeANet(srnet))
-		{
-			System.out.println("Could not route net " + srnet.eNet.describe(false));
-			return true;
-		}
+		MazeRoute route = new MazeRoute();
+		route.srnet = srnet;
+		route.routingArc = routingArc;
+		route.arcsToDelete = arcsToDelete;
+		route.nodesToDelete = nodesToDelete;
+		return route;
+	}
 
+	/**
+	 * Method to replace the unrouted geometry of a network with the paths that were found.
+	 * @return true on error.
+	 */
+	private boolean finishRoute(Cell cell, MazeRoute route)
+	{
 		// extract paths to create arcs
-		if (extractPaths(cell, srnet))
+		setRoutingArc(route.routingArc);
+		if (extractPaths(cell, route.srnet))
 		{
 			System.out.println("Could not create paths");
 			return true;
 		}
 
 		// remove marked networks
-		for(ArcInst ai : arcsToDelete)
+		for(ArcInst ai : route.arcsToDelete)
 		{
 			ai.kill();
 		}
-        cell.killNodes(nodesToDelete);
+        cell.killNodes(route.nodesToDelete);
 
 		return false;
 	}
 
+	/**
+	 * Method to determine the bounds of the arcs on a network.
+	 * @return the bounds, or null if the network has no arcs.
+	 */
+	private Rectangle2D getNetBounds(Network net)
+	{
+		Cell cell = net.getParent();
+		Rectangle2D routingBounds = null;
+		for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
+		{
+			ArcInst ai = it.next();
+			Network aNet = netList.getNetwork(ai, 0);
+			if (aNet != net) continue;
+			Rectangle2D arcBounds = ai.getBounds();
+			if (routingBounds == null)
+			{
+				routingBounds = new Rectangle2D.Double(arcBounds.getMinX(), arcBounds.getMinY(), arcBounds.getWidth(), arcBounds.getHeight());
+			} else
+			{
+				Rectangle2D.union(routingBounds, arcBounds, routingBounds);
+			}
+		}
+		return routingBounds;
+	}
+
+	/**
+	 * Method to set the wires, pins, and DRC bloat used when routing with an arc.
+	 */
+	private void setRoutingArc(ArcProto routingArc)
+	{
+		mazeVertWire = routingArc;
+		mazeHorizWire = routingArc;
+		mazeSteinerNode = routingArc.findPinProto();
+        mazeVertLayer = mazeVertWire.getLayer(0);
+        mazeHorizLayer = mazeHorizWire.getLayer(0);
+//		Iterator<ArcLayer> it = mazeVertWire.getArcLayers();
+//		mazeVertLayer = it.next().getLayer();
+//		it = mazeHorizWire.getArcLayers();
+//		mazeHorizLayer = it.next().getLayer();
+		mazeBloat = 0;
+		double wid = 10, len = 100;
+		DRCTemplate rule = DRC.getSpacingRule(mazeVertLayer, null, mazeVertLayer, null, false, 0, wid, len);
+		if (rule != null) mazeBloat = rule.getValue(0) + mazeVertWire.getDefaultLambdaBaseWidth(ep)/2;
+	}
+
+	/************************************* CODE TO SEARCH PACKED GRIDS *************************************/
+
+	/**
+	 * Method to route arcs on bit-packed grids, several nets at a time.
+	 * Nets whose routing regions are well apart form a batch.  The regions of a batch are built
+	 * one after the other, searched in parallel, and then turned into arcs one after the other,
+	 * so that only the calling thread reads and changes the database.
+	 * Nets that come near a net of the batch wait for a later batch, which sees the new wires.
+	 */
+	private void routeInBatches(Cell cell, List<ArcInst> arcsToRoute)
+	{
+		Job job = Job.getRunningJob();
+		List<ArcInst> remaining = new ArrayList<ArcInst>(arcsToRoute);
+		while (remaining.size() > 0)
+		{
+			// reacquire the netlist for the current configuration
+			netList = cell.getNetlist();
+			Map<Network,ArcInst[]> arcMap = null;
+			if (cell.getView() != View.SCHEMATIC) arcMap = netList.getArcInstsByNetwork();
+
+			// gather nets whose regions stay apart
+			List<MazeRoute> batch = new ArrayList<MazeRoute>();
+			List<Rectangle2D> used = new ArrayList<Rectangle2D>();
+			List<ArcInst> deferred = new ArrayList<ArcInst>();
+			for(ArcInst ai : remaining)
+			{
+				if (!ai.isLinked()) continue;
+				Network net = netList.getNetwork(ai, 0);
+				Rectangle2D bounds = getNetBounds(net);
+				if (bounds != null)
+				{
+					// the region extends mazeBoundary beyond the net, keep that much again between regions
+					Rectangle2D area = new Rectangle2D.Double(bounds.getMinX() - mazeBoundary*2, bounds.getMinY() - mazeBoundary*2,
+						bounds.getWidth() + mazeBoundary*4, bounds.getHeight() + mazeBoundary*4);
+					boolean near = false;
+					for(Rectangle2D other : used)
+					{
+						if (other.intersects(area)) { near = true;   break; }
+					}
+					if (near)
+					{
+						deferred.add(ai);
+						continue;
+					}
+					used.add(area);
+				}
+
+				// each net of the batch has a region of its own
+				theRegion = null;
+				MazeRoute route = prepareRoute(net, arcMap);
+				if (route == null) continue;
+				for (SRPORT port = route.srnet.ports; port != null; port = port.next)
+				{
+					for (int index = 0; index < SRMAXLAYERS; index++)
+					{
+						SRLAYER layer = port.net.region.layers[index];
+						if (layer == null || (layer.mask & port.layers) == 0) continue;
+						int [] bnd = getPortGrid(port, layer);
+						if (bnd != null) openPort(null, port, layer, bnd[0], bnd[1], bnd[2], bnd[3]);
+					}
+				}
+				batch.add(route);
+			}
+
+			if (!searchRoutes(batch, job)) return;
+			for(MazeRoute route : batch)
+			{
+				if (!route.routed)
+				{
+					System.out.println("Could not route net " + route.srnet.eNet.describe(false));
+					continue;
+				}
+				finishRoute(cell, route);
+			}
+			remaining = deferred;
+		}
+		theRegion = null;
+	}
+
+	/**
+	 * Method to search the nets of a batch on the Job pool.
+	 * @param work the nets to search.
+	 * @param job the Job that is running (for abort checking).
+	 * @return false if aborted.
+	 */
+	private boolean searchRoutes(final List<MazeRoute> work, final Job job)
+	{
+		final AtomicInteger nextRoute = new AtomicInteger();
+		final AtomicBoolean aborted = new AtomicBoolean();
+		int numWorkers = Math.min(work.size(), JobPool.getNumThreads() + 1);
+		List<Runnable> workers = new ArrayList<Runnable>(numWorkers);
+		for (int i = 0; i < numWorkers; i++)
+		{
+			workers.add(new Runnable() {
+				public void run() {
+					for (int r = nextRoute.getAndIncrement(); r < work.size(); r = nextRoute.getAndIncrement())
+					{
+						if (job != null && job.checkAbort())
+						{
+							// let the other workers finish quickly
+							nextRoute.set(work.size());
+							aborted.set(true);
+							return;
+						}
+						searchRoute(work.get(r));
+					}
+				}
+			});
+		}
+		JobPool.runAll(workers);
+		return !aborted.get();
+	}
+
+	/**
+	 * Method to find the path of a two-port net on a MazeGrid and to record it as paths of the ports.
+	 * It only uses the routing region of the net, so it may run on any thread.
+	 */
+	private void searchRoute(MazeRoute route)
+	{
+		SRNET net = route.srnet;
+		SRLAYER [] layers = new SRLAYER[] {net.region.layers[HORILAYER], net.region.layers[VERTLAYER]};
+		int [] moves = new int[layers.length];
+		for (int l = 0; l < layers.length; l++)
+		{
+			if (layers[l].dir == SRHORIPREF) moves[l] = MazeGrid.HORIZONTAL; else
+				if (layers[l].dir == SRVERTPREF) moves[l] = MazeGrid.VERTICAL; else
+					moves[l] = MazeGrid.HORIZONTAL | MazeGrid.VERTICAL;
+		}
+		MazeGrid grid = new MazeGrid(layers[0].wid, layers[0].hei, moves);
+		for (int l = 0; l < layers.length; l++)
+		{
+			byte [][] grids = layers[l].grids;
+			for (int x = 0; x < grid.getWidth(); x++)
+			{
+				for (int y = 0; y < grid.getHeight(); y++)
+				{
+					if ((grids[x][y] & SR_GSET) != 0) grid.setBlocked(l, x, y);
+				}
+			}
+		}
+
+		// the first port is searched from, the second is searched for
+		SRPORT from = net.ports, to = from.next;
+		for (int l = 0; l < layers.length; l++)
+		{
+			int [] bnd = (layers[l].mask & from.layers) != 0 ? getPortGrid(from, layers[l]) : null;
+			if (bnd != null)
+			{
+				for (int x = bnd[0]; x <= bnd[2]; x++)
+					for (int y = bnd[1]; y <= bnd[3]; y++) grid.addSource(l, x, y);
+			}
+			bnd = (layers[l].mask & to.layers) != 0 ? getPortGrid(to, layers[l]) : null;
+			if (bnd != null)
+			{
+				for (int x = bnd[0]; x <= bnd[2]; x++)
+					for (int y = bnd[1]; y <= bnd[3]; y++) grid.addTarget(l, x, y);
+			}
+		}
+		int [] path = grid.findPath();
+		if (path == null) return;
+
+		// find the first and last points that move in X or Y (the others are vias at the ports)
+		int n = path.length / 3;
+		int firstMove = n, lastMove = 0;
+		for (int i = 1; i < n; i++)
+		{
+			if (path[i*3+1] == path[i*3-2] && path[i*3+2] == path[i*3-1]) continue;
+			if (firstMove == n) firstMove = i;
+			lastMove = i;
+		}
+		if (firstMove == n)
+		{
+			// the ports share a grid point
+			getPath(from, layers[path[0]], true, false, path[1], path[2], path[1], path[2]);
+		} else
+		{
+			// break the path into straight runs on one layer
+			for (int start = 0; start < n - 1; )
+			{
+				int end = start;
+				while (end + 1 < n && path[end*3+3] == path[start*3] &&
+					((path[end*3+4] == path[start*3+1] && path[end*3+1] == path[start*3+1]) ||
+					(path[end*3+5] == path[start*3+2] && path[end*3+2] == path[start*3+2]))) end++;
+				if (end > start)
+				{
+					boolean atFrom = start < firstMove, atTo = end >= lastMove;
+					SRPORT port = atTo && !atFrom ? to : from;
+					getPath(port, layers[path[start*3]], atFrom, atTo && !atFrom,
+						path[start*3+1], path[start*3+2], path[end*3+1], path[end*3+2]);
+				}
+
+				// a bend starts the next run at this point, a via starts it on the next layer
+				start = (end + 1 < n && path[end*3+3] == path[end*3]) ? end : end + 1;
+			}
+		}
+
+		// move all the port paths to the net
+		for (SRPORT port = net.ports; port != null; port = port.next)
+		{
+			if (net.lastpath == null)
+			{
+				net.paths = port.paths;
+				if (net.paths != null) net.lastpath = port.lastpath;
+			} else
+			{
+				net.lastpath.next = port.paths;
+				if (net.lastpath.next != null) net.lastpath = port.lastpath;
+			}
+			port.paths = null;
+			port.lastpath = null;
+		}
+		net.routed = true;
+		route.routed = true;
+	}
+
 	/************************************* CODE TO TRAVERSE THE MAZE BUFFER *************************************/
 
 	private boolean routeANet(SRNET net)
@@ -634,89 +931,9 @@ public class Maze
 				if (layer == null) continue;
 
 				// convert to grid points
-				int lx = getGridX(port.lx, layer);   int ly = getGridY(port.ly, layer);
-				int hx = getGridX(port.hx, layer);   int hy = getGridY(port.hy, layer);
-				if (lx >= layer.wid || hx < 0 || ly >= layer.hei || hy < 0) continue;
-
-				// clip to window
-				if (lx < 0) lx = 0;
-				if (hx >= layer.wid) hx = layer.wid - 1;
-				if (ly < 0) ly = 0;
-				if (hy >= layer.hei) hy = layer.hei - 1;
-
-				/*
-				 * added detection of immediate blockage ... smr
-				 */
-				boolean onEdge = false;
-				for (int x = lx; x <= hx; x++)
-				{
-					for (int y = ly; y <= hy; y++)
-					{
-						addWavePoint(master, layer, x, y, SR_GSTART);
-						if (x < layer.wid-1 && layer.grids[x+1][y] == 0) onEdge = true;
-						if (x > 0 && layer.grids[x-1][y] == 0) onEdge = true;
-						if (y < layer.hei-1 && layer.grids[x][y+1] == 0) onEdge = true;
-						if (y > 0 && layer.grids[x][y-1] == 0) onEdge = true;
-					}
-				}
-				if (!onEdge)
-				{
-					// port is inside of blocked area: search for opening
-					int cx = (lx + hx) / 2;
-					int cy = (ly + hy) / 2;
-					PrimitivePort prP = port.pi.getPortProto().getBasePort();
-					int angRange = prP.getAngleRange();
-					int ang = prP.getAngle();
-					NodeInst ni = port.pi.getNodeInst();
-					ang += (ni.getAngle()+5) / 10;
-					if (ni.isMirroredAboutXAxis() != ni.isMirroredAboutYAxis()) { ang = 270 - ang; if (ang < 0) ang += 360; }
-					if (angleDiff(ang, 0) <= angRange)
-					{
-						// port faces right
-						for(int spread=1; spread<BLOCKAGELIMIT; spread++)
-						{
-							if (hx+spread >= layer.wid) break;
-							if (layer.grids[hx+spread][cy] == 0) { onEdge = true;   break; }
-							layer.grids[hx+spread][cy] = 0;
-						}
-					}
-					if (angleDiff(ang, 90) <= angRange)
-					{
-						// port faces up
-						for(int spread=1; spread<BLOCKAGELIMIT; spread++)
-						{
-							if (hy+spread >= layer.hei) break;
-							if (layer.grids[cx][hy+spread] == 0) { onEdge = true;   break; }
-							layer.grids[cx][hy+spread] = 0;
-						}
-					}
-					if (angleDiff(ang, 180) <= angRange)
-					{
-						// port faces left
-						for(int spread=1; spread<BLOCKAGELIMIT; spread++)
-						{
-							if (lx-spread < 0) break;
-							if (layer.grids[lx-spread][cy] == 0) { onEdge = true;   break; }
-							layer.grids[lx-spread][cy] = 0;
-						}
-					}
-					if (angleDiff(ang, 270) <= angRange)
-					{
-						// port faces down
-						for(int spread=1; spread<BLOCKAGELIMIT; spread++)
-						{
-							if (ly-spread < 0) break;
-							if (layer.grids[cx][ly-spread] == 0) { onEdge = true;   break; }
-							layer.grids[cx][ly-spread] = 0;
-						}
-					}
-					if (!onEdge)
-					{
-						System.out.println("Node " + ni.describe(false) + ", port " +
-							port.pi.getPortProto().getName() + " is blocked");
-						return;
-					}
-				}
+				int [] bnd = getPortGrid(port, layer);
+				if (bnd == null) continue;
+				if (!openPort(master, port, layer, bnd[0], bnd[1], bnd[2], bnd[3])) return;
 			}
 		}
 
@@ -761,6 +978,111 @@ public class Maze
 		}
 	}
 
+	/**
+	 * Method to convert the area of a port to grid points of a layer.
+	 * @return the low X, low Y, high X, and high Y grid points, clipped to the layer,
+	 * or null if the port is outside of the layer.
+	 */
+	private int [] getPortGrid(SRPORT port, SRLAYER layer)
+	{
+		int lx = getGridX(port.lx, layer);   int ly = getGridY(port.ly, layer);
+		int hx = getGridX(port.hx, layer);   int hy = getGridY(port.hy, layer);
+		if (lx >= layer.wid || hx < 0 || ly >= layer.hei || hy < 0) return null;
+
+		// clip to window
+		if (lx < 0) lx = 0;
+		if (hx >= layer.wid) hx = layer.wid - 1;
+		if (ly < 0) ly = 0;
+		if (hy >= layer.hei) hy = layer.hei - 1;
+		return new int[] {lx, ly, hx, hy};
+	}
+
+	/**
+	 * Method to mark the grid points of a port and to make sure that they can be left.
+	 * Each point is checked for a free neighbor before it is marked, so the points of the port
+	 * that are already marked do not count as free.
+	 * When the port is inside of a blocked area, the grid is cleared in the directions that the port faces.
+	 * @param master the port whose wavefront gets the points, or null to only mark the grid (for packed grids).
+	 * @return false if the port is blocked.
+	 */
+	private boolean openPort(SRPORT master, SRPORT port, SRLAYER layer, int lx, int ly, int hx, int hy)
+	{
+		/*
+		 * added detection of immediate blockage ... smr
+		 */
+		boolean onEdge = false;
+		for (int x = lx; x <= hx; x++)
+		{
+			for (int y = ly; y <= hy; y++)
+			{
+				if (x < layer.wid-1 && layer.grids[x+1][y] == 0) onEdge = true;
+				if (x > 0 && layer.grids[x-1][y] == 0) onEdge = true;
+				if (y < layer.hei-1 && layer.grids[x][y+1] == 0) onEdge = true;
+				if (y > 0 && layer.grids[x][y-1] == 0) onEdge = true;
+				if (master != null) addWavePoint(master, layer, x, y, SR_GSTART); else
+					layer.grids[x][y] = (byte)((layer.grids[x][y] & ~SR_GMASK) | SR_GSTART | SR_GWAVE);
+			}
+		}
+		if (onEdge) return true;
+
+		// port is inside of blocked area: search for opening
+		int cx = (lx + hx) / 2;
+		int cy = (ly + hy) / 2;
+		PrimitivePort prP = port.pi.getPortProto().getBasePort();
+		int angRange = prP.getAngleRange();
+		int ang = prP.getAngle();
+		NodeInst ni = port.pi.getNodeInst();
+		ang += (ni.getAngle()+5) / 10;
+		if (ni.isMirroredAboutXAxis() != ni.isMirroredAboutYAxis()) { ang = 270 - ang; if (ang < 0) ang += 360; }
+		if (angleDiff(ang, 0) <= angRange)
+		{
+			// port faces right
+			for(int spread=1; spread<BLOCKAGELIMIT; spread++)
+			{
+				if (hx+spread >= layer.wid) break;
+				if (layer.grids[hx+spread][cy] == 0) { onEdge = true;   break; }
+				layer.grids[hx+spread][cy] = 0;
+			}
+		}
+		if (angleDiff(ang, 90) <= angRange)
+		{
+			// port faces up
+			for(int spread=1; spread<BLOCKAGELIMIT; spread++)
+			{
+				if (hy+spread >= layer.hei) break;
+				if (layer.grids[cx][hy+spread] == 0) { onEdge = true;   break; }
+				layer.grids[cx][hy+spread] = 0;
+			}
+		}
+		if (angleDiff(ang, 180) <= angRange)
+		{
+			// port faces left
+			for(int spread=1; spread<BLOCKAGELIMIT; spread++)
+			{
+				if (lx-spread < 0) break;
+				if (layer.grids[lx-spread][cy] == 0) { onEdge = true;   break; }
+				layer.grids[lx-spread][cy] = 0;
+			}
+		}
+		if (angleDiff(ang, 270) <= angRange)
+		{
+			// port faces down
+			for(int spread=1; spread<BLOCKAGELIMIT; spread++)
+			{
+				if (ly-spread < 0) break;
+				if (layer.grids[cx][ly-spread] == 0) { onEdge = true;   break; }
+				layer.grids[cx][ly-spread] = 0;
+			}
+		}
+		if (!onEdge)
+		{
+			System.out.println("Node " + ni.describe(false) + ", port " +
+				port.pi.getPortProto().getName() + " is blocked");
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * routing commands
 	 */
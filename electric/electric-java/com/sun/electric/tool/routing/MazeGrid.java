@@ -0,0 +1,272 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MazeGrid.java
+ * Routing tool: Bit-packed search grid for Maze routing
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.routing;
+
+/**
+ * Class to hold a multi-layer maze routing grid in packed arrays.
+ * Each layer keeps one bit per grid point in rows of 64-bit words, so that a whole
+ * wavefront can be advanced one step with a few shifts and masks per word.
+ * The wave distance of every point that is reached is kept in a flat int array per layer.
+ * A grid is searched only once and is not shared between threads.
+ */
+class MazeGrid
+{
+	/** moves along X are allowed on the layer */	static final int HORIZONTAL = 1;
+	/** moves along Y are allowed on the layer */	static final int VERTICAL = 2;
+
+	/** width of the grid */						private final int wid;
+	/** height of the grid */						private final int hei;
+	/** number of 64-bit words in a row */			private final int rowWords;
+	/** the allowed moves on each layer */			private final int [] moves;
+	/** blocked points of each layer */				private final long [][] blocked;
+	/** points where the search starts */			private final long [][] sources;
+	/** points where the search ends */				private final long [][] targets;
+	/** wave distance of each point (0: unset) */	private final int [][] cost;
+
+	/**
+	 * Constructor creates an empty grid.
+	 * @param wid the width of the grid.
+	 * @param hei the height of the grid.
+	 * @param moves the allowed moves (HORIZONTAL and/or VERTICAL) on each layer.
+	 * Vias may be placed between adjacent layers.
+	 */
+	MazeGrid(int wid, int hei, int [] moves)
+	{
+		this.wid = wid;
+		this.hei = hei;
+		this.moves = moves.clone();
+		rowWords = (wid + 63) >>> 6;
+		int numLayers = moves.length;
+		blocked = new long[numLayers][rowWords * hei];
+		sources = new long[numLayers][rowWords * hei];
+		targets = new long[numLayers][rowWords * hei];
+		cost = new int[numLayers][wid * hei];
+
+		// the unused bits at the end of each row are blocked so that no wave runs into them
+		int extra = wid & 63;
+		if (extra != 0)
+		{
+			long padding = -1L << extra;
+			for (int l = 0; l < numLayers; l++)
+			{
+				for (int y = 0; y < hei; y++)
+					blocked[l][y * rowWords + rowWords - 1] = padding;
+			}
+		}
+	}
+
+	int getWidth() { return wid; }
+
+	int getHeight() { return hei; }
+
+	int getNumLayers() { return moves.length; }
+
+	/**
+	 * Method to mark a grid point as unusable.
+	 */
+	void setBlocked(int layer, int x, int y)
+	{
+		blocked[layer][y * rowWords + (x >>> 6)] |= 1L << x;
+	}
+
+	boolean isBlocked(int layer, int x, int y)
+	{
+		return (blocked[layer][y * rowWords + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Method to add a starting point of the search.  The point is no longer blocked.
+	 */
+	void addSource(int layer, int x, int y)
+	{
+		int i = y * rowWords + (x >>> 6);
+		sources[layer][i] |= 1L << x;
+		blocked[layer][i] &= ~(1L << x);
+	}
+
+	/**
+	 * Method to add an ending point of the search.  The point is no longer blocked.
+	 */
+	void addTarget(int layer, int x, int y)
+	{
+		int i = y * rowWords + (x >>> 6);
+		targets[layer][i] |= 1L << x;
+		blocked[layer][i] &= ~(1L << x);
+	}
+
+	/**
+	 * Method to find a shortest path from any source point to any target point.
+	 * The wavefront is expanded breadth-first, one whole layer of bits at a time.
+	 * @return the path as triples of (layer, x, y), starting at a source point and ending
+	 * at a target point.  Returns null if the targets cannot be reached.
+	 */
+	int [] findPath()
+	{
+		int numLayers = moves.length;
+		int size = rowWords * hei;
+		long [][] front = new long[numLayers][size];
+		long [][] next = new long[numLayers][size];
+		long [][] reached = new long[numLayers][size];
+
+		// the sources are the first wavefront
+		boolean any = false;
+		for (int l = 0; l < numLayers; l++)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				long bits = sources[l][i] & ~blocked[l][i];
+				front[l][i] = reached[l][i] = bits;
+				if (bits == 0) continue;
+				any = true;
+				setCost(l, i, bits, 1);
+				if ((bits & targets[l][i]) != 0) return backtrace(l, i, bits & targets[l][i]);
+			}
+		}
+
+		for (int step = 2; any; step++)
+		{
+			any = false;
+			int hitLayer = -1, hitIndex = 0;
+			long hitBits = 0;
+			for (int l = 0; l < numLayers; l++)
+			{
+				long [] f = front[l], n = next[l], b = blocked[l], r = reached[l], t = targets[l];
+				long [] down = l > 0 ? front[l-1] : null;
+				long [] up = l < numLayers-1 ? front[l+1] : null;
+				boolean horizontal = (moves[l] & HORIZONTAL) != 0;
+				boolean vertical = (moves[l] & VERTICAL) != 0;
+				for (int y = 0, i = 0; y < hei; y++)
+				{
+					for (int w = 0; w < rowWords; w++, i++)
+					{
+						long bits = 0;
+						if (horizontal)
+						{
+							// a point is reached from its left and right neighbors, carrying across words
+							long cur = f[i];
+							bits |= (cur << 1) | (cur >>> 1);
+							if (w > 0) bits |= f[i-1] >>> 63;
+							if (w < rowWords-1) bits |= f[i+1] << 63;
+						}
+						if (vertical)
+						{
+							if (y > 0) bits |= f[i-rowWords];
+							if (y < hei-1) bits |= f[i+rowWords];
+						}
+						if (down != null) bits |= down[i];
+						if (up != null) bits |= up[i];
+						bits &= ~(b[i] | r[i]);
+						n[i] = bits;
+						if (bits == 0) continue;
+						any = true;
+						r[i] |= bits;
+						setCost(l, i, bits, step);
+						if (hitLayer < 0 && (bits & t[i]) != 0)
+						{
+							hitLayer = l;
+							hitIndex = i;
+							hitBits = bits & t[i];
+						}
+					}
+				}
+			}
+			if (hitLayer >= 0) return backtrace(hitLayer, hitIndex, hitBits);
+
+			long [][] swap = front;
+			front = next;
+			next = swap;
+		}
+		return null;
+	}
+
+	/**
+	 * Method to record the wave distance of the points in a word of a row.
+	 */
+	private void setCost(int layer, int index, long bits, int step)
+	{
+		int y = index / rowWords;
+		int base = y * wid + ((index - y * rowWords) << 6);
+		int [] layerCost = cost[layer];
+		while (bits != 0)
+		{
+			layerCost[base + Long.numberOfTrailingZeros(bits)] = step;
+			bits &= bits - 1;
+		}
+	}
+
+	/**
+	 * Method to walk back from a target point to a source point.
+	 * Each step goes to a neighbor with a wave distance one lower, continuing in the
+	 * same direction when possible so that the path has few bends.
+	 */
+	private int [] backtrace(int layer, int index, long bits)
+	{
+		int y = index / rowWords;
+		int x = ((index - y * rowWords) << 6) + Long.numberOfTrailingZeros(bits);
+		int step = cost[layer][y * wid + x];
+		int [] path = new int[step * 3];
+		int dl = 0, dx = 0, dy = 0;
+		for (int pos = step - 1; ; pos--)
+		{
+			path[pos*3] = layer;
+			path[pos*3+1] = x;
+			path[pos*3+2] = y;
+			if (pos == 0) break;
+
+			if (!isPrevious(layer + dl, x + dx, y + dy, step - 1))
+			{
+				dl = dx = dy = 0;
+				if ((moves[layer] & HORIZONTAL) != 0)
+				{
+					if (isPrevious(layer, x - 1, y, step - 1)) dx = -1; else
+						if (isPrevious(layer, x + 1, y, step - 1)) dx = 1;
+				}
+				if (dx == 0 && (moves[layer] & VERTICAL) != 0)
+				{
+					if (isPrevious(layer, x, y - 1, step - 1)) dy = -1; else
+						if (isPrevious(layer, x, y + 1, step - 1)) dy = 1;
+				}
+				if (dx == 0 && dy == 0)
+				{
+					if (isPrevious(layer - 1, x, y, step - 1)) dl = -1; else
+						dl = 1;
+				}
+			}
+			layer += dl;
+			x += dx;
+			y += dy;
+			step--;
+		}
+		return path;
+	}
+
+	/**
+	 * Method to tell whether a grid point was reached by the wavefront at a given step.
+	 * Moves are symmetric, so such a neighbor can always precede the current point of a path.
+	 */
+	private boolean isPrevious(int layer, int x, int y, int step)
+	{
+		if (layer < 0 || layer >= moves.length || x < 0 || x >= wid || y < 0 || y >= hei) return false;
+		return cost[layer][y * wid + x] == step;
+	}
+}
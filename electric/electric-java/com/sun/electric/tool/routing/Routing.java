@@ -1585,6 +1585,40 @@ public class Routing extends Listener {
 		return cacheMimicStitchOnlyNewTopology.getBooleanFactoryValue();
 	}
 
+	/****************************** MAZE ROUTER OPTIONS ******************************/
+
+	private static Pref cacheMazePackedGrid = Pref.makeBooleanPref("MazePackedGrid", Routing.tool.prefs, false);
+
+	/**
+	 * Method to tell whether the Maze router searches bit-packed grids, routing nets
+	 * that are far apart in parallel. The default is "false".
+	 *
+	 * @return true if the Maze router searches bit-packed grids.
+	 */
+	public static boolean isMazePackedGrid() {
+		return cacheMazePackedGrid.getBoolean();
+	}
+
+	/**
+	 * Method to set whether the Maze router searches bit-packed grids, routing nets
+	 * that are far apart in parallel.
+	 *
+	 * @param on
+	 *            true if the Maze router should search bit-packed grids.
+	 */
+	public static void setMazePackedGrid(boolean on) {
+		cacheMazePackedGrid.setBoolean(on);
+	}
+
+	/**
+	 * Method to tell whether the Maze router searches bit-packed grids, by default.
+	 *
+	 * @return true if the Maze router searches bit-packed grids, by default.
+	 */
+	public static boolean isFactoryMazePackedGrid() {
+		return cacheMazePackedGrid.getBooleanFactoryValue();
+	}
+
 	/****************************** SEA-OF-GATES ROUTER OPTIONS ******************************/
 
 	private static Pref cacheSOGMaxWidth = Pref.makeDoublePref("SeaOfGatesMaxWidth",
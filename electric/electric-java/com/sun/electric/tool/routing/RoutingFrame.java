@@ -282,6 +282,7 @@ public abstract class RoutingFrame {
 		public static final int TYPEBOOLEAN = 4;
 
         private final String key;
+		private final String name;
 		private final String title;
         private final Object factoryValue;
         private Object cachedValue;
@@ -301,6 +302,7 @@ public abstract class RoutingFrame {
 		 */
 		public RoutingParameter(String name, String title, int factory) {
             key = getAlgorithmName() + "-" + name;
+			this.name = name;
 			this.title = title;
             cachedValue = factoryValue = Integer.valueOf(factory);
 			type = TYPEINTEGER;
@@ -317,6 +319,7 @@ public abstract class RoutingFrame {
 		 */
 		public RoutingParameter(String name, String title, String factory) {
             key = getAlgorithmName() + "-" + name;
+			this.name = name;
 			this.title = title;
             cachedValue = factoryValue = String.valueOf(factory);
 			type = TYPESTRING;
@@ -333,6 +336,7 @@ public abstract class RoutingFrame {
 		 */
 		public RoutingParameter(String name, String title, double factory) {
             key = getAlgorithmName() + "-" + name;
+			this.name = name;
 			this.title = title;
             cachedValue = factoryValue = Double.valueOf(factory);
 			type = TYPEDOUBLE;
@@ -349,6 +353,7 @@ public abstract class RoutingFrame {
 		 */
 		public RoutingParameter(String name, String title, boolean factory) {
             key = getAlgorithmName() + "-" + name;
+			this.name = name;
 			this.title = title;
             cachedValue = factoryValue = Boolean.valueOf(factory);
 			type = TYPEBOOLEAN;
@@ -360,6 +365,10 @@ public abstract class RoutingFrame {
             return RoutingFrame.this;
         }
 
+		public String getParameterName() {
+			return name;
+		}
+
 		public String getName() {
 			return title;
 		}
@@ -99,6 +99,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -213,6 +214,8 @@ public abstract class SeaOfGatesEngine
 	/** number of blockages node-extracted so far */			private int blockagesFound;
 	/** minimum spacing between this metal and itself. */		private Map<Double, Map<Double, double[]>>[] layerSurround;
 	/** routing quality */										private SoGWireQualityMetric sogQual;
+	/** number of routes in the last run */						private int numRoutes;
+	/** search vertices explored in the last run */				private long numSearchVertices;
 
 	/************************************** CONTROL **************************************/
 
@@ -582,6 +585,7 @@ public abstract class SeaOfGatesEngine
 		}
 
 		// do the routing
+		rTrees.startRouting();
 		if (numberOfThreads > 1) doRoutingParallel(numberOfThreads, allRoutes); else
 			doRouting(allRoutes);
 		if (!RoutingDebug.isActive())
@@ -715,9 +719,31 @@ public abstract class SeaOfGatesEngine
 			" (took " + prefs.theTimer + ")");
 		if (sogQual.numFailedSegments > 0) info("NOTE: " + sogQual.numFailedSegments + " segments on " + sogQual.numFailedBatches + " nets were not routed");
 
+		// count the search vertices explored by the wavefronts
+		numRoutes = allRoutes.size();
+		numSearchVertices = 0;
+		for(NeededRoute nr : allRoutes)
+		{
+			if (nr.dirAtoB != null) numSearchVertices += nr.dirAtoB.getNumSearchVertices();
+			if (nr.dirBtoA != null) numSearchVertices += nr.dirBtoA.getNumSearchVertices();
+		}
+		info("Explored " + numSearchVertices + " search vertices");
+
 		info(sogQual.printAverageResults());
 	}
 
+	/**
+	 * Method to return the number of routes considered in the last routing run.
+	 * @return the number of routes considered in the last routing run.
+	 */
+	public int getNumRoutes() { return numRoutes; }
+
+	/**
+	 * Method to return the number of search vertices explored in the last routing run.
+	 * @return the number of search vertices explored in the last routing run.
+	 */
+	public long getNumSearchVertices() { return numSearchVertices; }
+
 	public String getRoutedNetRatio()
 	{
 		String value = "";
@@ -2673,28 +2699,23 @@ public abstract class SeaOfGatesEngine
 		private boolean isPointInMetal(double x, double y, int metalNo, MutableInteger netID)
 		{
 			// get the R-Tree data for the metal layer
-			BlockageTree bTree = rTrees.getMetalTree(primaryMetalLayer[metalNo]);
-			bTree.lock();
-			try {
-				if (bTree.isEmpty()) return false;
+			BlockageSnapshot bTree = rTrees.getMetalTree(primaryMetalLayer[metalNo]).getSnapshot();
+			if (bTree.isEmpty()) return false;
 
-				Rectangle2D searchArea = new Rectangle2D.Double(x, y, 0, 0);
-				for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext();)
+			Rectangle2D searchArea = new Rectangle2D.Double(x, y, 0, 0);
+			for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext();)
+			{
+				SOGBound sBound = sea.next();
+				if (sBound.containsPoint(x, y))
 				{
-					SOGBound sBound = sea.next();
-					if (sBound.containsPoint(x, y))
+					if (netID != null)
 					{
-						if (netID != null)
-						{
-							if (!sBound.isSameBasicNet(netID)) continue;
-							int endBits = BLOCKAGEENDA | BLOCKAGEENDB;
-							if ((sBound.getNetID().intValue()&endBits) != (netID.intValue()&endBits)) continue;
-						}
-						return true;
+						if (!sBound.isSameBasicNet(netID)) continue;
+						int endBits = BLOCKAGEENDA | BLOCKAGEENDB;
+						if ((sBound.getNetID().intValue()&endBits) != (netID.intValue()&endBits)) continue;
 					}
+					return true;
 				}
-			} finally {
-				bTree.unlock();
 			}
 			return false;
 		}
@@ -3124,10 +3145,10 @@ public abstract class SeaOfGatesEngine
 							Layer.Function fun = conLayer.getFunction();
 							if (fun.isMetal())
 							{
-								addRectangle(conRect, conLayer, netID, false, false);
+								addRectangle(conRect, conLayer, netID, false);
 							} else if (fun.isContact())
 							{
-								addVia(ERectangle.fromLambda(conRect), conLayer, netID, false);
+								addVia(ERectangle.fromLambda(conRect), conLayer, netID);
 							}
 						}
 						possibleVias.finishedAddingEndpoints();
@@ -3603,10 +3624,10 @@ public abstract class SeaOfGatesEngine
 							Layer.Function fun = conLayer.getFunction();
 							if (fun.isMetal())
 							{
-								addRectangle(conRect, conLayer, netID, false, false);
+								addRectangle(conRect, conLayer, netID, false);
 							} else if (fun.isContact())
 							{
-								addVia(ERectangle.fromLambda(conRect), conLayer, netID, false);
+								addVia(ERectangle.fromLambda(conRect), conLayer, netID);
 							}
 						}
 						return false;
@@ -4157,7 +4178,7 @@ public abstract class SeaOfGatesEngine
 		private boolean growPoint(double x, double y, int layerNum, MutableInteger idNumber)
 		{
 			Rectangle2D search = new Rectangle2D.Double(x, y, 0, 0);
-			BlockageTree bTree = rTrees.getMetalTree(primaryMetalLayer[layerNum]);
+			BlockageSnapshot bTree = rTrees.getMetalTree(primaryMetalLayer[layerNum]).getSnapshot();
 			if (bTree.isEmpty()) return false;
 			boolean foundNet = false;
 			for (Iterator<SOGBound> sea = bTree.search(search); sea.hasNext();)
@@ -4445,7 +4466,7 @@ public abstract class SeaOfGatesEngine
 
 						// only add blockage if there is nothing else present
 						boolean free = true;
-						BlockageTree bTree = rTrees.getMetalTree(layer);
+						BlockageSnapshot bTree = rTrees.getMetalTree(layer).getSnapshot();
 						if (!bTree.isEmpty())
 						{
 							for (Iterator<SOGBound> sea = bTree.search(bounds); sea.hasNext();)
@@ -4494,7 +4515,7 @@ public abstract class SeaOfGatesEngine
 				}
 				for(Rectangle2D bounds : rects)
 				{
-					SOGBound rtn = addRectangle(bounds, layer, netIDUse, false, false);
+					SOGBound rtn = addRectangle(bounds, layer, netIDUse, false);
 					if (endBlockages == null)
 						endBlockages = new HashMap<Layer,List<SOGBound>>();
 					List<SOGBound> blocksOnLayer = endBlockages.get(layer);
@@ -4520,42 +4541,37 @@ public abstract class SeaOfGatesEngine
 			double surround[], double x, double y)
 		{
 			// get the R-Tree data for the metal layer
-			BlockageTree bTree = rTrees.getMetalTree(primaryMetalLayer[metNo]);
-			bTree.lock();
-			try {
-				// compute the area to search
-				double lX = x - halfWidth - surround[0], hX = x + halfWidth + surround[0];
-				double lY = y - halfHeight - surround[1], hY = y + halfHeight + surround[1];
-				Rectangle2D searchArea = new Rectangle2D.Double(lX, lY, hX - lX, hY - lY);
+			BlockageSnapshot bTree = rTrees.getMetalTree(primaryMetalLayer[metNo]).getSnapshot();
+			// compute the area to search
+			double lX = x - halfWidth - surround[0], hX = x + halfWidth + surround[0];
+			double lY = y - halfHeight - surround[1], hY = y + halfHeight + surround[1];
+			Rectangle2D searchArea = new Rectangle2D.Double(lX, lY, hX - lX, hY - lY);
 
-				// see if there is anything in that area
-				for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
-				{
-					SOGBound sBound = sea.next();
-					ERectangle bound = sBound.getBounds();
-					if (DBMath.isLessThanOrEqualTo(bound.getMaxX(), lX) ||
-						DBMath.isGreaterThanOrEqualTo(bound.getMinX(), hX) ||
-						DBMath.isLessThanOrEqualTo(bound.getMaxY(), lY) ||
-						DBMath.isGreaterThanOrEqualTo(bound.getMinY(), hY)) continue;
+			// see if there is anything in that area
+			for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
+			{
+				SOGBound sBound = sea.next();
+				ERectangle bound = sBound.getBounds();
+				if (DBMath.isLessThanOrEqualTo(bound.getMaxX(), lX) ||
+					DBMath.isGreaterThanOrEqualTo(bound.getMinX(), hX) ||
+					DBMath.isLessThanOrEqualTo(bound.getMaxY(), lY) ||
+					DBMath.isGreaterThanOrEqualTo(bound.getMinY(), hY)) continue;
 
-					// ignore if on the same net and same mask
-					if (sBound.getMaskColor() == maskColor)
-					{
-						if (netID != null && sBound.isSameBasicNet(netID)) continue;
-					}
+				// ignore if on the same net and same mask
+				if (sBound.getMaskColor() == maskColor)
+				{
+					if (netID != null && sBound.isSameBasicNet(netID)) continue;
+				}
 
-					// if this is a polygon, do closer examination
-					if (sBound instanceof SOGPoly)
-					{
-						PolyBase poly = ((SOGPoly) sBound).getPoly();
-						if (!poly.contains(searchArea)) continue;
-					}
-					return sBound;
+				// if this is a polygon, do closer examination
+				if (sBound instanceof SOGPoly)
+				{
+					PolyBase poly = ((SOGPoly) sBound).getPoly();
+					if (!poly.contains(searchArea)) continue;
 				}
-				return null;
-			} finally {
-				bTree.unlock();
+				return sBound;
 			}
+			return null;
 		}
 
 		public void completeRoute(SearchVertex result)
@@ -4756,7 +4772,7 @@ public abstract class SeaOfGatesEngine
 				if (poly.getPort() == null) continue;
 				poly.transform(trans);
 				poly.setStyle(Poly.Type.FILLED);
-				soge.addLayer(poly, GenMath.MATID, nr.getNetID(), true, null, false);
+				soge.addLayer(poly, GenMath.MATID, nr.getNetID(), null, false);
 			}
 		}
 
@@ -4889,7 +4905,7 @@ public abstract class SeaOfGatesEngine
 			{
 				poly.setLayer(layer);
 				poly.setStyle(Poly.Type.FILLED);
-				soge.addLayer(poly, GenMath.MATID, nr.getNetID(), true, null, false);
+				soge.addLayer(poly, GenMath.MATID, nr.getNetID(), null, false);
 			}
 
 		}
@@ -4955,7 +4971,7 @@ public abstract class SeaOfGatesEngine
 		/** Global routing lowest bucket for each step. */				int [] orderedBase;
 		/** Network ID bits for ends of route. */						final int fromBit;
 		/** Direction to move through global routing buckets */			final int globalRoutingDelta;
-		/** Search vertices found while running the wavefront. */		final Map<Integer, Map<Integer,SearchVertex>>[] searchVertexPlanes = new Map[numMetalLayers];
+		/** Search vertices found while running the wavefront. */		final SearchVertexPlane[] searchVertexPlanes = new SearchVertexPlane[numMetalLayers];
 		/** true when searching finished successfully or failed */		private boolean finished;
 		/** array for optimized vertices (allocated once) */			private List<SearchVertex> optimizedList = new ArrayList<SearchVertex>();
 
@@ -5108,12 +5124,9 @@ public abstract class SeaOfGatesEngine
 		 */
 		public SearchVertex getVertex(double x, double y, int z)
 		{
-			Map<Integer, Map<Integer,SearchVertex>> plane = searchVertexPlanes[z];
+			SearchVertexPlane plane = searchVertexPlanes[z];
 			if (plane == null) return null;
-			Map<Integer,SearchVertex> row = plane.get(Integer.valueOf((int)Math.round(y * DBMath.GRID)));
-			if (row == null) return null;
-			SearchVertex found = row.get(Integer.valueOf((int)Math.round(x * DBMath.GRID)));
-			return found;
+			return plane.get((int)Math.round(x * DBMath.GRID), (int)Math.round(y * DBMath.GRID));
 		}
 
 		/**
@@ -5124,17 +5137,25 @@ public abstract class SeaOfGatesEngine
 		 */
 		public void setVertex(double x, double y, int z, SearchVertex sv)
 		{
-			Map<Integer, Map<Integer,SearchVertex>> plane = searchVertexPlanes[z];
+			SearchVertexPlane plane = searchVertexPlanes[z];
 			if (plane == null)
-				searchVertexPlanes[z] = plane = new TreeMap<Integer, Map<Integer,SearchVertex>>();
-			Integer iY = Integer.valueOf((int)Math.round(y * DBMath.GRID));
-			Map<Integer,SearchVertex> row = plane.get(iY);
-			if (row == null)
-				plane.put(iY, row = new TreeMap<Integer,SearchVertex>());
-			row.put(Integer.valueOf((int)Math.round(x * DBMath.GRID)), sv);
+				searchVertexPlanes[z] = plane = new SearchVertexPlane();
+			plane.put((int)Math.round(x * DBMath.GRID), (int)Math.round(y * DBMath.GRID), sv);
 		}
 
-		public Map<Integer, Map<Integer,SearchVertex>>[] getSearchVertexPlanes() { return searchVertexPlanes; }
+		public SearchVertexPlane[] getSearchVertexPlanes() { return searchVertexPlanes; }
+
+		/**
+		 * Method to return the number of distinct grid points explored by this Wavefront.
+		 * @return the number of SearchVertex objects stored in the metal planes.
+		 */
+		public int getNumSearchVertices()
+		{
+			int total = 0;
+			for(int z=0; z<searchVertexPlanes.length; z++)
+				if (searchVertexPlanes[z] != null) total += searchVertexPlanes[z].size();
+			return total;
+		}
 
 		private String[] debugString;
 
@@ -5521,22 +5542,17 @@ public abstract class SeaOfGatesEngine
 							// Rule 3: if over new layer, make sure to match its mask color
 							if (tech.hasColoredMetalLayer(primaryMetalLayer[nZ]))
 							{
-								BlockageTree bTree = rTrees.getMetalTree(primaryMetalLayer[nZ]);
-								bTree.lock();
-								try {
-									if (!bTree.isEmpty())
+								BlockageSnapshot bTree = rTrees.getMetalTree(primaryMetalLayer[nZ]).getSnapshot();
+								if (!bTree.isEmpty())
+								{
+									// see if there is anything under this point
+									Rectangle2D searchArea = new Rectangle2D.Double(nX, nY, 0, 0);
+									for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
 									{
-										// see if there is anything under this point
-										Rectangle2D searchArea = new Rectangle2D.Double(nX, nY, 0, 0);
-										for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
-										{
-											SOGBound sBound = sea.next();
-											if (sBound.isSameBasicNet(nr.netID))
-												nC = sBound.getMaskColor();
-										}
+										SOGBound sBound = sea.next();
+										if (sBound.isSameBasicNet(nr.netID))
+											nC = sBound.getMaskColor();
 									}
-								} finally {
-									bTree.unlock();
 								}
 							}
 						}
@@ -6228,25 +6244,20 @@ public abstract class SeaOfGatesEngine
 			List<SOGBound> viasInArea = new ArrayList<SOGBound>();
 
 			// gather all close vias in the circuit
-			BlockageTree bTree = rTrees.getViaTree(conLayer);
-			bTree.lock();
-			try {
-				if (bTree.isEmpty()) return null;
-				Rectangle2D searchArea = new Rectangle2D.Double(rectLX-surround-1, rectLY-surround-1,
-					conRect.getWidth()+surround*2+2, conRect.getHeight()+surround*2+2);
-				for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext();)
+			BlockageSnapshot bTree = rTrees.getViaTree(conLayer).getSnapshot();
+			if (bTree.isEmpty()) return null;
+			Rectangle2D searchArea = new Rectangle2D.Double(rectLX-surround-1, rectLY-surround-1,
+				conRect.getWidth()+surround*2+2, conRect.getHeight()+surround*2+2);
+			for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext();)
+			{
+				SOGVia sLoc = (SOGVia)sea.next();
+				ERectangle rect = sLoc.getBounds();
+				if (sLoc.isSameBasicNet(nr.netID))
 				{
-					SOGVia sLoc = (SOGVia)sea.next();
-					ERectangle rect = sLoc.getBounds();
-					if (sLoc.isSameBasicNet(nr.netID))
-					{
-						if (DBMath.areEquals(rect.getCenterX(), conRect.getCenterX()) &&
-							DBMath.areEquals(rect.getCenterY(), conRect.getCenterY())) continue;
-					}
-					viasInArea.add(sLoc);
+					if (DBMath.areEquals(rect.getCenterX(), conRect.getCenterX()) &&
+						DBMath.areEquals(rect.getCenterY(), conRect.getCenterY())) continue;
 				}
-			} finally {
-				bTree.unlock();
+				viasInArea.add(sLoc);
 			}
 
 			// gather all close vias in this path
@@ -7186,25 +7197,20 @@ public abstract class SeaOfGatesEngine
 							double lY = Math.min(fY, tY) - width/2;
 							double hY = Math.max(fY, tY) + width/2;
 							Rectangle2D searchArea = new Rectangle2D.Double(lX, lY, hX-lX, hY-lY);
-							BlockageTree bTree = rTrees.getMetalTree(primaryLayer);
+							BlockageSnapshot bTree = rTrees.getMetalTree(primaryLayer).getSnapshot();
 							boolean covered = false;
-							bTree.lock();
-							try {
-								if (!bTree.isEmpty())
+							if (!bTree.isEmpty())
+							{
+								for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext();)
 								{
-									for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext();)
+									SOGBound sBound = sea.next();
+									Rectangle2D bound = sBound.getBounds();
+									if (bound.getMinX() <= lX && bound.getMaxX() >= hX && bound.getMinY() <= lY && bound.getMaxY() >= hY)
 									{
-										SOGBound sBound = sea.next();
-										Rectangle2D bound = sBound.getBounds();
-										if (bound.getMinX() <= lX && bound.getMaxX() >= hX && bound.getMinY() <= lY && bound.getMaxY() >= hY)
-										{
-											covered = true;
-											break;
-										}
+										covered = true;
+										break;
 									}
 								}
-							} finally {
-								bTree.unlock();
 							}
 							if (!covered)
 							{
@@ -7310,20 +7316,8 @@ public abstract class SeaOfGatesEngine
 				for(Layer lay : allLayers)
 				{
 					BlockageTree bTree = rTrees.getMetalTree(lay);
-					bTree.lock();
-					try {
-						List<SOGBound> endBlocks = nr.endBlockages.get(lay);
-						for(SOGBound endBlock : endBlocks)
-						{
-							RTNode<SOGBound> origRoot = bTree.getRoot();
-							RTNode<SOGBound> newRoot = RTNode.unLinkGeom(null, origRoot, endBlock, false);
-							if (newRoot != origRoot)
-								bTree.setRoot(newRoot);
-						}
-						nr.endBlockages.remove(lay);
-					} finally {
-						bTree.unlock();
-					}
+					bTree.removeAll(nr.endBlockages.get(lay));
+					nr.endBlockages.remove(lay);
 				}
 			}
 		}
@@ -7384,126 +7378,121 @@ public abstract class SeaOfGatesEngine
 				if (dx < 0) lX = jumpBound.getMinX() - halfWidth; else
 					if (dy > 0) hY = jumpBound.getMaxY() + halfWidth; else
 						if (dy < 0) lY = jumpBound.getMinY() - halfWidth;
-			BlockageTree bTree = rTrees.getMetalTree(primaryMetalLayer[curZ]);
+			BlockageSnapshot bTree = rTrees.getMetalTree(primaryMetalLayer[curZ]).getSnapshot();
 			SOGBound topX = null, botX = null, topY = null, botY = null;
-			bTree.lock();
-			try {
-				if (!bTree.isEmpty())
+			if (!bTree.isEmpty())
+			{
+				// see if there is anything in that area
+				double lXSearch = lX - fromSurround[0], hXSearch = hX + fromSurround[0];
+				double lYSearch = lY - fromSurround[1], hYSearch = hY + fromSurround[1];
+				Rectangle2D searchArea = new Rectangle2D.Double(lXSearch, lYSearch, hXSearch - lXSearch, hYSearch - lYSearch);
+				for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
 				{
-					// see if there is anything in that area
-					double lXSearch = lX - fromSurround[0], hXSearch = hX + fromSurround[0];
-					double lYSearch = lY - fromSurround[1], hYSearch = hY + fromSurround[1];
-					Rectangle2D searchArea = new Rectangle2D.Double(lXSearch, lYSearch, hXSearch - lXSearch, hYSearch - lYSearch);
-					for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
-					{
-						SOGBound sBound = sea.next();
-						Rectangle2D bound = sBound.getBounds();
-						if (sBound.isSameBasicNet(nr.netID)) continue;
+					SOGBound sBound = sea.next();
+					Rectangle2D bound = sBound.getBounds();
+					if (sBound.isSameBasicNet(nr.netID)) continue;
 
-						// handle diagonal spacing
-						if (lX <= bound.getMaxX() && hX >= bound.getMinX())
+					// handle diagonal spacing
+					if (lX <= bound.getMaxX() && hX >= bound.getMinX())
+					{
+						if (lY <= bound.getMaxY() && hY >= bound.getMinY())
 						{
-							if (lY <= bound.getMaxY() && hY >= bound.getMinY())
-							{
-								// rectangles touch or overlap
-								if (dx > 0 && bound.getMinX()-fromSurround[0] < hX) { hX = bound.getMinX()-fromSurround[0];  topX = sBound; }
-								if (dx < 0 && bound.getMaxX()+fromSurround[0] > lX) { lX = bound.getMaxX()+fromSurround[0];  botX = sBound; }
-								if (dy > 0 && bound.getMinY()-fromSurround[1] < hY) { hY = bound.getMinY()-fromSurround[1];  topY = sBound; }
-								if (dy < 0 && bound.getMaxY()+fromSurround[1] > lY) { lY = bound.getMaxY()+fromSurround[1];  botY = sBound; }
-								continue;
-							}
+							// rectangles touch or overlap
+							if (dx > 0 && bound.getMinX()-fromSurround[0] < hX) { hX = bound.getMinX()-fromSurround[0];  topX = sBound; }
+							if (dx < 0 && bound.getMaxX()+fromSurround[0] > lX) { lX = bound.getMaxX()+fromSurround[0];  botX = sBound; }
+							if (dy > 0 && bound.getMinY()-fromSurround[1] < hY) { hY = bound.getMinY()-fromSurround[1];  topY = sBound; }
+							if (dy < 0 && bound.getMaxY()+fromSurround[1] > lY) { lY = bound.getMaxY()+fromSurround[1];  botY = sBound; }
+							continue;
+						}
 
-							// rectangles are one above the other
+						// rectangles are one above the other
+						double diff;
+						if ((lY+hY)/2 > (bound.getMinY()+bound.getMaxY())/2)
+							diff = lY - bound.getMaxY(); else
+								diff = bound.getMinY() - hY;
+						if (DBMath.isGreaterThanOrEqualTo(diff, fromSurround[1])) continue;
+					} else
+					{
+						if (lY <= bound.getMaxY() && hY >= bound.getMinY())
+						{
+							// rectangles are side-by-side
 							double diff;
-							if ((lY+hY)/2 > (bound.getMinY()+bound.getMaxY())/2)
-								diff = lY - bound.getMaxY(); else
-									diff = bound.getMinY() - hY;
-							if (DBMath.isGreaterThanOrEqualTo(diff, fromSurround[1])) continue;
+							if ((lX+hX)/2 > (bound.getMinX()+bound.getMaxX())/2)
+								diff = lX - bound.getMaxX(); else
+									diff = bound.getMinX() - hX;
+							if (DBMath.isGreaterThanOrEqualTo(diff, fromSurround[0])) continue;
 						} else
 						{
-							if (lY <= bound.getMaxY() && hY >= bound.getMinY())
+							// diagonal offset, compute Euclidean distance to corners
+							double cut2CornerX, cut2CornerY, cut1CornerX, cut1CornerY;
+							if ((bound.getMinX()+bound.getMaxX())/2 < (lX+hX)/2)
 							{
-								// rectangles are side-by-side
-								double diff;
-								if ((lX+hX)/2 > (bound.getMinX()+bound.getMaxX())/2)
-									diff = lX - bound.getMaxX(); else
-										diff = bound.getMinX() - hX;
-								if (DBMath.isGreaterThanOrEqualTo(diff, fromSurround[0])) continue;
+								cut2CornerX = bound.getMaxX();
+								cut1CornerX = lX;
 							} else
 							{
-								// diagonal offset, compute Euclidean distance to corners
-								double cut2CornerX, cut2CornerY, cut1CornerX, cut1CornerY;
-								if ((bound.getMinX()+bound.getMaxX())/2 < (lX+hX)/2)
-								{
-									cut2CornerX = bound.getMaxX();
-									cut1CornerX = lX;
-								} else
-								{
-									cut2CornerX = bound.getMinX();
-									cut1CornerX = hX;
-								}
-								if ((bound.getMinY()+bound.getMaxY())/2 < (lY+hY)/2)
-								{
-									cut2CornerY = bound.getMaxY();
-									cut1CornerY = lY;
-								} else
-								{
-									cut2CornerY = bound.getMinY();
-									cut1CornerY = hY;
-								}
-								double dX = Math.abs(cut2CornerX - cut1CornerX);
-								double dY = Math.abs(cut2CornerY - cut1CornerY);
-								if (DBMath.isGreaterThanOrEqualTo(dX, fromSurround[0])) continue;
-								if (DBMath.isGreaterThanOrEqualTo(dY, fromSurround[1])) continue;
-								double diff = Math.sqrt(dX*dX + dY*dY);
-								if (DBMath.isGreaterThanOrEqualTo(diff, Math.max(fromSurround[0], fromSurround[1]))) continue;
+								cut2CornerX = bound.getMinX();
+								cut1CornerX = hX;
 							}
-						}
-
-						// determine diagonal limit to the jump
-						if (dx != 0)
-						{
-							// horizontal line
-							double drDist = Math.max(fromSurround[0], fromSurround[1]);
-							double xBlock = bound.getCenterX() < curX ? bound.getMaxX() : bound.getMinX();
-							double yBlock = bound.getCenterY() < curY ? bound.getMaxY() : bound.getMinY();
-							Double lYintX = getHorizontalBlockage(curX, lY, drDist, xBlock, yBlock);
-							Double hYintX = getHorizontalBlockage(curX, hY, drDist, xBlock, yBlock);
-							if (dx < 0)
+							if ((bound.getMinY()+bound.getMaxY())/2 < (lY+hY)/2)
 							{
-								// moving left
-								if (lYintX != null && lYintX.doubleValue() > lX && lYintX.doubleValue() <= curX) { lX = lYintX.doubleValue();  botX = sBound; }
-								if (hYintX != null && hYintX.doubleValue() > lX && hYintX.doubleValue() <= curX) { lX = hYintX.doubleValue();  botX = sBound; }
+								cut2CornerY = bound.getMaxY();
+								cut1CornerY = lY;
 							} else
 							{
-								// moving right
-								if (lYintX != null && lYintX.doubleValue() < hX && lYintX.doubleValue() >= curX) { hX = lYintX.doubleValue();  topX = sBound; }
-								if (hYintX != null && hYintX.doubleValue() < hX && hYintX.doubleValue() >= curX) { hX = hYintX.doubleValue();  topX = sBound; }
+								cut2CornerY = bound.getMinY();
+								cut1CornerY = hY;
 							}
+							double dX = Math.abs(cut2CornerX - cut1CornerX);
+							double dY = Math.abs(cut2CornerY - cut1CornerY);
+							if (DBMath.isGreaterThanOrEqualTo(dX, fromSurround[0])) continue;
+							if (DBMath.isGreaterThanOrEqualTo(dY, fromSurround[1])) continue;
+							double diff = Math.sqrt(dX*dX + dY*dY);
+							if (DBMath.isGreaterThanOrEqualTo(diff, Math.max(fromSurround[0], fromSurround[1]))) continue;
+						}
+					}
+
+					// determine diagonal limit to the jump
+					if (dx != 0)
+					{
+						// horizontal line
+						double drDist = Math.max(fromSurround[0], fromSurround[1]);
+						double xBlock = bound.getCenterX() < curX ? bound.getMaxX() : bound.getMinX();
+						double yBlock = bound.getCenterY() < curY ? bound.getMaxY() : bound.getMinY();
+						Double lYintX = getHorizontalBlockage(curX, lY, drDist, xBlock, yBlock);
+						Double hYintX = getHorizontalBlockage(curX, hY, drDist, xBlock, yBlock);
+						if (dx < 0)
+						{
+							// moving left
+							if (lYintX != null && lYintX.doubleValue() > lX && lYintX.doubleValue() <= curX) { lX = lYintX.doubleValue();  botX = sBound; }
+							if (hYintX != null && hYintX.doubleValue() > lX && hYintX.doubleValue() <= curX) { lX = hYintX.doubleValue();  botX = sBound; }
 						} else
 						{
-							// vertical line
-							double drDist = Math.max(fromSurround[0], fromSurround[1]);
-							double xBlock = bound.getCenterX() < curX ? bound.getMaxX() : bound.getMinX();
-							double yBlock = bound.getCenterY() < curY ? bound.getMaxY() : bound.getMinY();
-							Double lXintY = getVerticalBlockage(lX, curY, drDist, xBlock, yBlock);
-							Double hXintY = getVerticalBlockage(hX, curY, drDist, xBlock, yBlock);
-							if (dy < 0)
-							{
-								// moving down
-								if (lXintY != null && lXintY.doubleValue() > lY && lXintY.doubleValue() <= curY) { lY = lXintY.doubleValue();  botY = sBound; }
-								if (hXintY != null && hXintY.doubleValue() > lY && hXintY.doubleValue() <= curY) { lY = hXintY.doubleValue();  botY = sBound; }
-							} else
-							{
-								// moving up
-								if (lXintY != null && lXintY.doubleValue() < hY && lXintY.doubleValue() >= curY) { hY = lXintY.doubleValue();  topY = sBound; }
-								if (hXintY != null && hXintY.doubleValue() < hY && hXintY.doubleValue() >= curY) { hY = hXintY.doubleValue();  topY = sBound; }
-							}
+							// moving right
+							if (lYintX != null && lYintX.doubleValue() < hX && lYintX.doubleValue() >= curX) { hX = lYintX.doubleValue();  topX = sBound; }
+							if (hYintX != null && hYintX.doubleValue() < hX && hYintX.doubleValue() >= curX) { hX = hYintX.doubleValue();  topX = sBound; }
+						}
+					} else
+					{
+						// vertical line
+						double drDist = Math.max(fromSurround[0], fromSurround[1]);
+						double xBlock = bound.getCenterX() < curX ? bound.getMaxX() : bound.getMinX();
+						double yBlock = bound.getCenterY() < curY ? bound.getMaxY() : bound.getMinY();
+						Double lXintY = getVerticalBlockage(lX, curY, drDist, xBlock, yBlock);
+						Double hXintY = getVerticalBlockage(hX, curY, drDist, xBlock, yBlock);
+						if (dy < 0)
+						{
+							// moving down
+							if (lXintY != null && lXintY.doubleValue() > lY && lXintY.doubleValue() <= curY) { lY = lXintY.doubleValue();  botY = sBound; }
+							if (hXintY != null && hXintY.doubleValue() > lY && hXintY.doubleValue() <= curY) { lY = hXintY.doubleValue();  botY = sBound; }
+						} else
+						{
+							// moving up
+							if (lXintY != null && lXintY.doubleValue() < hY && lXintY.doubleValue() >= curY) { hY = lXintY.doubleValue();  topY = sBound; }
+							if (hXintY != null && hXintY.doubleValue() < hY && hXintY.doubleValue() >= curY) { hY = hXintY.doubleValue();  topY = sBound; }
 						}
 					}
 				}
-			} finally {
-				bTree.unlock();
 			}
 			if (dx > 0)
 			{
@@ -7738,184 +7727,179 @@ public abstract class SeaOfGatesEngine
 			if (maskIndex > 0) maskIndex--;
 			Layer layer = metalLayers[metNo][maskIndex];
 			Layer primaryLayer = primaryMetalLayer[metNo];
-			BlockageTree bTree = rTrees.getMetalTree(primaryLayer);
-			bTree.lock();
-			try {
-				if (bTree.isEmpty()) return null;
-
-				// determine the size and width/length of this piece of metal
-				double metLX = x - halfWidth, metHX = x + halfWidth;
-				double metLY = y - halfHeight, metHY = y + halfHeight;
-				Rectangle2D metBound = new Rectangle2D.Double(metLX, metLY, metHX - metLX, metHY - metLY);
-				double metWid = Math.min(halfWidth, halfHeight) * 2;
-				double metLen = Math.max(halfWidth, halfHeight) * 2;
-
-				// determine the area to search about the metal
-				double surroundX = metalSurroundX[metNo], surroundY = metalSurroundY[metNo];
-				double lX = metLX - surroundX, hX = metHX + surroundX;
-				double lY = metLY - surroundY, hY = metHY + surroundY;
-				Rectangle2D searchArea = new Rectangle2D.Double(lX, lY, hX - lX, hY - lY);
-
-				// prepare for notch detection
-				List<SOGBound> nodeRecsOnPath = new ArrayList<SOGBound>();
-				List<SOGBound> recsOnPath = new ArrayList<SOGBound>();
-
-				// make a list of rectangles on the path
-				if (svCurrent != null)
-				{
-					getOptimizedList(svCurrent, optimizedList);
-					for (int ind = 1; ind < optimizedList.size(); ind++)
-					{
-						SearchVertex sv = optimizedList.get(ind);
-						SearchVertex lastSv = optimizedList.get(ind - 1);
-						if (sv.getZ() != metNo && lastSv.getZ() != metNo) continue;
-						if (sv.getZ() != lastSv.getZ())
-						{
-							// changed layers: compute via rectangles
-							int metNum = Math.min(sv.getZ(), lastSv.getZ());
-							List<MetalVia> nps = metalVias[metNum].getVias();
-							if (nr.is2X(metNum, sv.getX(), sv.getY(), sv.getX(), sv.getY()) ||
-								(metNum+1 < numMetalLayers && nr.is2X(metNum+1, sv.getX(), sv.getY(), sv.getX(), sv.getY())))
-							{
-								List<MetalVia> nps2X = metalVias2X[metNum].getVias();
-								if (nps2X.size() > 0) nps = nps2X;
-							}
-							int whichContact = lastSv.getContactNo();
-							MetalVia mv = nps.get(whichContact);
-							PrimitiveNode np = mv.via;
-							Orientation orient = Orientation.fromJava(mv.orientation * 10, false, false);
-							SizeOffset so = np.getProtoSizeOffset();
-							double xOffset = so.getLowXOffset() + so.getHighXOffset();
-							double yOffset = so.getLowYOffset() + so.getHighYOffset();
-							double wid = Math.max(np.getDefWidth(ep) - xOffset, nr.minWidth) + xOffset;
-							double hei = Math.max(np.getDefHeight(ep) - yOffset, nr.minWidth) + yOffset;
-							NodeInst ni = NodeInst.makeDummyInstance(np, ep, EPoint.fromLambda(sv.getX(), sv.getY()), wid, hei, orient);
-							FixpTransform trans = null;
-							if (orient != Orientation.IDENT) trans = ni.rotateOut();
-							Poly[] polys = np.getTechnology().getShapeOfNode(ni);
-							for (int i = 0; i < polys.length; i++)
-							{
-								Poly poly = polys[i];
-								if (poly.getLayer() != layer) continue;
-								if (trans != null) poly.transform(trans);
-								Rectangle2D bound = poly.getBounds2D();
-								if (bound.getMaxX() <= lX || bound.getMinX() >= hX || bound.getMaxY() <= lY || bound.getMinY() >= hY)
-									continue;
-								SOGBound bb = new SOGBound(ERectangle.fromLambda(bound), nr.netID, sv.getC());
-								recsOnPath.add(bb);
-								if (!minArea) nodeRecsOnPath.add(bb);
-							}
-							continue;
+			BlockageSnapshot bTree = rTrees.getMetalTree(primaryLayer).getSnapshot();
+			if (bTree.isEmpty()) return null;
+
+			// determine the size and width/length of this piece of metal
+			double metLX = x - halfWidth, metHX = x + halfWidth;
+			double metLY = y - halfHeight, metHY = y + halfHeight;
+			Rectangle2D metBound = new Rectangle2D.Double(metLX, metLY, metHX - metLX, metHY - metLY);
+			double metWid = Math.min(halfWidth, halfHeight) * 2;
+			double metLen = Math.max(halfWidth, halfHeight) * 2;
+
+			// determine the area to search about the metal
+			double surroundX = metalSurroundX[metNo], surroundY = metalSurroundY[metNo];
+			double lX = metLX - surroundX, hX = metHX + surroundX;
+			double lY = metLY - surroundY, hY = metHY + surroundY;
+			Rectangle2D searchArea = new Rectangle2D.Double(lX, lY, hX - lX, hY - lY);
+
+			// prepare for notch detection
+			List<SOGBound> nodeRecsOnPath = new ArrayList<SOGBound>();
+			List<SOGBound> recsOnPath = new ArrayList<SOGBound>();
+
+			// make a list of rectangles on the path
+			if (svCurrent != null)
+			{
+				getOptimizedList(svCurrent, optimizedList);
+				for (int ind = 1; ind < optimizedList.size(); ind++)
+				{
+					SearchVertex sv = optimizedList.get(ind);
+					SearchVertex lastSv = optimizedList.get(ind - 1);
+					if (sv.getZ() != metNo && lastSv.getZ() != metNo) continue;
+					if (sv.getZ() != lastSv.getZ())
+					{
+						// changed layers: compute via rectangles
+						int metNum = Math.min(sv.getZ(), lastSv.getZ());
+						List<MetalVia> nps = metalVias[metNum].getVias();
+						if (nr.is2X(metNum, sv.getX(), sv.getY(), sv.getX(), sv.getY()) ||
+							(metNum+1 < numMetalLayers && nr.is2X(metNum+1, sv.getX(), sv.getY(), sv.getX(), sv.getY())))
+						{
+							List<MetalVia> nps2X = metalVias2X[metNum].getVias();
+							if (nps2X.size() > 0) nps = nps2X;
+						}
+						int whichContact = lastSv.getContactNo();
+						MetalVia mv = nps.get(whichContact);
+						PrimitiveNode np = mv.via;
+						Orientation orient = Orientation.fromJava(mv.orientation * 10, false, false);
+						SizeOffset so = np.getProtoSizeOffset();
+						double xOffset = so.getLowXOffset() + so.getHighXOffset();
+						double yOffset = so.getLowYOffset() + so.getHighYOffset();
+						double wid = Math.max(np.getDefWidth(ep) - xOffset, nr.minWidth) + xOffset;
+						double hei = Math.max(np.getDefHeight(ep) - yOffset, nr.minWidth) + yOffset;
+						NodeInst ni = NodeInst.makeDummyInstance(np, ep, EPoint.fromLambda(sv.getX(), sv.getY()), wid, hei, orient);
+						FixpTransform trans = null;
+						if (orient != Orientation.IDENT) trans = ni.rotateOut();
+						Poly[] polys = np.getTechnology().getShapeOfNode(ni);
+						for (int i = 0; i < polys.length; i++)
+						{
+							Poly poly = polys[i];
+							if (poly.getLayer() != layer) continue;
+							if (trans != null) poly.transform(trans);
+							Rectangle2D bound = poly.getBounds2D();
+							if (bound.getMaxX() <= lX || bound.getMinX() >= hX || bound.getMaxY() <= lY || bound.getMinY() >= hY)
+								continue;
+							SOGBound bb = new SOGBound(ERectangle.fromLambda(bound), nr.netID, sv.getC());
+							recsOnPath.add(bb);
+							if (!minArea) nodeRecsOnPath.add(bb);
 						}
-
-						// stayed on one layer: compute arc rectangle
-						double width = nr.getArcWidth(metNo, lastSv.getX(), lastSv.getY(), sv.getX(), sv.getY());
-						Point2D head = new Point2D.Double(sv.getX(), sv.getY());
-						Point2D tail = new Point2D.Double(lastSv.getX(), lastSv.getY());
-						int ang = 0;
-						if (head.getX() != tail.getX() || head.getY() != tail.getY())
-							ang = GenMath.figureAngle(tail, head);
-						Poly poly = Poly.makeEndPointPoly(head.distance(tail), width, ang, head, width / 2, tail,
-							width / 2, Poly.Type.FILLED);
-						Rectangle2D bound = poly.getBounds2D();
-						if (bound.getMaxX() <= lX || bound.getMinX() >= hX || bound.getMaxY() <= lY || bound.getMinY() >= hY)
-							continue;
-						SOGBound bb = new SOGBound(ERectangle.fromLambda(bound), nr.netID, sv.getC());
-						recsOnPath.add(bb);
-						if (!minArea) nodeRecsOnPath.add(bb);
+						continue;
 					}
-				}
 
-				SOGBound violation = null;
-				for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
-				{
-					SOGBound sBound = sea.next();
-					ERectangle bound = sBound.getBounds();
-
-					// eliminate if out of worst surround
+					// stayed on one layer: compute arc rectangle
+					double width = nr.getArcWidth(metNo, lastSv.getX(), lastSv.getY(), sv.getX(), sv.getY());
+					Point2D head = new Point2D.Double(sv.getX(), sv.getY());
+					Point2D tail = new Point2D.Double(lastSv.getX(), lastSv.getY());
+					int ang = 0;
+					if (head.getX() != tail.getX() || head.getY() != tail.getY())
+						ang = GenMath.figureAngle(tail, head);
+					Poly poly = Poly.makeEndPointPoly(head.distance(tail), width, ang, head, width / 2, tail,
+						width / 2, Poly.Type.FILLED);
+					Rectangle2D bound = poly.getBounds2D();
 					if (bound.getMaxX() <= lX || bound.getMinX() >= hX || bound.getMaxY() <= lY || bound.getMinY() >= hY)
 						continue;
+					SOGBound bb = new SOGBound(ERectangle.fromLambda(bound), nr.netID, sv.getC());
+					recsOnPath.add(bb);
+					if (!minArea) nodeRecsOnPath.add(bb);
+				}
+			}
 
-					// see if it is within design-rule distance
-					double drWid = 0, drLen = 0;
-					// TODO: determine proper width/length
-//					if (metBound.getMinX() <= bound.getMaxX() && metBound.getMaxX() >= bound.getMinX())
-//					{
-//						// geometry is stacked vertically
-//						drWid = Math.max(bound.getHeight(), metWid);
-//						drLen = Math.max(bound.getWidth(), metLen);
-//					} else if (metBound.getMinY() <= bound.getMaxY() && metBound.getMaxY() >= bound.getMinY())
-//					{
-//						// geometry is stacked horizontally
-//						drWid = Math.max(bound.getWidth(), metWid);
-//						drLen = Math.max(bound.getHeight(), metLen);
-//					} else
-					{
-//						drWid = Math.max(Math.min(bound.getWidth(), bound.getHeight()), metWid);
-//						drLen = Math.max(Math.max(bound.getWidth(), bound.getHeight()), metLen);
-						drWid = Math.max(Math.min(bound.getWidth(), bound.getHeight()), Math.min(metWid, metLen));
-						drLen = Math.max(Math.max(bound.getWidth(), bound.getHeight()), Math.max(metWid, metLen));
-					}
-					double[] spacing = nr.getSpacingRule(metNo, drWid, drLen);
-					double lXAllow = metLX - spacing[0], hXAllow = metHX + spacing[0];
-					double lYAllow = metLY - spacing[1], hYAllow = metHY + spacing[1];
-					if (DBMath.isLessThanOrEqualTo(bound.getMaxX(), lXAllow) ||
-						DBMath.isGreaterThanOrEqualTo(bound.getMinX(), hXAllow) ||
-						DBMath.isLessThanOrEqualTo(bound.getMaxY(), lYAllow) ||
-						DBMath.isGreaterThanOrEqualTo(bound.getMinY(), hYAllow)) continue;
-
-					// too close for DRC: allow if on the same net
-//					if (sBound.getMaskColor() == maskNo)
-					{
-						if (sBound.isSameBasicNet(nr.netID))
-						{
-							// only consider real blockages, not those set about endpoints to keep them clear
-							boolean notPseudoBlockage = false;
-							if (!sBound.isPseudoBlockage()) notPseudoBlockage = true;
-							if (notPseudoBlockage)
-							{
-								// on same net: see if it completely covers this
-								if (bound.getMinX() <= metLX && bound.getMaxX() >= metHX &&
-									bound.getMinY() <= metLY && bound.getMaxY() >= metHY) return null;
+			SOGBound violation = null;
+			for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
+			{
+				SOGBound sBound = sea.next();
+				ERectangle bound = sBound.getBounds();
 
-								// make sure there is no notch error
-								boolean notch = foundANotch(bTree, metBound, bound, nr.netID, recsOnPath, spacing);
-								if (notch) violation = sBound;
-							}
-							continue;
-						}
-					}
+				// eliminate if out of worst surround
+				if (bound.getMaxX() <= lX || bound.getMinX() >= hX || bound.getMaxY() <= lY || bound.getMinY() >= hY)
+					continue;
 
-					// if this is a polygon, do closer examination
-					if (sBound instanceof SOGPoly)
-					{
-						PolyBase poly = ((SOGPoly) sBound).getPoly();
-						Rectangle2D drcArea = new Rectangle2D.Double(lXAllow, lYAllow, hXAllow - lXAllow, hYAllow - lYAllow);
-						if (!poly.contains(drcArea)) continue;
+				// see if it is within design-rule distance
+				double drWid = 0, drLen = 0;
+				// TODO: determine proper width/length
+//				if (metBound.getMinX() <= bound.getMaxX() && metBound.getMaxX() >= bound.getMinX())
+//				{
+//					// geometry is stacked vertically
+//					drWid = Math.max(bound.getHeight(), metWid);
+//					drLen = Math.max(bound.getWidth(), metLen);
+//				} else if (metBound.getMinY() <= bound.getMaxY() && metBound.getMaxY() >= bound.getMinY())
+//				{
+//					// geometry is stacked horizontally
+//					drWid = Math.max(bound.getWidth(), metWid);
+//					drLen = Math.max(bound.getHeight(), metLen);
+//				} else
+				{
+//					drWid = Math.max(Math.min(bound.getWidth(), bound.getHeight()), metWid);
+//					drLen = Math.max(Math.max(bound.getWidth(), bound.getHeight()), metLen);
+					drWid = Math.max(Math.min(bound.getWidth(), bound.getHeight()), Math.min(metWid, metLen));
+					drLen = Math.max(Math.max(bound.getWidth(), bound.getHeight()), Math.max(metWid, metLen));
+				}
+				double[] spacing = nr.getSpacingRule(metNo, drWid, drLen);
+				double lXAllow = metLX - spacing[0], hXAllow = metHX + spacing[0];
+				double lYAllow = metLY - spacing[1], hYAllow = metHY + spacing[1];
+				if (DBMath.isLessThanOrEqualTo(bound.getMaxX(), lXAllow) ||
+					DBMath.isGreaterThanOrEqualTo(bound.getMinX(), hXAllow) ||
+					DBMath.isLessThanOrEqualTo(bound.getMaxY(), lYAllow) ||
+					DBMath.isGreaterThanOrEqualTo(bound.getMinY(), hYAllow)) continue;
+
+				// too close for DRC: allow if on the same net
+//				if (sBound.getMaskColor() == maskNo)
+				{
+					if (sBound.isSameBasicNet(nr.netID))
+					{
+						// only consider real blockages, not those set about endpoints to keep them clear
+						boolean notPseudoBlockage = false;
+						if (!sBound.isPseudoBlockage()) notPseudoBlockage = true;
+						if (notPseudoBlockage)
+						{
+							// on same net: see if it completely covers this
+							if (bound.getMinX() <= metLX && bound.getMaxX() >= metHX &&
+								bound.getMinY() <= metLY && bound.getMaxY() >= metHY) return null;
+
+							// make sure there is no notch error
+							boolean notch = foundANotch(bTree, metBound, bound, nr.netID, recsOnPath, spacing);
+							if (notch) violation = sBound;
+						}
+						continue;
 					}
+				}
 
-					// DRC error found: return the offending geometry
-					violation = sBound;
-					if (explaination != null) explaination.append("spacing [X=" + TextUtils.formatDistance(spacing[0]) +
-						", Y=" + TextUtils.formatDistance(spacing[1]) + "]");
-					break;
+				// if this is a polygon, do closer examination
+				if (sBound instanceof SOGPoly)
+				{
+					PolyBase poly = ((SOGPoly) sBound).getPoly();
+					Rectangle2D drcArea = new Rectangle2D.Double(lXAllow, lYAllow, hXAllow - lXAllow, hYAllow - lYAllow);
+					if (!poly.contains(drcArea)) continue;
 				}
-				if (violation != null) return violation;
 
-				// consider notch errors in the existing path
-				double[] spacing = nr.getSpacingRule(metNo, Math.min(metWid, metLen), Math.max(metWid, metLen));
-				for(SOGBound sBound : nodeRecsOnPath)
+				// DRC error found: return the offending geometry
+				violation = sBound;
+				if (explaination != null) explaination.append("spacing [X=" + TextUtils.formatDistance(spacing[0]) +
+					", Y=" + TextUtils.formatDistance(spacing[1]) + "]");
+				break;
+			}
+			if (violation != null) return violation;
+
+			// consider notch errors in the existing path
+			double[] spacing = nr.getSpacingRule(metNo, Math.min(metWid, metLen), Math.max(metWid, metLen));
+			for(SOGBound sBound : nodeRecsOnPath)
+			{
+				if (foundANotch(bTree, metBound, sBound.getBounds(), nr.netID, recsOnPath, spacing))
 				{
-					if (foundANotch(bTree, metBound, sBound.getBounds(), nr.netID, recsOnPath, spacing))
-					{
-						if (explaination != null) explaination.append("notch");
-						return sBound;
-					}
+					if (explaination != null) explaination.append("notch");
+					return sBound;
 				}
-				return null;
-			} finally {
-				bTree.unlock();
 			}
+			return null;
 		}
 
 		/**
@@ -7925,7 +7909,7 @@ public abstract class SeaOfGatesEngine
 		 * @param bound another piece of metal.
 		 * @return true if there is a notch error between the pieces of metal.
 		 */
-		private boolean foundANotch(BlockageTree bTree, Rectangle2D metBound, Rectangle2D bound, MutableInteger netID,
+		private boolean foundANotch(BlockageSnapshot bTree, Rectangle2D metBound, Rectangle2D bound, MutableInteger netID,
 			List<SOGBound> recsOnPath, double[] dist)
 		{
 			// see if they overlap in X or Y
@@ -8031,7 +8015,7 @@ public abstract class SeaOfGatesEngine
 			return false;
 		}
 
-		private boolean pointInRTree(BlockageTree bTree, double x, double y, MutableInteger netID, List<SOGBound> recsOnPath)
+		private boolean pointInRTree(BlockageSnapshot bTree, double x, double y, MutableInteger netID, List<SOGBound> recsOnPath)
 		{
 			Rectangle2D searchArea = new Rectangle2D.Double(x-0.5, y-0.5, 1, 1);
 			for (Iterator<SOGBound> sea = bTree.search(searchArea); sea.hasNext(); )
@@ -8062,6 +8046,134 @@ public abstract class SeaOfGatesEngine
 
 	/************************************** SEARCH VERTICES **************************************/
 
+	/**
+	 * Class to index the SearchVertex objects of one metal plane by their grid coordinates.
+	 * The index is an open-addressed hash table with primitive long keys, so adding and finding a vertex
+	 * does not allocate boxed coordinates or tree entries.
+	 */
+	public static class SearchVertexPlane
+	{
+		private static final int INITIALCAPACITY = 64;
+
+		/** the packed (x,y) keys */						private long[] keys;
+		/** the vertices (null for an empty slot) */		private SearchVertex[] values;
+		/** number of vertices in the table */				private int size;
+
+		SearchVertexPlane()
+		{
+			keys = new long[INITIALCAPACITY];
+			values = new SearchVertex[INITIALCAPACITY];
+			size = 0;
+		}
+
+		/**
+		 * Method to pack a grid coordinate into a key.
+		 * Keys sort in the same order as the Y coordinate and then the X coordinate.
+		 */
+		private static long makeKey(int x, int y)
+		{
+			return ((long)y << 32) | ((x ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+		}
+
+		/**
+		 * Method to return the X grid coordinate of a key.
+		 * @param key a key returned by getSortedKeys().
+		 * @return the X grid coordinate of the key.
+		 */
+		public static int getKeyX(long key) { return ((int)key) ^ Integer.MIN_VALUE; }
+
+		/**
+		 * Method to return the Y grid coordinate of a key.
+		 * @param key a key returned by getSortedKeys().
+		 * @return the Y grid coordinate of the key.
+		 */
+		public static int getKeyY(long key) { return (int)(key >> 32); }
+
+		private int slot(long key)
+		{
+			long h = key * 0x9E3779B97F4A7C15L;
+			int mask = keys.length - 1;
+			int i = (int)(h ^ (h >>> 32)) & mask;
+			while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+			return i;
+		}
+
+		/**
+		 * Method to return the number of SearchVertex objects in this plane.
+		 * @return the number of SearchVertex objects in this plane.
+		 */
+		public int size() { return size; }
+
+		/**
+		 * Method to find the SearchVertex at a grid coordinate.
+		 * @param x the X grid coordinate.
+		 * @param y the Y grid coordinate.
+		 * @return the SearchVertex at that coordinate (null if none).
+		 */
+		public SearchVertex get(int x, int y) { return values[slot(makeKey(x, y))]; }
+
+		/**
+		 * Method to find the SearchVertex with a given key.
+		 * @param key a key returned by getSortedKeys().
+		 * @return the SearchVertex with that key (null if none).
+		 */
+		public SearchVertex get(long key) { return values[slot(key)]; }
+
+		/**
+		 * Method to store a SearchVertex at a grid coordinate, replacing any that is already there.
+		 * @param x the X grid coordinate.
+		 * @param y the Y grid coordinate.
+		 * @param sv the SearchVertex to store.
+		 */
+		public void put(int x, int y, SearchVertex sv)
+		{
+			long key = makeKey(x, y);
+			int i = slot(key);
+			if (values[i] == null)
+			{
+				// keep the load factor below one half
+				if ((size + 1) * 2 > keys.length)
+				{
+					rehash();
+					i = slot(key);
+				}
+				keys[i] = key;
+				size++;
+			}
+			values[i] = sv;
+		}
+
+		private void rehash()
+		{
+			long[] oldKeys = keys;
+			SearchVertex[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new SearchVertex[oldValues.length * 2];
+			for(int j=0; j<oldKeys.length; j++)
+			{
+				if (oldValues[j] == null) continue;
+				int i = slot(oldKeys[j]);
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+
+		/**
+		 * Method to return the keys of all SearchVertex objects in this plane.
+		 * They are sorted by Y coordinate and then by X coordinate.
+		 * @return an array of keys.
+		 */
+		public long[] getSortedKeys()
+		{
+			long[] result = new long[size];
+			int k = 0;
+			for(int i=0; i<keys.length; i++)
+				if (values[i] != null) result[k++] = keys[i];
+			Arrays.sort(result);
+			return result;
+		}
+	}
+
 	public static class OrderedSearchVertex
 	{
 		TreeMap<Integer,List<SearchVertex>> listBetter;
@@ -10028,161 +10140,157 @@ public abstract class SeaOfGatesEngine
 		double bestDistance = Double.MAX_VALUE;
 		for(int z=0; z<a.searchVertexPlanes.length; z++)
 		{
-			Map<Integer, Map<Integer,SearchVertex>> plane = a.searchVertexPlanes[z];
+			SearchVertexPlane plane = a.searchVertexPlanes[z];
 			if (plane == null) continue;
-			for(Integer y : plane.keySet())
-			{
-				Map<Integer,SearchVertex> row = plane.get(y);
-				if (row == null) continue;
-				double yCoord = y.intValue() / DBMath.GRID;
-				for(Integer x : row.keySet())
-				{
-					SearchVertex foundInA = row.get(x);
-					double xCoord = x.intValue() / DBMath.GRID;
-					SearchVertex foundInB = b.getVertex(xCoord, yCoord, z);
-					if (foundInB == null) continue;
-
-					// found a common point in the two wavefronts, check lengths against previous common point
-					double total = 0;
-					for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
-					{
-						SearchVertex prev = sv.last;
-						if (prev == null) break;
-						double dX = sv.getX() - prev.getX();
-						double dY = sv.getY() - prev.getY();
-						total += Math.sqrt(dX*dX + dY*dY);
-						if (sv.getZ() != prev.getZ()) total++;
-					}
-					for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
-					{
-						SearchVertex prev = sv.last;
-						if (prev == null) break;
-						double dX = sv.getX() - prev.getX();
-						double dY = sv.getY() - prev.getY();
-						total += Math.sqrt(dX*dX + dY*dY);
-						if (sv.getZ() != prev.getZ()) total++;
-					}
-					boolean better = DBMath.isLessThan(total, bestDistance);
-					if (!better) continue;
-
-					// see if the two halves have via contact issues
-					boolean fail = false;
-					for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
-					{
-						if (sv.getSize() == null) continue;
-						SearchVertex lastSv = sv.last;
-						if (lastSv == null) continue;
-						int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
-						int highMetal = Math.max(sv.getZ(), lastSv.getZ());
-						for(Poly conPoly : sv.getCutPolys())
-						{
-							String error = a.validCut(foundInA, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
-							if (error != null) { fail = true;  break; }
-						}
-						if (fail) break;
-					}
-					if (fail) continue;
-					for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
-					{
-						if (sv.getSize() == null) continue;
-						SearchVertex lastSv = sv.last;
-						if (lastSv == null) continue;
-						int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
-						int highMetal = Math.max(sv.getZ(), lastSv.getZ());
-						for(Poly conPoly : sv.getCutPolys())
-						{
-							String error = b.validCut(foundInB, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
-							if (error != null) { fail = true;  break; }
-						}
-						if (fail) break;
-					}
-					if (fail) continue;
-
-					// see if minimum area rules stop this connection
-					SearchVertex svCurrent = null;
-					List<SearchVertex> halfPath = new ArrayList<SearchVertex>();
-					SearchVertex svBuild = foundInB;
-					while (svBuild != null)
-					{
-						SearchVertex svAdd = new SearchVertex(svBuild);
-						if (svCurrent == null && halfPath.size() > 0 && halfPath.get(halfPath.size()-1).getZ() != svAdd.getZ())
-							svCurrent = halfPath.get(halfPath.size()-1);
-						halfPath.add(svAdd);
-						svBuild = svBuild.last;
-					}
-					List<SearchVertex> path = new ArrayList<SearchVertex>();
-					Point2D lastSize = null;
-					Poly[] lastCuts = null;
-					int lastCutNumber = 0;
-					for(int i=0; i<halfPath.size(); i++)
-					{
-						SearchVertex thisOne = halfPath.get(i);
-						Point2D thisSize = thisOne.size;
-						Poly[] thisCuts = thisOne.getCutPolys();
-						int thisCutNumber = thisOne.zv & 0xFF;
-
-						thisOne.size = lastSize;
-						thisOne.cutPolys = lastCuts;
-						thisOne.zv = (thisOne.zv & 0xFFFFFF00) | (lastCutNumber & 0xFF);
-
-						lastSize = thisSize;
-						lastCuts = thisCuts;
-						lastCutNumber = thisCutNumber;
-					}
-					for(int i=halfPath.size()-1; i>=0; i--)
-						path.add(halfPath.get(i));
-					svBuild = foundInA;
-					while (svBuild != null)
-					{
-						path.add(new SearchVertex(svBuild));
-						svBuild = svBuild.last;
-					}
-					for(int i=0; i<path.size()-1; i++)
-					{
-						SearchVertex sv1 = path.get(i);
-						SearchVertex sv2 = path.get(i+1);
-						sv1.last = sv2;
-					}
-					path.get(path.size()-1).last = null;
-
-					boolean finalDest = false;
-					if (svCurrent == null) { svCurrent = path.get(0); finalDest = true; }
-					StringBuffer message = new StringBuffer();
-					MutableBoolean err = new MutableBoolean(false);
-					SearchVertexAddon sva = a.determineMinimumArea(svCurrent, svCurrent.getX(), svCurrent.getY(), svCurrent.getC(), svCurrent.getZ(),
-						svCurrent.getC(), svCurrent.getZ(), null, 0, 0, err, message, finalDest);
-					if (sva != null)
+			long[] keys = plane.getSortedKeys();
+			for(int k=0; k<keys.length; k++)
+			{
+				double yCoord = SearchVertexPlane.getKeyY(keys[k]) / DBMath.GRID;
+				SearchVertex foundInA = plane.get(keys[k]);
+				double xCoord = SearchVertexPlane.getKeyX(keys[k]) / DBMath.GRID;
+				SearchVertex foundInB = b.getVertex(xCoord, yCoord, z);
+				if (foundInB == null) continue;
+
+				// found a common point in the two wavefronts, check lengths against previous common point
+				double total = 0;
+				for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
+				{
+					SearchVertex prev = sv.last;
+					if (prev == null) break;
+					double dX = sv.getX() - prev.getX();
+					double dY = sv.getY() - prev.getY();
+					total += Math.sqrt(dX*dX + dY*dY);
+					if (sv.getZ() != prev.getZ()) total++;
+				}
+				for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
+				{
+					SearchVertex prev = sv.last;
+					if (prev == null) break;
+					double dX = sv.getX() - prev.getX();
+					double dY = sv.getY() - prev.getY();
+					total += Math.sqrt(dX*dX + dY*dY);
+					if (sv.getZ() != prev.getZ()) total++;
+				}
+				boolean better = DBMath.isLessThan(total, bestDistance);
+				if (!better) continue;
+
+				// see if the two halves have via contact issues
+				boolean fail = false;
+				for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
+				{
+					if (sv.getSize() == null) continue;
+					SearchVertex lastSv = sv.last;
+					if (lastSv == null) continue;
+					int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
+					int highMetal = Math.max(sv.getZ(), lastSv.getZ());
+					for(Poly conPoly : sv.getCutPolys())
+					{
+						String error = a.validCut(foundInA, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
+						if (error != null) { fail = true;  break; }
+					}
+					if (fail) break;
+				}
+				if (fail) continue;
+				for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
+				{
+					if (sv.getSize() == null) continue;
+					SearchVertex lastSv = sv.last;
+					if (lastSv == null) continue;
+					int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
+					int highMetal = Math.max(sv.getZ(), lastSv.getZ());
+					for(Poly conPoly : sv.getCutPolys())
+					{
+						String error = b.validCut(foundInB, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
+						if (error != null) { fail = true;  break; }
+					}
+					if (fail) break;
+				}
+				if (fail) continue;
+
+				// see if minimum area rules stop this connection
+				SearchVertex svCurrent = null;
+				List<SearchVertex> halfPath = new ArrayList<SearchVertex>();
+				SearchVertex svBuild = foundInB;
+				while (svBuild != null)
+				{
+					SearchVertex svAdd = new SearchVertex(svBuild);
+					if (svCurrent == null && halfPath.size() > 0 && halfPath.get(halfPath.size()-1).getZ() != svAdd.getZ())
+						svCurrent = halfPath.get(halfPath.size()-1);
+					halfPath.add(svAdd);
+					svBuild = svBuild.last;
+				}
+				List<SearchVertex> path = new ArrayList<SearchVertex>();
+				Point2D lastSize = null;
+				Poly[] lastCuts = null;
+				int lastCutNumber = 0;
+				for(int i=0; i<halfPath.size(); i++)
+				{
+					SearchVertex thisOne = halfPath.get(i);
+					Point2D thisSize = thisOne.size;
+					Poly[] thisCuts = thisOne.getCutPolys();
+					int thisCutNumber = thisOne.zv & 0xFF;
+
+					thisOne.size = lastSize;
+					thisOne.cutPolys = lastCuts;
+					thisOne.zv = (thisOne.zv & 0xFFFFFF00) | (lastCutNumber & 0xFF);
+
+					lastSize = thisSize;
+					lastCuts = thisCuts;
+					lastCutNumber = thisCutNumber;
+				}
+				for(int i=halfPath.size()-1; i>=0; i--)
+					path.add(halfPath.get(i));
+				svBuild = foundInA;
+				while (svBuild != null)
+				{
+					path.add(new SearchVertex(svBuild));
+					svBuild = svBuild.last;
+				}
+				for(int i=0; i<path.size()-1; i++)
+				{
+					SearchVertex sv1 = path.get(i);
+					SearchVertex sv2 = path.get(i+1);
+					sv1.last = sv2;
+				}
+				path.get(path.size()-1).last = null;
+
+				boolean finalDest = false;
+				if (svCurrent == null) { svCurrent = path.get(0); finalDest = true; }
+				StringBuffer message = new StringBuffer();
+				MutableBoolean err = new MutableBoolean(false);
+				SearchVertexAddon sva = a.determineMinimumArea(svCurrent, svCurrent.getX(), svCurrent.getY(), svCurrent.getC(), svCurrent.getZ(),
+					svCurrent.getC(), svCurrent.getZ(), null, 0, 0, err, message, finalDest);
+				if (sva != null)
+				{
+					SearchVertex svGoodInsertion = null, svAnyInsertion = null;
+					for(SearchVertex sv = svCurrent; sv != null; sv = sv.last)
 					{
-						SearchVertex svGoodInsertion = null, svAnyInsertion = null;
-						for(SearchVertex sv = svCurrent; sv != null; sv = sv.last)
+						if (sv.addOn == null)
 						{
-							if (sv.addOn == null)
+							if (svAnyInsertion == null) svAnyInsertion = sv;
+							if (sv.getZ() != svCurrent.getZ())
 							{
-								if (svAnyInsertion == null) svAnyInsertion = sv;
-								if (sv.getZ() != svCurrent.getZ())
-								{
-									svGoodInsertion = sv;
-									break;
-								}
+								svGoodInsertion = sv;
+								break;
 							}
 						}
-						if (svGoodInsertion != null) svGoodInsertion.addOn = sva; else
-							if (svAnyInsertion != null) svAnyInsertion.addOn = sva; else
-						{
-							System.out.println("!!!!!!!!!!! ERROR: Failed to insert minimum area geometry " +
-								TextUtils.formatDistance(sva.addedGeometry[0].getMinX()) + "<=X<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxX()) +
-								" AND " + TextUtils.formatDistance(sva.addedGeometry[0].getMinY()) + "<=Y<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxY()) +
-								"," + sva.pureLayerNode.describe(false));
-							continue;
-						}
 					}
-					if (err.booleanValue()) continue;
-
-					// intersection is valid, save it
-					bestDistance = total;
-					bestPath = path;
-					bestSV = foundInA;
+					if (svGoodInsertion != null) svGoodInsertion.addOn = sva; else
+						if (svAnyInsertion != null) svAnyInsertion.addOn = sva; else
+					{
+						System.out.println("!!!!!!!!!!! ERROR: Failed to insert minimum area geometry " +
+							TextUtils.formatDistance(sva.addedGeometry[0].getMinX()) + "<=X<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxX()) +
+							" AND " + TextUtils.formatDistance(sva.addedGeometry[0].getMinY()) + "<=Y<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxY()) +
+							"," + sva.pureLayerNode.describe(false));
+						continue;
+					}
 				}
+				if (err.booleanValue()) continue;
+
+				// intersection is valid, save it
+				bestDistance = total;
+				bestPath = path;
+				bestSV = foundInA;
 			}
 		}
 		if (bestPath != null)
@@ -10478,9 +10586,9 @@ public abstract class SeaOfGatesEngine
 		int total = 0;
 		for(int i=0; i<numMetalLayers; i++)
 		{
-			BlockageTree bTree = rTrees.getMetalTree(primaryMetalLayer[i]);
-			if (bTree.root != null)
-				total += getNumLeafs(bTree.root);
+			RTNode<SOGBound> root = rTrees.getMetalTree(primaryMetalLayer[i]).getRoot();
+			if (root != null)
+				total += getNumLeafs(root);
 		}
 		return total;
 	}
@@ -10544,7 +10652,7 @@ public abstract class SeaOfGatesEngine
 			Integer nn = Integer.valueOf((nextNetNumber.intValue() << SHIFTBLOCKBITS) | BLOCKAGEFAKEUSERSUPPLIED);
 			nextNetNumber.increment();
 			MutableInteger netID = new MutableInteger(nn.intValue());
-			addRectangle(bounds, layer, netID, false, false);
+			addRectangle(bounds, layer, netID, false);
 		}
 
 		// now remove any geometry that was covered by a removal layer
@@ -10569,12 +10677,7 @@ public abstract class SeaOfGatesEngine
 				}
 
 				// remove those R-Tree elements that get cut
-				RTNode<SOGBound> rootFixp = bTree.getRoot();
-				for(SOGBound s : thingsThatGetRemoved)
-				{
-					RTNode<SOGBound> newRootFixp = RTNode.unLinkGeom(null, rootFixp, s);
-					if (newRootFixp != rootFixp) bTree.setRoot(rootFixp = newRootFixp);
-				}
+				bTree.removeAll(thingsThatGetRemoved);
 
 				// now reinsert geometry that wasn't removed
 				for(SOGBound s : thingsThatGetRemoved)
@@ -10587,8 +10690,7 @@ public abstract class SeaOfGatesEngine
 					{
 						ERectangle reducedBound = ERectangle.fromLambda(pb.getBounds2D());
 						SOGBound sogb = new SOGBound(reducedBound, s.getNetID(), s.getMaskColor());
-						RTNode<SOGBound> newRootFixp = RTNode.linkGeom(null, rootFixp, sogb);
-						if (newRootFixp != rootFixp) bTree.setRoot(rootFixp = newRootFixp);
+						bTree.add(sogb);
 					}
 				}
 			}
@@ -10641,11 +10743,11 @@ public abstract class SeaOfGatesEngine
 						for(Integer lay : exclusionLayers)
 						{
 							poly.setLayer(primaryMetalLayer[lay.intValue()]);
-							if (addLayer(poly, nodeTrans, netNumber, false, linesInNonMahnattan, true)) hasNonmanhattan = true;
+							if (addLayer(poly, nodeTrans, netNumber, linesInNonMahnattan, true)) hasNonmanhattan = true;
 						}
 					} else
 					{
-						if (addLayer(poly, nodeTrans, netNumber, false, linesInNonMahnattan, true)) hasNonmanhattan = true;
+						if (addLayer(poly, nodeTrans, netNumber, linesInNonMahnattan, true)) hasNonmanhattan = true;
 					}
 				}
 			} else
@@ -10657,7 +10759,7 @@ public abstract class SeaOfGatesEngine
 				for (int i = 0; i < polys.length; i++)
 				{
 					PolyBase poly = polys[i];
-					if (addLayer(poly, transToTop, null, false, linesInNonMahnattan, true)) hasNonmanhattan = true;
+					if (addLayer(poly, transToTop, null, linesInNonMahnattan, true)) hasNonmanhattan = true;
 				}
 			}
 		}
@@ -10757,11 +10859,10 @@ public abstract class SeaOfGatesEngine
 	 * @param trans a transformation matrix to apply to the polygon.
 	 * @param netID the global network ID of the geometry.
 	 * (converted to non-pseudo and stored). False to ignore pseudo-layers.
-	 * @param lockTree true to lock the R-Tree before accessing it (when doing parallel routing).
 	 * @return true if the geometry is nonmanhattan (and may cause problems).
 	 */
 	private boolean addLayer(PolyBase poly, FixpTransform trans, MutableInteger netID,
-		boolean lockTree, List<EPoint> linesInNonMahnattan, boolean merge)
+		List<EPoint> linesInNonMahnattan, boolean merge)
 	{
 		boolean isNonmanhattan = false;
 		Layer layer = poly.getLayer();
@@ -10788,7 +10889,7 @@ public abstract class SeaOfGatesEngine
 			Rectangle2D bounds = poly.getBox();
 			if (bounds == null)
 			{
-				addPolygon(poly, layer, netID, lockTree);
+				addPolygon(poly, layer, netID);
 				Point[] points = poly.getPoints();
 				for (int i=1; i<points.length; i++)
 				{
@@ -10801,13 +10902,13 @@ public abstract class SeaOfGatesEngine
 				}
 			} else
 			{
-				addRectangle(bounds, layer, netID, lockTree, merge);
+				addRectangle(bounds, layer, netID, merge);
 			}
 		} else if (fun.isContact())
 		{
 			Rectangle2D bounds = poly.getBounds2D();
 			DBMath.transformRect(bounds, trans);
-			addVia(ERectangle.fromLambda(bounds), layer, netID, lockTree);
+			addVia(ERectangle.fromLambda(bounds), layer, netID);
 		}
 		return isNonmanhattan;
 	}
@@ -10824,9 +10925,8 @@ public abstract class SeaOfGatesEngine
 	 * @param bounds the rectangle to add.
 	 * @param layer the metal layer on which to add the rectangle.
 	 * @param netID the global network ID of the geometry.
-	 * @param lockTree true to lock the R-Tree before accessing it (when doing parallel routing).
 	 */
-	private SOGBound addRectangle(Rectangle2D bounds, Layer layer, MutableInteger netID, boolean lockTree, boolean merge)
+	private SOGBound addRectangle(Rectangle2D bounds, Layer layer, MutableInteger netID, boolean merge)
 	{
 		SOGBound sogb = null;
 		BlockageTree bTree = rTrees.getMetalTree(layer);
@@ -10858,37 +10958,12 @@ public abstract class SeaOfGatesEngine
 				}
 			}
 
-			if (removeThese != null)
-			{
-				if (lockTree) bTree.lock();
-				try {
-					RTNode<SOGBound> rootFixp = bTree.getRoot();
-					for(SOGBound s : removeThese)
-					{
-						RTNode<SOGBound> newRootFixp = RTNode.unLinkGeom(null, rootFixp, s);
-						if (newRootFixp != rootFixp) bTree.setRoot(rootFixp = newRootFixp);
-					}
-				} finally {
-					if (lockTree) bTree.unlock();
-				}
-			}
+			if (removeThese != null) bTree.removeAll(removeThese);
 		}
 
-		if (lockTree) bTree.lock();
-		try {
-			int maskLayer = layer.getFunction().getMaskColor();
-			sogb = new SOGBound(ERectangle.fromLambda(bounds), netID, maskLayer);
-			RTNode<SOGBound> rootFixp = bTree.getRoot();
-			if (rootFixp == null)
-			{
-				rootFixp = RTNode.makeTopLevel();
-				bTree.setRoot(rootFixp);
-			}
-			RTNode<SOGBound> newRootFixp = RTNode.linkGeom(null, rootFixp, sogb);
-			if (newRootFixp != rootFixp) bTree.setRoot(newRootFixp);
-		} finally {
-			if (lockTree) bTree.unlock();
-		}
+		int maskLayer = layer.getFunction().getMaskColor();
+		sogb = new SOGBound(ERectangle.fromLambda(bounds), netID, maskLayer);
+		bTree.add(sogb);
 		return sogb;
 	}
 
@@ -10897,26 +10972,13 @@ public abstract class SeaOfGatesEngine
 	 * @param poly the polygon to add.
 	 * @param layer the metal layer on which to add the rectangle.
 	 * @param netID the global network ID of the geometry.
-	 * @param lockTree true to lock the R-Tree before accessing it (when doing parallel routing).
 	 */
-	private void addPolygon(PolyBase poly, Layer layer, MutableInteger netID, boolean lockTree)
+	private void addPolygon(PolyBase poly, Layer layer, MutableInteger netID)
 	{
 		BlockageTree bTree = rTrees.getMetalTree(layer);
-		if (lockTree) bTree.lock();
-		try {
-			int maskLayer = layer.getFunction().getMaskColor();
-			SOGBound sogb = new SOGPoly(ERectangle.fromLambda(poly.getBounds2D()), netID, poly, maskLayer);
-			RTNode<SOGBound> rootFixp = bTree.getRoot();
-			if (rootFixp == null)
-			{
-				rootFixp = RTNode.makeTopLevel();
-				bTree.setRoot(rootFixp);
-			}
-			RTNode<SOGBound> newRootFixp = RTNode.linkGeom(null, rootFixp, sogb);
-			if (newRootFixp != rootFixp) bTree.setRoot(newRootFixp);
-		} finally {
-			if (lockTree) bTree.unlock();
-		}
+		int maskLayer = layer.getFunction().getMaskColor();
+		SOGBound sogb = new SOGPoly(ERectangle.fromLambda(poly.getBounds2D()), netID, poly, maskLayer);
+		bTree.add(sogb);
 	}
 
 	/**
@@ -10924,9 +10986,8 @@ public abstract class SeaOfGatesEngine
 	 * @param loc the point to add.
 	 * @param layer the via layer on which to add the point.
 	 * @param netID the global network ID of the geometry.
-	 * @param lockTree true to lock the R-Tree before accessing it (when doing parallel routing).
 	 */
-	private void addVia(ERectangle rect, Layer layer, MutableInteger netID, boolean lockTree)
+	private void addVia(ERectangle rect, Layer layer, MutableInteger netID)
 	{
 		BlockageTree bTree = rTrees.getViaTree(layer);
 
@@ -10944,50 +11005,418 @@ public abstract class SeaOfGatesEngine
 			}
 		}
 
-		if (lockTree) bTree.lock();
-		try {
-			SOGBound sogb = new SOGVia(rect, netID);
-			sogb.setMaskColor(color);
-			RTNode<SOGBound> rootFixp = bTree.getRoot();
-			if (rootFixp == null)
+		SOGBound sogb = new SOGVia(rect, netID);
+		sogb.setMaskColor(color);
+		bTree.add(sogb);
+	}
+
+	/**
+	 * Class to hold the blockages on one layer.
+	 * While blockages are being gathered, before routing starts, a single R-Tree is changed in place.
+	 * Once routing starts, readers never lock: they search an immutable BlockageSnapshot
+	 * that every change replaces atomically.  A snapshot is a packed base R-Tree, a BlockageDelta
+	 * of the blockages added since the base was packed, and a BlockageSet of the blockages removed since then.
+	 * Both are persistent, so a change costs O(log n) and shares everything else with the previous snapshot.
+	 * Writers are serialized by a lock and repack the base when the changes pass a fraction of its size.
+	 */
+	private static class BlockageTree {
+		/** the smallest number of changes to collect before repacking */	private static final int MINCHANGES = 64;
+		/** repack when the changes pass this fraction of the base */		private static final int REPACKFRACTION = 8;
+		/** snapshot of a tree without blockages */							private static final BlockageSnapshot EMPTYSNAPSHOT = new BlockageSnapshot(null, BlockageDelta.EMPTY, BlockageSet.EMPTY);
+
+		/** serializes the writers */										private final ReentrantLock lock = new ReentrantLock();
+		/** the blockages that readers search */							private volatile BlockageSnapshot snapshot = EMPTYSNAPSHOT;
+		/** true once routing has started and changes must be published */	private boolean routing;
+		/** the base R-Tree */												private RTNode<SOGBound> base;
+		/** the number of blockages in the base R-Tree */					private int baseSize;
+
+		public static BlockageTree emptyTree = new BlockageTree();
+
+		/**
+		 * Method to return the blockages at this moment.
+		 * Searches of the returned snapshot are consistent even if other threads change the blockages.
+		 * @return the current BlockageSnapshot.
+		 */
+		private BlockageSnapshot getSnapshot() { return snapshot; }
+
+		/**
+		 * Method to return an R-Tree with all of the blockages.
+		 * Outstanding changes are first packed into the base R-Tree.
+		 * @return the top of the R-Tree (null if there were never any blockages).
+		 */
+		private RTNode<SOGBound> getRoot()
+		{
+			lock.lock();
+			try {
+				if (!snapshot.delta.isEmpty() || !snapshot.removed.isEmpty()) repack();
+				return base;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean isEmpty() { return snapshot.isEmpty(); }
+
+		private Iterator<SOGBound> search(Rectangle2D searchArea) { return snapshot.search(searchArea); }
+
+		/**
+		 * Method to switch this tree to published changes when routing starts.
+		 * The blockages gathered so far are packed into a new base R-Tree.
+		 */
+		private void startRouting()
+		{
+			lock.lock();
+			try {
+				routing = true;
+				repack();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void add(SOGBound sogb)
+		{
+			lock.lock();
+			try {
+				if (!routing)
+				{
+					if (base == null) base = RTNode.makeTopLevel();
+					base = RTNode.linkGeom(null, base, sogb);
+					baseSize++;
+					if (snapshot.base != base) snapshot = new BlockageSnapshot(base, BlockageDelta.EMPTY, BlockageSet.EMPTY);
+					return;
+				}
+
+				// a blockage that was removed is made visible again where it is
+				BlockageSnapshot old = snapshot;
+				if (old.removed.contains(sogb)) publish(old.delta, old.removed.minus(sogb)); else
+					publish(old.delta.plus(sogb), old.removed);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void remove(SOGBound sogb)
+		{
+			removeAll(Collections.singletonList(sogb));
+		}
+
+		private void removeAll(List<SOGBound> sogbs)
+		{
+			if (sogbs.isEmpty()) return;
+			lock.lock();
+			try {
+				if (!routing)
+				{
+					for(SOGBound s : sogbs)
+					{
+						if (!treeContains(base, s)) continue;
+						base = RTNode.unLinkGeom(null, base, s, false);
+						baseSize--;
+					}
+					if (snapshot.base != base) snapshot = new BlockageSnapshot(base, BlockageDelta.EMPTY, BlockageSet.EMPTY);
+					return;
+				}
+				BlockageSnapshot old = snapshot;
+				BlockageSet removed = old.removed;
+				for(SOGBound s : sogbs)
+				{
+					if (removed.contains(s)) continue;
+					if (treeContains(base, s) || old.delta.contains(s)) removed = removed.plus(s);
+				}
+				if (removed != old.removed) publish(old.delta, removed);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Method to make the changes visible to readers.
+		 * When the changes pass a fraction of the base size they are packed into a new base,
+		 * so that searches do not slow down and the repacking cost is spread over many changes.
+		 * @param delta the blockages added since the base was packed.
+		 * @param removed the blockages removed since the base was packed.
+		 */
+		private void publish(BlockageDelta delta, BlockageSet removed)
+		{
+			snapshot = new BlockageSnapshot(base, delta, removed);
+			if (delta.size() + removed.size() > Math.max(MINCHANGES, baseSize / REPACKFRACTION)) repack();
+		}
+
+		/**
+		 * Method to pack all blockages into a new base R-Tree and publish it.
+		 */
+		private void repack()
+		{
+			BlockageSnapshot old = snapshot;
+			if (base == null && old.delta.isEmpty()) return;
+			List<SOGBound> all = new ArrayList<SOGBound>(baseSize + old.delta.size());
+			for(RTNode<SOGBound> tree : old.trees)
 			{
-				rootFixp = RTNode.makeTopLevel();
-				bTree.setRoot(rootFixp);
+				for(Iterator<SOGBound> it = new RTNode.Search<SOGBound>(tree); it.hasNext(); )
+				{
+					SOGBound s = it.next();
+					if (!old.removed.contains(s)) all.add(s);
+				}
 			}
-			RTNode<SOGBound> newRootFixp = RTNode.linkGeom(null, rootFixp, sogb);
-			if (newRootFixp != rootFixp) bTree.setRoot(newRootFixp);
-		} finally {
-			if (lockTree) bTree.unlock();
+			base = RTNode.bulkLoad(all);
+			baseSize = all.size();
+			snapshot = new BlockageSnapshot(base, BlockageDelta.EMPTY, BlockageSet.EMPTY);
 		}
 	}
 
-	private static class BlockageTree {
-		private final ReentrantLock lock = new ReentrantLock();
-		private RTNode<SOGBound> root;
+	/**
+	 * Method to tell whether an R-Tree holds a blockage, comparing by identity.
+	 */
+	private static boolean treeContains(RTNode<SOGBound> tree, SOGBound sogb)
+	{
+		if (tree == null) return false;
+		for(Iterator<SOGBound> it = new RTNode.Search<SOGBound>(sogb.getBounds(), tree, true); it.hasNext(); )
+		{
+			if (it.next() == sogb) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Class to hold an immutable view of the blockages on one layer.
+	 */
+	private static class BlockageSnapshot {
+		/** the packed R-Tree of blockages */						private final RTNode<SOGBound> base;
+		/** the blockages added since base was packed */			private final BlockageDelta delta;
+		/** the blockages that are no longer present */				private final BlockageSet removed;
+		/** the base and the R-Trees of the delta */				private final List<RTNode<SOGBound>> trees;
+
+		private BlockageSnapshot(RTNode<SOGBound> base, BlockageDelta delta, BlockageSet removed)
+		{
+			this.base = base;
+			this.delta = delta;
+			this.removed = removed;
+			trees = new ArrayList<RTNode<SOGBound>>();
+			if (base != null) trees.add(base);
+			delta.addTrees(trees);
+		}
+
+		private boolean isEmpty() { return trees.isEmpty(); }
+
+		private Iterator<SOGBound> search(Rectangle2D searchArea)
+		{
+			if (delta.isEmpty() && removed.isEmpty())
+			{
+				if (base == null) return Collections.<SOGBound>emptyList().iterator();
+				return new RTNode.Search<SOGBound>(searchArea, base, true);
+			}
+			return new SnapshotSearch(this, searchArea);
+		}
+	}
+
+	/**
+	 * Class to hold an immutable collection of the blockages added to a layer since its base was packed.
+	 * The blockages are in packed R-Trees whose sizes are distinct powers of two, like the digits of
+	 * a binary counter.  Adding a blockage packs it together with the full trees below the first free size,
+	 * so each blockage is repacked O(log n) times and trees that readers may still search are never changed.
+	 */
+	private static class BlockageDelta {
+		private static final BlockageDelta EMPTY = new BlockageDelta(new ArrayList<RTNode<SOGBound>>(), 0);
+
+		/** tree "i" holds 2^i blockages, or is null */	private final List<RTNode<SOGBound>> levels;
+		/** the number of blockages */						private final int size;
+
+		private BlockageDelta(List<RTNode<SOGBound>> levels, int size)
+		{
+			this.levels = levels;
+			this.size = size;
+		}
+
+		private int size() { return size; }
 
-		public static BlockageTree emptyTree = new BlockageTree(null);
+		private boolean isEmpty() { return size == 0; }
 
-		private BlockageTree(RTNode<SOGBound> root) {
+		private void addTrees(List<RTNode<SOGBound>> trees)
+		{
+			for(RTNode<SOGBound> tree : levels)
+				if (tree != null) trees.add(tree);
+		}
+
+		private boolean contains(SOGBound sogb)
+		{
+			for(RTNode<SOGBound> tree : levels)
+				if (treeContains(tree, sogb)) return true;
+			return false;
+		}
+
+		/**
+		 * Method to return a new BlockageDelta with one more blockage.
+		 */
+		private BlockageDelta plus(SOGBound sogb)
+		{
+			List<SOGBound> carry = new ArrayList<SOGBound>();
+			carry.add(sogb);
+			List<RTNode<SOGBound>> newLevels = new ArrayList<RTNode<SOGBound>>(levels);
+			int i = 0;
+			for( ; i < newLevels.size() && newLevels.get(i) != null; i++)
+			{
+				for(Iterator<SOGBound> it = new RTNode.Search<SOGBound>(newLevels.get(i)); it.hasNext(); )
+					carry.add(it.next());
+				newLevels.set(i, null);
+			}
+			RTNode<SOGBound> tree = RTNode.bulkLoad(carry);
+			if (i < newLevels.size()) newLevels.set(i, tree); else
+				newLevels.add(tree);
+			return new BlockageDelta(newLevels, size + 1);
+		}
+	}
+
+	/**
+	 * Class to hold an immutable set of blockages, compared by identity.
+	 * It is a hash trie on the identity hash code with 32 branches per node, so a changed set
+	 * copies only the nodes on one path and shares the rest with the set it came from.
+	 * Blockages whose hash codes are equal end up in a bucket below the last level.
+	 */
+	private static class BlockageSet {
+		private static final int BITS = 5;
+		private static final int WIDTH = 1 << BITS;
+		private static final BlockageSet EMPTY = new BlockageSet(new Object[WIDTH], 0);
+
+		/** each entry is null, a SOGBound, or a deeper node */	private final Object[] root;
+		/** the number of blockages */								private final int size;
+
+		private BlockageSet(Object[] root, int size)
+		{
 			this.root = root;
+			this.size = size;
+		}
+
+		private int size() { return size; }
+
+		private boolean isEmpty() { return size == 0; }
+
+		private boolean contains(SOGBound sogb)
+		{
+			if (size == 0) return false;
+			int hash = System.identityHashCode(sogb);
+			Object[] node = root;
+			for(int shift = 0; shift < 32; shift += BITS)
+			{
+				Object o = node[(hash >>> shift) & (WIDTH-1)];
+				if (o == null) return false;
+				if (o instanceof SOGBound) return o == sogb;
+				node = (Object[])o;
+			}
+			for(Object o : node)
+				if (o == sogb) return true;
+			return false;
 		}
 
-		private void lock() { lock.lock(); }
+		/**
+		 * Method to return a new BlockageSet with one more blockage, which must not be in this set.
+		 */
+		private BlockageSet plus(SOGBound sogb)
+		{
+			return new BlockageSet(plus(root, sogb, System.identityHashCode(sogb), 0), size + 1);
+		}
 
-		private void unlock() { lock.unlock(); }
+		/**
+		 * Method to return a new BlockageSet without a blockage, which must be in this set.
+		 */
+		private BlockageSet minus(SOGBound sogb)
+		{
+			return new BlockageSet(minus(root, sogb, System.identityHashCode(sogb), 0), size - 1);
+		}
 
-		private RTNode<SOGBound> getRoot() { return root; }
+		private static Object[] plus(Object[] node, SOGBound sogb, int hash, int shift)
+		{
+			if (shift >= 32)
+			{
+				Object[] bucket = Arrays.copyOf(node, node.length + 1);
+				bucket[node.length] = sogb;
+				return bucket;
+			}
+			int index = (hash >>> shift) & (WIDTH-1);
+			Object[] copy = node.clone();
+			Object o = node[index];
+			if (o == null) copy[index] = sogb; else
+				if (o instanceof SOGBound)
+			{
+				// push the blockage that is there one level down
+				SOGBound other = (SOGBound)o;
+				Object[] child = new Object[shift + BITS >= 32 ? 0 : WIDTH];
+				child = plus(child, other, System.identityHashCode(other), shift + BITS);
+				copy[index] = plus(child, sogb, hash, shift + BITS);
+			} else copy[index] = plus((Object[])o, sogb, hash, shift + BITS);
+			return copy;
+		}
 
-		private void setRoot(RTNode<SOGBound> root) { this.root = root; }
+		private static Object[] minus(Object[] node, SOGBound sogb, int hash, int shift)
+		{
+			if (shift >= 32)
+			{
+				Object[] bucket = new Object[node.length - 1];
+				for(int i = 0, j = 0; i < node.length; i++)
+					if (node[i] != sogb) bucket[j++] = node[i];
+				return bucket;
+			}
+			int index = (hash >>> shift) & (WIDTH-1);
+			Object[] copy = node.clone();
+			Object o = node[index];
+			if (o == sogb) copy[index] = null; else
+				copy[index] = minus((Object[])o, sogb, hash, shift + BITS);
+			return copy;
+		}
+	}
 
-		private boolean isEmpty() { return root == null; }
+	/**
+	 * Class to iterate over the blockages of a BlockageSnapshot in an area.
+	 * The trees of the snapshot are searched in turn, skipping the blockages that were removed.
+	 */
+	private static class SnapshotSearch implements Iterator<SOGBound> {
+		private final BlockageSnapshot snapshot;
+		private final Rectangle2D searchArea;
+		private int treeIndex;
+		private Iterator<SOGBound> it;
+		private SOGBound next;
 
-		private Iterator<SOGBound> search(Rectangle2D searchArea) {
-			if (root == null) {
-				return Collections.<SOGBound>emptyList().iterator();
+		private SnapshotSearch(BlockageSnapshot snapshot, Rectangle2D searchArea)
+		{
+			this.snapshot = snapshot;
+			this.searchArea = searchArea;
+			advance();
+		}
+
+		private void advance()
+		{
+			next = null;
+			for(;;)
+			{
+				if (it != null)
+				{
+					while (it.hasNext())
+					{
+						SOGBound s = it.next();
+						if (snapshot.removed.contains(s)) continue;
+						next = s;
+						return;
+					}
+				}
+				if (treeIndex >= snapshot.trees.size()) return;
+				it = new RTNode.Search<SOGBound>(searchArea, snapshot.trees.get(treeIndex++), true);
 			}
-			Iterator<SOGBound> it = new RTNode.Search<SOGBound>(searchArea, root, true);
-			return it;
 		}
+
+		@Override
+		public boolean hasNext() { return next != null; }
+
+		@Override
+		public SOGBound next()
+		{
+			if (next == null) throw new NoSuchElementException();
+			SOGBound s = next;
+			advance();
+			return s;
+		}
+
+		@Override
+		public void remove() { throw new UnsupportedOperationException(); }
 	}
 
 	private class BlockageTrees
@@ -11001,8 +11430,8 @@ public abstract class SeaOfGatesEngine
 			viaTrees = new BlockageTree[numMetals];
 			for (int i = 0; i < metalTrees.length; i++)
 			{
-				metalTrees[i] = new BlockageTree(null);
-				viaTrees[i] = new BlockageTree(null);
+				metalTrees[i] = new BlockageTree();
+				viaTrees[i] = new BlockageTree();
 			}
 		}
 
@@ -11015,6 +11444,19 @@ public abstract class SeaOfGatesEngine
 			if (lay == null) return BlockageTree.emptyTree;
 			return viaTrees[lay.getFunction().getLevel() - 1];
 		}
+
+		/**
+		 * Method to pack the gathered blockages and switch all trees to lock-free reading.
+		 * Must be called before the routing threads start.
+		 */
+		private void startRouting()
+		{
+			for (int i = 0; i < metalTrees.length; i++)
+			{
+				metalTrees[i].startRouting();
+				viaTrees[i].startRouting();
+			}
+		}
 	}
 
 	public static class SOGNetID
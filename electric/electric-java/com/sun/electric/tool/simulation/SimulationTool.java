@@ -986,6 +986,28 @@ public class SimulationTool extends Tool
 	 */
 	public static boolean isFactoryWaveformDisplayMultiState() { return cacheWaveformDisplayMultiState.getBooleanFactoryValue(); }
 
+	private static Pref cacheWaveformMappedStorage = Pref.makeBooleanPref("WaveformMappedStorage", tool.prefs, false);
+	/**
+	 * Method to tell whether simulation data is stored in a memory-mapped file.
+	 * A memory-mapped file keeps the waveforms outside of the Java heap,
+	 * so that large simulations need less memory.
+	 * The default is false.
+	 * @return true if simulation data is stored in a memory-mapped file.
+	 */
+	public static boolean isWaveformMappedStorage() { return cacheWaveformMappedStorage.getBoolean(); }
+	/**
+	 * Method to set whether simulation data is stored in a memory-mapped file.
+	 * A memory-mapped file keeps the waveforms outside of the Java heap,
+	 * so that large simulations need less memory.
+	 * @param m true if simulation data is stored in a memory-mapped file.
+	 */
+	public static void setWaveformMappedStorage(boolean m) { cacheWaveformMappedStorage.setBoolean(m); }
+	/**
+	 * Method to tell whether simulation data is stored in a memory-mapped file, by default.
+	 * @return true if simulation data is stored in a memory-mapped file, by default.
+	 */
+	public static boolean isFactoryWaveformMappedStorage() { return cacheWaveformMappedStorage.getBooleanFactoryValue(); }
+
 	/****************************** IRSIM OPTIONS ******************************/
 
 	private static Pref cacheIRSIMShowsCommands = Pref.makeBooleanPref("IRSIMShowsCommands", tool.prefs, false);
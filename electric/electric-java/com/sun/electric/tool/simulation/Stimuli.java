@@ -24,6 +24,7 @@ package com.sun.electric.tool.simulation;
 import com.sun.electric.database.geometry.btree.CachingPageStorage;
 import com.sun.electric.database.geometry.btree.CachingPageStorageWrapper;
 import com.sun.electric.database.geometry.btree.FilePageStorage;
+import com.sun.electric.database.geometry.btree.MappedFilePageStorage;
 import com.sun.electric.database.geometry.btree.MemoryPageStorage;
 import com.sun.electric.database.geometry.btree.OverflowPageStorage;
 import com.sun.electric.database.geometry.btree.PageStorage;
@@ -84,9 +85,18 @@ public class Stimuli
 		try
 		{
 			long highWaterMarkInBytes = 50 * 1024 * 1024;
-			PageStorage fps = FilePageStorage.create();
-			PageStorage ops = new OverflowPageStorage(new MemoryPageStorage(fps.getPageSize()), fps, highWaterMarkInBytes);
-			ps = new CachingPageStorageWrapper(ops, 16 * 1024, false);
+			if (SimulationTool.isWaveformMappedStorage())
+			{
+				// the mapped file is cached by the operating system, so only the pages in use are kept on the heap
+				PageStorage mps = MappedFilePageStorage.create();
+				PageStorage ops = new OverflowPageStorage(new MemoryPageStorage(mps.getPageSize()), mps, highWaterMarkInBytes);
+				ps = new CachingPageStorageWrapper(ops, 1024, false);
+			} else
+			{
+				PageStorage fps = FilePageStorage.create();
+				PageStorage ops = new OverflowPageStorage(new MemoryPageStorage(fps.getPageSize()), fps, highWaterMarkInBytes);
+				ps = new CachingPageStorageWrapper(ops, 16 * 1024, false);
+			}
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -1309,7 +1309,6 @@ public class CircuitChanges
 			// find all pure-layer nodes in the cell
 			List<NodeInst> allPures = new ArrayList<NodeInst>();
 			Map<NodeInst,Double> pureAreas = new HashMap<NodeInst,Double>();
-			RTNode<NodeInst> root = RTNode.makeTopLevel();
 			for(Iterator<NodeInst> nIt = cell.getNodes(); nIt.hasNext(); )
 			{
 				NodeInst ni = nIt.next();
@@ -1343,8 +1342,8 @@ public class CircuitChanges
 					}
 				}
 				pureAreas.put(ni, new Double(area));
-				root = RTNode.linkGeom(null, root, ni);
 			}
+			RTNode<NodeInst> root = RTNode.bulkLoad(allPures);
 
 			// now find the redundant ones
 			for(NodeInst ni : allPures)
@@ -36,6 +36,7 @@ import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.variable.VarContext;
 
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.PrintStream;
@@ -140,6 +141,13 @@ public abstract class ErrorHighlight implements Serializable {
 
     boolean isValid(EDatabase database) { return cellId == null || getCell(database) != null; } // Still have problems with minAre DRC errors
 
+    /**
+     * Method to return the bounds of this highlight in its Cell.
+     * @param database the database with the highlighted objects.
+     * @return the bounds of this highlight, null if they are not known.
+     */
+    public Rectangle2D getBounds(EDatabase database) { return null; }
+
     public void addToHighlighter(Highlighter h, EDatabase database) {;}
 
     public static ErrorHighlight newInst(VarContext cont, Geometric geom) {
@@ -306,6 +314,23 @@ class ErrorHighPoly extends ErrorHighlight
 
     Cell getOrigCell(EDatabase database) { return origCellId != null ? database.getCell(origCellId) : null; }
 
+    public Rectangle2D getBounds(EDatabase database)
+    {
+        Rectangle2D bounds = null;
+        for (ErrorHighlight line : linesList)
+        {
+            Rectangle2D lineBounds = line.getBounds(database);
+            if (lineBounds == null) continue;
+            if (bounds == null)
+            {
+                bounds = new Rectangle2D.Double();
+                bounds.setRect(lineBounds);
+            } else
+                bounds.add(lineBounds);
+        }
+        return bounds;
+    }
+
     public void addToHighlighter(Highlighter h, EDatabase database)
     {
         for (ErrorHighlight line : linesList)
@@ -342,6 +367,13 @@ class ErrorHighLine extends ErrorHighlight {
         p2 = x2;
     }
 
+    public Rectangle2D getBounds(EDatabase database)
+    {
+        double minX = Math.min(p1.getX(), p2.getX());
+        double minY = Math.min(p1.getY(), p2.getY());
+        return new Rectangle2D.Double(minX, minY, Math.max(p1.getX(), p2.getX()) - minX, Math.max(p1.getY(), p2.getY()) - minY);
+    }
+
     public static void writeXmlHeader(String indent, PrintStream ps)
     {
         ps.println(indent + "<!ELEMENT ERRORTYPELINE ANY>");
@@ -398,6 +430,11 @@ class ErrorHighPoint extends ErrorHighlight {
         this.point = p;
     }
 
+    public Rectangle2D getBounds(EDatabase database)
+    {
+        return new Rectangle2D.Double(point.getX(), point.getY(), 0, 0);
+    }
+
     public void addToHighlighter(Highlighter h, EDatabase database)
     {
         double consize = 5;
@@ -481,6 +518,12 @@ class ErrorHighNode extends ErrorHighlight {
 
     boolean isValid(EDatabase database) { return getObject(database) != null; }
 
+    public Rectangle2D getBounds(EDatabase database)
+    {
+        NodeInst ni = (NodeInst)getObject(database);
+        return ni != null ? ni.getBounds() : null;
+    }
+
     public void addToHighlighter(Highlighter h, EDatabase database)
     {
         NodeInst ni = (NodeInst)getObject(database);
@@ -534,6 +577,12 @@ class ErrorHighArc extends ErrorHighlight {
 
     boolean isValid(EDatabase database) {return getObject(database) != null; }
 
+    public Rectangle2D getBounds(EDatabase database)
+    {
+        ArcInst ai = (ArcInst)getObject(database);
+        return ai != null ? ai.getBounds() : null;
+    }
+
     public void addToHighlighter(Highlighter h, EDatabase database)
     {
         ArcInst ai = (ArcInst)getObject(database);
@@ -251,6 +251,21 @@ public class ErrorLogger implements Serializable
             return allValid;
         }
 
+        /**
+         * Returns true if a highlight of this error log in Cell "cell" touches the area "bounds".
+         * Highlights whose place is not known are ignored.
+         */
+        public boolean intersects(EDatabase database, Cell cell, Rectangle2D bounds) {
+            for (ErrorHighlight erh : highlights) {
+                if (erh.getCell(database) != cell) continue;
+                Rectangle2D b = erh.getBounds(database);
+                if (b != null && b.getMinX() <= bounds.getMaxX() && b.getMaxX() >= bounds.getMinX() &&
+                    b.getMinY() <= bounds.getMaxY() && b.getMaxY() >= bounds.getMinY())
+                    return true;
+            }
+            return false;
+        }
+
         void write(IdWriter writer) throws IOException {
             boolean isWarning = this instanceof WarningLog;
             writer.writeBoolean(isWarning);
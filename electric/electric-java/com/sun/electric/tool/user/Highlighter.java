@@ -1811,7 +1811,7 @@ public class Highlighter implements DatabaseChangeListener
 		if (rtn == null)
 		{
 			// must rebuild the RTree of text in this cell
-			rtn = RTNode.makeTopLevel();
+			List<TextHighlightBound> textInCell = new ArrayList<TextHighlightBound>();
 
 			// create temporary Rectangle
 			Rectangle2D textBounds = new Rectangle2D.Double();
@@ -1827,7 +1827,7 @@ public class Highlighter implements DatabaseChangeListener
                     if (poly.setExactTextBounds(wnd, cell)) continue;
 
                     // save text area in cache
-                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(poly.getBounds2D(), cell, poly.getDisplayedText().getVariableKey()));
+                    textInCell.add(new TextHighlightBound(poly.getBounds2D(), cell, poly.getDisplayedText().getVariableKey()));
                 }
             }
 
@@ -1849,7 +1849,7 @@ public class Highlighter implements DatabaseChangeListener
             		if (style != null)
             		{
 	                    // save text area in cache
-	                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, ni, NodeInst.NODE_PROTO));
+	                    textInCell.add(new TextHighlightBound(textBounds, ni, NodeInst.NODE_PROTO));
             		}
         		}
 
@@ -1863,7 +1863,7 @@ public class Highlighter implements DatabaseChangeListener
 	            		if (style != null)
 	            		{
 		                    // save text area in cache
-		                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, ni, NodeInst.NODE_NAME));
+		                    textInCell.add(new TextHighlightBound(textBounds, ni, NodeInst.NODE_NAME));
 	            		}
                     }
         		}
@@ -1877,7 +1877,7 @@ public class Highlighter implements DatabaseChangeListener
             		if (style != null)
             		{
 	                    // save text area in cache
-	                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, ni, var.getKey()));
+	                    textInCell.add(new TextHighlightBound(textBounds, ni, var.getKey()));
             		}
             	}
 
@@ -1893,7 +1893,7 @@ public class Highlighter implements DatabaseChangeListener
                 		if (style != null)
                 		{
     	                    // save text area in cache
-		                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, pi, var.getKey()));
+		                    textInCell.add(new TextHighlightBound(textBounds, pi, var.getKey()));
                 		}
                 	}
         		}
@@ -1910,7 +1910,7 @@ public class Highlighter implements DatabaseChangeListener
                 		if (style != null)
                 		{
     	                    // save text area in cache
-		                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, pp, Export.EXPORT_NAME));
+		                    textInCell.add(new TextHighlightBound(textBounds, pp, Export.EXPORT_NAME));
                 		}
 
         				// add in variables on the exports
@@ -1922,7 +1922,7 @@ public class Highlighter implements DatabaseChangeListener
                     		if (style != null)
                     		{
         	                    // save text area in cache
-			                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, pp, var.getKey()));
+			                    textInCell.add(new TextHighlightBound(textBounds, pp, var.getKey()));
                     		}
                     	}
 	            	}
@@ -1941,7 +1941,7 @@ public class Highlighter implements DatabaseChangeListener
             		if (style != null)
             		{
 	                    // save text area in cache
-	                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, ai, ArcInst.ARC_NAME));
+	                    textInCell.add(new TextHighlightBound(textBounds, ai, ArcInst.ARC_NAME));
             		}
         		}
 
@@ -1954,12 +1954,13 @@ public class Highlighter implements DatabaseChangeListener
             		if (style != null)
             		{
 	                    // save text area in cache
-	                    rtn = RTNode.linkGeom(null, rtn, new TextHighlightBound(textBounds, ai, var.getKey()));
+	                    textInCell.add(new TextHighlightBound(textBounds, ai, var.getKey()));
             		}
             	}
             }
 
 	        // save this R-Tree as the window's current cache
+	        rtn = RTNode.bulkLoad(textInCell);
 	        wnd.setTextInCell(rtn);
 		}
 
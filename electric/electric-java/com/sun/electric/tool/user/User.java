@@ -2290,6 +2290,26 @@ public class User extends Listener
 	 */
 	public static int getFactoryDisplayAlgorithm() { return cacheWhichDisplayAlgorithm.getIntFactoryValue(); }
 
+	private static Pref cacheRenderingThreads = Pref.makeIntPref("RenderingThreads", tool.prefs, 1);
+	/**
+	 * Method to tell how many threads the pixel display algorithm uses.
+	 * With more than one thread, the contents of cached cells are rendered in parallel on the Job pool.
+	 * The image is the same for any number of threads.
+	 * The default is "1" (render the whole window in one thread).
+	 * @return the number of rendering threads (0 for all threads of the Job pool).
+	 */
+	public static int getRenderingThreads() { return cacheRenderingThreads.getInt(); }
+	/**
+	 * Method to set how many threads the pixel display algorithm uses.
+	 * @param n the number of rendering threads (0 for all threads of the Job pool).
+	 */
+	public static void setRenderingThreads(int n) { cacheRenderingThreads.setInt(n); }
+	/**
+	 * Method to tell how many threads the pixel display algorithm uses, by default.
+	 * @return the number of rendering threads, by default.
+	 */
+	public static int getFactoryRenderingThreads() { return cacheRenderingThreads.getIntFactoryValue(); }
+
 	private static Pref cacheUseCellGreekingImages = Pref.makeBooleanPref("UseCellGreekingImages", tool.prefs, false);
 	/**
 	 * Method to tell whether to use small images when greeking cells.
@@ -2360,6 +2380,27 @@ public class User extends Listener
 	 */
 	public static double getFactoryGreekCellSizeLimit() { return cacheGreekCellSizeLimit.getDoubleFactoryValue(); }
 
+	private static Pref cacheLevelOfDetailScaleLimit = Pref.makeDoublePref("LevelOfDetailScaleLimit", tool.prefs, 0.5);
+	/**
+	 * Method to tell the scale of EditWindow below which cells are drawn from their coverage.
+	 * When zoomed out beyond this scale (in pixels per unit), the boxes of each cell are drawn
+	 * from a precomputed occupancy grid of the cell instead of one at a time.
+	 * The default is 0.5, meaning that coverage is used when a pixel spans more than 2 units.
+	 * Zero disables the drawing from coverage.
+	 * @return the scale of EditWindow below which cells are drawn from their coverage.
+	 */
+	public static double getLevelOfDetailScaleLimit() { return cacheLevelOfDetailScaleLimit.getDouble(); }
+	/**
+	 * Method to set the scale of EditWindow below which cells are drawn from their coverage.
+	 * @param l the scale of EditWindow below which cells are drawn from their coverage.
+	 */
+	public static void setLevelOfDetailScaleLimit(double l) { cacheLevelOfDetailScaleLimit.setDouble(l); }
+	/**
+	 * Method to tell the scale of EditWindow below which cells are drawn from their coverage, by default.
+	 * @return the scale of EditWindow below which cells are drawn from their coverage, by default.
+	 */
+	public static double getFactoryLevelOfDetailScaleLimit() { return cacheLevelOfDetailScaleLimit.getDoubleFactoryValue(); }
+
 	private static Pref cachePatternedScaleLimit = Pref.makeDoublePref("PatternedScaleLimit", tool.prefs, 0.5/*0.1*/);
 	/**
 	 * Method to tell the scale of EditWindow when use patterned drawing.
@@ -2667,6 +2708,26 @@ public class User extends Listener
 	 */
 	public static boolean isFactorySnapshotLogging() { return cacheSnapshotLogging.getBooleanFactoryValue(); }
 
+	private static Pref cacheCompactSnapshotTransport = Pref.makeBooleanPref(StartupPrefs.CompactSnapshotTransportKey, tool.prefs, StartupPrefs.CompactSnapshotTransportDef);
+	/**
+	 * Method to tell whether the server sends compact snapshots to its clients.
+	 * Compact snapshots are compressed, and consecutive intermediate snapshots
+	 * of a Job are sent as one.
+	 * The default is "false".
+	 * @return true if the server sends compact snapshots to its clients.
+	 */
+	public static boolean isCompactSnapshotTransport() { return cacheCompactSnapshotTransport.getBoolean(); }
+	/**
+	 * Method to set whether the server sends compact snapshots to its clients.
+	 * @param on true if the server sends compact snapshots to its clients.
+	 */
+	public static void setCompactSnapshotTransport(boolean on) { cacheCompactSnapshotTransport.setBoolean(on); }
+	/**
+	 * Method to tell whether the server sends compact snapshots to its clients, by default.
+	 * @return true if the server sends compact snapshots to its clients, by default.
+	 */
+	public static boolean isFactoryCompactSnapshotTransport() { return cacheCompactSnapshotTransport.getBooleanFactoryValue(); }
+
 	private static Pref cacheAutoTechnologySwitch = Pref.makeBooleanPref("AutoTechnologySwitch", tool.prefs, true);
 	/**
 	 * Method to tell whether to switch technologies automatically when changing the current Cell.
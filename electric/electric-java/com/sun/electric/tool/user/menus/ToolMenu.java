@@ -73,6 +73,7 @@ import com.sun.electric.tool.compaction.Compaction;
 import com.sun.electric.tool.drc.AssuraDrcErrors;
 import com.sun.electric.tool.drc.CalibreDrcErrors;
 import com.sun.electric.tool.drc.DRC;
+import com.sun.electric.tool.drc.MTDRCHierarchyTool;
 import com.sun.electric.tool.drc.MTDRCLayoutTool;
 import com.sun.electric.tool.erc.ERCAntenna;
 import com.sun.electric.tool.erc.ERCWellCheck;
@@ -227,7 +228,9 @@ public class ToolMenu {
 						DRC.DRCPreferences dp = new DRC.DRCPreferences(false);
 						Cell cell = Job.getUserInterface().needCurrentCell();
 						// Multi-threaded code is only available for layout
-						if (dp.isMultiThreaded && cell.isLayout()) {
+						if (dp.isMultiThreaded && cell.isLayout() && dp.isParallelHierarchy) {
+							new MTDRCHierarchyTool(dp, cell, null).startJob();
+						} else if (dp.isMultiThreaded && cell.isLayout()) {
 							new MTDRCLayoutTool(dp, cell, true, null).startJob();
 						} else {
 							DRC.checkDRCHierarchically(dp, cell, null, null, GeometryHandler.GHMode.ALGO_SWEEP, false);
@@ -248,8 +251,18 @@ public class ToolMenu {
 				},
 				new EMenuItem("Check Area _Coverage") {
 					public void run() {
-						LayerCoverageTool.layerCoverageCommand(WindowFrame.needCurCell(), GeometryHandler.GHMode.ALGO_SWEEP,
-							true, new LayerCoverageTool.LayerCoveragePreferences(false));
+						LayerCoverageTool.layerCoverageCommand(WindowFrame.needCurCell(), true,
+							new LayerCoverageTool.LayerCoveragePreferences(false));
+					}
+				},
+				new EMenuItem("Export Area Coverage _Map...") {
+					public void run() {
+						Cell cell = WindowFrame.needCurCell();
+						if (cell == null) return;
+						String fileName = OpenFile.chooseOutputFile(FileType.CSV, "Area Coverage Map", cell.getName() + ".csv");
+						if (fileName == null) return;
+						LayerCoverageTool.layerCoverageCommand(cell, true,
+							new LayerCoverageTool.LayerCoveragePreferences(false), fileName);
 					}
 				},
 				new EMenuItem("_List Layer Coverage on Cell") {
@@ -43,6 +43,7 @@ import com.sun.electric.technology.Technology;
 import com.sun.electric.technology.technologies.Artwork;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobPool;
 import com.sun.electric.tool.user.GraphicsPreferences;
 import com.sun.electric.tool.user.User;
 import com.sun.electric.tool.user.tecEdit.GeneralInfo;
@@ -81,6 +82,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.SwingUtilities;
 
@@ -202,6 +205,19 @@ import javax.swing.SwingUtilities;
  * When compositing at the top level, however, the POLs are converted back to
  * patterns, so that they line-up.</LI>
  * </UL>
+ * <LI><B>Cached cells can be rendered in parallel</B>. When the "RenderingThreads"
+ * preference asks for more than one thread, the hierarchy is first traversed
+ * without drawing, which decides the cached cell instances in the same order as
+ * drawing does. The contents of the new cached cells are then rendered by the
+ * pool of working threads: first the cells that copy no other new cached cell,
+ * then the cells that copy only those, and so on. Finally the window is drawn in
+ * one thread, copying the cached cells, so the image does not depend on the
+ * number of threads. The window is not split into regions drawn in parallel:
+ * lines and polygons are clipped to the drawing area before they are rasterized,
+ * so clipping them to a region would move pixels along its edges. Geometry which
+ * is not in a cached cell (the top cell, large instances and single instances)
+ * is therefore drawn in one thread, and flat layouts gain nothing from more
+ * threads (see PixelDrawingBenchmark).</LI>
  * </UL>
  *
  */
@@ -216,10 +232,40 @@ public class PixelDrawing {
 		private PolySeg nextactive;
 	}
 
+	/**
+	 * This class holds a cached cell whose contents are drawn after the
+	 * hierarchy has been planned, in parallel with other cached cells.
+	 */
+	private static class PlannedCell {
+		private final PixelDrawing offscreen;
+		private final Cell cell;
+		private final Orientation orient;
+		private final FixpTransform trans;
+		/** 0 if no planned cell is copied into this one, else one more than the highest of them */
+		private int height;
+
+		PlannedCell(PixelDrawing offscreen, Cell cell, Orientation orient, FixpTransform trans) {
+			this.offscreen = offscreen;
+			this.cell = cell;
+			this.orient = orient;
+			this.trans = trans;
+		}
+
+		private void draw(boolean fullInstantiate, Cell topCell) {
+			offscreen.drawCell(cell, null, fullInstantiate, orient, trans, topCell);
+			offscreen.plannedCell = null;
+		}
+	}
+
 	// statistics stuff
 	private static final boolean TAKE_STATS = false;
-	private static int tinyCells, tinyPrims, totalCells, /* renderedCells, */ totalPrims, tinyArcs, linedArcs, totalArcs;
-	private static int offscreensCreated, offscreenPixelsCreated, offscreensUsed, offscreenPixelsUsed, cellsRendered;
+	// (cached cells may be rendered by several threads)
+	private static final AtomicInteger tinyCells = new AtomicInteger(), tinyPrims = new AtomicInteger(),
+		totalCells = new AtomicInteger(), /* renderedCells, */ totalPrims = new AtomicInteger(),
+		tinyArcs = new AtomicInteger(), linedArcs = new AtomicInteger(), totalArcs = new AtomicInteger();
+	private static final AtomicInteger offscreensCreated = new AtomicInteger(), offscreensUsed = new AtomicInteger(),
+		cellsRendered = new AtomicInteger();
+	private static final AtomicLong offscreenPixelsCreated = new AtomicLong(), offscreenPixelsUsed = new AtomicLong();
 
 	private static final boolean DEBUGRENDERTIMING = false;
 	private ElapseTimer textTimer = ElapseTimer.createInstance();
@@ -260,7 +306,7 @@ public class PixelDrawing {
 	private static class ExpandedCellInfo {
 		private boolean singleton;
 		private int instanceCount;
-		private PixelDrawing offscreen;
+		private volatile PixelDrawing offscreen;
 
 		ExpandedCellInfo() {
 			singleton = true;
@@ -313,6 +359,8 @@ public class PixelDrawing {
 
 	/** the map from layers to Patterned Opaque bitmaps */	private Map<Layer, PatternedOpaqueLayer> patternedOpaqueLayers = new HashMap<Layer, PatternedOpaqueLayer>();
 	/** the top-level window being rendered */				private boolean renderedWindow;
+	/** true to find the cached cells without drawing */	private boolean planning;
+	/** this cached cell, until its contents are drawn */	private PlannedCell plannedCell;
 
 	/** whether to occasionally update the display. */		private boolean periodicRefresh;
 	/** keeps track of when to update the display. */		private int objectCount;
@@ -324,6 +372,7 @@ public class PixelDrawing {
 	/** Set of changed cells. */							private static final Set<CellId> changedCells = new HashSet<CellId>();
 	/** scale of cell expansions. */						private static double expandedScale = 0;
 	/** number of extra cells to render this time */		private static int numberToReconcile;
+	/** cached cells found by planning, not drawn yet */	private static List<PlannedCell> plannedCells;
 	/** zero rectangle */									private static final Rectangle2D CENTERRECT = new Rectangle2D.Double(0, 0, 0, 0);
 	static GraphicsPreferences gp;
 	static AbstractDrawing.DrawingPreferences dp;
@@ -359,9 +408,11 @@ public class PixelDrawing {
 
 	static class Drawing extends AbstractDrawing {
 		private final int displayAlgorithm = User.getDisplayAlgorithm();
+		private final int renderingThreads = User.getRenderingThreads();
 		private final boolean useCellGreekingImages = User.isUseCellGreekingImages();
 		private final double greekSizeLimit = User.getGreekSizeLimit();
 		private final double greekCellSizeLimit = User.getGreekCellSizeLimit();
+		private final double levelOfDetailScaleLimit = User.getLevelOfDetailScaleLimit();
 		private final VectorDrawing vd = new VectorDrawing(useCellGreekingImages);
 		private volatile PixelDrawing offscreen;
 
@@ -516,6 +567,19 @@ public class PixelDrawing {
 		expandedCells = new HashMap<ExpandedCellKey, ExpandedCellInfo>();
 	}
 
+	/**
+	 * Method to count the cell instances whose contents are cached.
+	 * @return the number of cell and orientation combinations in the cache.
+	 */
+	static int getNumCachedCells() {
+		int numCached = 0;
+		for (ExpandedCellInfo info : expandedCells.values()) {
+			if (info.offscreen != null)
+				numCached++;
+		}
+		return numCached;
+	}
+
 	/**
 	 * Method to set the EditWindow0 associated with the rendering. Useful when printing.
 	 * @param wnd the EditWindow0 to use for scaling, context, etc.
@@ -538,8 +602,11 @@ public class PixelDrawing {
 		if (TAKE_STATS) {
 			timer.start();
 			initialUsed = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-			tinyCells = tinyPrims = totalCells = /* renderedCells = */ totalPrims = tinyArcs = linedArcs = totalArcs = 0;
-			offscreensCreated = offscreenPixelsCreated = offscreensUsed = offscreenPixelsUsed = cellsRendered = 0;
+			for (AtomicInteger count : new AtomicInteger[] { tinyCells, tinyPrims, totalCells, /* renderedCells, */
+					totalPrims, tinyArcs, linedArcs, totalArcs, offscreensCreated, offscreensUsed, cellsRendered })
+				count.set(0);
+			offscreenPixelsCreated.set(0);
+			offscreenPixelsUsed.set(0);
 		}
 
 		if (fullInstantiate != lastFullInstantiate) {
@@ -616,20 +683,11 @@ public class PixelDrawing {
 		forceRedraw(changedCellsCopy);
 		VectorCache.theCache.forceRedraw();
 		if (isPixelDrawing) {
-			// reset cached cell counts
-			numberToReconcile = SINGLETONSTOADD;
-			for (ExpandedCellInfo count : expandedCells.values())
-				count.instanceCount = 0;
-
-			// determine which cells should be cached (must have at least 2
-			// instances)
-			countCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, DBMath.MATID);
-
-			// now render it all
-			drawCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, DBMath.MATID, wnd.getCell());
+			drawPixels(cell, drawLimitBounds, fullInstantiate, wnd.getCell(), drawing.renderingThreads);
 		} else {
 			drawing.vd.render(this, scale, new Point2D.Double(drawing.da.offX, drawing.da.offY), cell, fullInstantiate,
-				inPlaceNodePath, wnd.getCell(), renderBounds, varContext, greekSizeLimit, greekCellSizeLimit, lv);
+				inPlaceNodePath, wnd.getCell(), renderBounds, varContext, greekSizeLimit, greekCellSizeLimit,
+				drawing.levelOfDetailScaleLimit, lv);
 		}
 
 		// merge transparent image into opaque one
@@ -663,9 +721,55 @@ public class PixelDrawing {
 	 */
 	public void printImage(double scale, Point2D offset, Cell cell, VarContext varContext, ElectricPrinter ep,
 			LayerVisibility lv) {
-		PixelDrawing.gp = ep.getGraphicsPreferences();
-		PixelDrawing.lv = lv;
 		PixelDrawing.dp = ep.getDrawingPreferences();
+		initPrinting(scale, offset, cell, ep.getGraphicsPreferences(), lv);
+		if (ep.getDisplayAlgorithm() == 0) {
+			drawPixels(cell, null, false, cell, ep.getRenderingThreads());
+		} else {
+			VectorDrawing vd = new VectorDrawing(ep.isUseCellGreekingImages());
+			vd.render(this, scale, offset, cell, false, null, null, null, varContext, ep.getGreekSizeLimit(),
+				ep.getGreekCellSizeLimit(), ep.getLevelOfDetailScaleLimit(), lv);
+		}
+
+		// merge transparent image into opaque one
+		synchronized (img) {
+			// combine transparent and opaque colors into a final image
+			composite(null);
+		}
+	}
+
+	/**
+	 * This is the entry point for rendering without a window or a printer,
+	 * for example to write an image file. It displays a cell in this offscreen
+	 * window with the pixel display algorithm. The rendered Image can then be
+	 * obtained with "getBufferedImage()".
+	 * @param scale the scale of the image.
+	 * @param offset the point of the cell in the center of the image.
+	 * @param cell the Cell to display.
+	 * @param gp the GraphicsPreferences to use.
+	 * @param lv the LayerVisibility to use.
+	 * @param numThreads the number of threads which render the cached cells
+	 * (1 to render everything in this thread, 0 for all threads of the Job pool).
+	 */
+	public void renderImage(double scale, Point2D offset, Cell cell, GraphicsPreferences gp, LayerVisibility lv,
+			int numThreads) {
+		PixelDrawing.dp = new AbstractDrawing.DrawingPreferences();
+		initPrinting(scale, offset, cell, gp, lv);
+		drawPixels(cell, null, false, cell, numThreads);
+
+		// merge transparent image into opaque one
+		synchronized (img) {
+			// combine transparent and opaque colors into a final image
+			composite(null);
+		}
+	}
+
+	/**
+	 * Method to prepare for rendering an entire cell without an EditWindow.
+	 */
+	private void initPrinting(double scale, Point2D offset, Cell cell, GraphicsPreferences gp, LayerVisibility lv) {
+		PixelDrawing.gp = gp;
+		PixelDrawing.lv = lv;
 		clearSubCellCache();
 		lastFullInstantiate = false;
 		expandedScale = this.scale = scale;
@@ -710,27 +814,87 @@ public class PixelDrawing {
 		}
 		forceRedraw(changedCellsCopy);
 		VectorCache.theCache.forceRedraw();
-		if (ep.getDisplayAlgorithm() == 0) {
-			// reset cached cell counts
-			numberToReconcile = SINGLETONSTOADD;
-			for (ExpandedCellInfo count : expandedCells.values())
-				count.instanceCount = 0;
-
-			// determine which cells should be cached (must have at least 2 instances)
-			countCell(cell, null, false, Orientation.IDENT, DBMath.MATID);
+	}
 
-			// now render it all
-			drawCell(cell, null, false, Orientation.IDENT, DBMath.MATID, cell);
-		} else {
-			VectorDrawing vd = new VectorDrawing(ep.isUseCellGreekingImages());
-			vd.render(this, scale, offset, cell, false, null, null, null, varContext, ep.getGreekSizeLimit(),
-				ep.getGreekCellSizeLimit(), lv);
-		}
+	/**
+	 * Method to render a cell with the pixel display algorithm.
+	 * Only the contents of new cached cells are rendered in parallel;
+	 * the window itself is drawn in this thread.
+	 * @param numThreads the number of threads which render the cached cells
+	 * (1 to render everything in this thread, 0 for all threads of the Job pool).
+	 */
+	private void drawPixels(Cell cell, Rectangle2D drawLimitBounds, boolean fullInstantiate, Cell topCell,
+			int numThreads) {
+		// reset cached cell counts
+		numberToReconcile = SINGLETONSTOADD;
+		for (ExpandedCellInfo count : expandedCells.values())
+			count.instanceCount = 0;
+
+		// determine which cells should be cached (must have at least 2 instances)
+		countCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, DBMath.MATID);
+
+		// render the new cached cells in parallel
+		if (numThreads != 1)
+			drawCachedCells(cell, drawLimitBounds, fullInstantiate, topCell, numThreads);
+
+		// now render it all
+		drawCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, DBMath.MATID, topCell);
+	}
 
-		// merge transparent image into opaque one
-		synchronized (img) {
-			// combine transparent and opaque colors into a final image
-			composite(null);
+	/**
+	 * Method to render the contents of the new cached cells with the pool of working threads.
+	 * The hierarchy is first traversed without drawing, which decides the cached cells
+	 * (and the singleton cells to add) in the same order as drawing it.
+	 * The cached cells are then drawn in order of height, so that the cached cells
+	 * which a cell copies are complete before the cell is drawn.
+	 * @param numThreads the number of threads to use (0 for all threads of the pool).
+	 */
+	private void drawCachedCells(Cell cell, Rectangle2D drawLimitBounds, final boolean fullInstantiate,
+			final Cell topCell, int numThreads) {
+		List<PlannedCell> planned = new ArrayList<PlannedCell>();
+		boolean drawn = false;
+		try {
+			plannedCells = planned;
+			planning = true;
+			drawCell(cell, drawLimitBounds, fullInstantiate, Orientation.IDENT, DBMath.MATID, topCell);
+			planning = false;
+			plannedCells = null;
+
+			// the singleton cells to add were chosen by planning
+			numberToReconcile = 0;
+
+			if (numThreads <= 0)
+				numThreads = JobPool.getNumThreads() + 1;
+			for (int height = 0; !planned.isEmpty(); height++) {
+				final List<PlannedCell> level = new ArrayList<PlannedCell>();
+				List<PlannedCell> higher = new ArrayList<PlannedCell>();
+				for (PlannedCell pc : planned) {
+					if (pc.height == height)
+						level.add(pc);
+					else
+						higher.add(pc);
+				}
+				final AtomicInteger next = new AtomicInteger();
+				List<Runnable> workers = new ArrayList<Runnable>();
+				for (int i = 0; i < Math.min(numThreads, level.size()); i++) {
+					workers.add(new Runnable() {
+						public void run() {
+							for (int j = next.getAndIncrement(); j < level.size(); j = next.getAndIncrement())
+								level.get(j).draw(fullInstantiate, topCell);
+						}
+					});
+				}
+				JobPool.runAll(workers);
+				planned = higher;
+			}
+			drawn = true;
+		} finally {
+			planning = false;
+			plannedCells = null;
+
+			// do not keep cached cells that were planned but not drawn
+			if (!drawn)
+				clearSubCellCache();
 		}
 	}
 
@@ -1193,8 +1357,8 @@ public class PixelDrawing {
 			FixpTransform prevTrans, Cell topCell) {
 //		renderedCells++;
 
-		// draw all arcs
-		for (Iterator<ArcInst> arcs = cell.getArcs(); arcs.hasNext();) {
+		// draw all arcs (planning the cached cells only looks at the nodes)
+		for (Iterator<ArcInst> arcs = cell.getArcs(); !planning && arcs.hasNext();) {
 			ArcInst ai = arcs.next();
 
 			// if limiting drawing, reject when out of area
@@ -1229,7 +1393,7 @@ public class PixelDrawing {
 		boolean topLevel = true;
 		if (topCell != null)
 			topLevel = (cell == topCell);
-		if (canDrawText && topLevel && gp.isTextVisibilityOn(TextDescriptor.TextType.CELL)) {
+		if (!planning && canDrawText && topLevel && gp.isTextVisibilityOn(TextDescriptor.TextType.CELL)) {
 			// show displayable variables on the instance
 			Poly[] polys = cell.getDisplayableVariables(CENTERRECT, dummyWnd, true, gp.isShowTempNames());
 			drawPolys(polys, prevTrans, false);
@@ -1253,6 +1417,9 @@ public class PixelDrawing {
 	 */
 	private void drawNode(NodeInst ni, Orientation orient, FixpTransform trans, Cell topCell,
 			Rectangle2D drawLimitBounds, boolean fullInstantiate, boolean forceVisible) {
+		// when planning the cached cells, only cell instances matter
+		if (planning && !ni.isCellInstance())
+			return;
 		NodeProto np = ni.getProto();
 		FixpTransform localTrans = ni.rotateOut(trans);
 
@@ -1263,7 +1430,8 @@ public class PixelDrawing {
 		// draw the node
 		if (ni.isCellInstance()) {
 			// cell instance
-			totalCells++;
+			if (TAKE_STATS)
+				totalCells.incrementAndGet();
 
 			// see if it is on the screen
 			Cell subCell = (Cell) np;
@@ -1275,7 +1443,8 @@ public class PixelDrawing {
 			cellBounds = poly.getBounds2D();
 			Rectangle screenBounds = databaseToScreen(cellBounds);
 			if (screenBounds.width <= 0 || screenBounds.height <= 0) {
-				tinyCells++;
+				if (TAKE_STATS)
+					tinyCells.incrementAndGet();
 				return;
 			}
 			if (screenBounds.x >= sz.width || screenBounds.x + screenBounds.width <= 0)
@@ -1307,15 +1476,18 @@ public class PixelDrawing {
 				// show the contents of the cell
 				if (!expandedCellCached(subCell, subOrient, subTrans, topCell, drawLimitBounds, fullInstantiate)) {
 					// just draw it directly
-					cellsRendered++;
+					if (TAKE_STATS)
+						cellsRendered.incrementAndGet();
 					varContext = varContext.push(ni);
 					drawCell(subCell, drawLimitBounds, fullInstantiate, subOrient, subTrans, topCell);
 					varContext = varContext.pop();
 				}
-			} else {
+			} else if (!planning) {
 				// draw the black box of the instance
 				drawUnexpandedCell(ni, poly);
 			}
+			if (planning)
+				return;
 			if (canDrawText)
 				showCellPorts(ni, subTrans, expanded, onPathDown);
 
@@ -1346,11 +1518,13 @@ public class PixelDrawing {
 				}
 
 				PrimitiveNode prim = (PrimitiveNode) np;
-				totalPrims++;
+				if (TAKE_STATS)
+					totalPrims.incrementAndGet();
 				if (!prim.isCanBeZeroSize() && halfWidth < halfMaxObjectSize && !forceVisible) {
 					// draw a tiny primitive by setting a single dot from each
 					// layer
-					tinyPrims++;
+					if (TAKE_STATS)
+						tinyPrims.incrementAndGet();
 					databaseToScreen(ctrX, ctrY, tempPt1);
 					if (tempPt1.x >= 0 && tempPt1.x < sz.width && tempPt1.y >= 0 && tempPt1.y < sz.height) {
 						drawTinyLayers(prim.getLayerIterator(), tempPt1.x, tempPt1.y);
@@ -1417,16 +1591,19 @@ public class PixelDrawing {
 		// if the arc is tiny, just approximate it with a single dot
 		Rectangle2D arcBounds = ai.getBounds();
 		double arcSize = Math.max(arcBounds.getWidth(), arcBounds.getHeight());
-		totalArcs++;
+		if (TAKE_STATS)
+			totalArcs.incrementAndGet();
 		if (!forceVisible) {
 			if (arcSize < maxObjectSize) {
-				tinyArcs++;
+				if (TAKE_STATS)
+					tinyArcs.incrementAndGet();
 				return;
 			}
 			if (ai.getGridFullWidth() > 0) {
 				arcSize = Math.min(arcBounds.getWidth(), arcBounds.getHeight());
 				if (arcSize < maxObjectSize) {
-					linedArcs++;
+					if (TAKE_STATS)
+						linedArcs.incrementAndGet();
 
 					// draw a tiny arc by setting a single dot from each layer
 					Point2D headEnd = new Point2D.Double(ai.getHeadLocation().getX(), ai.getHeadLocation().getY());
@@ -1597,28 +1774,34 @@ public class PixelDrawing {
 	private boolean expandedCellCached(Cell subCell, Orientation orient, FixpTransform origTrans, Cell topCell,
 			Rectangle2D drawLimitBounds, boolean fullInstantiate) {
 		// if there is no global for remembering cached cells, do not cache
-		if (expandedCells == null)
+		Map<ExpandedCellKey, ExpandedCellInfo> cells = expandedCells;
+		if (cells == null)
 			return false;
 
 		// do not cache icons: they can be redrawn each time
 		if (subCell.isIcon())
 			return false;
 
+		// cached cells may be drawn in parallel
 		ExpandedCellKey expansionKey = new ExpandedCellKey(subCell, orient);
-		ExpandedCellInfo expandedCellCount = expandedCells.get(expansionKey);
-		if (expandedCellCount != null) {
-			// if this combination is not used multiple times, do not cache it
-			if (expandedCellCount.singleton && expandedCellCount.instanceCount < 2
-					&& expandedCellCount.offscreen == null) {
-				if (numberToReconcile > 0) {
-					numberToReconcile--;
-					expandedCellCount.singleton = false;
-				} else
-					return false;
+		ExpandedCellInfo expandedCellCount;
+		synchronized (cells) {
+			expandedCellCount = cells.get(expansionKey);
+			if (expandedCellCount != null) {
+				// if this combination is not used multiple times, do not cache it
+				if (expandedCellCount.singleton && expandedCellCount.instanceCount < 2
+						&& expandedCellCount.offscreen == null) {
+					if (numberToReconcile > 0) {
+						numberToReconcile--;
+						expandedCellCount.singleton = false;
+					} else
+						return false;
+				}
 			}
 		}
 
-		if (expandedCellCount == null || expandedCellCount.offscreen == null) {
+		PixelDrawing offscreen = expandedCellCount != null ? expandedCellCount.offscreen : null;
+		if (offscreen == null) {
 			// compute the cell's location on the screen
 			Rectangle2D cellBounds = new Rectangle2D.Double();
 			cellBounds.setRect(subCell.getBounds());
@@ -1643,22 +1826,53 @@ public class PixelDrawing {
 
 			// if this is the first use, create the offscreen buffer
 			if (expandedCellCount == null) {
-				expandedCellCount = new ExpandedCellInfo();
-				expandedCells.put(expansionKey, expandedCellCount);
+				synchronized (cells) {
+					expandedCellCount = cells.get(expansionKey);
+					if (expandedCellCount == null) {
+						expandedCellCount = new ExpandedCellInfo();
+						cells.put(expansionKey, expandedCellCount);
+					}
+				}
 			}
 
-			expandedCellCount.offscreen = new PixelDrawing(scale, screenBounds);
-			expandedCellCount.offscreen.drawCell(subCell, null, fullInstantiate, orient, rotTrans, topCell);
-			offscreensCreated++;
-			offscreenPixelsCreated += expandedCellCount.offscreen.total;
+			// another thread may be drawing the same cell
+			synchronized (expandedCellCount) {
+				offscreen = expandedCellCount.offscreen;
+				if (offscreen == null) {
+					offscreen = new PixelDrawing(scale, screenBounds);
+					if (planning) {
+						// find the cached cells inside, and draw the contents later
+						offscreen.planning = true;
+						offscreen.plannedCell = new PlannedCell(offscreen, subCell, orient, rotTrans);
+						offscreen.drawCell(subCell, null, fullInstantiate, orient, rotTrans, topCell);
+						offscreen.planning = false;
+						plannedCells.add(offscreen.plannedCell);
+					} else
+						offscreen.drawCell(subCell, null, fullInstantiate, orient, rotTrans, topCell);
+					expandedCellCount.offscreen = offscreen;
+					if (TAKE_STATS) {
+						offscreensCreated.incrementAndGet();
+						offscreenPixelsCreated.addAndGet(offscreen.total);
+					}
+				}
+			}
+		}
 
+		if (planning) {
+			// a planned cell is drawn after the planned cells that it copies
+			PlannedCell copied = offscreen.plannedCell;
+			if (plannedCell != null && copied != null)
+				plannedCell.height = Math.max(plannedCell.height, copied.height + 1);
+			return true;
 		}
 
 		// copy out of the offscreen buffer into the main buffer
 		databaseToScreen(origTrans.getTranslateX(), origTrans.getTranslateY(), tempPt1);
-		copyBits(expandedCellCount.offscreen, tempPt1.x, tempPt1.y);
-		offscreensUsed++;
-		offscreenPixelsUsed += expandedCellCount.offscreen.total;
+		copyBits(offscreen, tempPt1.x, tempPt1.y);
+		if (TAKE_STATS) {
+			offscreensUsed.incrementAndGet();
+			offscreenPixelsUsed.addAndGet(offscreen.total);
+		}
 		return true;
 	}
 
@@ -507,6 +507,141 @@ public class VectorCache
 		public ImmutableNodeInst getNode() { return n; }
 	}
 
+	/**
+	 * Class which defines the coverage of a Layer in a cached cell at power-of-two resolutions.
+	 * Level 0 divides the cell bounds into at most MAXBINS bins on a side, each next level
+	 * has bins twice as large, up to a single bin. A bin is set if any Manhattan box on the Layer touches it.
+	 * Shapes which are not Manhattan boxes, or which have their own graphics, are kept aside
+	 * so that they can be drawn one at a time.
+	 */
+	static class VectorCoverage
+	{
+		/** maximum number of bins on a side at level 0 */	private static final int MAXBINS = 256;
+
+		private final long originX, originY;
+		private final int baseShift;
+		private final int[] widths, heights, strides;
+		private final long[][] bins;
+		private final List<VectorBase> otherShapes = new ArrayList<VectorBase>();
+
+		VectorCoverage(List<VectorBase> shapes, long lX, long lY, long hX, long hY)
+		{
+			originX = lX;
+			originY = lY;
+			long size = Math.max(hX - lX, hY - lY);
+			int shift = 0;
+			while ((size >> shift) >= MAXBINS) shift++;
+			baseShift = shift;
+			int numLevels = 1;
+			while ((size >> (shift + numLevels - 1)) > 0) numLevels++;
+			widths = new int[numLevels];
+			heights = new int[numLevels];
+			strides = new int[numLevels];
+			bins = new long[numLevels][];
+			for (int level = 0; level < numLevels; level++)
+			{
+				widths[level] = (int)((hX - lX) >> (shift + level)) + 1;
+				heights[level] = (int)((hY - lY) >> (shift + level)) + 1;
+				strides[level] = (widths[level] + 63) >> 6;
+				bins[level] = new long[strides[level] * heights[level]];
+			}
+
+			// fill level 0 from the boxes
+			if (shapes != null)
+			{
+				for (VectorBase vb : shapes)
+				{
+					if (!(vb instanceof VectorManhattan) || vb.getGraphics() != null)
+					{
+						otherShapes.add(vb);
+						continue;
+					}
+					long[] coords = ((VectorManhattan)vb).getCoords();
+					for (int i = 0; i < coords.length; i += 4)
+						addBox(coords[i], coords[i+1], coords[i+2], coords[i+3]);
+				}
+			}
+
+			// each bin of a coarser level covers two by two bins of the finer level
+			for (int level = 1; level < numLevels; level++)
+			{
+				for (int y = 0; y < heights[level-1]; y++)
+				{
+					for (int x = 0; x < widths[level-1]; x++)
+					{
+						if (isSet(level-1, x, y)) set(level, x >> 1, y >> 1);
+					}
+				}
+			}
+		}
+
+		private void addBox(long c1X, long c1Y, long c2X, long c2Y)
+		{
+			int bLX = binOf(c1X - originX, widths[0]);
+			int bHX = binOf(Math.max(c2X - 1, c1X) - originX, widths[0]);
+			int bLY = binOf(c1Y - originY, heights[0]);
+			int bHY = binOf(Math.max(c2Y - 1, c1Y) - originY, heights[0]);
+			for (int y = bLY; y <= bHY; y++)
+			{
+				for (int x = bLX; x <= bHX; x++)
+					set(0, x, y);
+			}
+		}
+
+		private int binOf(long offset, int numBins)
+		{
+			long bin = offset >> baseShift;
+			if (bin < 0) return 0;
+			if (bin >= numBins) return numBins - 1;
+			return (int)bin;
+		}
+
+		private void set(int level, int x, int y)
+		{
+			bins[level][y * strides[level] + (x >> 6)] |= 1L << (x & 63);
+		}
+
+		/**
+		 * Method to tell whether a bin is covered.
+		 * @param level the level of the bin.
+		 * @param x the X index of the bin.
+		 * @param y the Y index of the bin.
+		 * @return true if a box touches the bin.
+		 */
+		public boolean isSet(int level, int x, int y)
+		{
+			return (bins[level][y * strides[level] + (x >> 6)] & (1L << (x & 63))) != 0;
+		}
+
+		/**
+		 * Method to find the coarsest level whose bins are not larger than a given size.
+		 * @param maxBinSize the largest acceptable bin size (in database grid units).
+		 * @return the level, or -1 if even the bins of level 0 are larger.
+		 */
+		public int findLevel(double maxBinSize)
+		{
+			int level = -1;
+			while (level + 1 < widths.length && (1L << (baseShift + level + 1)) <= maxBinSize) level++;
+			return level;
+		}
+
+		public int getBinShift(int level) { return baseShift + level; }
+
+		public int getWidth(int level) { return widths[level]; }
+
+		public int getHeight(int level) { return heights[level]; }
+
+		public long getOriginX() { return originX; }
+
+		public long getOriginY() { return originY; }
+
+		/**
+		 * Method to return the shapes that are not part of the coverage.
+		 * @return the List of shapes that must be drawn one at a time.
+		 */
+		public List<VectorBase> getOtherShapes() { return otherShapes; }
+	}
+
 	/**
 	 * Class which holds the cell caches for a given cell.
 	 * Since each cell is cached many times, once for every orientation on the screen,
@@ -700,6 +835,7 @@ public class VectorCache
 		private int[] portCenters;
 		private long validStep;
 		private Map<Layer,List<VectorBase>> organizedShapes = new HashMap<Layer,List<VectorBase>>();
+		private Map<Layer,VectorCoverage> coverage = new HashMap<Layer,VectorCoverage>();
 		private ArrayList<VectorBase> topOnlyShapes;
 		private ArrayList<VectorSubCell> subCells = new ArrayList<VectorSubCell>();
 		private RTNode<VectorSubCell> subCellTree = null;
@@ -849,6 +985,24 @@ public class VectorCache
 		 */
 		public List<VectorBase> getShapes(Layer layer) { return organizedShapes.get(layer); }
 
+		/**
+		 * Method to return the coverage of a given Layer.
+		 * The coverage is computed on first request and kept until the shapes of this cache change.
+		 * @param layer the Layer to request.
+		 * @return the VectorCoverage of that Layer (null if the cell has no bounds).
+		 */
+		public VectorCoverage getCoverage(Layer layer)
+		{
+			if (lX > hX || lY > hY) return null;
+			VectorCoverage cov = coverage.get(layer);
+			if (cov == null)
+			{
+				cov = new VectorCoverage(organizedShapes.get(layer), lX, lY, hX, hY);
+				coverage.put(layer, cov);
+			}
+			return cov;
+		}
+
 		private void buildCache(Cell cell)
 		{
 			updateBounds();
@@ -969,6 +1123,7 @@ public class VectorCache
 			clearExports();
 			hasFadeColor = fadeImage = false;
 			organizedShapes.clear();
+			coverage.clear();
 			subCellTree = null;
 			if (USE_CELL_RTREE) subCellTree = RTNode.makeTopLevel(); else
 				subCells.clear();
@@ -1441,6 +1596,7 @@ if (DEBUG) System.out.println("  UPDATING ALL ORIENTATIONS OF CELL "+cell.descri
 				VectorCell vc = vcd.orientations.get(o);
 				if (vc.validStep != updateStep) continue;
 if (DEBUG) System.out.println("  UPDATING CELL "+cell.describe(false)+", ORIENTATION '"+o+"'");
+				vc.coverage.clear();
 
 				// incremental update: first delete removed object
 				if (removedFromCell.size() > 0)
@@ -91,6 +91,7 @@ class VectorDrawing {
 	/** true to use cell greeking images */							private boolean useCellGreekingImages;
 	/** the threshold of text sizes */								private float maxTextSize;
 	/** the maximum cell size above which no greeking */			private float maxCellSize;
+	/** true to draw boxes from the coverage of cells */			private boolean useCoverage;
 
 	/** temporary objects (saves allocation) */						private Point tempPt1 = new Point(), tempPt2 = new Point();
 	/** temporary objects (saves allocation) */						private Point tempPt3 = new Point();
@@ -119,10 +120,11 @@ class VectorDrawing {
 	 * @param fullInstantiate true to draw all the way to the bottom of the hierarchy.
 	 * @param inPlaceNodePath a List of NodeInsts to the cell being in-place edited
 	 * @param screenLimit the area in the cell to display (null to show all).
+	 * @param levelOfDetailScaleLimit the scale below which boxes are drawn from the coverage of cells (0 to never do so).
 	 */
 	public void render(PixelDrawing offscreen, double scale, Point2D offset, Cell cell, boolean fullInstantiate,
 			List<NodeInst> inPlaceNodePath, Cell inPlaceCurrent, Rectangle screenLimit, VarContext context,
-			double greekSizeLimit, double greekCellSizeLimit, LayerVisibility lv) {
+			double greekSizeLimit, double greekCellSizeLimit, double levelOfDetailScaleLimit, LayerVisibility lv) {
 		// see if any layers are being highlighted/dimmed
 		this.offscreen = offscreen;
 		offscreen.highlightingLayers = false;
@@ -143,6 +145,7 @@ class VectorDrawing {
 		maxTextSize = (float) (objectGreekThreshold / PixelDrawing.dp.globalTextScale);
 		double screenArea = sz.getWidth() / scale * sz.getHeight() / scale;
 		maxCellSize = (float) (greekCellSizeLimit * screenArea);
+		useCoverage = scale < levelOfDetailScaleLimit;
 
 		// statistics
 		timer.start();
@@ -284,14 +287,16 @@ if (VectorCache.DEBUG) System.out.println("REDISPLAY TOOK " + TextUtils.formatDo
 		for(Layer lay : knownLayers)
 		{
 			if (lay.getTechnology() == curTech) continue;
-			drawList(oX, oY, vc.getShapes(lay), level, false);
+			if (!drawCoverage(vc, lay, oX, oY, level))
+				drawList(oX, oY, vc.getShapes(lay), level, false);
 		}
 
 		// next render the current technologies (so it is highest in opaque buffer)
 		for(Layer lay : knownLayers)
 		{
 			if (lay.getTechnology() != curTech) continue;
-			drawList(oX, oY, vc.getShapes(lay), level, false);
+			if (!drawCoverage(vc, lay, oX, oY, level))
+				drawList(oX, oY, vc.getShapes(lay), level, false);
 		}
 
 		// now render subcells
@@ -445,6 +450,81 @@ if (VectorCache.DEBUG) System.out.println("REDISPLAY TOOK " + TextUtils.formatDo
 		}
 	}
 
+	/**
+	 * Method to draw the shapes of a Layer in a cached cell from its coverage.
+	 * Each run of covered bins is drawn as one box, so the work depends on the number of
+	 * pixels that the cell fills rather than on the number of boxes in it.
+	 * Only done when zoomed out, and when the bins of the coverage are not larger than a pixel.
+	 * Implant and substrate layers are never drawn this way, because their small boxes are not shown.
+	 * @param vc the cached cell.
+	 * @param layer the Layer to draw.
+	 * @param oX the X offset to draw the shapes (in database grid coordinates).
+	 * @param oY the Y offset to draw the shapes (in database grid coordinates).
+	 * @param level 0=top-level cell in window; 1=low level cell; -1=greeked cell.
+	 * @return true if the Layer has been drawn; false to draw its shapes one at a time.
+	 */
+	private boolean drawCoverage(VectorCache.VectorCell vc, Layer layer, long oX, long oY, int level)
+		throws AbortRenderingException
+	{
+		if (!useCoverage || level < 0) return false;
+		Layer.Function fun = layer.getFunction();
+		if (fun.isImplant() || fun.isSubstrate()) return false;
+		VectorCache.VectorCoverage cov = vc.getCoverage(layer);
+		if (cov == null) return false;
+		int covLevel = cov.findLevel(1 / scale_);
+		if (covLevel < 0) return false;
+		EGraphics graphics = PixelDrawing.gp.getGraphics(layer);
+		if (graphics == null) return false;
+
+		if (PixelDrawing.lv.isVisible(layer))
+		{
+			boolean dimmed = !PixelDrawing.lv.isHighlighted(layer);
+			byte[][] layerBitMap = null;
+			int layerNum = graphics.getTransparentLayer() - 1;
+			if (layerNum < offscreen.numLayerBitMaps)
+				layerBitMap = offscreen.getLayerBitMap(layerNum);
+
+			int shift = cov.getBinShift(covLevel);
+			int wid = cov.getWidth(covLevel);
+			int hei = cov.getHeight(covLevel);
+			long binLX = cov.getOriginX() + oX;
+			long binLY = cov.getOriginY() + oY;
+			for (int y = 0; y < hei; y++)
+			{
+				if (stopRendering)
+					throw new AbortRenderingException();
+
+				// determine the rows of the bins on the screen
+				gridToScreen(binLX, binLY + ((long)(y + 1) << shift), tempPt1);
+				gridToScreen(binLX, binLY + ((long)y << shift), tempPt2);
+				int lY = tempPt1.y;
+				int hY = Math.max(tempPt2.y - 1, lY);
+				if (hY < screenLY || lY >= screenHY) continue;
+				if (lY < screenLY) lY = screenLY;
+				if (hY >= screenHY) hY = screenHY - 1;
+
+				// draw each run of covered bins as one box
+				for (int x = 0; x < wid; x++)
+				{
+					if (!cov.isSet(covLevel, x, y)) continue;
+					int startX = x;
+					while (x + 1 < wid && cov.isSet(covLevel, x + 1, y)) x++;
+					gridToScreen(binLX + ((long)startX << shift), binLY, tempPt1);
+					gridToScreen(binLX + ((long)(x + 1) << shift), binLY, tempPt2);
+					int lX = tempPt1.x;
+					int hX = Math.max(tempPt2.x - 1, lX);
+					if (hX < screenLX || lX >= screenHX) continue;
+					if (lX < screenLX) lX = screenLX;
+					if (hX >= screenHX) hX = screenHX - 1;
+					offscreen.drawBox(lX, hX, lY, hY, layerBitMap, graphics, dimmed);
+					boxCount++;
+				}
+			}
+		}
+		drawList(oX, oY, cov.getOtherShapes(), level, false);
+		return true;
+	}
+
 	/**
 	 * Method to draw a list of cached shapes.
 	 * @param oX the X offset to draw the shapes (in database grid coordinates).
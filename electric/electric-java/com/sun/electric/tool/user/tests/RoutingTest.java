@@ -24,10 +24,16 @@ package com.sun.electric.tool.user.tests;
 import com.sun.electric.database.EditingPreferences;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.network.Netlist;
+import com.sun.electric.database.network.Network;
 import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.technology.TechPool;
 import com.sun.electric.technology.Technology;
+import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Job;
+import com.sun.electric.tool.drc.DRC;
+import com.sun.electric.tool.drc.Quick;
 import com.sun.electric.tool.io.FileType;
 import com.sun.electric.tool.io.input.LibraryFiles;
 import com.sun.electric.tool.io.output.Output;
@@ -45,15 +51,19 @@ import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngineFactory;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngineFactory.SeaOfGatesEngineType;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesHandlers;
+import com.sun.electric.tool.user.ErrorLogger;
 import com.sun.electric.tool.user.MessagesStream;
 import com.sun.electric.tool.user.User;
 import com.sun.electric.util.TextUtils;
+import com.sun.electric.util.math.ECoord;
 
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class to test the routing tool.
@@ -71,6 +81,7 @@ public class RoutingTest extends AbstractTest
 		list.add(new RoutingTest("Auto"));
 		list.add(new RoutingTest("Maze1"));
 		list.add(new RoutingTest("Maze2"));
+		list.add(new RoutingTest("Maze3"));
 		list.add(new RoutingTest("Mimic"));
 		list.add(new RoutingTest("River"));
 		list.add(new RoutingTest("CopyTopology1"));
@@ -186,6 +197,107 @@ public class RoutingTest extends AbstractTest
 		return Boolean.valueOf(compareCellResults(lay, getResultName()));
 	}
 
+	/**
+	 * Run Maze-routing test 3: routes the cell of test 2 on packed grids.
+	 * The nets are searched in another order, so the wires may differ from those of test 2;
+	 * instead of comparing with a result, every unrouted arc must be replaced by wires that connect
+	 * its ends, and the routing must not add design-rule errors.
+	 * @return true if the test is successful.
+	 */
+	public Boolean Maze3()
+	{
+		String testParameter = createMessageOutput();
+		EditingPreferences ep = new EditingPreferences(true, TechPool.getThreadTechPool());
+
+		// initialize
+		setFoundry(Technology.getMocmosTechnology());
+
+		// read a copy of the library of test 2, which routes its cell
+		URL fileURL = TextUtils.makeURLToFile(dataDir(getRegressionPath(), testParameter) + "routingTests.jelib");
+		String libName = "routingTestsPacked";
+		Library rootLib = Library.findLibrary(libName);
+		if (rootLib == null) rootLib = LibraryFiles.readLibrary(ep, fileURL, libName, FileType.JELIB, true);
+		Cell lay = rootLib.findNodeProto("MazeRoutingTest2{lay}");
+
+		// remember the ports that the unrouted arcs connect (their pins are replaced)
+		List<List<PortInst>> ends = new ArrayList<List<PortInst>>();
+		Netlist netList = lay.getNetlist();
+		Map<Network,List<PortInst>> endsOfNet = new HashMap<Network,List<PortInst>>();
+		for(Iterator<ArcInst> it = lay.getArcs(); it.hasNext(); )
+		{
+			ArcInst ai = it.next();
+			if (ai.getProto() != Generic.tech().unrouted_arc) continue;
+			Network net = netList.getNetwork(ai, 0);
+			List<PortInst> netEnds = endsOfNet.get(net);
+			if (netEnds == null)
+			{
+				netEnds = new ArrayList<PortInst>();
+				endsOfNet.put(net, netEnds);
+				ends.add(netEnds);
+			}
+			for (int e = 0; e < 2; e++)
+			{
+				PortInst pi = ai.getPortInst(e);
+				if (!pi.getNodeInst().getFunction().isPin()) netEnds.add(pi);
+			}
+		}
+		if (ends.isEmpty())
+		{
+			System.out.println("No unrouted arcs in " + lay.describe(false));
+			return Boolean.FALSE;
+		}
+		int errorsBefore = countDRCErrors(lay);
+
+		// do maze-routing on packed grids
+		Maze router = new Maze(ep, true);
+		router.routeSelected(lay, new ArrayList<ArcInst>());
+
+		boolean good = true;
+		for(Iterator<ArcInst> it = lay.getArcs(); it.hasNext(); )
+		{
+			ArcInst ai = it.next();
+			if (ai.getProto() != Generic.tech().unrouted_arc) continue;
+			System.out.println("Arc " + ai.describe(false) + " was not routed");
+			good = false;
+		}
+		netList = lay.getNetlist();
+		for (List<PortInst> netEnds : ends)
+		{
+			Network net = null;
+			for (PortInst pi : netEnds)
+			{
+				Network piNet = netList.getNetwork(pi);
+				if (net == null) net = piNet; else
+					if (piNet != net)
+				{
+					System.out.println("Port " + pi.describe(false) + " is not connected to " + net.describe(false));
+					good = false;
+				}
+			}
+		}
+		int errorsAfter = countDRCErrors(lay);
+		if (errorsAfter > errorsBefore)
+		{
+			System.out.println("Routing added " + (errorsAfter - errorsBefore) + " DRC errors");
+			good = false;
+		}
+		return Boolean.valueOf(good);
+	}
+
+	private static int countDRCErrors(Cell lay)
+	{
+		DRC.DRCPreferences dp = new DRC.DRCPreferences(true);
+		dp.setResolution(lay.getTechnology(), ECoord.ZERO);
+		dp.ignoreAreaCheck = true;
+		dp.ignoreExtensionRuleChecking = true;
+		dp.storeDatesInMemory = true;
+		DRC.resetDRCDates(false);
+		ErrorLogger errorLogger = Quick.checkDesignRules(dp, lay, null, null);
+		errorLogger.disablePopups();
+		errorLogger.termLogging(true);
+		return errorLogger.getNumErrors();
+	}
+
 	/**
 	 * Run Mimic-Stitching test 1.
 	 * @return true if the test is successful.
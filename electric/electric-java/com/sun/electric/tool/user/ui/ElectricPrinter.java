@@ -63,9 +63,11 @@ public class ElectricPrinter implements Printable, ImageObserver
 	private AbstractDrawing.DrawingPreferences dp = new AbstractDrawing.DrawingPreferences();
 	private Rectangle2D renderArea;
 	private int displayAlgorithm = User.getDisplayAlgorithm();
+	private int renderingThreads = User.getRenderingThreads();
 	private boolean greekImages = User.isUseCellGreekingImages();
 	private double greekSizeLimit = User.getGreekSizeLimit();
 	private double greekCellSizeLimit = User.getGreekCellSizeLimit();
+	private double levelOfDetailScaleLimit = User.getLevelOfDetailScaleLimit();
 	
 	/** text printing: the strings to print */								private String [] allStrings;
 	/** text printing: the starting line in the strings */					private int startLine;
@@ -109,9 +111,11 @@ public class ElectricPrinter implements Printable, ImageObserver
 	public Rectangle2D getRenderArea() { return renderArea; }
 	public GraphicsPreferences getGraphicsPreferences() { return gp; }
 	public int getDisplayAlgorithm() { return displayAlgorithm; }
+	public int getRenderingThreads() { return renderingThreads; }
 	public boolean isUseCellGreekingImages() { return greekImages; }
 	public double getGreekSizeLimit() { return greekSizeLimit; }
 	public double getGreekCellSizeLimit() { return greekCellSizeLimit; }
+	public double getLevelOfDetailScaleLimit() { return levelOfDetailScaleLimit; }
 	public EditWindow0 getWindow() { return wnd; }
 	public AbstractDrawing.DrawingPreferences getDrawingPreferences() { return dp; }
 
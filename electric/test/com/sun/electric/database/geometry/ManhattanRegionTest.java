@@ -0,0 +1,196 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ManhattanRegionTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.util.math.FixpCoord;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of ManhattanRegion.
+ * Random Manhattan geometry is compared with the same geometry in java.awt.geom.Area.
+ */
+public class ManhattanRegionTest {
+
+    private final Random random = new Random(12345);
+
+    /**
+     * Test of fromRectangles and combine, of class com.sun.electric.database.geometry.ManhattanRegion.
+     */
+    @Test
+    public void testBooleanOperations() {
+        System.out.println("booleanOperations");
+        for (int iter = 0; iter < 500; iter++) {
+            int n = 1 + random.nextInt(30);
+            long[] rectsA = new long[n * 4], rectsB = new long[n * 4];
+            Area areaA = randomRectangles(rectsA, n), areaB = randomRectangles(rectsB, n);
+            ManhattanRegion a = ManhattanRegion.fromRectangles(rectsA, n);
+            ManhattanRegion b = ManhattanRegion.fromRectangles(rectsB, n);
+
+            Area union = new Area(areaA);
+            union.add(areaB);
+            Area intersection = new Area(areaA);
+            intersection.intersect(areaB);
+            Area difference = new Area(areaA);
+            difference.subtract(areaB);
+
+            checkSame(areaA, a);
+            checkSame(union, ManhattanRegion.combine(a, b, ManhattanRegion.UNION));
+            checkSame(intersection, ManhattanRegion.combine(a, b, ManhattanRegion.INTERSECTION));
+            checkSame(difference, ManhattanRegion.combine(a, b, ManhattanRegion.DIFFERENCE));
+        }
+    }
+
+    /**
+     * Test of fromPolygon, of class com.sun.electric.database.geometry.ManhattanRegion.
+     */
+    @Test
+    public void testFromPolygon() {
+        System.out.println("fromPolygon");
+        for (int iter = 0; iter < 500; iter++) {
+            // a random, possibly self-intersecting, loop with alternating horizontal and vertical edges
+            int m = 2 * (2 + random.nextInt(5));
+            long[] px = new long[m + 1], py = new long[m + 1];
+            Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+            int x = random.nextInt(40), y = random.nextInt(40), startX = x, startY = y;
+            for (int i = 0; i < m; i++) {
+                if (i == 0) {
+                    path.moveTo(x, y);
+                } else {
+                    if (i % 2 == 0) {
+                        x = i == m - 2 ? startX : random.nextInt(40);
+                    } else {
+                        y = i == m - 1 ? startY : random.nextInt(40);
+                    }
+                    path.lineTo(x, y);
+                }
+                px[i] = FixpCoord.lambdaToFixp(x);
+                py[i] = FixpCoord.lambdaToFixp(y);
+            }
+            path.closePath();
+
+            // the loop may be closed explicitly
+            int numPoints = m;
+            if (random.nextBoolean()) {
+                px[m] = px[0];
+                py[m] = py[0];
+                numPoints++;
+            }
+            checkSame(new Area(path), ManhattanRegion.fromPolygon(px, py, numPoints));
+        }
+
+        // two loops in one polygon, the first closed explicitly
+        long[] px = {0, 10, 10, 0, 0, 20, 30, 30, 20};
+        long[] py = {0, 0, 10, 10, 0, 20, 20, 30, 30};
+        for (int i = 0; i < px.length; i++) {
+            px[i] = FixpCoord.lambdaToFixp(px[i]);
+            py[i] = FixpCoord.lambdaToFixp(py[i]);
+        }
+        assertEquals(200, ManhattanRegion.fromPolygon(px, py, px.length).getArea(), 0);
+
+        // diagonal edges are rejected
+        assertNull(ManhattanRegion.fromPolygon(new long[]{0, 10, 0}, new long[]{0, 0, 10}, 3));
+    }
+
+    /**
+     * Test of the queries, of class com.sun.electric.database.geometry.ManhattanRegion.
+     */
+    @Test
+    public void testQueries() {
+        System.out.println("queries");
+        for (int iter = 0; iter < 200; iter++) {
+            int n = 1 + random.nextInt(30);
+            long[] rects = new long[n * 4];
+            Area area = randomRectangles(rects, n);
+            ManhattanRegion region = ManhattanRegion.fromRectangles(rects, n);
+            for (int t = 0; t < 50; t++) {
+                int x = random.nextInt(50), y = random.nextInt(50), w = 1 + random.nextInt(6), h = 1 + random.nextInt(6);
+                long minX = FixpCoord.lambdaToFixp(x), minY = FixpCoord.lambdaToFixp(y);
+                long maxX = FixpCoord.lambdaToFixp(x + w), maxY = FixpCoord.lambdaToFixp(y + h);
+                Rectangle2D rect = new Rectangle2D.Double(x, y, w, h);
+                Area inside = new Area(rect);
+                inside.intersect(area);
+                assertEquals(area.contains(rect), region.containsRect(minX, minY, maxX, maxY));
+                assertEquals(!inside.isEmpty(), region.intersectsRect(minX, minY, maxX, maxY));
+                assertEquals(getArea(inside), region.getAreaInside(minX, minY, maxX, maxY), 1e-9);
+
+                // points on the boundary are inside
+                double ptX = random.nextInt(100) / 2.0, ptY = random.nextInt(100) / 2.0;
+                boolean expected = area.intersects(ptX - 1e-4, ptY - 1e-4, 2e-4, 2e-4);
+                assertEquals(expected, region.containsPoint(FixpCoord.lambdaToFixp(ptX), FixpCoord.lambdaToFixp(ptY)));
+            }
+        }
+    }
+
+    private Area randomRectangles(long[] rects, int n) {
+        Area area = new Area();
+        for (int i = 0; i < n; i++) {
+            int x = random.nextInt(40), y = random.nextInt(40), w = random.nextInt(15), h = random.nextInt(15);
+            rects[i * 4] = FixpCoord.lambdaToFixp(x);
+            rects[i * 4 + 1] = FixpCoord.lambdaToFixp(y);
+            rects[i * 4 + 2] = FixpCoord.lambdaToFixp(x + w);
+            rects[i * 4 + 3] = FixpCoord.lambdaToFixp(y + h);
+            area.add(new Area(new Rectangle2D.Double(x, y, w, h)));
+        }
+        return area;
+    }
+
+    private static void checkSame(Area expected, ManhattanRegion region) {
+        Area xor = region.toArea(null);
+        xor.exclusiveOr(expected);
+        assertTrue(xor.isEmpty());
+        assertEquals(getArea(expected), region.getArea(), 1e-9);
+    }
+
+    /**
+     * Method to compute the area of an Area with line segments.
+     * Holes are oriented opposite to their outlines, so they subtract.
+     */
+    static double getArea(Area area) {
+        double total = 0, startX = 0, startY = 0, lastX = 0, lastY = 0;
+        double[] coords = new double[6];
+        for (PathIterator it = area.getPathIterator(null); !it.isDone(); it.next()) {
+            switch (it.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    startX = lastX = coords[0];
+                    startY = lastY = coords[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    total += lastX * coords[1] - coords[0] * lastY;
+                    lastX = coords[0];
+                    lastY = coords[1];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    total += lastX * startY - startX * lastY;
+                    break;
+            }
+        }
+        return Math.abs(total / 2);
+    }
+}
@@ -0,0 +1,193 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PolyScanlineMergeTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.util.math.FixpTransform;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Test of PolyScanlineMerge.
+ * The flattened geometry of the regression cells is merged with PolyMerge and with PolyScanlineMerge,
+ * and both merges must give the same answers.
+ */
+public class PolyScanlineMergeTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testPlacementTest4() throws Exception {
+        crossCheck(this.loadCell("placementTests", "PlacementTest4"));
+    }
+
+    @Test
+    public void testTestCell() throws Exception {
+        crossCheck(this.loadCell("testLib", "testCell"));
+    }
+
+    /**
+     * Areas of geometry with holes are measured inside of the outer boundaries, as in PolyMerge.
+     * The layer has a ring with an island in its hole, a ring broken by a slot,
+     * and a ring whose hole is made of several rectangles.
+     */
+    @Test
+    public void testAreaWithHoles() {
+        Layer layer = Technology.getMocmosTechnology().findLayer("Metal-1");
+        PolyMerge reference = new PolyMerge();
+        PolyScanlineMerge scanline = new PolyScanlineMerge();
+        double[][] rects = {
+            // ring around (10,10)-(20,20) with an island in its hole
+            {0, 0, 30, 10}, {0, 20, 30, 30}, {0, 10, 10, 20}, {20, 10, 30, 20}, {14, 14, 16, 16},
+            // ring with a slot from its hole to the outside
+            {40, 0, 70, 10}, {40, 20, 70, 30}, {40, 10, 50, 20}, {60, 10, 70, 14}, {60, 16, 70, 20},
+            // ring whose hole is L-shaped
+            {80, 0, 110, 5}, {80, 25, 110, 30}, {80, 5, 85, 25}, {105, 5, 110, 25}, {85, 15, 95, 25}
+        };
+        for (double[] r : rects) {
+            Rectangle2D rect = new Rectangle2D.Double(r[0], r[1], r[2] - r[0], r[3] - r[1]);
+            reference.addRectangle(layer, rect);
+            scanline.addRectangle(layer, rect);
+        }
+        assertEquals(30 * 30 + (30 * 30 - 10 * 10 - 10 * 2) + 30 * 30, reference.getAreaOfLayer(layer), 1e-6);
+        assertEquals(reference.getAreaOfLayer(layer), scanline.getAreaOfLayer(layer), 1e-6);
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkMerge() throws Exception {
+        List<Poly> polys = new ArrayList<Poly>();
+        gatherPolys(this.loadCell("placementTests", "PlacementTest4"), new FixpTransform(), polys);
+        for (int pass = 0; pass < 3; pass++) {
+            for (PolyMerge merge : new PolyMerge[]{new PolyMerge(), new PolyScanlineMerge()}) {
+                long startTime = System.nanoTime();
+                for (int i = 0; i < 10; i++) {
+                    PolyMerge m = merge instanceof PolyScanlineMerge ? new PolyScanlineMerge() : new PolyMerge();
+                    for (Poly poly : polys) {
+                        m.addPolygon(poly.getLayer(), poly);
+                    }
+                    for (Layer layer : m.getKeySet()) {
+                        m.getMergedPoints(layer, true);
+                    }
+                }
+                long elapsed = System.nanoTime() - startTime;
+                System.out.println("=============== " + merge.getClass().getSimpleName() + ": " + polys.size() + " polygons merged 10 times in " +
+                    (elapsed / 1000000) + " ms");
+            }
+        }
+    }
+
+    private void crossCheck(Cell cell) {
+        List<Poly> polys = new ArrayList<Poly>();
+        gatherPolys(cell, new FixpTransform(), polys);
+        assertFalse(polys.isEmpty());
+        PolyMerge reference = new PolyMerge();
+        PolyScanlineMerge scanline = new PolyScanlineMerge();
+        for (Poly poly : polys) {
+            reference.addPolygon(poly.getLayer(), poly);
+            scanline.addPolygon(poly.getLayer(), poly);
+        }
+        assertEquals(reference.getKeySet(), scanline.getKeySet());
+
+        // same geometry on every layer
+        for (Layer layer : reference.getKeySet()) {
+            Area expected = reference.getMergedArea(layer);
+            Area xor = scanline.getMergedArea(layer);
+            xor.exclusiveOr(expected);
+            assertTrue(layer.getName(), xor.isEmpty());
+            assertEquals(layer.getName(), ManhattanRegionTest.getArea(expected), ManhattanRegionTest.getArea(scanline.getMergedArea(layer)), 1e-6);
+            assertEquals(layer.getName(), reference.getAreaOfLayer(layer), scanline.getAreaOfLayer(layer), 1e-6);
+        }
+
+        // same answers to queries
+        Rectangle2D bounds = cell.getBounds();
+        Random random = new Random(12345);
+        for (Layer layer : reference.getKeySet()) {
+            for (int i = 0; i < 200; i++) {
+                double x = bounds.getMinX() + random.nextInt((int) Math.max(bounds.getWidth(), 1));
+                double y = bounds.getMinY() + random.nextInt((int) Math.max(bounds.getHeight(), 1));
+                Rectangle2D rect = new Rectangle2D.Double(x, y, 1 + random.nextInt(10), 1 + random.nextInt(10));
+                PolyBase poly = new PolyBase(rect);
+                assertEquals(reference.contains(layer, rect), scanline.contains(layer, rect));
+                assertEquals(reference.contains(layer, poly), scanline.contains(layer, poly));
+                assertEquals(reference.intersects(layer, poly), scanline.intersects(layer, poly));
+                assertEquals(reference.contains(layer, poly.getCenter()), scanline.contains(layer, poly.getCenter()));
+            }
+        }
+
+        // same results of layer operations
+        List<Layer> layers = new ArrayList<Layer>(reference.getKeySet());
+        for (int i = 1; i < layers.size(); i++) {
+            Layer a = layers.get(i - 1), b = layers.get(i);
+            reference.intersectLayers(a, b, a);
+            scanline.intersectLayers(a, b, a);
+            assertEquals(reference.isEmpty(a), scanline.isEmpty(a));
+            if (reference.isEmpty(a)) {
+                continue;
+            }
+            Area xor = scanline.getMergedArea(a);
+            xor.exclusiveOr(reference.getMergedArea(a));
+            assertTrue(a.getName(), xor.isEmpty());
+        }
+    }
+
+    private static void gatherPolys(Cell cell, FixpTransform trans, List<Poly> polys) {
+        Technology tech = cell.getTechnology();
+        for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext();) {
+            NodeInst ni = it.next();
+            if (ni.isCellInstance()) {
+                gatherPolys((Cell) ni.getProto(), ni.transformOut(trans), polys);
+                continue;
+            }
+            FixpTransform nodeTrans = ni.rotateOut(trans);
+            for (Poly poly : tech.getShapeOfNode(ni)) {
+                if (poly.getLayer() == null) {
+                    continue;
+                }
+                poly.transform(nodeTrans);
+                polys.add(poly);
+            }
+        }
+        for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext();) {
+            ArcInst ai = it.next();
+            for (Poly poly : tech.getShapeOfArc(ai)) {
+                if (poly.getLayer() == null) {
+                    continue;
+                }
+                poly.transform(trans);
+                polys.add(poly);
+            }
+        }
+    }
+}
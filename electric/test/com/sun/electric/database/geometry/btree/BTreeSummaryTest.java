@@ -0,0 +1,147 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BTreeSummaryTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import com.sun.electric.database.geometry.btree.unboxed.AssociativeCommutativeOperation;
+import com.sun.electric.database.geometry.btree.unboxed.Pair;
+import com.sun.electric.database.geometry.btree.unboxed.UnboxedInt;
+import com.sun.electric.database.geometry.btree.unboxed.UnboxedPair;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of BTree.append and BTree.getSummaryFromKeys.
+ * Range summaries are compared with a brute-force scan of the same values.
+ */
+public class BTreeSummaryTest {
+
+    private static final int N = 5000;
+
+    @Test
+    public void testAppend() {
+        System.out.println("append");
+        int[] vals = makeValues();
+        BTree<Integer,Integer,Pair<Integer,Integer>> btree = makeTree();
+        for (int i = 0; i < N; i++)
+            btree.append(i*2, vals[i]);
+        check(btree, vals);
+    }
+
+    @Test
+    public void testInsert() {
+        System.out.println("insert");
+        int[] vals = makeValues();
+        BTree<Integer,Integer,Pair<Integer,Integer>> btree = makeTree();
+        for (int i = N-1; i >= 0; i--)
+            btree.insert(i*2, vals[i]);
+        check(btree, vals);
+    }
+
+    @Test
+    public void testMixed() {
+        System.out.println("mixed");
+        int[] vals = makeValues();
+        BTree<Integer,Integer,Pair<Integer,Integer>> btree = makeTree();
+        for (int i = 0; i < N; i++) {
+            if (i % 7 == 3) btree.insert(i*2, vals[i]);
+            else            btree.append(i*2, vals[i]);
+        }
+        check(btree, vals);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testAppendOutOfOrder() {
+        BTree<Integer,Integer,Pair<Integer,Integer>> btree = makeTree();
+        btree.append(10, 0);
+        btree.append(10, 1);
+    }
+
+    private static int[] makeValues() {
+        Random rand = new Random(12345);
+        int[] vals = new int[N];
+        for (int i = 0; i < N; i++)
+            vals[i] = rand.nextInt(100000);
+        return vals;
+    }
+
+    private static BTree<Integer,Integer,Pair<Integer,Integer>> makeTree() {
+        // small pages give a tree several levels deep
+        return new BTree<Integer,Integer,Pair<Integer,Integer>>(new MemoryPageStorage(256),
+                                                                UnboxedInt.instance, UnboxedInt.instance,
+                                                                new MinMax());
+    }
+
+    /** keys are 0, 2, 4, ... so ranges may start or end between two keys */
+    private static void check(BTree<Integer,Integer,Pair<Integer,Integer>> btree, int[] vals) {
+        assertEquals(N, btree.size());
+        for (int i = 0; i < N; i++) {
+            assertEquals(vals[i], btree.getValFromOrd(i).intValue());
+            assertEquals(i, btree.getOrdFromKey(i*2));
+        }
+        Random rand = new Random(54321);
+        for (int iter = 0; iter < 2000; iter++) {
+            int min = rand.nextInt(2*N+4) - 2;
+            int max = min + rand.nextInt(rand.nextBoolean() ? 2*N : 40);
+            int lo = Math.max(0, (min+1)/2), hi = Math.min(N-1, max < 0 ? -1 : max/2);
+            Pair<Integer,Integer> s = btree.getSummaryFromKeys(min, max);
+            if (lo > hi) {
+                assertNull(min + ".." + max, s);
+                continue;
+            }
+            int emin = Integer.MAX_VALUE, emax = Integer.MIN_VALUE;
+            for (int i = lo; i <= hi; i++) {
+                emin = Math.min(emin, vals[i]);
+                emax = Math.max(emax, vals[i]);
+            }
+            assertNotNull(min + ".." + max, s);
+            assertEquals(min + ".." + max, emin, s.getKey().intValue());
+            assertEquals(min + ".." + max, emax, s.getValue().intValue());
+        }
+    }
+
+    /** summarizes a range of values by their minimum and maximum */
+    private static class MinMax
+        extends UnboxedPair<Integer,Integer>
+        implements BTree.Summary<Integer,Integer,Pair<Integer,Integer>>,
+                   AssociativeCommutativeOperation<Pair<Integer,Integer>> {
+
+        MinMax() { super(UnboxedInt.instance, UnboxedInt.instance); }
+
+        public void call(byte[] buf_arg, int ofs_arg, byte[] buf_result, int ofs_result) {
+            int v = UnboxedInt.instance.deserializeInt(buf_arg, ofs_arg+4);
+            UnboxedInt.instance.serializeInt(v, buf_result, ofs_result);
+            UnboxedInt.instance.serializeInt(v, buf_result, ofs_result+4);
+        }
+
+        public void multiply(byte[] buf1, int ofs1, byte[] buf2, int ofs2, byte[] buf_dest, int ofs_dest) {
+            int min = Math.min(UnboxedInt.instance.deserializeInt(buf1, ofs1),
+                               UnboxedInt.instance.deserializeInt(buf2, ofs2));
+            int max = Math.max(UnboxedInt.instance.deserializeInt(buf1, ofs1+4),
+                               UnboxedInt.instance.deserializeInt(buf2, ofs2+4));
+            UnboxedInt.instance.serializeInt(min, buf_dest, ofs_dest);
+            UnboxedInt.instance.serializeInt(max, buf_dest, ofs_dest+4);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedFilePageStorageTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import com.sun.electric.database.geometry.btree.unboxed.Pair;
+import com.sun.electric.database.geometry.btree.unboxed.UnboxedInt;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of MappedFilePageStorage.
+ * Pages are written, the storage is closed and opened again, and the pages are read back.
+ */
+public class MappedFilePageStorageTest {
+
+    /** enough pages to use a second region of the file */
+    private static final int NUMPAGES = 4096 + 3;
+
+    @Test
+    public void testWriteReopenRead() throws Exception {
+        System.out.println("writeReopenRead");
+        File file = File.createTempFile("MappedFilePageStorageTest", ".ebtree");
+        try {
+            MappedFilePageStorage ps = MappedFilePageStorage.create(file);
+            byte[] buf = new byte[ps.getPageSize()];
+            for (int i = 0; i < NUMPAGES; i++)
+                assertEquals(i, ps.createPage());
+            // only some pages are written, the others must read back as zeros
+            for (int pageid = 0; pageid < NUMPAGES; pageid += 97) {
+                fill(buf, pageid);
+                ps.writePage(pageid, buf, 0);
+            }
+            ps.writePage(NUMPAGES - 1, fill(buf, NUMPAGES - 1), 0);
+            ps.close();
+            assertTrue(file.isFile());
+            assertEquals((long)NUMPAGES * ps.getPageSize(), file.length());
+
+            MappedFilePageStorage reopened = MappedFilePageStorage.open(file);
+            assertEquals(NUMPAGES, reopened.getNumPages());
+            byte[] expected = new byte[buf.length];
+            byte[] zeros = new byte[buf.length];
+            for (int pageid = 0; pageid < NUMPAGES; pageid++) {
+                reopened.readPage(pageid, buf, 0);
+                boolean written = pageid % 97 == 0 || pageid == NUMPAGES - 1;
+                assertArrayEquals("page " + pageid, written ? fill(expected, pageid) : zeros, buf);
+            }
+
+            // new pages go after the old ones
+            assertEquals(NUMPAGES, reopened.createPage());
+            reopened.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTreeThroughSmallCache() {
+        System.out.println("treeThroughSmallCache");
+        // a cache of a few pages makes the tree live in the mapped file
+        CachingPageStorage ps = new CachingPageStorageWrapper(MappedFilePageStorage.create(), 8, false);
+        BTree<Integer,Integer,Pair<Integer,Integer>> btree =
+            new BTree<Integer,Integer,Pair<Integer,Integer>>(ps, UnboxedInt.instance, UnboxedInt.instance, null);
+        int n = 200000;
+        for (int i = 0; i < n; i++)
+            btree.append(i, i*3);
+        assertTrue(ps.getNumPages() > 8);
+        assertEquals(n, btree.size());
+        for (int i = 0; i < n; i += 7)
+            assertEquals(i*3, btree.getValFromKey(i).intValue());
+        ps.close();
+    }
+
+    /** fills a page with bytes that depend on the page number */
+    private static byte[] fill(byte[] buf, int pageid) {
+        Arrays.fill(buf, (byte)0);
+        for (int i = 0; i < buf.length; i += 61)
+            buf[i] = (byte)(pageid * 31 + i + 1);
+        return buf;
+    }
+}
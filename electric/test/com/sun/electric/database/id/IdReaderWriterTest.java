@@ -182,4 +182,54 @@ public class IdReaderWriterTest {
             fail(e.getMessage());
         }
     }
+
+    /**
+     * Test of readDiffsByName method, of class com.sun.electric.database.IdReader.
+     */
+    @Test
+    public void testReadDiffsByName() {
+        System.out.println("readDiffsByName");
+        try {
+            ExportId exportA = cellId1.newPortId("A");
+            ExportId exportB = cellId1.newPortId("B");
+
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            IdWriter writer = new IdWriter(idManager, new DataOutputStream(byteStream));
+            writer.writeDiffs();
+            writer.writeTechId(techId1);
+            writer.writeArcProtoId(aId1_a);
+            writer.writeLibId(libId1);
+            writer.writeNodeProtoId(nId1_b);
+            writer.writePortProtoId(pId1_b_p);
+            writer.writeNodeProtoId(cellId1);
+            writer.writePortProtoId(exportB);
+            writer.flush();
+
+            // the other IdManager has different indices for the same names
+            IdManager otherIdManager = new IdManager();
+            TechId otherTechId1 = otherIdManager.newTechId("techId1");
+            PrimitiveNodeId otherNId1_x = otherTechId1.newPrimitiveNodeId("x");
+            LibId otherLibId1 = otherIdManager.newLibId("libId1");
+            LibId otherLibId0 = otherIdManager.newLibId("libId0");
+            CellId otherCellId1 = otherLibId0.newCellId(cellId1.cellName);
+            ExportId otherExportB = otherCellId1.newPortId("B");
+
+            IdReader reader = new IdReader(new DataInputStream(new ByteArrayInputStream(byteStream.toByteArray())), otherIdManager);
+            reader.readDiffsByName();
+            assertSame(otherTechId1, reader.readTechId());
+            assertEquals(aId1_a.fullName, reader.readArcProtoId().fullName);
+            assertSame(otherLibId1, reader.readLibId());
+            PrimitiveNodeId otherNId1_b = (PrimitiveNodeId) reader.readNodeProtoId();
+            assertEquals(nId1_b.fullName, otherNId1_b.fullName);
+            assertNotSame(otherNId1_x, otherNId1_b);
+            assertEquals(pId1_b_p.toString(), reader.readPortProtoId().toString());
+            assertSame(otherCellId1, reader.readNodeProtoId());
+            assertSame(otherExportB, reader.readPortProtoId());
+            assertEquals(exportA.externalId, otherCellId1.getPortId(1).externalId);
+            assertSame(otherLibId0, otherIdManager.getLibId(1));
+            assertEquals(techId0.techName, otherIdManager.getTechId(1).techName);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
 }
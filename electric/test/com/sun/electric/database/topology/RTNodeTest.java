@@ -0,0 +1,157 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RTNodeTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.topology;
+
+import com.sun.electric.util.math.AbstractFixpRectangle;
+import com.sun.electric.util.math.FixpRectangle;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of RTNode
+ */
+public class RTNodeTest {
+
+    private static class Box implements RTBounds {
+        private final FixpRectangle bounds;
+
+        private Box(long minX, long minY, long maxX, long maxY) {
+            bounds = FixpRectangle.fromFixpDiagonal(minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public AbstractFixpRectangle getBounds() {
+            return bounds;
+        }
+    }
+
+    private List<Box> boxes;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(12345);
+        boxes = new ArrayList<Box>();
+        for (int i = 0; i < 10000; i++) {
+            long x = random.nextInt(1000000);
+            long y = random.nextInt(1000000);
+            boxes.add(new Box(x, y, x + random.nextInt(5000), y + random.nextInt(5000)));
+        }
+    }
+
+    /**
+     * Test of bulkLoad method, of class com.sun.electric.database.topology.RTNode.
+     */
+    @Test
+    public void testBulkLoad() {
+        System.out.println("bulkLoad");
+        assertEquals(0, RTNode.<Box>bulkLoad(new ArrayList<Box>()).tallyRTree());
+        for (int n : new int[]{1, 8, 9, 64, 65, 1000, boxes.size()}) {
+            RTNode<Box> root = RTNode.bulkLoad(boxes.subList(0, n));
+            assertEquals(n, root.tallyRTree());
+            checkPacked(root, root);
+        }
+    }
+
+    /**
+     * Test that searches in a packed tree find the same entries as searches in an incremental tree.
+     */
+    @Test
+    public void testSearch() {
+        System.out.println("search");
+        RTNode<Box> packed = RTNode.bulkLoad(boxes);
+        RTNode<Box> linked = RTNode.makeTopLevel();
+        for (Box box : boxes) {
+            linked = RTNode.linkGeom(null, linked, box);
+        }
+        Random random = new Random(54321);
+        for (int i = 0; i < 100; i++) {
+            long x = random.nextInt(1000000);
+            long y = random.nextInt(1000000);
+            FixpRectangle area = FixpRectangle.fromFixpDiagonal(x, y, x + random.nextInt(50000), y + random.nextInt(50000));
+            assertEquals(collect(area, linked), collect(area, packed));
+        }
+    }
+
+    /**
+     * Test that a packed tree can be modified with linkGeom and unLinkGeom.
+     */
+    @Test
+    public void testLinkUnlink() {
+        System.out.println("linkGeom/unLinkGeom");
+        RTNode<Box> root = RTNode.bulkLoad(boxes.subList(0, 5000));
+        for (Box box : boxes.subList(5000, boxes.size())) {
+            root = RTNode.linkGeom(null, root, box);
+        }
+        assertEquals(boxes.size(), root.tallyRTree());
+        for (Box box : boxes.subList(0, 7000)) {
+            root = RTNode.unLinkGeom(null, root, box, false);
+        }
+        assertEquals(boxes.size() - 7000, root.tallyRTree());
+        Set<Box> found = new HashSet<Box>();
+        for (Iterator<Box> it = new RTNode.Search<Box>(root); it.hasNext();) {
+            found.add(it.next());
+        }
+        assertEquals(new HashSet<Box>(boxes.subList(7000, boxes.size())), found);
+    }
+
+    private static Set<Box> collect(FixpRectangle area, RTNode<Box> root) {
+        Set<Box> result = new HashSet<Box>();
+        for (Iterator<Box> it = new RTNode.Search<Box>(area, root, true); it.hasNext();) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    private static void checkPacked(RTNode<Box> rtn, RTNode<Box> root) {
+        if (rtn != root) {
+            assertTrue(rtn.getTotal() >= 4);
+        }
+        assertTrue(rtn.getTotal() <= 8);
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        for (int i = 0; i < rtn.getTotal(); i++) {
+            AbstractFixpRectangle r;
+            if (rtn.getFlag()) {
+                r = rtn.getChildLeaf(i).getBounds();
+            } else {
+                r = rtn.getChildTree(i);
+                checkPacked(rtn.getChildTree(i), root);
+            }
+            minX = Math.min(minX, r.getFixpMinX());
+            minY = Math.min(minY, r.getFixpMinY());
+            maxX = Math.max(maxX, r.getFixpMaxX());
+            maxY = Math.max(maxY, r.getFixpMaxY());
+        }
+        assertEquals(minX, rtn.getFixpMinX());
+        assertEquals(minY, rtn.getFixpMinY());
+        assertEquals(maxX, rtn.getFixpMaxX());
+        assertEquals(maxY, rtn.getFixpMaxY());
+    }
+}
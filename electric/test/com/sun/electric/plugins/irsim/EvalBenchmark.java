@@ -0,0 +1,274 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: EvalBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.plugins.irsim;
+
+import com.sun.electric.api.irsim.IAnalyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Benchmark of the IRSIM event queue.
+ * Plays the bundled IRSIM-*.cmd decks on the networks of AppTest, and a
+ * generated deck on a large network of NAND chains, and reports the number
+ * of events processed per second.
+ */
+public class EvalBenchmark {
+
+	/** number of times each bundled deck is played */
+	private static final int DECK_REPEATS = 200;
+
+	@Ignore
+	@Test
+	public void testEventsPerSecond() throws IOException {
+		System.out.println("testEventsPerSecond");
+		run(DECK_REPEATS, 200, 50, 500);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.err.println("usage: java " + EvalBenchmark.class.getName() + " <deckrepeats> <chains> <stages> <vectors>");
+			System.err.println("");
+			System.err.println("  Plays the bundled IRSIM decks <deckrepeats> times, then <vectors> random vectors");
+			System.err.println("  on <chains> chains of <stages> NAND gates, and reports the events per second.");
+			System.exit(-1);
+		}
+		new EvalBenchmark().run(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+			Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+	}
+
+	private void run(int deckRepeats, int chains, int stages, int vectors) throws IOException {
+		for (int pass = 0; pass < 2; pass++) {
+			System.out.println("pass " + pass + ":");
+			for (int deck = 1; deck <= 3; deck++)
+				runDeck(deck, deckRepeats);
+			runChains(chains, stages, vectors);
+		}
+	}
+
+	private void runDeck(int deck, int repeats) throws IOException {
+		if (deck == 3 && EvalBenchmark.class.getResource("IRSIM-3.sim") == null) {
+			System.out.println("  IRSIM-3.cmd: skipped, IRSIM-3.sim is missing");
+			return;
+		}
+		long events = 0, time = 0;
+		for (int i = 0; i < repeats; i++) {
+			Sim sim = newSim();
+			Analyzer analyzer = newAnalyzer(sim);
+			makeDeckNetwork(deck, analyzer);
+			InputStream in = EvalBenchmark.class.getResourceAsStream("IRSIM-" + deck + ".cmd");
+			long start = System.nanoTime();
+			play(analyzer, new InputStreamReader(in));
+			time += System.nanoTime() - start;
+			events += sim.getNumEvents();
+		}
+		report("IRSIM-" + deck + ".cmd x" + repeats, events, time);
+	}
+
+	private void runChains(int chains, int stages, int vectors) throws IOException {
+		Sim sim = newSim();
+		Analyzer analyzer = newAnalyzer(sim);
+		makeChainsNetwork(chains, stages, analyzer);
+		String cmd = makeChainsDeck(chains, vectors);
+		long start = System.nanoTime();
+		play(analyzer, new StringReader(cmd));
+		report(chains + " chains of " + stages + " NANDs, " + vectors + " vectors", sim.getNumEvents(), System.nanoTime() - start);
+	}
+
+	private static void report(String name, long events, long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.println("  " + name + ": " + events + " events in " + (nanos / 1000000) + "ms, " +
+			(long)(events / seconds) + " events/s");
+	}
+
+	static Sim newSim() {
+		return new Sim(0, "RC", true);
+	}
+
+	static Analyzer newAnalyzer(Sim sim) {
+		Analyzer analyzer = new Analyzer(new BenchmarkGUI(), sim, 0, false);
+		sim.loadConfig(EvalBenchmark.class.getResource("scmos0.3.prm"), analyzer);
+		sim.initNetwork();
+		analyzer.initRSim();
+		return analyzer;
+	}
+
+	private static void finish(Analyzer analyzer) {
+		analyzer.finishNetwork();
+		analyzer.convertStimuli();
+		analyzer.init();
+		analyzer.clearAllVectors();
+	}
+
+	static void play(Analyzer analyzer, Reader reader) throws IOException {
+		try {
+			analyzer.restoreStimuli(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** Builds chains of NAND gates, each driven by its own input and enabled by "en". */
+	static void makeChainsNetwork(int chains, int stages, Analyzer analyzer) {
+		for (int c = 0; c < chains; c++) {
+			String prev = "in" + c;
+			for (int s = 0; s < stages; s++) {
+				String out = "c" + c + "_" + s;
+				String mid = "x" + c + "_" + s;
+				analyzer.putTransistor(prev, "vdd", out, 2.0, 6.0, 18.0, 18.0, 0, 0, false);
+				analyzer.putTransistor("en", "vdd", out, 2.0, 6.0, 18.0, 18.0, 0, 0, false);
+				analyzer.putTransistor(prev, out, mid, 2.0, 3.0, 9.0, 12.0, 0, 0, true);
+				analyzer.putTransistor("en", mid, "gnd", 2.0, 3.0, 9.0, 12.0, 0, 0, true);
+				prev = out;
+			}
+		}
+		finish(analyzer);
+	}
+
+	/** Makes a deck where each vector sets random values on the chain inputs and lets them ripple through. */
+	static String makeChainsDeck(int chains, int vectors) {
+		// the inputs are set as one bus because looking up signal names is slow
+		Random rand = new Random(0x1234);
+		StringBuilder cmd = new StringBuilder();
+		cmd.append("vector in");
+		for (int c = 0; c < chains; c++)
+			cmd.append(" in").append(c);
+		cmd.append("\nstepsize 20\nh en\ns\n");
+		for (int v = 0; v < vectors; v++) {
+			cmd.append("set in ");
+			for (int c = 0; c < chains; c++)
+				cmd.append(rand.nextBoolean() ? '1' : '0');
+			cmd.append("\ns\n");
+		}
+		return cmd.toString();
+	}
+
+	/** Builds the network that AppTest simulates with the given deck. */
+	static void makeDeckNetwork(int deck, Analyzer x) throws IOException {
+		switch (deck) {
+			case 1:
+				x.putTransistor("net@29", "gnd", "net@1", 2.0, 3.5, 10.5, 13.0, 14.0, -17.75, true);
+				x.putTransistor("cc", "in", "net@29", 2.0, 5.0, 15.0, 16.0, 0.5, -18.5, true);
+				x.putTransistor("in", "gnd", "net@26", 2.0, 10.0, 30.0, 26.0, -21.5, -19.0, true);
+				x.putTransistor("net@1", "gnd", "out", 2.0, 20.0, 60.0, 46.0, 22.5, -25.5, true);
+				x.putTransistor("cc", "net@6", "net@26", 2.0, 5.0, 15.0, 16.0, -13.0, -16.5, true);
+				x.putTransistor("net@26", "gnd", "in", 2.0, 3.0, 9.0, 12.0, -8.5, -29.0, true);
+				x.putTransistor("cc", "net@29", "net@6", 2.0, 3.0, 9.0, 12.0, -1.0, 8.5, false);
+				x.putTransistor("in", "vdd", "net@26", 2.0, 10.0, 30.0, 26.0, -18.0, 12.0, false);
+				x.putTransistor("net@26", "in", "vdd", 2.0, 5.0, 15.0, 16.0, -21.0, 33.5, false);
+				x.putTransistor("in", "vdd", "net@6", 2.0, 5.0, 15.0, 16.0, -9.5, 9.5, false);
+				x.putTransistor("net@6", "vdd", "out", 2.0, 20.0, 60.0, 46.0, 12.0, 21.5, false);
+				x.putTransistor("net@6", "out", "vdd", 2.0, 20.0, 60.0, 46.0, 12.0, 29.5, false);
+				x.putTransistor("net@26", "net@29", "vdd", 2.0, 5.0, 15.0, 16.0, 7.5, 9.5, false);
+				x.putTransistor("net@29", "vdd", "net@1", 2.0, 6.0, 18.0, 18.0, 15.5, 9.0, false);
+				break;
+			case 2:
+				for (int i = 0; i < 12; i++) {
+					x.putTransistor("a[" + i + "]", "out[" + i + "]", "vdd", 2.0, 3.0, 9.0, 12.0, -197.5, 44.5, true);
+					x.putTransistor("b[" + i + "]", "vdd", "out[" + i + "]", 2.0, 3.0, 9.0, 12.0, -182.5, 44.5, true);
+					x.putTransistor("b[" + i + "]", "and@" + i + "/net@21", "gnd", 2.0, 3.0, 9.0, 12.0, -190.0, 12.0, false);
+					x.putTransistor("a[" + i + "]", "out[" + i + "]", "and@" + i + "/net@21", 2.0, 3.0, 9.0, 12.0, -190.0, 21.0, false);
+				}
+				break;
+			case 3:
+				Reader simReader = new InputStreamReader(EvalBenchmark.class.getResourceAsStream("IRSIM-3.sim"));
+				try {
+					x.inputSim(simReader, "IRSIM-3.sim");
+				} finally {
+					simReader.close();
+				}
+				break;
+		}
+		finish(x);
+	}
+
+	private static class BenchmarkGUI implements IAnalyzer.GUI {
+
+		private List<IAnalyzer.GuiSignal> signals = new ArrayList<IAnalyzer.GuiSignal>();
+
+		public IAnalyzer.GuiSignal makeSignal(String name) {
+			IAnalyzer.GuiSignal sig = new BenchmarkSignal(name, null);
+			signals.add(sig);
+			return sig;
+		}
+
+		public void makeBusSignals(List<IAnalyzer.GuiSignal> sigList) {}
+
+		public void createBus(String busName, IAnalyzer.GuiSignal... subsigs) {
+			signals.add(new BenchmarkSignal(busName, subsigs));
+		}
+
+		public Collection<IAnalyzer.GuiSignal> getSignals() {
+			return Collections.unmodifiableCollection(signals);
+		}
+
+		public void setMainXPositionCursor(double curTime) {}
+		public void openPanel(Collection<IAnalyzer.GuiSignal> sigs) {}
+		public void closePanels() {}
+		public double getMaxPanelTime() { return Double.NEGATIVE_INFINITY; }
+		public void repaint() {}
+		public char canonicChar(char c) { return Character.toLowerCase(c); }
+		public String canonicString(String s) { return s.toLowerCase(); }
+		public double atof(String text) { return Double.parseDouble(text); }
+
+		public int atoi(String text) {
+			text = text.trim();
+			int v = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c < '0' || c > '9') break;
+				v = v*10 + (c - '0');
+			}
+			return v;
+		}
+
+		public String formatDouble(double v) { return Double.toString(v); }
+	}
+
+	private static class BenchmarkSignal implements IAnalyzer.GuiSignal {
+		private final String fullName;
+		private final IAnalyzer.GuiSignal[] busMembers;
+
+		private BenchmarkSignal(String fullName, IAnalyzer.GuiSignal[] busMembers) {
+			this.fullName = fullName;
+			this.busMembers = busMembers;
+		}
+
+		public String getFullName() { return fullName; }
+		public String getSignalName() { return fullName; }
+		public IAnalyzer.GuiSignal[] getBusMembers() { return busMembers; }
+		public void addControlPoint(double time) {}
+		public void removeControlPoint(double time) {}
+		public void addSample(double t, IAnalyzer.LogicState v) {}
+	}
+}
@@ -0,0 +1,118 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: EvalTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.plugins.irsim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the IRSIM event queue.
+ * A deck is played with the calendar queue and with the fixed event wheel of older versions.
+ * Every node is watched, so each processed or punted event is printed in order;
+ * both queues must print the same events and leave the nodes with the same values.
+ */
+public class EvalTest {
+
+	@Test
+	public void testDeck1() throws IOException {
+		System.out.println("deck1");
+		checkDeck(1);
+	}
+
+	@Test
+	public void testDeck2() throws IOException {
+		System.out.println("deck2");
+		checkDeck(2);
+	}
+
+	@Test
+	public void testResizedQueue() throws IOException {
+		System.out.println("resizedQueue");
+		// enough chains that the pending events outgrow the smallest wheel
+		int chains = 1500, stages = 3;
+		String deck = EvalBenchmark.makeChainsDeck(chains, 8);
+		List<String> fixed = new ArrayList<String>();
+		List<String> calendar = new ArrayList<String>();
+		Sim fixedSim = run(false, chains, stages, deck, fixed);
+		Sim calendarSim = run(true, chains, stages, deck, calendar);
+		assertEquals(0, fixedSim.getModel().numResizes);
+		assertTrue(calendarSim.getModel().numResizes > 0);
+		assertEquals(fixedSim.getNumEvents(), calendarSim.getNumEvents());
+		assertEquals(fixed, calendar);
+	}
+
+	private static void checkDeck(int deck) throws IOException {
+		List<String> fixed = new ArrayList<String>();
+		List<String> calendar = new ArrayList<String>();
+		Sim fixedSim = run(false, deck, fixed);
+		Sim calendarSim = run(true, deck, calendar);
+		assertTrue(fixedSim.getNumEvents() > 0);
+		assertEquals(fixedSim.getNumEvents(), calendarSim.getNumEvents());
+		assertEquals(fixed, calendar);
+	}
+
+	/** Plays a bundled deck on its network and collects the events and the final node values. */
+	private static Sim run(boolean calendarQueue, int deck, List<String> lines) throws IOException {
+		Sim sim = EvalBenchmark.newSim();
+		sim.getModel().calendarQueue = calendarQueue;
+		Analyzer analyzer = EvalBenchmark.newAnalyzer(sim);
+		EvalBenchmark.makeDeckNetwork(deck, analyzer);
+		play(sim, analyzer, new InputStreamReader(EvalTest.class.getResourceAsStream("IRSIM-" + deck + ".cmd")), lines);
+		return sim;
+	}
+
+	/** Plays a deck on chains of NAND gates and collects the events and the final node values. */
+	private static Sim run(boolean calendarQueue, int chains, int stages, String deck, List<String> lines) throws IOException {
+		Sim sim = EvalBenchmark.newSim();
+		sim.getModel().calendarQueue = calendarQueue;
+		Analyzer analyzer = EvalBenchmark.newAnalyzer(sim);
+		EvalBenchmark.makeChainsNetwork(chains, stages, analyzer);
+		play(sim, analyzer, new StringReader(deck), lines);
+		return sim;
+	}
+
+	private static void play(Sim sim, Analyzer analyzer, Reader reader, List<String> lines) throws IOException {
+		for (SimAPI.Node n : sim.getNodes())
+			n.setFlags(SimAPI.WATCHED);
+		ByteArrayOutputStream trace = new ByteArrayOutputStream();
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(trace, true));
+		try {
+			EvalBenchmark.play(analyzer, reader);
+		} finally {
+			System.setOut(out);
+		}
+		lines.addAll(Arrays.asList(trace.toString().split("\n")));
+		for (SimAPI.Node n : sim.getNodes())
+			lines.add(n.getName() + " = " + Sim.vChars.charAt(((Sim.Node)n).nPot));
+	}
+}
@@ -0,0 +1,130 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PrimitiveShapesTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.technology;
+
+import com.sun.electric.database.CellBackup;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.geometry.EGraphics;
+import com.sun.electric.database.geometry.Poly;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.PrimitiveNodeId;
+import com.sun.electric.technology.technologies.Generic;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of PrimitiveShapes.
+ * The cached shapes of the regression cells must be the shapes which AbstractShapeBuilder generates.
+ */
+public class PrimitiveShapesTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testPlacementTests() throws Exception {
+        Library lib = loadLibrary("placementTests");
+        int numCells = 0;
+        for (Iterator<Cell> it = lib.getCells(); it.hasNext();) {
+            CellBackup cellBackup = it.next().backup();
+            PrimitiveShapes shapes = cellBackup.getPrimitiveShapes();
+            assertSame(shapes, cellBackup.getPrimitiveShapes());
+            assertEquals(generate(cellBackup), replay(shapes));
+            numCells++;
+        }
+        assertTrue(numCells > 0);
+    }
+
+    /**
+     * Shape builder which prints the shapes of each Layer.
+     * Shapes of a Layer are sorted, because PrimitiveShapes passes the boxes before other polys.
+     */
+    private static class PrintingShapeBuilder extends AbstractShapeBuilder {
+
+        private final Map<Layer, List<String>> shapes = new TreeMap<Layer, List<String>>();
+
+        private void add(Layer layer, String s) {
+            List<String> l = shapes.get(layer);
+            if (l == null) {
+                l = new ArrayList<String>();
+                shapes.put(layer, l);
+            }
+            l.add(s);
+        }
+
+        @Override
+        protected void addPoly(int numPoints, Poly.Type style, Layer layer, EGraphics graphicsOverride, PrimitivePort pp) {
+            if (layer == null) {
+                return;
+            }
+            StringBuilder sb = new StringBuilder(style.toString());
+            for (int i = 0; i < numPoints * 2; i++) {
+                sb.append(' ').append(coords[i]);
+            }
+            add(layer, sb.toString());
+        }
+
+        @Override
+        protected void addBox(Layer layer) {
+            add(layer, "BOX " + coords[0] + " " + coords[1] + " " + coords[2] + " " + coords[3]);
+        }
+    }
+
+    private static Map<Layer, List<String>> generate(CellBackup cellBackup) {
+        PrintingShapeBuilder b = new PrintingShapeBuilder();
+        b.setup(cellBackup, null, false, true, false, null);
+        for (ImmutableArcInst a : cellBackup.cellRevision.arcs) {
+            b.genShapeOfArc(a);
+        }
+        for (ImmutableNodeInst n : cellBackup.cellRevision.nodes) {
+            if (!(n.protoId instanceof PrimitiveNodeId) || n.is(ImmutableNodeInst.VIS_INSIDE)) {
+                continue;
+            }
+            PrimitiveNode pn = cellBackup.techPool.getPrimitiveNode((PrimitiveNodeId) n.protoId);
+            if (pn != Generic.tech().cellCenterNode && pn != Generic.tech().essentialBoundsNode) {
+                pn.genShape(b, n);
+            }
+        }
+        return sorted(b.shapes);
+    }
+
+    private static Map<Layer, List<String>> replay(PrimitiveShapes shapes) {
+        PrintingShapeBuilder b = new PrintingShapeBuilder();
+        shapes.genShapes(b);
+        return sorted(b.shapes);
+    }
+
+    private static Map<Layer, List<String>> sorted(Map<Layer, List<String>> shapes) {
+        for (List<String> l : shapes.values()) {
+            Collections.sort(l);
+        }
+        return shapes;
+    }
+}
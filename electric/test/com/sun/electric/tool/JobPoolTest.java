@@ -0,0 +1,188 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JobPoolTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of JobPool and of the MultiTaskPool it runs on.
+ */
+public class JobPoolTest {
+
+    @Test
+    public void testResultsInOrder() throws Exception {
+        List<Integer> results = JobPool.invokeAll(squares(100));
+        assertEquals(100, results.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i * i), results.get(i));
+        }
+    }
+
+    @Test
+    public void testEmptyLists() throws Exception {
+        assertTrue(JobPool.invokeAll(new ArrayList<Callable<Integer>>()).isEmpty());
+        JobPool.runAll(Collections.<Runnable>emptyList());
+        assertEquals(Integer.valueOf(0), JobPool.invokeAll(squares(1)).get(0));
+    }
+
+    @Test
+    public void testException() throws Exception {
+        List<Callable<Integer>> tasks = squares(50);
+        tasks.set(17, new Callable<Integer>() {
+            public Integer call() {
+                throw new IllegalStateException("piece 17");
+            }
+        });
+        try {
+            JobPool.invokeAll(tasks);
+            fail("the exception of a piece must be thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("piece 17", e.getCause().getMessage());
+        }
+
+        List<Runnable> runnables = new ArrayList<Runnable>();
+        for (int i = 0; i < 10; i++) {
+            final int index = i;
+            runnables.add(new Runnable() {
+                public void run() {
+                    if (index == 3) {
+                        throw new UnsupportedOperationException();
+                    }
+                }
+            });
+        }
+        try {
+            JobPool.runAll(runnables);
+            fail("the exception of a piece must be thrown");
+        } catch (UnsupportedOperationException e) {
+        }
+
+        // the pool still works after a failure
+        assertEquals(Integer.valueOf(81), JobPool.invokeAll(squares(10)).get(9));
+    }
+
+    @Test
+    public void testNestedFromWorker() throws Exception {
+        // every piece splits itself further and starts a piece of its own, several levels deep
+        final int numOuter = 4 * (JobPool.getNumThreads() + 1);
+        List<Callable<Integer>> outer = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < numOuter; i++) {
+            outer.add(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    Future<Integer> single = JobPool.submit(new Callable<Integer>() {
+                        public Integer call() throws Exception {
+                            return Integer.valueOf(sum(JobPool.invokeAll(squares(10))));
+                        }
+                    });
+                    int sum = sum(JobPool.invokeAll(squares(20)));
+                    return Integer.valueOf(sum + JobPool.getResult(single).intValue());
+                }
+            });
+        }
+        List<Integer> results = JobPool.invokeAll(outer);
+        assertEquals(numOuter, results.size());
+        for (Integer result : results) {
+            assertEquals(2470 + 285, result.intValue());
+        }
+    }
+
+    @Test
+    public void testSubmitRunsInCaller() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        Future<Integer> future = JobPool.submit(new Callable<Integer>() {
+            public Integer call() {
+                runs.incrementAndGet();
+                return Integer.valueOf(42);
+            }
+        });
+        assertEquals(Integer.valueOf(42), JobPool.getResult(future));
+        assertEquals(Integer.valueOf(42), JobPool.getResult(future));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testInterrupt() throws Exception {
+        // the caller is interrupted while the helpers are still busy
+        final Thread caller = Thread.currentThread();
+        int numTasks = 2 * (JobPool.getNumThreads() + 1);
+        final AtomicInteger done = new AtomicInteger();
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < numTasks; i++) {
+            final int index = i;
+            tasks.add(new Callable<Integer>() {
+                public Integer call() {
+                    if (Thread.currentThread() != caller) {
+                        caller.interrupt();
+                    }
+                    // busy wait, which does not notice the interrupt
+                    long end = System.nanoTime() + 50 * 1000 * 1000;
+                    while (System.nanoTime() < end) {
+                    }
+                    done.incrementAndGet();
+                    return Integer.valueOf(index);
+                }
+            });
+        }
+        List<Integer> results;
+        try {
+            results = JobPool.invokeAll(tasks);
+        } finally {
+            // clears the interrupt status for the following tests
+            assertTrue(Thread.interrupted() || JobPool.getNumThreads() == 0);
+        }
+        assertEquals(numTasks, done.get());
+        for (int i = 0; i < numTasks; i++) {
+            assertEquals(Integer.valueOf(i), results.get(i));
+        }
+    }
+
+    private static List<Callable<Integer>> squares(int n) {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < n; i++) {
+            final int value = i;
+            tasks.add(new Callable<Integer>() {
+                public Integer call() {
+                    return Integer.valueOf(value * value);
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private static int sum(List<Integer> values) {
+        int sum = 0;
+        for (Integer v : values) {
+            sum += v.intValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,133 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: StreamClientTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Snapshot;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.IdReader;
+import com.sun.electric.database.id.IdWriter;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the stream from the server to a client, with and without the compact transport.
+ * The stream is written by StreamClient and read back as ClientJobManager reads it,
+ * into a Snapshot of another IdManager, as in the client process.
+ */
+public class StreamClientTest extends AbstractJunitBaseClass {
+
+    private static final int NUM_SNAPSHOTS = 3;
+
+    @Test
+    public void testCompactTransport() throws Exception {
+        EDatabase database = EDatabase.serverDatabase();
+        database.lowLevelBeginChanging(null);
+        EditingPreferences ep = new EditingPreferences(true, database.getTechPool());
+        Technology tech = Technology.findTechnology("mocmos");
+        Library lib = Library.newInst("streamClientTest", null);
+        Cell cell = Cell.makeInstance(ep, lib, "stream{lay}");
+
+        // both connections send the events queued after they were made
+        ByteArrayOutputStream plainOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream compactOut = new ByteArrayOutputStream();
+        StreamClient plain = new StreamClient(7, null, plainOut, false);
+        StreamClient compact = new StreamClient(8, null, compactOut, true);
+
+        // the progress of a Job, and the end of the session
+        Snapshot last = null;
+        for (int i = 0; i < NUM_SNAPSHOTS; i++) {
+            for (int j = 0; j < 50; j++) {
+                LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Node"), ep, i * 100, j * 10, 4, 4, 0, cell);
+            }
+            last = database.backup();
+            Client.putEvent(new Client.SnapshotEvent(last));
+        }
+        Client.putEvent(new Client.ShutdownEvent());
+        plain.writeEvents();
+        compact.writeEvents();
+        byte[] expected = snapshotBytes(last);
+
+        // every SnapshotEvent is sent without the compact transport
+        Snapshot[] plainSnapshot = new Snapshot[1];
+        assertEquals(NUM_SNAPSHOTS, read(plainOut.toByteArray(), 7, plainSnapshot));
+        assertTrue(Arrays.equals(expected, snapshotBytes(plainSnapshot[0])));
+
+        // the compact transport sends only the last one, and is smaller
+        Snapshot[] compactSnapshot = new Snapshot[1];
+        assertEquals(1, read(compactOut.toByteArray(), 8, compactSnapshot));
+        assertTrue(Arrays.equals(expected, snapshotBytes(compactSnapshot[0])));
+        assertTrue(compactOut.size() < plainOut.size());
+    }
+
+    /**
+     * Method to read a stream to a client up to its ShutdownEvent.
+     * @param snapshot the Snapshot read from the stream.
+     * @return the number of SnapshotEvents in the stream.
+     */
+    private static int read(byte[] bytes, int connectionId, Snapshot[] snapshot) throws Exception {
+        InputStream in = new ByteArrayInputStream(bytes);
+        IdManager idManager = new IdManager();
+        IdReader reader = new IdReader(new DataInputStream(in), idManager);
+        assertEquals(Job.PROTOCOL_VERSION, reader.readInt());
+        assertEquals(connectionId, reader.readInt());
+        reader = ClientJobManager.readCompactFlag(reader, in);
+
+        snapshot[0] = idManager.getInitialSnapshot();
+        int numSnapshotEvents = 0;
+        for (;;) {
+            Client.ServerEvent event = ClientJobManager.readEvent(reader, snapshot);
+            if (event == null)
+                continue;
+            if (event instanceof Client.ShutdownEvent)
+                return numSnapshotEvents;
+            assertTrue(event instanceof Client.SnapshotEvent);
+            assertSame(snapshot[0], event.getSnapshot());
+            numSnapshotEvents++;
+        }
+    }
+
+    /**
+     * Method to write a whole Snapshot, which compares Snapshots of different IdManagers.
+     */
+    private static byte[] snapshotBytes(Snapshot snapshot) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IdWriter writer = new IdWriter(snapshot.idManager, new DataOutputStream(out));
+        snapshot.writeDiffs(writer, snapshot.idManager.getInitialSnapshot());
+        writer.flush();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,167 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: DRCRegionTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.drc;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Snapshot;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the incremental DRC in the changed regions of a cell.
+ * A 10x10 metal square is at (0,0), and a metal arc runs from (0,20) to (20,20).
+ */
+public class DRCRegionTest extends AbstractJunitBaseClass {
+
+	private static final Rectangle2D SQUARE = new Rectangle2D.Double(-5, -5, 10, 10);
+
+	private EDatabase database;
+	private Cell cell;
+	private NodeInst square;
+	private ArcInst arc;
+
+	@Test
+	public void testAddedObjects() throws Exception {
+		Snapshot empty = makeCell("drcAdded");
+		Snapshot added = database.backup();
+		List<Rectangle2D> regions = DRC.getChangedRegions(empty, added, cell.getId());
+
+		// the square, the two pins and the arc
+		assertEquals(4, regions.size());
+		assertTrue(regions.contains(SQUARE));
+		assertArcRegion(regions);
+		assertTrue(DRC.getChangedRegions(added, added, cell.getId()).isEmpty());
+	}
+
+	@Test
+	public void testMovedNode() throws Exception {
+		makeCell("drcMoved");
+		Snapshot before = database.backup();
+		square.move(30, 0);
+		Snapshot after = database.backup();
+
+		// the new place and the old place
+		assertEquals(Arrays.asList(new Rectangle2D.Double(25, -5, 10, 10), SQUARE),
+			DRC.getChangedRegions(before, after, cell.getId()));
+	}
+
+	@Test
+	public void testDeletedObjects() throws Exception {
+		makeCell("drcDeleted");
+		Snapshot before = database.backup();
+		square.kill();
+		Snapshot withoutSquare = database.backup();
+		assertEquals(Collections.singletonList(SQUARE), DRC.getChangedRegions(before, withoutSquare, cell.getId()));
+
+		Rectangle2D arcBounds = arc.getBounds();
+		arc.kill();
+		Snapshot withoutArc = database.backup();
+		List<Rectangle2D> regions = DRC.getChangedRegions(withoutSquare, withoutArc, cell.getId());
+		assertEquals(1, regions.size());
+		assertTrue(regions.get(0).contains(arcBounds));
+	}
+
+	@Test
+	public void testHalo() {
+		List<Rectangle2D> regions = Collections.singletonList(SQUARE);
+		assertEquals(Collections.singletonList(new Rectangle2D.Double(-8, -8, 16, 16)), DRC.growRegions(regions, 3));
+
+		// no spacing rule was found: the regions must not shrink
+		assertEquals(regions, DRC.growRegions(regions, -1));
+		assertEquals(regions, DRC.growRegions(regions, 0));
+	}
+
+	@Test
+	public void testKeepErrorsOutsideRegions() throws Exception {
+		makeCell("drcErrors");
+		NodeInst far = LayoutLib.newNodeInst(Technology.findTechnology("mocmos").findNodeProto("Metal-1-Node"),
+			new EditingPreferences(true, database.getTechPool()), 100, 0, 10, 10, 0, cell);
+		ErrorLogger logger = ErrorLogger.newInstance("DRC region test");
+		logger.logError("near", square, cell, null, 0);
+		logger.logError("far", far, cell, null, 0);
+		logger.logError("arc", arc, cell, null, 0);
+		logger.termLogging(false);
+
+		// only the error on the square is checked again
+		List<Rectangle2D> regions = DRC.growRegions(Collections.<Rectangle2D>singletonList(new Rectangle2D.Double(-10, -10, 4, 4)), 2);
+		assertEquals(Arrays.asList("near"), messages(DRC.getLogsInRegions(logger, cell, regions)));
+
+		// the error on the deleted arc is checked again wherever it was
+		arc.kill();
+		assertEquals(Arrays.asList("near", "arc"), messages(DRC.getLogsInRegions(logger, cell, regions)));
+		assertEquals(Arrays.asList("arc"), messages(DRC.getLogsInRegions(logger, cell, Collections.<Rectangle2D>emptyList())));
+	}
+
+	/**
+	 * Method to build the cell of this test.
+	 * @return the snapshot before the cell was filled.
+	 */
+	private Snapshot makeCell(String libName) {
+		database = EDatabase.serverDatabase();
+		database.lowLevelBeginChanging(null);
+		EditingPreferences ep = new EditingPreferences(true, database.getTechPool());
+		Technology tech = Technology.findTechnology("mocmos");
+		Library lib = Library.newInst(libName, null);
+		cell = Cell.makeInstance(ep, lib, "regions{lay}");
+		Snapshot empty = database.backup();
+		square = LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Node"), ep, 0, 0, 10, 10, 0, cell);
+		NodeInst pin1 = LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Pin"), ep, 0, 20, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+		NodeInst pin2 = LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Pin"), ep, 20, 20, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+		arc = LayoutLib.newArcInst(tech.findArcProto("Metal-1"), ep, LayoutLib.DEF_SIZE, pin1.getOnlyPortInst(), pin2.getOnlyPortInst());
+		return empty;
+	}
+
+	private void assertArcRegion(List<Rectangle2D> regions) {
+		// arc regions include the largest layer extension, so they may be larger than the arc
+		Rectangle2D arcBounds = arc.getBounds();
+		for (Rectangle2D region : regions) {
+			if (region.contains(arcBounds)) {
+				assertEquals(10, region.getCenterX(), 0);
+				assertEquals(20, region.getCenterY(), 0);
+				return;
+			}
+		}
+		fail("no region of the arc");
+	}
+
+	private static List<String> messages(List<ErrorLogger.MessageLog> logs) {
+		String[] messages = new String[logs.size()];
+		for (int i = 0; i < messages.length; i++)
+			messages[i] = logs.get(i).getMessageString();
+		return Arrays.asList(messages);
+	}
+}
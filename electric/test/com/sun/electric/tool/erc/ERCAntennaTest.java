@@ -0,0 +1,83 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ERCAntennaTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.erc;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.geometry.EPoint;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the hierarchical Antenna check.
+ * Each checked layer is a cut-off level: arcs on layers which are made later do not connect it yet.
+ */
+public class ERCAntennaTest extends AbstractJunitBaseClass {
+
+	@Test
+	public void testDiffusionThroughHigherMetal() throws Exception {
+		// a gate wired by poly and metal-1 to metal-2, which reaches diffusion through metal-1 again
+		EDatabase.serverDatabase().lowLevelBeginChanging(null);
+		EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+		Technology tech = Technology.findTechnology("mocmos");
+		Library lib = Library.newInst("antennaTest", null);
+		Cell cell = Cell.makeInstance(ep, lib, "antenna{lay}");
+		NodeInst tran = LayoutLib.newNodeInst(tech.findNodeProto("N-Transistor"), ep, 0, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+		EPoint gate = tran.getTransistorGatePort().getCenter();
+		double x = gate.getX() - 20, y = gate.getY();
+		NodeInst polyCon = makeNode(tech, "Metal-1-Polysilicon-1-Con", ep, x, y, cell);
+		NodeInst via1 = makeNode(tech, "Metal-1-Metal-2-Con", ep, x, y + 40, cell);
+		NodeInst via2 = makeNode(tech, "Metal-1-Metal-2-Con", ep, x + 60, y + 40, cell);
+		NodeInst diffCon = makeNode(tech, "Metal-1-N-Active-Con", ep, x + 60, y, cell);
+		LayoutLib.newArcInst(tech.findArcProto("Polysilicon-1"), ep, LayoutLib.DEF_SIZE, tran.getTransistorGatePort(), polyCon.getOnlyPortInst());
+		LayoutLib.newArcInst(tech.findArcProto("Metal-1"), ep, LayoutLib.DEF_SIZE, polyCon.getOnlyPortInst(), via1.getOnlyPortInst());
+		LayoutLib.newArcInst(tech.findArcProto("Metal-2"), ep, LayoutLib.DEF_SIZE, via1.getOnlyPortInst(), via2.getOnlyPortInst());
+		LayoutLib.newArcInst(tech.findArcProto("Metal-1"), ep, LayoutLib.DEF_SIZE, via2.getOnlyPortInst(), diffCon.getOnlyPortInst());
+
+		// poly and metal-1 are made before the diffusion is reached, so both are errors
+		assertEquals(2, check(cell, tech));
+	}
+
+	private static NodeInst makeNode(Technology tech, String name, EditingPreferences ep, double x, double y, Cell cell) {
+		return LayoutLib.newNodeInst(tech.findNodeProto(name), ep, x, y, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+	}
+
+	private static int check(Cell cell, Technology tech) {
+		ERCAntenna.AntennaPreferences prefs = new ERCAntenna.AntennaPreferences(true, cell.getDatabase().getTechPool());
+		prefs.disablePopups = true;
+		prefs.hierarchical = true;
+		prefs.maxProc = 2;
+		// any poly or metal-1 on a gate is too much, and metal-2 is never too much
+		prefs.antennaRatio.put(tech.findArcProto("Polysilicon-1").getId(), Double.valueOf(0.001));
+		prefs.antennaRatio.put(tech.findArcProto("Metal-1").getId(), Double.valueOf(0.001));
+		prefs.antennaRatio.put(tech.findArcProto("Metal-2").getId(), Double.valueOf(1e9));
+		return ERCAntenna.checkERCAntenna(cell, prefs, null);
+	}
+}
@@ -0,0 +1,137 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: AreaCoverageTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.extract;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.geometry.GeometryHandler;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of area coverage.
+ * The areas measured by LayerDensityMap must be the same as those measured by merging the geometry
+ * of each window with LayerCoverageData, and the same as the areas of the Cell counted once in every window.
+ * <P>
+ * The Cell is 55 by 10 lambda, from (-5,-5) to (50,5). Two instances of a Cell with two overlapping
+ * 10x10 metal-1 squares (150 square lambda each) are at x=0 and x=40,
+ * and a 20x4 metal-2 bar (80 square lambda) is between them, from x=10 to x=30.
+ */
+public class AreaCoverageTest extends AbstractJunitBaseClass {
+
+	private static final double EPSILON = 1e-6;
+
+	private Technology tech;
+
+	@Test
+	public void testOneWindow() throws Exception {
+		Cell cell = makeCell("areaCoverageOne");
+		Map<Layer,Double> areas = measure(cell, 55, 10, 55, 10);
+		assertArea(300, areas, "Metal-1");
+		assertArea(80, areas, "Metal-2");
+		assertEquals(2, areas.size());
+	}
+
+	@Test
+	public void testTiledWindows() throws Exception {
+		// each instance lies entirely inside of a window, and the bar is cut in two
+		Cell cell = makeCell("areaCoverageTiled");
+		Map<Layer,Double> areas = measure(cell, 27.5, 10, 27.5, 10);
+		assertArea(300, areas, "Metal-1");
+		assertArea(80, areas, "Metal-2");
+	}
+
+	@Test
+	public void testOverlappingWindows() throws Exception {
+		// windows start at x=-5, 8.75, 22.5 and 36.25, so everything right of x=8.75 is in two windows
+		Cell cell = makeCell("areaCoverageOverlapping");
+		Map<Layer,Double> areas = measure(cell, 27.5, 10, 13.75, 10);
+		assertArea(13.75*10 + 1.25*10*2 + 150*2, areas, "Metal-1");
+		assertArea(80*2, areas, "Metal-2");
+	}
+
+	/**
+	 * Method to build the Cell of this test.
+	 */
+	private Cell makeCell(String libName) {
+		EDatabase.serverDatabase().lowLevelBeginChanging(null);
+		EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+		tech = Technology.findTechnology("mocmos");
+		Library lib = Library.newInst(libName, null);
+		Cell leaf = Cell.makeInstance(ep, lib, "squares{lay}");
+		LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Node"), ep, 0, 0, 10, 10, 0, leaf);
+		LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Node"), ep, 5, 0, 10, 10, 0, leaf);
+		Cell cell = Cell.makeInstance(ep, lib, "coverage{lay}");
+		LayoutLib.newNodeInst(leaf, ep, 0, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+		LayoutLib.newNodeInst(leaf, ep, 40, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+		LayoutLib.newNodeInst(tech.findNodeProto("Metal-2-Node"), ep, 20, 0, 20, 4, 0, cell);
+		assertEquals(55, cell.getBounds().getWidth(), 0);
+		assertEquals(10, cell.getBounds().getHeight(), 0);
+		return cell;
+	}
+
+	/**
+	 * Method to measure a Cell with windows of a given size and step, in lambda.
+	 * The areas of LayerDensityMap are checked against both merging algorithms of LayerCoverageData.
+	 * @return the area of each layer measured by LayerDensityMap, summed over all windows.
+	 */
+	private static Map<Layer,Double> measure(Cell cell, double width, double height, double deltaX, double deltaY) {
+		LayerCoverageTool.LayerCoveragePreferences lcp = new LayerCoverageTool.LayerCoveragePreferences(true);
+		double techScale = cell.getTechnology().getScale();
+		lcp.widthInMicrons = width * techScale;
+		lcp.heightInMicrons = height * techScale;
+		lcp.deltaXInMicrons = deltaX * techScale;
+		lcp.deltaYInMicrons = deltaY * techScale;
+
+		Map<Layer,Double> density = LayerCoverageTool.layerCoverageCommand(cell, false, lcp);
+		assertNotNull(density);
+		for (GeometryHandler.GHMode mode : new GeometryHandler.GHMode[] {GeometryHandler.GHMode.ALGO_SWEEP, GeometryHandler.GHMode.ALGO_MERGE}) {
+			Map<Layer,Double> merged = LayerCoverageTool.layerCoverageCommand(cell, mode, false, lcp);
+			assertNotNull(merged);
+			for (Map.Entry<Layer,Double> e : merged.entrySet()) {
+				double expected = e.getValue().doubleValue();
+				Double area = density.get(e.getKey());
+				String msg = mode + " " + e.getKey().getName();
+				assertEquals(msg, expected, area != null ? area.doubleValue() : 0, EPSILON * Math.max(1, expected));
+			}
+			for (Layer layer : density.keySet()) {
+				assertTrue(mode + " " + layer.getName(), merged.containsKey(layer));
+			}
+		}
+		return density;
+	}
+
+	private void assertArea(double expected, Map<Layer,Double> areas, String layerName) {
+		Double area = areas.get(tech.findLayer(layerName));
+		assertNotNull(layerName, area);
+		assertEquals(layerName, expected, area.doubleValue(), EPSILON * expected);
+	}
+}
@@ -0,0 +1,77 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: LayerDensityMapTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.extract;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the rectangle sweep of LayerDensityMap.
+ * Results are compared with a raster of the same rectangles.
+ */
+public class LayerDensityMapTest {
+
+	private static final int SIZE = 40;
+
+	@Test
+	public void testUnionArea() {
+		long[] rects = { 0, 0, 10, 10,  5, 5, 15, 15,  20, 0, 30, 5 };
+		assertEquals(100 + 100 - 25 + 50, LayerDensityMap.unionArea(rects, 3));
+		assertEquals(0, LayerDensityMap.unionArea(rects, 0));
+	}
+
+	@Test
+	public void testRandom() {
+		Random rand = new Random(4321);
+		for (int iter = 0; iter < 500; iter++) {
+			int numRects = 1 + rand.nextInt(20);
+			long[] rects = new long[numRects*4];
+			boolean[][] raster = new boolean[SIZE][SIZE];
+			for (int i = 0; i < numRects; i++) {
+				int lx = rand.nextInt(SIZE), ly = rand.nextInt(SIZE);
+				int hx = lx + 1 + rand.nextInt(SIZE - lx), hy = ly + 1 + rand.nextInt(SIZE - ly);
+				rects[i*4] = lx;
+				rects[i*4+1] = ly;
+				rects[i*4+2] = hx;
+				rects[i*4+3] = hy;
+				for (int x = lx; x < hx; x++)
+					for (int y = ly; y < hy; y++) raster[x][y] = true;
+			}
+			long expected = 0;
+			for (int x = 0; x < SIZE; x++)
+				for (int y = 0; y < SIZE; y++) if (raster[x][y]) expected++;
+			assertEquals(expected, LayerDensityMap.unionArea(rects, numRects));
+
+			// merged rectangles are disjoint and cover the same grid squares
+			long[] merged = LayerDensityMap.mergeRectangles(rects, numRects);
+			int[][] count = new int[SIZE][SIZE];
+			for (int i = 0; i < merged.length; i += 4) {
+				for (long x = merged[i]; x < merged[i+2]; x++)
+					for (long y = merged[i+1]; y < merged[i+3]; y++) count[(int)x][(int)y]++;
+			}
+			for (int x = 0; x < SIZE; x++)
+				for (int y = 0; y < SIZE; y++) assertEquals(raster[x][y] ? 1 : 0, count[x][y]);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GDSReaderTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit test of GDSReader.
+ * A small GDS file is read from a stream and from a memory-mapped file, and both must give the same tokens.
+ */
+public class GDSReaderTest {
+
+    /**
+     * Test of getToken, of class com.sun.electric.tool.io.GDSReader.
+     */
+    @Test
+    public void testMappedMatchesStream() throws Exception {
+        System.out.println("mappedMatchesStream");
+        byte[] data = makeLibrary();
+        File file = writeFile(data);
+        try {
+            GDSReader stream = new GDSReader(file.getPath(), new DataInputStream(new ByteArrayInputStream(data)), data.length);
+            GDSReader mapped = new GDSReader(file.getPath(), file);
+            assertFalse(stream.isMemoryMapped());
+            assertTrue(mapped.isMemoryMapped());
+            assertEquals(data.length, mapped.getFileLength());
+            int numTokens = 0;
+            do {
+                stream.getToken();
+                mapped.getToken();
+                assertSame(stream.getTokenType(), mapped.getTokenType());
+                assertEquals(stream.getRemainingDataCount(), mapped.getRemainingDataCount());
+                assertEquals(stream.getShortValue(), mapped.getShortValue());
+                assertEquals(stream.getIntValue(), mapped.getIntValue());
+                assertEquals(stream.getDoubleValue(), mapped.getDoubleValue(), 0);
+                assertEquals(stream.getStringValue(), mapped.getStringValue());
+                numTokens++;
+            } while (stream.getTokenType() != GDSReader.GDS_ENDLIB);
+            assertTrue(numTokens > 40);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test of seek, skipRecord and duplicate, of class com.sun.electric.tool.io.GDSReader.
+     */
+    @Test
+    public void testSeekAndDuplicate() throws Exception {
+        System.out.println("seekAndDuplicate");
+        byte[] data = makeLibrary();
+        File file = writeFile(data);
+        try {
+            // find the structures by skipping records
+            GDSReader mapped = new GDSReader(file.getPath(), file);
+            List<Long> starts = new ArrayList<Long>();
+            int numRecords = 0;
+            do {
+                mapped.getToken();
+                if (mapped.getTokenType() == GDSReader.GDS_BGNSTR) {
+                    starts.add(Long.valueOf(mapped.getRecordStart()));
+                }
+                mapped.skipRecord();
+                numRecords++;
+            } while (mapped.getTokenType() != GDSReader.GDS_ENDLIB);
+            assertEquals(20, numRecords);
+            assertEquals(2, starts.size());
+
+            // each copy reads a structure from its own position
+            GDSReader copy = mapped.duplicate();
+            copy.seek(starts.get(1).longValue());
+            mapped.seek(starts.get(0).longValue());
+            assertEquals("CELL_A", readStructureName(mapped));
+            assertEquals("CELL_B", readStructureName(copy));
+            copy.getToken();
+            assertSame(GDSReader.GDS_SREF, copy.getTokenType());
+            copy.getToken();
+            assertSame(GDSReader.GDS_SNAME, copy.getTokenType());
+            copy.getToken();
+            assertEquals("CELL_A", copy.getStringValue());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static String readStructureName(GDSReader reader) throws Exception {
+        reader.getToken();
+        assertSame(GDSReader.GDS_BGNSTR, reader.getTokenType());
+        reader.skipRecord();
+        reader.getToken();
+        assertSame(GDSReader.GDS_STRNAME, reader.getTokenType());
+        reader.getToken();
+        return reader.getStringValue();
+    }
+
+    private static File writeFile(byte[] data) throws IOException {
+        File file = File.createTempFile("GDSReaderTest", ".gds");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Method to make a library with a cell that has a box and a cell that has an instance of it.
+     */
+    private static byte[] makeLibrary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        short[] time = {2016, 1, 2, 3, 4, 5, 2016, 1, 2, 3, 4, 5};
+        writeShorts(out, 0x00, 600);
+        writeShorts(out, 0x01, time);
+        writeString(out, 0x02, "LIB");
+        // units of 1.0 and 1.0 in GDS real format
+        out.writeShort(20);
+        out.writeShort(0x0305);
+        out.writeLong(0x4110000000000000L);
+        out.writeLong(0x4110000000000000L);
+
+        writeShorts(out, 0x05, time);
+        writeString(out, 0x06, "CELL_A");
+        writeShorts(out, 0x08);
+        writeShorts(out, 0x0D, 1);
+        writeShorts(out, 0x0E, 0);
+        writeInts(out, 0x10, 0, 0, 100, 0, 100, 50, 0, 50, 0, 0);
+        writeShorts(out, 0x11);
+        writeShorts(out, 0x07);
+
+        writeShorts(out, 0x05, time);
+        writeString(out, 0x06, "CELL_B");
+        writeShorts(out, 0x0A);
+        writeString(out, 0x12, "CELL_A");
+        writeInts(out, 0x10, -200, 300);
+        writeShorts(out, 0x11);
+        writeShorts(out, 0x07);
+        writeShorts(out, 0x04);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeShorts(DataOutputStream out, int recordType, int... values) throws IOException {
+        out.writeShort(4 + values.length * 2);
+        out.writeByte(recordType);
+        out.writeByte(values.length == 0 ? 0 : 2);
+        for (int v : values) {
+            out.writeShort(v);
+        }
+    }
+
+    private static void writeShorts(DataOutputStream out, int recordType, short[] values) throws IOException {
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ints[i] = values[i];
+        }
+        writeShorts(out, recordType, ints);
+    }
+
+    private static void writeInts(DataOutputStream out, int recordType, int... values) throws IOException {
+        out.writeShort(4 + values.length * 4);
+        out.writeByte(recordType);
+        out.writeByte(3);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, int recordType, String s) throws IOException {
+        // strings are padded to an even length
+        int length = (s.length() + 1) & ~1;
+        out.writeShort(4 + length);
+        out.writeByte(recordType);
+        out.writeByte(6);
+        out.writeBytes(s);
+        if (length > s.length()) {
+            out.writeByte(0);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GDSTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.util.TextUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the GDS reader.
+ * A layout cell is written to GDS, and the file is read sequentially and in parallel.
+ * Both reads must give the same cells.
+ */
+public class GDSTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testParallelReadMatchesSequential() throws Exception {
+        Cell cell = this.loadCell("placementTests", "PlacementTest4");
+        File file = File.createTempFile("GDSTest", ".gds");
+        try {
+            com.sun.electric.tool.io.output.GDS.GDSPreferences outPrefs = new com.sun.electric.tool.io.output.GDS.GDSPreferences(true, cell);
+            assertNotNull(outPrefs.doOutput(cell, VarContext.globalContext, file.getPath()));
+
+            Library sequential = readGDS(file, "sequentialGDS", cell, false);
+            Library parallel = readGDS(file, "parallelGDS", cell, true);
+            assertTrue(sequential.getNumCells() > 1);
+            assertEquals(sequential.getNumCells(), parallel.getNumCells());
+            for (Iterator<Cell> it = sequential.getCells(); it.hasNext();) {
+                Cell expected = it.next();
+                Cell actual = parallel.findNodeProto(expected.noLibDescribe());
+                assertNotNull(expected.describe(false), actual);
+                assertEquals(expected.describe(false), describeContents(expected), describeContents(actual));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Library readGDS(File file, String libName, Cell cell, boolean parallelRead) {
+        GDS.GDSPreferences inPrefs = new GDS.GDSPreferences(true);
+        inPrefs.parallelRead = parallelRead;
+        EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+        Library lib = Library.newInst(libName, null);
+        Library result = Input.importLibrary(ep, inPrefs, TextUtils.makeURLToFile(file.getPath()), FileType.GDS, lib,
+            cell.getTechnology(), new HashMap<Library, Cell>(), new HashMap<CellId, BitSet>(), false, null);
+        assertSame(lib, result);
+        return lib;
+    }
+
+    /**
+     * Method to describe the nodes, arcs and exports of a cell, independent of their order.
+     */
+    private static List<String> describeContents(Cell cell) {
+        List<String> contents = new ArrayList<String>();
+        for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext();) {
+            NodeInst ni = it.next();
+            String proto = ni.isCellInstance() ? ((Cell) ni.getProto()).noLibDescribe() : ni.getProto().getName();
+            contents.add("node " + proto + " " + ni.getAnchorCenter() + " " + ni.getLambdaBaseXSize() + "x" + ni.getLambdaBaseYSize() +
+                " " + ni.getOrient() + " " + Arrays.toString(ni.getTrace()));
+        }
+        for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext();) {
+            ArcInst ai = it.next();
+            contents.add("arc " + ai.getProto().getName() + " " + ai.getHeadLocation() + " " + ai.getTailLocation());
+        }
+        for (Iterator<Export> it = cell.getExports(); it.hasNext();) {
+            Export e = it.next();
+            contents.add("export " + e.getName() + " " + e.getCharacteristic() + " " + e.getOriginalPort().getCenter());
+        }
+        Collections.sort(contents);
+        return contents;
+    }
+}
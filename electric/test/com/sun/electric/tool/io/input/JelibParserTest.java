@@ -0,0 +1,186 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JelibParserTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.CellRevision;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableExport;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.LibId;
+import com.sun.electric.database.text.CellName;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import com.sun.electric.util.TextUtils;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of parallel parsing of JELIB files and of JelibCache.
+ * A library parsed serially, parsed in parallel and read back from its cache must have the same cells.
+ * The cache must not depend on, nor make ids of, other libraries of the session.
+ */
+public class JelibParserTest extends AbstractJunitBaseClass {
+
+    private static final String LIBNAME = "placementTests";
+    private static final String UNRELATED = "unrelatedLib";
+    private static final String RESOURCE = "/com/sun/electric/tool/util/test/testData/" + LIBNAME + ".jelib";
+
+    @Test
+    public void testParallelParseMatchesSerial() throws Exception {
+        URL fileURL = JelibParserTest.class.getResource(RESOURCE);
+        LibId libId = new IdManager().newLibId(LIBNAME);
+        JELIB2 serial = parse(libId, fileURL, false);
+        JELIB2 parallel = parse(libId, fileURL, true);
+        assertTrue(serial.cellRevisions.size() > 1);
+        assertEquals(describe(serial), describe(parallel));
+        assertEquals(serial.externalLibIds, parallel.externalLibIds);
+    }
+
+    @Test
+    public void testCacheRoundTrip() throws Exception {
+        File dir = File.createTempFile("JelibParserTest", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        File libFile = new File(dir, LIBNAME + ".jelib");
+        File cacheFile = new File(libFile.getPath() + JelibCache.EXTENSION);
+        try {
+            copyResource(RESOURCE, libFile);
+            URL fileURL = TextUtils.makeURLToFile(libFile.getPath());
+            JelibCache cache = JelibCache.find(fileURL, FileType.JELIB);
+            assertNotNull(cache);
+            LibId libId = new IdManager().newLibId(LIBNAME);
+            assertNull(cache.read(libId, null, false));
+
+            JELIB2 parsed = parse(libId, fileURL, false);
+            cache.write(parsed);
+            assertTrue(cacheFile.isFile());
+
+            // the cache is read in another session, whose ids are made by name
+            LibId otherLibId = new IdManager().newLibId(LIBNAME);
+            JELIB2 cached = JelibCache.find(fileURL, FileType.JELIB).read(otherLibId, null, false);
+            assertNotNull(cached);
+            assertEquals(describe(parsed), describe(cached));
+            assertEquals(parsed.externalLibIds.size(), cached.externalLibIds.size());
+            assertEquals(fileURL, cached.libBackup.d.libFile);
+
+            // the cache has only the ids of this library, whatever else the session has
+            byte[] data = readFile(cacheFile);
+            IdManager busyIdManager = new IdManager();
+            busyIdManager.newLibId(UNRELATED).newCellId(CellName.parseName("unrelated{lay}"));
+            JELIB2 busy = parse(busyIdManager.newLibId(LIBNAME), fileURL, false);
+            cache.write(busy);
+            assertTrue(Arrays.equals(data, readFile(cacheFile)));
+
+            // reading the cache makes no ids of other libraries
+            IdManager readIdManager = new IdManager();
+            readIdManager.newLibId(UNRELATED + "0");
+            assertNotNull(JelibCache.find(fileURL, FileType.JELIB).read(readIdManager.newLibId(LIBNAME), null, false));
+            int numLibIds = readIdManager.newLibId(UNRELATED + "1").libIndex;
+            assertEquals(numLibIds + 1, readIdManager.newLibId(UNRELATED).libIndex);
+
+            // a changed library file does not use the old cache
+            FileWriter writer = new FileWriter(libFile, true);
+            try {
+                writer.write("# changed\n");
+            } finally {
+                writer.close();
+            }
+            assertNull(JelibCache.find(fileURL, FileType.JELIB).read(new IdManager().newLibId(LIBNAME), null, false));
+        } finally {
+            cacheFile.delete();
+            libFile.delete();
+            dir.delete();
+        }
+    }
+
+    private static JELIB2 parse(LibId libId, URL fileURL, boolean parallel) throws Exception {
+        ErrorLogger errorLogger = ErrorLogger.newInstance(libId.toString());
+        JELIB2 jelib2 = new JELIB2(libId, JelibParser.parse(libId, fileURL, FileType.JELIB, false, parallel, errorLogger));
+        assertTrue(jelib2.instantiate(null, false));
+        assertEquals(0, errorLogger.getNumErrors());
+        return jelib2;
+    }
+
+    /**
+     * Method to describe the cells of a library by names, so that libraries with different ids can be compared.
+     */
+    private static List<String> describe(JELIB2 jelib2) {
+        List<String> lines = new ArrayList<String>();
+        for (CellRevision cellRevision : jelib2.cellRevisions) {
+            lines.add("cell " + cellRevision.d.cellId + " " + cellRevision.d.groupName + " " + cellRevision.d.techId +
+                " " + cellRevision.d.getNumVariables());
+            for (ImmutableNodeInst n : cellRevision.nodes) {
+                lines.add("node " + n.nodeId + " " + n.name + " " + n.protoId + " " + n.orient + " " + n.anchor + " " + n.size +
+                    " " + n.techBits + " " + n.getNumVariables());
+            }
+            for (ImmutableArcInst a : cellRevision.arcs) {
+                lines.add("arc " + a.arcId + " " + a.name + " " + a.protoId + " " + a.tailNodeId + " " + a.tailPortId + " " + a.tailLocation +
+                    " " + a.headNodeId + " " + a.headPortId + " " + a.headLocation + " " + a.getGridExtendOverMin() + " " + a.getNumVariables());
+            }
+            for (ImmutableExport e : cellRevision.exports) {
+                lines.add("export " + e.exportId + " " + e.name + " " + e.originalNodeId + " " + e.originalPortId + " " + e.characteristic +
+                    " " + e.getNumVariables());
+            }
+        }
+        return lines;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static void copyResource(String resource, File file) throws IOException {
+        InputStream in = JelibParserTest.class.getResourceAsStream(resource);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buf = new byte[1 << 16];
+            for (int n; (n = in.read(buf)) > 0;) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+    }
+}
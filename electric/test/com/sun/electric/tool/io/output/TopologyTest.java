@@ -0,0 +1,119 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: TopologyTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.output;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the cells which Topology analyzes ahead of the traversal.
+ * The layout "top" has three instances of "inv" and one of "nleaf";
+ * "inv" has one instance of "nleaf" and one of "pleaf", which are single transistors.
+ */
+public class TopologyTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testParallelLayoutNetlist() throws Exception {
+        EDatabase.serverDatabase().lowLevelBeginChanging(null);
+        EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+        Technology tech = Technology.findTechnology("mocmos");
+        Library lib = Library.newInst("topologyTest", null);
+        Cell nleaf = makeLeaf(tech, "N-Transistor", ep, lib, "nleaf{lay}");
+        Cell pleaf = makeLeaf(tech, "P-Transistor", ep, lib, "pleaf{lay}");
+        Cell inv = Cell.makeInstance(ep, lib, "inv{lay}");
+        LayoutLib.newNodeInst(nleaf, ep, 0, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, inv);
+        LayoutLib.newNodeInst(pleaf, ep, 0, 50, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, inv);
+        Cell top = Cell.makeInstance(ep, lib, "top{lay}");
+        for (int i = 0; i < 3; i++) {
+            LayoutLib.newNodeInst(inv, ep, i * 100, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, top);
+        }
+        LayoutLib.newNodeInst(nleaf, ep, 300, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, top);
+
+        List<String> serial = writeSpice(top, false);
+        // each cell is written once, after the cells it instantiates
+        List<String> subcircuits = new ArrayList<String>();
+        int numInstances = 0, numTransistors = 0;
+        for (String line : serial) {
+            if (line.startsWith("*** SUBCIRCUIT "))
+                subcircuits.add(line.substring(line.indexOf(" FROM CELL ") + 11).trim());
+            if (line.startsWith("X"))
+                numInstances++;
+            if (line.startsWith("M"))
+                numTransistors++;
+        }
+        assertEquals(Arrays.asList("nleaf{lay}", "pleaf{lay}", "inv{lay}"), subcircuits);
+        assertEquals(2 + 4, numInstances);
+        assertEquals(2, numTransistors);
+
+        assertEquals(serial, writeSpice(top, true));
+    }
+
+    private static Cell makeLeaf(Technology tech, String transistor, EditingPreferences ep, Library lib, String name) {
+        Cell cell = Cell.makeInstance(ep, lib, name);
+        NodeInst ni = LayoutLib.newNodeInst(tech.findNodeProto(transistor), ep, 0, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+        Export.newInst(cell, ni.getTransistorGatePort(), "g", ep);
+        Export.newInst(cell, ni.getTransistorSourcePort(), "s", ep);
+        Export.newInst(cell, ni.getTransistorDrainPort(), "d", ep);
+        return cell;
+    }
+
+    private static List<String> writeSpice(Cell cell, boolean netlistInParallel) throws IOException {
+        File file = File.createTempFile("TopologyTest", ".spi");
+        try {
+            Spice.SpicePreferences prefs = new Spice.SpicePreferences(true, false);
+            prefs.includeDateAndVersionInOutput = false;
+            prefs.netlistInParallel = netlistInParallel;
+            assertNotNull(prefs.doOutput(cell, VarContext.globalContext, file.getPath()));
+            List<String> lines = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                for (String line; (line = reader.readLine()) != null;) {
+                    lines.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+            return lines;
+        } finally {
+            file.delete();
+        }
+    }
+}
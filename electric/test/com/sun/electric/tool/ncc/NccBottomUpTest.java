@@ -0,0 +1,149 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: NccBottomUpTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.ncc;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.ncc.result.NccResult;
+import com.sun.electric.tool.ncc.result.NccResults;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of hierarchical NCC with several threads.
+ * The layout "top" has two instances of "nleaf", a transistor, and one instance of "pleaf".
+ * The two leaves are independent CompareLists, which are compared before "top".
+ * The layout "top2" has one more instance of "nleaf".
+ */
+public class NccBottomUpTest extends AbstractJunitBaseClass {
+
+    private Cell nleaf, pleaf, top, top2;
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        makeCells();
+        List<NccResult> sequential = compare(top, top, 1, false);
+        assertEquals(3, sequential.size());
+        assertEquals(new HashSet<String>(Arrays.asList(nleaf.libDescribe(), pleaf.libDescribe())),
+            new HashSet<String>(Arrays.asList(sequential.get(0).getRootCellNames()[0], sequential.get(1).getRootCellNames()[0])));
+        for (int i = 0; i < 2; i++) {
+            // one transistor with three exports
+            NccResult.CellSummary summary = sequential.get(i).getCellSummary();
+            assertArrayEquals(new int[] {1, 1}, summary.numParts);
+            assertArrayEquals(new int[] {3, 3}, summary.numPorts);
+        }
+        // the leaves are subcircuits of the top
+        NccResult last = sequential.get(2);
+        assertArrayEquals(new String[] {top.libDescribe(), top.libDescribe()}, last.getRootCellNames());
+        assertArrayEquals(new int[] {3, 3}, last.getCellSummary().numParts);
+        for (NccResult r : sequential) {
+            assertEquals("  exports match, topologies match, sizes match", r.summary(true));
+        }
+
+        assertEquals(describe(sequential), describe(compare(top, top, 4, false)));
+        assertEquals(describe(sequential), describe(compare(top, top, 0, false)));
+    }
+
+    @Test
+    public void testParallelMismatchAsSequential() throws Exception {
+        makeCells();
+        for (boolean halt : new boolean[] {false, true}) {
+            List<NccResult> sequential = compare(top, top2, 1, halt);
+            assertEquals(3, sequential.size());
+            assertTrue(sequential.get(0).match());
+            assertTrue(sequential.get(1).match());
+            NccResult last = sequential.get(2);
+            assertArrayEquals(new String[] {top.libDescribe(), top2.libDescribe()}, last.getRootCellNames());
+            assertArrayEquals(new int[] {3, 4}, last.getCellSummary().numParts);
+            assertTrue(last.exportMatch());
+            assertFalse(last.topologyMatch());
+
+            assertEquals(describe(sequential), describe(compare(top, top2, 4, halt)));
+            assertEquals(describe(sequential), describe(compare(top, top2, 0, halt)));
+        }
+    }
+
+    private void makeCells() {
+        EDatabase.serverDatabase().lowLevelBeginChanging(null);
+        EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+        Technology tech = Technology.findTechnology("mocmos");
+        Library lib = Library.newInst("nccBottomUpTest", null);
+        nleaf = makeLeaf(tech, "N-Transistor", ep, lib, "nleaf{lay}");
+        pleaf = makeLeaf(tech, "P-Transistor", ep, lib, "pleaf{lay}");
+        top = Cell.makeInstance(ep, lib, "top{lay}");
+        top2 = Cell.makeInstance(ep, lib, "top2{lay}");
+        for (Cell cell : new Cell[] {top, top2}) {
+            int numN = cell == top ? 2 : 3;
+            for (int i = 0; i < numN; i++) {
+                LayoutLib.newNodeInst(nleaf, ep, i * 50, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+            }
+            LayoutLib.newNodeInst(pleaf, ep, 0, 50, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+        }
+    }
+
+    private static Cell makeLeaf(Technology tech, String transistor, EditingPreferences ep, Library lib, String name) {
+        Cell cell = Cell.makeInstance(ep, lib, name);
+        NodeInst ni = LayoutLib.newNodeInst(tech.findNodeProto(transistor), ep, 0, 0, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+        Export.newInst(cell, ni.getTransistorGatePort(), "g", ep);
+        Export.newInst(cell, ni.getTransistorSourcePort(), "s", ep);
+        Export.newInst(cell, ni.getTransistorDrainPort(), "d", ep);
+        return cell;
+    }
+
+    private static List<NccResult> compare(Cell cell1, Cell cell2, int numThreads, boolean haltAfterFirstMismatch) {
+        NccOptions options = new NccOptions();
+        options.checkSizes = true;
+        options.numThreads = numThreads;
+        options.haltAfterFirstMismatch = haltAfterFirstMismatch;
+        NccResults results = Ncc.compare(cell1, null, cell2, null, options);
+        List<NccResult> list = new ArrayList<NccResult>();
+        for (NccResult r : results) {
+            list.add(r);
+        }
+        return list;
+    }
+
+    private static List<String> describe(List<NccResult> results) {
+        List<String> lines = new ArrayList<String>();
+        for (NccResult r : results) {
+            NccResult.CellSummary summary = r.getCellSummary();
+            lines.add(Arrays.toString(r.getRootCellNames()) + " " + r.summary(true) +
+                " parts " + Arrays.toString(summary.numParts) +
+                " ports " + Arrays.toString(summary.numPorts) +
+                " wires " + Arrays.toString(summary.numWires));
+        }
+        return lines;
+    }
+}
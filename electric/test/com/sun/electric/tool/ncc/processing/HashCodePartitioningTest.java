@@ -0,0 +1,111 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: HashCodePartitioningTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.ncc.processing;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Nodable;
+import com.sun.electric.database.network.Netlist;
+import com.sun.electric.database.network.Network;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.tool.ncc.Ncc;
+import com.sun.electric.tool.ncc.NccOptions;
+import com.sun.electric.tool.ncc.result.NccResult;
+import com.sun.electric.tool.ncc.result.NccResults;
+import com.sun.electric.tool.ncc.result.equivalence.Equivalence;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of hash code partitioning.
+ * Equivalence classes divided by sorting hash codes must be the same as those divided by a map per Circuit:
+ * NCC must give the same results and match the same nets and nodes, also where the matches are chosen at random.
+ */
+public class HashCodePartitioningTest extends AbstractJunitBaseClass {
+
+    @Test
+    public void testSymmetricDesign() throws Exception {
+        // a cell compared with itself is matched by random choices among the symmetric inverters
+        Cell cell = this.loadCell("placementTests", "PlacementTest3");
+        checkSortingMatchesMaps(cell, cell, NccOptions.HIER_EACH_CELL);
+        checkSortingMatchesMaps(cell, cell, NccOptions.FLAT_TOP_CELL);
+    }
+
+    @Test
+    public void testMismatchedDesigns() throws Exception {
+        Cell cell1 = this.loadCell("placementTests", "PlacementTest1");
+        Cell cell2 = this.loadCell("placementTests", "PlacementTest2");
+        Cell cell3 = this.loadCell("placementTests", "PlacementTest3");
+        checkSortingMatchesMaps(cell1, cell2, NccOptions.HIER_EACH_CELL);
+        checkSortingMatchesMaps(cell1, cell3, NccOptions.HIER_EACH_CELL);
+        checkSortingMatchesMaps(cell1, cell3, NccOptions.FLAT_TOP_CELL);
+    }
+
+    private static void checkSortingMatchesMaps(Cell cell1, Cell cell2, int operation) {
+        List<String> byMaps = compare(cell1, cell2, operation, false);
+        List<String> bySorting = compare(cell1, cell2, operation, true);
+        assertFalse(byMaps.isEmpty());
+        assertEquals(byMaps, bySorting);
+    }
+
+    /**
+     * Method to compare two cells and describe the results with the equivalent nets and nodes of each pair of root cells.
+     */
+    private static List<String> compare(Cell cell1, Cell cell2, int operation, boolean sortHashCodes) {
+        NccOptions options = new NccOptions();
+        options.operation = operation;
+        options.checkSizes = true;
+        options.sortHashCodes = sortHashCodes;
+        NccResults results = Ncc.compare(cell1, null, cell2, null, options);
+        List<String> lines = new ArrayList<String>();
+        for (NccResult r : results) {
+            NccResult.CellSummary summary = r.getCellSummary();
+            lines.add(Arrays.toString(r.getRootCellNames()) + " " + r.summary(true) +
+                " parts " + Arrays.toString(summary.numParts) +
+                " ports " + Arrays.toString(summary.numPorts) +
+                " wires " + Arrays.toString(summary.numWires));
+            Equivalence equivalence = r.getEquivalence();
+            if (equivalence == null) continue;
+            Cell root = r.getRootCells()[0];
+            VarContext context = r.getRootContexts()[0];
+            Netlist netlist = root.getNetlist();
+            for (Iterator<Network> it = netlist.getNetworks(); it.hasNext();) {
+                Network net = it.next();
+                lines.add("net " + net.describe(false) + " " + equivalence.findEquivalentNet(context, net));
+            }
+            for (Iterator<Nodable> it = netlist.getNodables(); it.hasNext();) {
+                Nodable no = it.next();
+                lines.add("node " + no.getName() + " " + equivalence.findEquivalentNode(context, no));
+            }
+            if (r.match()) {
+                assertEquals(0, equivalence.regressionTest(r.getRootCells()[0], r.getRootCells()[1]));
+            }
+        }
+        return lines;
+    }
+}
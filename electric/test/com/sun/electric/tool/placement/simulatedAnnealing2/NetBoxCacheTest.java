@@ -0,0 +1,150 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: NetBoxCacheTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.placement.simulatedAnnealing2;
+
+import com.sun.electric.tool.placement.PlacementFrame.PlacementNetwork;
+import com.sun.electric.tool.placement.PlacementFrame.PlacementNode;
+import com.sun.electric.tool.placement.PlacementFrame.PlacementPort;
+import com.sun.electric.util.math.Orientation;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of NetBoxCache. The change of net length of random perturbations is
+ * compared with a full recomputation.
+ */
+public class NetBoxCacheTest {
+
+	private static final Orientation[] ORIENTATIONS = { Orientation.IDENT, Orientation.R, Orientation.RR,
+			Orientation.RRR, Orientation.X, Orientation.XR, Orientation.XRR, Orientation.XRRR };
+
+	private static class TestNode extends PlacementNode {
+		private final List<PlacementPort> ports = new ArrayList<PlacementPort>();
+
+		public List<PlacementPort> getPorts() { return ports; }
+		public double getWidth() { return 4; }
+		public double getHeight() { return 2; }
+		public String getTypeName() { return "test"; }
+	}
+
+	@Test
+	public void testPerturbations() {
+		Random rand = new Random(31415);
+		List<PlacementPort> allPorts = new ArrayList<PlacementPort>();
+		List<ProxyNode> proxies = new ArrayList<ProxyNode>();
+		for (int i = 0; i < 30; i++) {
+			TestNode node = new TestNode();
+			for (int j = 1 + rand.nextInt(4); j > 0; j--) {
+				PlacementPort port = new PlacementPort(rand.nextInt(5) - 2, rand.nextInt(3) - 1);
+				port.setPlacementNode(node);
+				node.ports.add(port);
+				allPorts.add(port);
+			}
+			node.setPlacement(rand.nextInt(20), rand.nextInt(20));
+			node.setOrientation(Orientation.IDENT);
+			proxies.add(new ProxyNode(node, new ArrayList<PlacementNetwork>(), true));
+		}
+
+		// nets of random ports, with small integer coordinates so that pins often share a side
+		List<PlacementNetwork> nets = new ArrayList<PlacementNetwork>();
+		while (allPorts.size() > 1) {
+			List<PlacementPort> ports = new ArrayList<PlacementPort>();
+			for (int j = Math.min(allPorts.size(), 2 + rand.nextInt(7)); j > 0; j--)
+				ports.add(allPorts.remove(rand.nextInt(allPorts.size())));
+			PlacementNetwork net = new PlacementNetwork(ports, false);
+			for (PlacementPort port : ports)
+				port.setPlacementNetwork(net);
+			nets.add(net);
+		}
+
+		NetBoxCache cache = new NetBoxCache(proxies, nets);
+		assertEquals(netLength(nets, proxies), cache.getTotalLength(), 1e-9);
+		for (int iter = 0; iter < 5000; iter++) {
+			double before = netLength(nets, proxies);
+			ProxyNode node1 = proxies.get(rand.nextInt(proxies.size()));
+			ProxyNode node2 = proxies.get(rand.nextInt(proxies.size()));
+			double x1 = node1.getPlacementX(), y1 = node1.getPlacementY();
+			Orientation o1 = node1.getPlacementOrientation();
+			double delta;
+			int type = rand.nextInt(3);
+			if (type == 0 && node1 != node2) {
+				delta = cache.evaluateSwap(node1, node2);
+				node1.setPlacement(node2.getPlacementX(), node2.getPlacementY());
+				node2.setPlacement(x1, y1);
+			} else if (type == 1) {
+				double x = rand.nextInt(20), y = rand.nextInt(20);
+				delta = cache.evaluateMove(node1, x, y, o1);
+				node1.setPlacement(x, y);
+			} else {
+				Orientation o = ORIENTATIONS[rand.nextInt(ORIENTATIONS.length)];
+				delta = cache.evaluateMove(node1, x1, y1, o);
+				node1.setPlacementOrientation(o, false);
+			}
+			double after = netLength(nets, proxies);
+			assertEquals("perturbation " + iter, after - before, delta, 1e-9);
+
+			if (rand.nextBoolean()) {
+				cache.commit();
+				assertEquals(after, cache.getTotalLength(), 1e-6);
+			} else {
+				// undo
+				if (type == 0 && node1 != node2) {
+					node2.setPlacement(node1.getPlacementX(), node1.getPlacementY());
+					node1.setPlacement(x1, y1);
+				} else {
+					node1.setPlacement(x1, y1);
+					node1.setPlacementOrientation(o1, false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method that computes the bounding box length of all nets from the proxies.
+	 */
+	private static double netLength(List<PlacementNetwork> nets, List<ProxyNode> proxies) {
+		double total = 0;
+		for (PlacementNetwork net : nets) {
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			for (PlacementPort port : net.getPortsOnNet()) {
+				ProxyNode proxy = null;
+				for (ProxyNode p : proxies)
+					if (p.getNode() == port.getPlacementNode()) proxy = p;
+				Point2D offset = new Point2D.Double(port.getOffX(), port.getOffY());
+				proxy.getPlacementOrientation().pureRotate().transform(offset, offset);
+				double x = proxy.getPlacementX() + offset.getX(), y = proxy.getPlacementY() + offset.getY();
+				minX = Math.min(minX, x);
+				maxX = Math.max(maxX, x);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+			}
+			total += (maxX - minX) + (maxY - minY);
+		}
+		return total;
+	}
+}
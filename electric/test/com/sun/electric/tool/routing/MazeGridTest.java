@@ -0,0 +1,95 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MazeGridTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.routing;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the bit-packed search of MazeGrid.
+ */
+public class MazeGridTest {
+
+	private static final int[] HV = { MazeGrid.HORIZONTAL, MazeGrid.VERTICAL };
+
+	@Test
+	public void testStraightAcrossWords() {
+		// a row wider than two words, so the wave carries between words
+		MazeGrid grid = new MazeGrid(150, 1, HV);
+		grid.addSource(0, 3, 0);
+		grid.addTarget(0, 140, 0);
+		int[] path = grid.findPath();
+		assertNotNull(path);
+		assertEquals(138, path.length / 3);
+		checkPath(grid, path, 0, 3, 0, 0, 140, 0);
+	}
+
+	@Test
+	public void testBendUsesVia() {
+		// horizontal layer 0, vertical layer 1: a corner needs one via
+		MazeGrid grid = new MazeGrid(10, 10, HV);
+		grid.addSource(0, 1, 1);
+		grid.addTarget(0, 8, 8);
+		int[] path = grid.findPath();
+		assertNotNull(path);
+		assertEquals(7 + 7 + 2 + 1, path.length / 3);
+		checkPath(grid, path, 0, 1, 1, 0, 8, 8);
+	}
+
+	@Test
+	public void testBlocked() {
+		MazeGrid grid = new MazeGrid(70, 5, new int[] { MazeGrid.HORIZONTAL | MazeGrid.VERTICAL });
+		for (int y = 0; y < 5; y++)
+			grid.setBlocked(0, 65, y);
+		grid.addSource(0, 0, 2);
+		grid.addTarget(0, 69, 2);
+		assertNull(grid.findPath());
+
+		// an opening in the wall is found
+		grid = new MazeGrid(70, 5, new int[] { MazeGrid.HORIZONTAL | MazeGrid.VERTICAL });
+		for (int y = 1; y < 5; y++)
+			grid.setBlocked(0, 65, y);
+		grid.addSource(0, 0, 2);
+		grid.addTarget(0, 69, 2);
+		int[] path = grid.findPath();
+		assertNotNull(path);
+		assertEquals(69 + 4 + 1, path.length / 3);
+		checkPath(grid, path, 0, 0, 2, 0, 69, 2);
+	}
+
+	/**
+	 * Method to check that a path has the given ends, and moves one legal step at a time around blockages.
+	 */
+	private static void checkPath(MazeGrid grid, int[] path, int l1, int x1, int y1, int l2, int x2, int y2) {
+		int n = path.length / 3;
+		assertArrayEquals(new int[] { l1, x1, y1 }, new int[] { path[0], path[1], path[2] });
+		assertArrayEquals(new int[] { l2, x2, y2 }, new int[] { path[n*3-3], path[n*3-2], path[n*3-1] });
+		for (int i = 1; i < n; i++) {
+			int l = path[i*3], x = path[i*3+1], y = path[i*3+2];
+			int dl = l - path[i*3-3], dx = x - path[i*3-2], dy = y - path[i*3-1];
+			assertEquals(1, Math.abs(dl) + Math.abs(dx) + Math.abs(dy));
+			assertFalse(grid.isBlocked(l, x, y));
+			if (dx != 0) assertTrue(l == 0 || grid.getNumLayers() == 1);
+			if (dy != 0) assertTrue(l == 1 || grid.getNumLayers() == 1);
+		}
+	}
+}
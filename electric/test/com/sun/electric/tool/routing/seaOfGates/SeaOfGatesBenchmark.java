@@ -0,0 +1,99 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SeaOfGatesBenchmark.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.tool.routing.Routing;
+import com.sun.electric.tool.routing.SeaOfGates.SeaOfGatesOptions;
+import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngineFactory.SeaOfGatesEngineType;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Benchmark of the Sea-of-Gates wavefront search.
+ * Routes the cell used by SeaOfGatesTestSuite on a single thread with each engine type
+ * and reports the search vertices explored per second and the bytes allocated per route.
+ * Also reports how the batch engine scales with the number of routing threads.
+ */
+public class SeaOfGatesBenchmark extends AbstractJunitBaseClass {
+
+    @Ignore
+    @Test
+    public void benchmarkWavefront() throws Exception {
+        for (SeaOfGatesEngineType type : SeaOfGatesEngineType.values()) {
+            benchmark(type);
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkThreadScaling() throws Exception {
+        Cell cell = this.loadCell("placementTests", "PlacementTest4");
+        EditingPreferences ep = new EditingPreferences(true, cell.getTechPool());
+        long singleThreadTime = 0;
+        for (int numThreads = 1; numThreads <= Runtime.getRuntime().availableProcessors(); numThreads++) {
+            SeaOfGatesOptions options = new SeaOfGatesOptions();
+            options.useParallelRoutes = numThreads > 1;
+            options.useParallelFromToRoutes = false;
+            options.forcedNumberOfThreads = numThreads;
+            SeaOfGatesEngine router = SeaOfGatesEngineFactory.createSeaOfGatesEngine(SeaOfGatesEngineType.batchInfrastructure);
+            router.setPrefs(options);
+
+            long startTime = System.nanoTime();
+            router.routeIt(SeaOfGatesHandlers.getDefault(cell, null, Routing.SoGContactsStrategy.SOGCONTACTSATTOPLEVEL, null, ep), cell, true);
+            long elapsed = System.nanoTime() - startTime;
+            if (numThreads == 1) singleThreadTime = elapsed;
+            System.out.println("=============== " + numThreads + " threads: " + router.getNumRoutes() + " routes in " +
+                (elapsed / 1000000) + " ms, speedup " + String.format("%.2f", (double)singleThreadTime / elapsed));
+        }
+    }
+
+    private void benchmark(SeaOfGatesEngineType type) throws Exception {
+        Cell cell = this.loadCell("placementTests", "PlacementTest4");
+        EditingPreferences ep = new EditingPreferences(true, cell.getTechPool());
+        SeaOfGatesOptions options = new SeaOfGatesOptions();
+        options.useParallelRoutes = false;
+        options.useParallelFromToRoutes = false;
+        SeaOfGatesEngine router = SeaOfGatesEngineFactory.createSeaOfGatesEngine(type);
+        router.setPrefs(options);
+
+        // single-threaded routing runs on this thread, so its allocation counter covers the whole run
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        router.routeIt(SeaOfGatesHandlers.getDefault(cell, null, Routing.SoGContactsStrategy.SOGCONTACTSATTOPLEVEL, null, ep), cell, true);
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+        int numRoutes = Math.max(router.getNumRoutes(), 1);
+        System.out.println("=============== " + type + ": " + router.getNumRoutes() + " routes, " +
+            router.getNumSearchVertices() + " search vertices in " + (elapsed / 1000000) + " ms");
+        System.out.println("    " + (long)(router.getNumSearchVertices() / (elapsed / 1e9)) + " vertices/second, " +
+            (allocated / numRoutes) + " bytes allocated per route");
+    }
+}
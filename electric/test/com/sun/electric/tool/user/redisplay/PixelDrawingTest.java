@@ -0,0 +1,124 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PixelDrawingTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.user.redisplay;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.generator.layout.LayoutLib;
+import com.sun.electric.tool.user.GraphicsPreferences;
+import com.sun.electric.tool.user.ui.LayerVisibility;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the cached cells of PixelDrawing, which are rendered by the pool of working threads.
+ * A metal square is arrayed twice in a row cell, which is arrayed four times in the top cell,
+ * so both levels of the hierarchy are cached.
+ */
+public class PixelDrawingTest extends AbstractJunitBaseClass {
+
+	private static final Dimension SIZE = new Dimension(700, 500);
+	/** the X coordinates of the metal squares */	private static final double[] SQUARE_X = { 0, 30, 80, 110 };
+	/** the Y coordinates of the metal squares */	private static final double[] SQUARE_Y = { 0, 30 };
+
+	@Test
+	public void testCachedCells() throws Exception {
+		EDatabase.serverDatabase().lowLevelBeginChanging(null);
+		EditingPreferences ep = new EditingPreferences(true, EDatabase.serverDatabase().getTechPool());
+		Technology tech = Technology.findTechnology("mocmos");
+		Library lib = Library.newInst("pixelDrawingTest", null);
+		Cell square = Cell.makeInstance(ep, lib, "square{lay}");
+		LayoutLib.newNodeInst(tech.findNodeProto("Metal-1-Node"), ep, 0, 0, 10, 10, 0, square);
+		Cell row = Cell.makeInstance(ep, lib, "row{lay}");
+		placeInstance(square, ep, 0, 0, row);
+		placeInstance(square, ep, 30, 0, row);
+		Cell top = Cell.makeInstance(ep, lib, "top{lay}");
+		placeInstance(row, ep, 0, 0, top);
+		placeInstance(row, ep, 0, 30, top);
+		placeInstance(row, ep, 80, 0, top);
+		placeInstance(row, ep, 80, 30, top);
+
+		Rectangle2D bounds = top.getBounds();
+		assertEquals(new Rectangle2D.Double(-5, -5, 120, 40), bounds);
+		double scale = Math.min(SIZE.width / bounds.getWidth(), SIZE.height / bounds.getHeight()) * 0.9;
+		Point2D center = new Point2D.Double(bounds.getCenterX(), bounds.getCenterY());
+		GraphicsPreferences gp = new GraphicsPreferences(true);
+		LayerVisibility lv = new LayerVisibility(true);
+
+		int[] whole = render(top, scale, center, gp, lv, 1);
+		// the square and the row, each in one orientation
+		assertEquals(2, PixelDrawing.getNumCachedCells());
+		int background = whole[0];
+		int metal = pixel(whole, scale, center, 0, 0);
+		assertTrue(metal != background);
+		for (double x : SQUARE_X) {
+			for (double y : SQUARE_Y) {
+				assertEquals("square at " + x + "," + y, metal, pixel(whole, scale, center, x, y));
+				assertEquals("gap above " + x + "," + y, background, pixel(whole, scale, center, x, y + 15));
+			}
+		}
+		for (double x : new double[] { 15, 55, 95 })
+			assertEquals("gap at " + x + ",0", background, pixel(whole, scale, center, x, 0));
+
+		for (int numThreads : new int[] { 2, 4, 0 }) {
+			int[] parallel = render(top, scale, center, gp, lv, numThreads);
+			assertEquals(2, PixelDrawing.getNumCachedCells());
+			int numDiffs = 0;
+			for (int i = 0; i < whole.length; i++) {
+				if (whole[i] != parallel[i])
+					numDiffs++;
+			}
+			assertEquals(numThreads + " threads: pixels differ", 0, numDiffs);
+		}
+	}
+
+	private static void placeInstance(Cell subCell, EditingPreferences ep, double x, double y, Cell cell) {
+		NodeInst ni = LayoutLib.newNodeInst(subCell, ep, x, y, LayoutLib.DEF_SIZE, LayoutLib.DEF_SIZE, 0, cell);
+		ni.setExpanded(true);
+	}
+
+	/**
+	 * Method to get the color of the image at a point of the cell.
+	 */
+	private static int pixel(int[] image, double scale, Point2D center, double x, double y) {
+		int sx = (int) Math.round(SIZE.width / 2 + (x - center.getX()) * scale);
+		int sy = (int) Math.round(SIZE.height / 2 - (y - center.getY()) * scale);
+		return image[sy * SIZE.width + sx];
+	}
+
+	private static int[] render(Cell cell, double scale, Point2D center, GraphicsPreferences gp, LayerVisibility lv,
+			int numThreads) {
+		PixelDrawing offscreen = new PixelDrawing(SIZE);
+		offscreen.renderImage(scale, center, cell, gp, lv, numThreads);
+		return offscreen.getOpaqueData().clone();
+	}
+}
@@ -0,0 +1,69 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: VectorCoverageTest.java
+ *
+ * Copyright (c) 2016, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.user.redisplay;
+
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test of the coverage pyramid of VectorCache.
+ */
+public class VectorCoverageTest extends AbstractJunitBaseClass {
+
+	@Test
+	public void testLevels() {
+		Layer layer = Technology.getCurrent().getLayers().next();
+		List<VectorCache.VectorBase> shapes = new ArrayList<VectorCache.VectorBase>();
+		shapes.add(new VectorCache.VectorManhattan(null, 0L, 0L, 10L, 10L, layer, null, false));
+		shapes.add(new VectorCache.VectorManhattan(null, 1000L, 500L, 1024L, 520L, layer, null, false));
+		shapes.add(new VectorCache.VectorLine(null, 0L, 0L, 1024L, 1024L, 0, layer, null));
+		VectorCache.VectorCoverage cov = new VectorCache.VectorCoverage(shapes, 0, 0, 1024, 1024);
+
+		// 1024 units are divided in 129 bins of 8 units, then up to a single bin
+		assertEquals(3, cov.getBinShift(0));
+		assertEquals(129, cov.getWidth(0));
+		assertEquals(1, cov.getWidth(8));
+		assertEquals(-1, cov.findLevel(7));
+		assertEquals(0, cov.findLevel(8));
+		assertEquals(2, cov.findLevel(40));
+		assertEquals(8, cov.findLevel(1e9));
+
+		assertTrue(cov.isSet(0, 0, 0));
+		assertTrue(cov.isSet(0, 1, 1));
+		assertFalse(cov.isSet(0, 2, 2));
+		assertTrue(cov.isSet(0, 126, 63));
+		assertFalse(cov.isSet(0, 100, 100));
+		assertTrue(cov.isSet(3, 15, 7));
+		assertFalse(cov.isSet(3, 10, 10));
+		assertTrue(cov.isSet(8, 0, 0));
+
+		// lines are not part of the coverage
+		assertEquals(1, cov.getOtherShapes().size());
+	}
+}